@@ -0,0 +1,295 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScannerTimeoutException;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.SkipFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 根据实测的行大小和 RPC 耗时自动调整 caching 和 maxResultSize 的扫描器。
+ * <p>
+ * 每读完一批（当前 caching 行）统计平均行大小和每行耗时，按
+ * min(targetRpcMillis / 每行耗时, maxBufferBytes / 行大小) 计算新的 caching，
+ * 与当前值相差超过一倍时从最后一行处重新打开 Scan，maxResultSize 同时设为新 caching 行的预计大小的
+ * {@link #RESULT_SIZE_HEADROOM} 倍：个别大行不会让单次 RPC 的数据量远超按耗时预计的值，
+ * 平均大小的行又总能凑满 caching。maxResultSize 不超过 maxBufferBytes 和调用方 Scan 上设置的值，
+ * 还没有实测值时取这个上限。
+ * <p>
+ * 调用方两次 next 的间隔超过扫描器租约（hbase.client.scanner.timeout.period）时，同样从最后一行处重新打开继续，
+ * 不重复也不遗漏。
+ * <p>
+ * batch 由调用方决定，重新打开时保持不变：从最后一行（含）开始，跳过这一行已经返回过的部分结果。
+ * 重新打开期间该行被修改时，这一行的部分结果可能重复或缺失。
+ * <p>
+ * 重新打开的 Scan 上的过滤器从初始状态开始。PageFilter、WhileMatchFilter 等跨行保存状态的过滤器因此会重新计数或
+ * 重新匹配，Scan 上有这类过滤器（包括 FilterList 中的）时不重新打开：caching 保持初始值，租约过期照常抛出异常。
+ */
+public class AdaptiveScanner extends AbstractClientScanner {
+
+	private final static Log log = LogFactory.getLog(AdaptiveScanner.class);
+
+	public static final long DEFAULT_TARGET_RPC_MILLIS = 100;
+	public static final long DEFAULT_MAX_BUFFER_BYTES = 4L * 1024 * 1024;
+
+	static final int MIN_CACHING = 1;
+	static final int MAX_CACHING = 10000;
+	private static final int INITIAL_CACHING = 100;
+	/** 新旧 caching 的比值超过该值才重新打开 Scan */
+	private static final double REOPEN_RATIO = 2.0;
+	/** 指数平均中新样本的权重 */
+	private static final double ALPHA = 0.5;
+	/** maxResultSize 与 caching 行预计大小的比值 */
+	static final double RESULT_SIZE_HEADROOM = 2.0;
+
+	private final Table table;
+	private final Scan scan;
+	private final Scan template;
+	private final long targetRpcMillis;
+	private final long maxBufferBytes;
+	/** maxResultSize 的上限 */
+	private final long maxResultSizeCap;
+	/** Scan 上没有跨行保存状态的过滤器，可以重新打开 */
+	private final boolean reopenable;
+
+	private ResultScanner delegate;
+	private Scan delegateScan;
+	private int caching;
+	private long maxResultSize;
+
+	private double bytesPerRow = -1;
+	private double nanosPerRow = -1;
+	private int windowRows = 0;
+	private long windowBytes = 0;
+	private long windowNanos = 0;
+
+	private byte[] lastRow = null;
+	private int lastRowResults = 0;
+	private int toSkip = 0;
+
+	private long rows = 0;
+	private int reopens = 0;
+	private int resumes = 0;
+	private boolean closed = false;
+
+	public AdaptiveScanner(Table table, Scan scan) throws IOException {
+		this(table, scan, DEFAULT_TARGET_RPC_MILLIS, DEFAULT_MAX_BUFFER_BYTES);
+	}
+
+	/**
+	 * @param targetRpcMillis 单次 RPC 的目标耗时
+	 * @param maxBufferBytes 单次 RPC 返回数据量的上限，即客户端缓存的内存预算
+	 */
+	public AdaptiveScanner(Table table, Scan scan, long targetRpcMillis, long maxBufferBytes) throws IOException {
+		this.table = table;
+		this.scan = scan;
+		this.template = new Scan(scan);
+		this.targetRpcMillis = targetRpcMillis;
+		this.maxBufferBytes = maxBufferBytes;
+		if (template.getMaxResultSize() <= 0 || template.getMaxResultSize() > maxBufferBytes) {
+			template.setMaxResultSize(maxBufferBytes);
+		}
+		this.maxResultSizeCap = template.getMaxResultSize();
+		this.maxResultSize = maxResultSizeCap;
+		this.caching = scan.getCaching() > 0 ? clamp(scan.getCaching()) : INITIAL_CACHING;
+		this.reopenable = !hasStatefulFilter(template.getFilter());
+		initScanMetrics(template);
+		open(template.getStartRow());
+	}
+
+	private void open(byte[] startRow) throws IOException {
+		Scan scan = new Scan(template);
+		scan.setStartRow(startRow);
+		scan.setCaching(caching);
+		scan.setMaxResultSize(maxResultSize);
+		delegate = table.getScanner(scan);
+		delegateScan = scan;
+	}
+
+	/**
+	 * 过滤器在行与行之间保存状态，重新打开后从初始状态开始会改变结果
+	 */
+	static boolean hasStatefulFilter(Filter filter) {
+		if (filter instanceof PageFilter || filter instanceof WhileMatchFilter) {
+			return true;
+		}
+		if (filter instanceof FilterList) {
+			for (Filter f : ((FilterList) filter).getFilters()) {
+				if (hasStatefulFilter(f)) {
+					return true;
+				}
+			}
+		}
+		if (filter instanceof SkipFilter) {
+			return hasStatefulFilter(((SkipFilter) filter).getFilter());
+		}
+		return false;
+	}
+
+	@Override
+	public Result next() throws IOException {
+		if (closed) {
+			return null;
+		}
+		boolean resumed = false;
+		while (true) {
+			long start = System.nanoTime();
+			Result r;
+			try {
+				r = delegate.next();
+			} catch (ScannerTimeoutException | UnknownScannerException e) {
+				// 刚重新打开的扫描器不会过期，再次失败时不是租约的问题
+				if (!reopenable || resumed) {
+					throw e;
+				}
+				log.warn("Scanner lease expired, resuming after "
+						+ (lastRow != null ? Bytes.toStringBinary(lastRow) : "start") + ": " + e.getMessage());
+				reopen();
+				resumes++;
+				resumed = true;
+				continue;
+			}
+			windowNanos += System.nanoTime() - start;
+			if (r == null) {
+				return null;
+			}
+			if (toSkip > 0 && Bytes.equals(lastRow, r.getRow())) {
+				toSkip--;
+				continue;
+			}
+			toSkip = 0;
+			track(r);
+			return r;
+		}
+	}
+
+	private void track(Result r) throws IOException {
+		rows++;
+		if (lastRow != null && Bytes.equals(lastRow, r.getRow())) {
+			lastRowResults++;
+		} else {
+			lastRow = r.getRow();
+			lastRowResults = 1;
+		}
+		windowRows++;
+		windowBytes += Result.getTotalSizeOfCells(r);
+		if (windowRows >= caching) {
+			adjust();
+		}
+	}
+
+	private void adjust() throws IOException {
+		bytesPerRow = average(bytesPerRow, (double) windowBytes / windowRows);
+		nanosPerRow = average(nanosPerRow, (double) windowNanos / windowRows);
+		windowRows = 0;
+		windowBytes = 0;
+		windowNanos = 0;
+
+		int target = clamp((long) Math.min(targetRpcMillis * 1e6 / Math.max(nanosPerRow, 1),
+				maxBufferBytes / Math.max(bytesPerRow, 1)));
+		double ratio = (double) Math.max(target, caching) / Math.min(target, caching);
+		if (ratio < REOPEN_RATIO || !reopenable) {
+			return;
+		}
+		long resultSize = Math.max(1, Math.min(maxResultSizeCap, (long) (target * bytesPerRow
+				* RESULT_SIZE_HEADROOM)));
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Scanner caching %d -> %d, maxResultSize %d -> %d (%.0f bytes/row, %.1f us/row)",
+					caching, target, maxResultSize, resultSize, bytesPerRow, nanosPerRow / 1000));
+		}
+		caching = target;
+		maxResultSize = resultSize;
+		reopen();
+		reopens++;
+	}
+
+	/**
+	 * 从最后一行（含）处重新打开，跳过这一行已经返回过的部分结果；还没有返回过结果时从头开始
+	 */
+	private void reopen() throws IOException {
+		closeDelegate();
+		if (lastRow != null) {
+			toSkip = lastRowResults;
+			open(lastRow);
+		} else {
+			open(template.getStartRow());
+		}
+	}
+
+	private static double average(double old, double sample) {
+		return old < 0 ? sample : old * (1 - ALPHA) + sample * ALPHA;
+	}
+
+	private static int clamp(long caching) {
+		return (int) Math.max(MIN_CACHING, Math.min(MAX_CACHING, caching));
+	}
+
+	@Override
+	public boolean renewLease() {
+		if (delegate instanceof AbstractClientScanner) {
+			return ((AbstractClientScanner) delegate).renewLease();
+		}
+		return false;
+	}
+
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			closeDelegate();
+			OperationMetrics.publishScanMetrics(scan, getScanMetrics());
+		}
+	}
+
+	/**
+	 * 关闭当前的扫描器，并把它的 ScanMetrics 累加到本扫描器上，关闭本扫描器时再写入调用方的 Scan
+	 */
+	private void closeDelegate() {
+		delegate.close();
+		OperationMetrics.mergeScanMetrics(getScanMetrics(), delegateScan);
+	}
+
+	/**
+	 * 当前使用的 caching
+	 */
+	public int getCaching() {
+		return caching;
+	}
+
+	/**
+	 * 当前使用的 maxResultSize
+	 */
+	public long getMaxResultSize() {
+		return maxResultSize;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * 因调整 caching 而重新打开 Scan 的次数
+	 */
+	public int getReopens() {
+		return reopens;
+	}
+
+	/**
+	 * 扫描器租约过期后重新打开继续的次数
+	 */
+	public int getResumes() {
+		return resumes;
+	}
+}
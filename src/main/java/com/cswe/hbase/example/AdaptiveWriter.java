@@ -0,0 +1,465 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+
+/**
+ * 按 RegionServer 自适应并发的写入：每个 Server 同时在途的批次数由 AIMD 控制。
+ * <p>
+ * 写入按 Region 分成不超过 batchRows 行的批次，每批一次 RPC。某个 Server 的批次成功且不慢时，
+ * 它的并发上限每轮增加 1（每完成一批加 1/limit）；失败，或每行耗时超过该 Server 基线的 slowFactor 倍时，
+ * 上限减半，一个批次耗时内最多减一次。基线是观察到的最小每行耗时，并缓慢跟随后来的样本。
+ * 这样一个 Server 因为热点 Region 变慢时只有发往它的批次减少，其它 Server 仍按各自的上限写满。
+ * <p>
+ * 每批的行键、耗时和成败记录在 {@link HotRegionTracker} 中，用于发现热点 Region 并计算拆分点。
+ * 多个线程可以同时调用 {@link #write}，各 Server 的上限由它们共用：各调用自己分发、等待自己的批次，
+ * 名额被其它调用占满时等它们归还。
+ */
+public class AdaptiveWriter implements Closeable {
+
+	private final static Log log = LogFactory.getLog(AdaptiveWriter.class);
+
+	public static class Params {
+		private int initialLimit = 4;
+		private int minLimit = 1;
+		private int maxLimit = 16;
+		private int batchRows = 100;
+		private double slowFactor = 2.0;
+		private long minSlowMillis = 10;
+		private HotRegionTracker.Params trackerParams = new HotRegionTracker.Params();
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		/** 每个 Server 开始时的并发上限 */
+		public Params initialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public Params minLimit(int minLimit) {
+			this.minLimit = minLimit;
+			return this;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public Params maxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		public int getBatchRows() {
+			return batchRows;
+		}
+
+		/** 每批最多的行数，一批只属于一个 Region */
+		public Params batchRows(int batchRows) {
+			this.batchRows = batchRows;
+			return this;
+		}
+
+		public double getSlowFactor() {
+			return slowFactor;
+		}
+
+		/** 每行耗时超过基线的该倍数时视为变慢 */
+		public Params slowFactor(double slowFactor) {
+			this.slowFactor = slowFactor;
+			return this;
+		}
+
+		public long getMinSlowMillis() {
+			return minSlowMillis;
+		}
+
+		/** 耗时低于该值的批次不视为变慢，避免毫秒以下的抖动触发减半 */
+		public Params minSlowMillis(long minSlowMillis) {
+			this.minSlowMillis = minSlowMillis;
+			return this;
+		}
+
+		public HotRegionTracker.Params getTrackerParams() {
+			return trackerParams;
+		}
+
+		public Params trackerParams(HotRegionTracker.Params trackerParams) {
+			this.trackerParams = trackerParams;
+			return this;
+		}
+	}
+
+	/**
+	 * 一个 Server 的并发上限，在 AdaptiveWriter 的锁内修改
+	 */
+	static final class ServerLimit {
+		/** 基线向较慢样本移动的比例，使基线能跟上持续的变化 */
+		private static final double BASELINE_DRIFT = 0.01;
+
+		private final Params params;
+		volatile double limit;
+		int inFlight = 0;
+		volatile double baselineNanosPerRow = Double.NaN;
+		long lastDecreaseNanos = Long.MIN_VALUE / 2;
+		volatile long decreases = 0;
+
+		ServerLimit(Params params) {
+			this.params = params;
+			this.limit = Math.min(params.getMaxLimit(), Math.max(params.getMinLimit(), params.getInitialLimit()));
+		}
+
+		boolean tryAcquire() {
+			if (inFlight < Math.max(params.getMinLimit(), (int) limit)) {
+				inFlight++;
+				return true;
+			}
+			return false;
+		}
+
+		void release(int rows, long elapsedNanos, boolean failed, long now) {
+			inFlight--;
+			if (failed) {
+				decrease(elapsedNanos, now);
+				return;
+			}
+			double perRow = (double) elapsedNanos / Math.max(1, rows);
+			if (Double.isNaN(baselineNanosPerRow) || perRow < baselineNanosPerRow) {
+				baselineNanosPerRow = perRow;
+			} else {
+				baselineNanosPerRow += (perRow - baselineNanosPerRow) * BASELINE_DRIFT;
+			}
+			if (elapsedNanos > TimeUnit.MILLISECONDS.toNanos(params.getMinSlowMillis())
+					&& perRow > params.getSlowFactor() * baselineNanosPerRow) {
+				decrease(elapsedNanos, now);
+			} else {
+				limit = Math.min(params.getMaxLimit(), limit + 1 / limit);
+			}
+		}
+
+		/**
+		 * 同一轮在途的批次都会变慢，只按第一个减半
+		 */
+		private void decrease(long elapsedNanos, long now) {
+			if (now - lastDecreaseNanos > elapsedNanos) {
+				limit = Math.max(params.getMinLimit(), limit / 2);
+				lastDecreaseNanos = now;
+				decreases++;
+			}
+		}
+	}
+
+	/**
+	 * 一个 Server 当前的并发状态
+	 */
+	public static final class ServerStat {
+		private final ServerName server;
+		private final double limit;
+		private final int inFlight;
+		private final double baselineMillisPerRow;
+		private final long decreases;
+
+		ServerStat(ServerName server, ServerLimit limit) {
+			this.server = server;
+			this.limit = limit.limit;
+			this.inFlight = limit.inFlight;
+			this.baselineMillisPerRow = limit.baselineNanosPerRow / 1e6;
+			this.decreases = limit.decreases;
+		}
+
+		public ServerName getServer() {
+			return server;
+		}
+
+		/**
+		 * 当前的并发上限，实际在途批次数为其整数部分
+		 */
+		public double getLimit() {
+			return limit;
+		}
+
+		/**
+		 * 当前在途的批次数
+		 */
+		public int getInFlight() {
+			return inFlight;
+		}
+
+		public double getBaselineMillisPerRow() {
+			return baselineMillisPerRow;
+		}
+
+		/**
+		 * 减半的次数
+		 */
+		public long getDecreases() {
+			return decreases;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s limit=%.2f inFlight=%d baseline=%.3fms/row decreases=%d", server
+					.getHostAndPort(), limit, inFlight, baselineMillisPerRow, decreases);
+		}
+	}
+
+	/**
+	 * 发往一个 Region 的一批写入
+	 */
+	private static final class Batch {
+		final HRegionLocation location;
+		final List<Mutation> mutations = new ArrayList<Mutation>();
+		long elapsedNanos;
+		IOException error;
+
+		Batch(HRegionLocation location) {
+			this.location = location;
+		}
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final Params params;
+	private final RegionLocator locator;
+	private final HotRegionTracker tracker;
+	private final ExecutorService pool;
+	/** 各 Server 的上限在本对象的锁内修改，getServerStats 不加锁读取 */
+	private final Map<ServerName, ServerLimit> limits = new ConcurrentHashMap<ServerName, ServerLimit>();
+
+	public AdaptiveWriter(Connection conn, TableName tableName, Params params) throws IOException {
+		this.conn = conn;
+		this.tableName = tableName;
+		this.params = params;
+		this.locator = conn.getRegionLocator(tableName);
+		this.tracker = new HotRegionTracker(params.getTrackerParams());
+		tracker.register(locator.getAllRegionLocations());
+		final AtomicInteger threads = new AtomicInteger();
+		this.pool = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AdaptiveWriter-" + threads.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * 写入并等待全部完成。各批次独立，部分失败时其余批次仍然写入。
+	 * 中断或异常退出前等待已发出的批次结束，各 Server 的名额按批次的实际结果归还
+	 *
+	 * @throws IOException 第一个失败批次的异常
+	 */
+	public void write(List<? extends Mutation> mutations) throws IOException {
+		Map<ServerName, Deque<Batch>> queues = new LinkedHashMap<ServerName, Deque<Batch>>();
+		int queued = 0;
+		for (Batch batch : split(mutations)) {
+			ServerName server = batch.location.getServerName();
+			Deque<Batch> queue = queues.get(server);
+			if (queue == null) {
+				queue = new ArrayDeque<Batch>();
+				queues.put(server, queue);
+			}
+			queue.add(batch);
+			queued++;
+			limits.putIfAbsent(server, new ServerLimit(params));
+		}
+
+		CompletionService<Batch> completion = new ExecutorCompletionService<Batch>(pool);
+		int outstanding = 0;
+		IOException first = null;
+		try {
+			while (true) {
+				synchronized (this) {
+					while (true) {
+						for (Map.Entry<ServerName, Deque<Batch>> e : queues.entrySet()) {
+							ServerLimit limit = limits.get(e.getKey());
+							while (!e.getValue().isEmpty() && limit.tryAcquire()) {
+								completion.submit(task(e.getValue().poll()));
+								outstanding++;
+								queued--;
+							}
+						}
+						if (outstanding > 0 || queued == 0) {
+							break;
+						}
+						// 名额都被其它调用占用，等它们的批次结束
+						wait();
+					}
+				}
+				if (outstanding == 0) {
+					break;
+				}
+				Batch done = completion.take().get();
+				outstanding--;
+				complete(done);
+				if (done.error != null && first == null) {
+					first = done.error;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted while writing").initCause(e);
+		} catch (ExecutionException e) {
+			// task 捕获了全部异常，不会发生
+			throw new IOException(e.getCause());
+		} finally {
+			if (outstanding > 0) {
+				awaitOutstanding(completion, outstanding);
+			}
+		}
+		if (first != null) {
+			throw first;
+		}
+	}
+
+	/**
+	 * 一个批次结束：归还名额、调整上限并唤醒等待名额的调用，记录到 tracker
+	 */
+	private void complete(Batch done) {
+		synchronized (this) {
+			limits.get(done.location.getServerName()).release(done.mutations.size(), done.elapsedNanos,
+					done.error != null, System.nanoTime());
+			notifyAll();
+		}
+		List<byte[]> rows = new ArrayList<byte[]>(done.mutations.size());
+		for (Mutation m : done.mutations) {
+			rows.add(m.getRow());
+		}
+		tracker.record(done.location, rows, done.elapsedNanos, done.error != null);
+		if (done.error != null) {
+			log.warn("Write " + done.mutations.size() + " rows to " + done.location + " failed", done.error);
+		}
+	}
+
+	/**
+	 * 异常退出时等待已发出的批次，不中断：中断阻塞在 RPC 上的线程会关闭共享的连接。
+	 * 等待时间受客户端的操作超时限制，期间的中断在返回前恢复
+	 */
+	private void awaitOutstanding(CompletionService<Batch> completion, int outstanding) {
+		boolean interrupted = false;
+		while (outstanding > 0) {
+			try {
+				complete(completion.take().get());
+				outstanding--;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			} catch (ExecutionException e) {
+				// task 捕获了全部异常，不会发生
+				outstanding--;
+				log.error("Unexpected batch failure ", e.getCause());
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 按所在 Region 把写入分成批次，位置来自 Connection 的缓存
+	 */
+	private List<Batch> split(List<? extends Mutation> mutations) throws IOException {
+		Map<String, Batch> open = new HashMap<String, Batch>();
+		List<Batch> batches = new ArrayList<Batch>();
+		for (Mutation m : mutations) {
+			HRegionLocation location = locator.getRegionLocation(m.getRow());
+			String region = location.getRegionInfo().getEncodedName();
+			Batch batch = open.get(region);
+			if (batch == null || batch.mutations.size() >= params.getBatchRows()) {
+				batch = new Batch(location);
+				open.put(region, batch);
+				batches.add(batch);
+			}
+			batch.mutations.add(m);
+		}
+		return batches;
+	}
+
+	private Callable<Batch> task(final Batch batch) {
+		return new Callable<Batch>() {
+			@Override
+			public Batch call() {
+				long start = System.nanoTime();
+				try {
+					Table table = conn.getTable(tableName);
+					try {
+						table.batch(batch.mutations, new Object[batch.mutations.size()]);
+					} finally {
+						table.close();
+					}
+				} catch (IOException e) {
+					batch.error = e;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					batch.error = new InterruptedIOException("Interrupted while writing");
+				} catch (RuntimeException e) {
+					batch.error = new IOException(e);
+				}
+				batch.elapsedNanos = System.nanoTime() - start;
+				return batch;
+			}
+		};
+	}
+
+	public HotRegionTracker getTracker() {
+		return tracker;
+	}
+
+	/**
+	 * 重新登记表的 Region，Region 拆分或移动后调用
+	 */
+	public void refreshRegions() throws IOException {
+		tracker.register(locator.getAllRegionLocations());
+	}
+
+	/**
+	 * 各 Server 当前的并发上限，写入过程中也可以调用
+	 */
+	public List<ServerStat> getServerStats() {
+		List<ServerStat> stats = new ArrayList<ServerStat>(limits.size());
+		for (Map.Entry<ServerName, ServerLimit> e : limits.entrySet()) {
+			stats.add(new ServerStat(e.getKey(), e.getValue()));
+		}
+		return stats;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pool.shutdown();
+		locator.close();
+	}
+}
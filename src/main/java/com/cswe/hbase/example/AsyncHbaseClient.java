@@ -0,0 +1,447 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+
+/**
+ * 非阻塞的 Get、Put、Delete 和 Scan，调用线程不等待 RPC。
+ * <p>
+ * HBase 1.0.2 客户端只有同步 API，请求在固定大小的线程池中执行，调用方拿到 CompletableFuture。
+ * 同时进行的操作数超过 {@link Params#maxInFlight} 时立即返回以 RejectedExecutionException 失败的 Future，
+ * 由调用方决定重试还是降级，而不是在调用线程上排队。
+ * 超时后 Future 以 TimeoutException 失败：还在排队的请求被取消，不再执行；执行中的请求不中断
+ * （中断阻塞在 RPC 上的线程会关闭与 RegionServer 的共享连接，影响其它请求），由设置在 Table 上的同样长的
+ * 操作超时结束。名额在请求真正结束后才释放，maxInFlight 限制的是实际占用的线程和连接。
+ * <p>
+ * Future 的回调在线程池的线程上执行，耗时的处理应使用 *Async 方法切换到调用方自己的线程池。
+ */
+public class AsyncHbaseClient implements Closeable {
+
+	private final static Log log = LogFactory.getLog(AsyncHbaseClient.class);
+
+	public static class Params {
+		private final TableName tableName;
+		private int threads = 16;
+		private int maxInFlight = 256;
+		private long timeoutMillis = 5000;
+		private ClientMetrics metrics;
+
+		public Params(TableName tableName) {
+			this.tableName = tableName;
+		}
+
+		public TableName getTableName() {
+			return tableName;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		/** 执行同步 RPC 的线程数 */
+		public Params threads(int threads) {
+			this.threads = threads;
+			return this;
+		}
+
+		public int getMaxInFlight() {
+			return maxInFlight;
+		}
+
+		/** 排队和执行中的操作总数上限，一个未结束的 Scan 占一个名额 */
+		public Params maxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		public long getTimeoutMillis() {
+			return timeoutMillis;
+		}
+
+		/**
+		 * Get、Put、Delete 从提交到完成的超时，包括排队时间；也作为执行时 Table 的操作超时。
+		 * Scan 的超时由 hbase.client.scanner.timeout.period 控制
+		 */
+		public Params timeout(long timeout, TimeUnit unit) {
+			this.timeoutMillis = unit.toMillis(timeout);
+			return this;
+		}
+
+		public ClientMetrics getMetrics() {
+			return metrics;
+		}
+
+		/** 可选，按 asyncGet、asyncPut、asyncDelete、asyncScan 记录指标 */
+		public Params metrics(ClientMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+	}
+
+	/**
+	 * 接收扫描结果。onStart 在调用 scan 的线程上最先调用，其余方法在线程池的线程上依次调用，不会并发
+	 */
+	public interface ScanObserver {
+		/**
+		 * 在这里保存 subscription 并 request 第一批
+		 */
+		void onStart(ScanSubscription subscription);
+
+		/**
+		 * 抛出异常时结束扫描并回调 onError
+		 */
+		void onNext(Result result) throws IOException;
+
+		void onError(Throwable error);
+
+		void onComplete();
+	}
+
+	/**
+	 * 背压：只有 request 过的行才会被读取和推送，没有需求时扫描不占用线程
+	 */
+	public interface ScanSubscription {
+		/**
+		 * 再请求 n 行，n 必须大于 0
+		 */
+		void request(long n);
+
+		/**
+		 * 停止扫描并释放扫描器，之后不再回调 observer
+		 */
+		void cancel();
+	}
+
+	/** submit 中请求的状态 */
+	private static final int QUEUED = 0;
+	private static final int RUNNING = 1;
+	private static final int CANCELLED = 2;
+
+	private interface TableCall<T> {
+		T call(Table table) throws IOException;
+	}
+
+	private final Connection conn;
+	private final Params params;
+	private final ThreadPoolExecutor executor;
+	private final ScheduledThreadPoolExecutor timer;
+	private final Semaphore inFlight;
+
+	public AsyncHbaseClient(Connection conn, Params params) {
+		this.conn = conn;
+		this.params = params;
+		this.inFlight = new Semaphore(params.getMaxInFlight());
+		String prefix = "AsyncHbaseClient-" + params.getTableName().getNameAsString();
+		this.executor = new ThreadPoolExecutor(params.getThreads(), params.getThreads(), 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(params.getMaxInFlight()), daemon(prefix));
+		this.timer = new ScheduledThreadPoolExecutor(1, daemon(prefix + "-timer"));
+		// 大部分操作在超时前完成，取消的定时任务立即移出队列
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	private static ThreadFactory daemon(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	public CompletableFuture<Result> get(final Get get) {
+		return submit("asyncGet", 0, table -> table.get(get));
+	}
+
+	public CompletableFuture<Void> put(final Put put) {
+		return submit("asyncPut", put.heapSize(), table -> {
+			table.put(put);
+			return null;
+		});
+	}
+
+	/**
+	 * 一次 RPC 批量写入，整体成功或失败
+	 */
+	public CompletableFuture<Void> put(final List<Put> puts) {
+		long bytes = 0;
+		for (Put put : puts) {
+			bytes += put.heapSize();
+		}
+		return submit("asyncPut", bytes, table -> {
+			table.put(puts);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> delete(final Delete delete) {
+		return submit("asyncDelete", delete.heapSize(), table -> {
+			table.delete(delete);
+			return null;
+		});
+	}
+
+	private <T> CompletableFuture<T> submit(String operation, final long bytesWritten, final TableCall<T> call) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		if (!inFlight.tryAcquire()) {
+			future.completeExceptionally(new RejectedExecutionException("Too many in-flight operations: "
+					+ params.getMaxInFlight()));
+			return future;
+		}
+		final long start = System.nanoTime();
+		// QUEUED -> RUNNING 由执行线程设置，QUEUED -> CANCELLED 由超时设置，名额由成功设置的一方释放
+		final AtomicInteger state = new AtomicInteger(QUEUED);
+		final Future<?> task;
+		try {
+			task = executor.submit(() -> {
+				if (!state.compareAndSet(QUEUED, RUNNING)) {
+					return;
+				}
+				T result = null;
+				Throwable error = null;
+				try {
+					Table table = conn.getTable(params.getTableName());
+					try {
+						if (table instanceof HTable) {
+							((HTable) table).setOperationTimeout((int) Math.min(Integer.MAX_VALUE, params
+									.getTimeoutMillis()));
+						}
+						result = call.call(table);
+					} finally {
+						table.close();
+					}
+				} catch (Throwable t) {
+					error = t;
+				} finally {
+					inFlight.release();
+				}
+				// 先归还名额再完成，调用方的回调执行时名额已经释放
+				if (error != null) {
+					future.completeExceptionally(error);
+				} else {
+					future.complete(result);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			inFlight.release();
+			future.completeExceptionally(e);
+			return future;
+		}
+		final ScheduledFuture<?> timeout = timer.schedule(() -> {
+			if (state.compareAndSet(QUEUED, CANCELLED)) {
+				// 还在排队：移出队列，名额立即归还
+				task.cancel(false);
+				executor.remove((Runnable) task);
+				inFlight.release();
+			}
+			future.completeExceptionally(new TimeoutException("Timed out after " + params.getTimeoutMillis() + " ms"));
+		}, params.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+		final OperationMetrics metrics = metrics(operation);
+		return future.whenComplete((result, error) -> {
+			timeout.cancel(false);
+			if (metrics == null) {
+				return;
+			}
+			if (error != null) {
+				metrics.recordError(start);
+			} else {
+				long read = result instanceof Result ? Result.getTotalSizeOfCells((Result) result) : 0;
+				metrics.record(start, read, bytesWritten, 1);
+			}
+		});
+	}
+
+	private OperationMetrics metrics(String operation) {
+		return params.getMetrics() != null ? params.getMetrics().forOperation(params.getTableName(), operation)
+				: null;
+	}
+
+	/**
+	 * 开始扫描。扫描在 observer 第一次 request 之后才打开，结束、失败或 cancel 后释放名额
+	 */
+	public void scan(Scan scan, ScanObserver observer) {
+		ScanTask task = new ScanTask(scan, observer);
+		boolean acquired = inFlight.tryAcquire();
+		task.done = !acquired;
+		observer.onStart(task);
+		if (!acquired) {
+			observer.onError(new RejectedExecutionException("Too many in-flight operations: "
+					+ params.getMaxInFlight()));
+		}
+	}
+
+	private class ScanTask implements ScanSubscription, Runnable {
+		private final Scan scan;
+		private final ScanObserver observer;
+		private final OperationMetrics metrics = metrics("asyncScan");
+		private final long start = System.nanoTime();
+		private final AtomicLong requested = new AtomicLong();
+		/** 待处理的 request/cancel 信号数，只有从 0 变为 1 的一方提交任务，保证同一时刻只有一个线程在读扫描器 */
+		private final AtomicInteger pending = new AtomicInteger();
+		private volatile boolean cancelled = false;
+		/** scan 在调用线程上设置，之后由持有 pending 的线程读写，先后在不同的线程上 */
+		private volatile boolean done = false;
+		// 以下字段只在持有 pending 的线程中访问
+		private Table table;
+		private ResultScanner scanner;
+
+		ScanTask(Scan scan, ScanObserver observer) {
+			this.scan = scan;
+			this.observer = observer;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				throw new IllegalArgumentException("request must be positive: " + n);
+			}
+			long r;
+			do {
+				r = requested.get();
+			} while (!requested.compareAndSet(r, r + n < 0 ? Long.MAX_VALUE : r + n));
+			signal();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			signal();
+		}
+
+		private void signal() {
+			if (pending.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					if (finish(e)) {
+						observer.onError(e);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			if (done) {
+				return;
+			}
+			try {
+				if (!cancelled && scanner == null) {
+					table = conn.getTable(params.getTableName());
+					scanner = table.getScanner(scan);
+				}
+				while (!cancelled && requested.get() > 0) {
+					Result r = scanner.next();
+					if (r == null) {
+						finish(null);
+						observer.onComplete();
+						return;
+					}
+					requested.decrementAndGet();
+					observer.onNext(r);
+				}
+				if (cancelled) {
+					finish(null);
+				}
+			} catch (Throwable t) {
+				if (finish(t)) {
+					observer.onError(t);
+				}
+			}
+		}
+
+		/**
+		 * @return 本次调用是否结束了扫描
+		 */
+		private boolean finish(Throwable error) {
+			if (done) {
+				return false;
+			}
+			done = true;
+			if (scanner != null) {
+				scanner.close();
+			}
+			if (table != null) {
+				try {
+					table.close();
+				} catch (IOException e) {
+					log.warn("Close table failed ", e);
+				}
+			}
+			inFlight.release();
+			if (metrics != null) {
+				if (error != null) {
+					metrics.recordError(start);
+				} else {
+					metrics.recordScan(start, scan);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 当前排队和执行中的操作数
+	 */
+	public int getInFlight() {
+		return params.getMaxInFlight() - inFlight.availablePermits();
+	}
+
+	/**
+	 * 等待已提交的操作执行完，最多等待一个超时时长
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(params.getTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+				log.warn("Async operations still running after " + params.getTimeoutMillis() + " ms, interrupting");
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted while closing").initCause(e);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+
+/**
+ * 批量 Get：按 RegionServer 分组，每个 Server 一次 multi-get 并行下发，结果按输入顺序返回。
+ * <p>
+ * 单个 Get 失败或整组超时不影响其他组，失败信息记录在 {@link BatchGetResult} 中。
+ * <p>
+ * 超时的组不中断（中断阻塞在 RPC 上的线程会关闭与 RegionServer 的共享连接，影响其它请求）：还在排队的组不再执行，
+ * 执行中的组在 Table 上设置剩余时间作为操作超时。HBase 1.0.2 的 multi-get 不使用操作超时，
+ * 单次 RPC 由连接的 hbase.rpc.timeout 和 hbase.client.retries.number 限定，超时的组在此之前继续占用一个线程。
+ */
+public class BatchGetter implements Closeable {
+
+	private final static Log log = LogFactory.getLog(BatchGetter.class);
+
+	/**
+	 * 一次批量 Get 的结果，下标与输入的 Get 列表一一对应
+	 */
+	public static class BatchGetResult {
+		private final Result[] results;
+		private final Map<Integer, Throwable> failures = new TreeMap<Integer, Throwable>();
+
+		BatchGetResult(int size) {
+			this.results = new Result[size];
+		}
+
+		/**
+		 * @return 第 i 个 Get 的结果，失败时为 null
+		 */
+		public Result getResult(int i) {
+			return results[i];
+		}
+
+		public Result[] getResults() {
+			return results;
+		}
+
+		/**
+		 * @return 第 i 个 Get 的失败原因，成功时为 null
+		 */
+		public Throwable getFailure(int i) {
+			return failures.get(i);
+		}
+
+		/**
+		 * @return 失败的 Get 下标到失败原因，按下标排序
+		 */
+		public Map<Integer, Throwable> getFailures() {
+			return Collections.unmodifiableMap(failures);
+		}
+
+		public boolean isComplete() {
+			return failures.isEmpty();
+		}
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final ExecutorService pool;
+
+	/**
+	 * @param threads 同时进行的 multi-get 数上限
+	 */
+	public BatchGetter(Connection conn, TableName tableName, int threads) {
+		this.conn = conn;
+		this.tableName = tableName;
+		final AtomicInteger seq = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "BatchGetter-" + seq.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * 执行批量 Get。超过 timeout 仍未返回的组不再等待，其中的 Get 以 TimeoutException 记为失败。
+	 *
+	 * @throws IOException 定位 Region 失败
+	 */
+	public BatchGetResult get(List<Get> gets, long timeout, TimeUnit unit) throws IOException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		BatchGetResult result = new BatchGetResult(gets.size());
+
+		Map<ServerName, List<Integer>> groups = groupByServer(gets);
+		Map<Future<Object[]>, List<Integer>> futures = new LinkedHashMap<Future<Object[]>, List<Integer>>();
+		for (List<Integer> indexes : groups.values()) {
+			futures.put(pool.submit(multiGet(gets, indexes, deadline)), indexes);
+		}
+
+		for (Map.Entry<Future<Object[]>, List<Integer>> e : futures.entrySet()) {
+			List<Integer> indexes = e.getValue();
+			try {
+				Object[] values = e.getKey().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				for (int i = 0; i < indexes.size(); i++) {
+					Object v = values[i];
+					if (v instanceof Result) {
+						result.results[indexes.get(i)] = (Result) v;
+					} else {
+						result.failures.put(indexes.get(i),
+								v instanceof Throwable ? (Throwable) v : new IOException("Get was not executed"));
+					}
+				}
+			} catch (TimeoutException te) {
+				e.getKey().cancel(false);
+				failAll(result, indexes, te);
+			} catch (ExecutionException ee) {
+				failAll(result, indexes, ee.getCause());
+			} catch (InterruptedException ie) {
+				for (Future<Object[]> f : futures.keySet()) {
+					f.cancel(false);
+				}
+				throw (InterruptedIOException) new InterruptedIOException("Interrupted while waiting for gets")
+						.initCause(ie);
+			}
+		}
+		if (!result.isComplete()) {
+			log.warn(result.failures.size() + " of " + gets.size() + " gets failed on " + tableName);
+		}
+		return result;
+	}
+
+	/**
+	 * 按行键定位所在的 RegionServer，分组内保持输入顺序
+	 */
+	private Map<ServerName, List<Integer>> groupByServer(List<Get> gets) throws IOException {
+		Map<ServerName, List<Integer>> groups = new LinkedHashMap<ServerName, List<Integer>>();
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			for (int i = 0; i < gets.size(); i++) {
+				ServerName server = locator.getRegionLocation(gets.get(i).getRow()).getServerName();
+				List<Integer> indexes = groups.get(server);
+				if (indexes == null) {
+					indexes = new ArrayList<Integer>();
+					groups.put(server, indexes);
+				}
+				indexes.add(i);
+			}
+		} finally {
+			locator.close();
+		}
+		return groups;
+	}
+
+	/**
+	 * 一个 Server 上的 multi-get。用 Table.batch 取得每个 Get 各自的结果或异常，部分失败时不丢弃成功的结果。
+	 */
+	private Callable<Object[]> multiGet(final List<Get> gets, final List<Integer> indexes, final long deadline) {
+		return new Callable<Object[]>() {
+			@Override
+			public Object[] call() throws Exception {
+				long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis <= 0) {
+					// 调用方已经按超时返回
+					throw new TimeoutException("Multi-get was not started before the deadline");
+				}
+				List<Get> group = new ArrayList<Get>(indexes.size());
+				for (Integer i : indexes) {
+					group.add(gets.get(i));
+				}
+				Object[] values = new Object[group.size()];
+				Table table = conn.getTable(tableName);
+				try {
+					if (table instanceof HTable) {
+						((HTable) table).setOperationTimeout((int) Math.min(Integer.MAX_VALUE, remainingMillis));
+					}
+					table.batch(group, values);
+				} catch (IOException e) {
+					// 每个 Get 的异常已经填入 values
+					log.debug("Multi-get partially failed ", e);
+				} finally {
+					table.close();
+				}
+				return values;
+			}
+		};
+	}
+
+	private static void failAll(BatchGetResult result, List<Integer> indexes, Throwable cause) {
+		for (Integer i : indexes) {
+			result.failures.put(i, cause);
+		}
+	}
+
+	/**
+	 * 不再接受新的批量 Get；执行中的 multi-get 同样不中断，由各自的超时结束
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,271 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+import com.cswe.hbase.example.protobuf.generated.BulkDeleteProtos.BulkDeleteRequest;
+import com.cswe.hbase.example.protobuf.generated.BulkDeleteProtos.BulkDeleteResponse;
+import com.cswe.hbase.example.protobuf.generated.BulkDeleteProtos.BulkDeleteService;
+import com.google.protobuf.ServiceException;
+
+/**
+ * 按行范围和过滤器批量删除行，在 RegionServer 上由 {@link BulkDeleteEndpoint} 就地删除，行不经过客户端。
+ * <p>
+ * 各 Region 并行处理，每个 Region 内反复调用 endpoint，每次最多删除 batchRows 行；所有 Region 共用一个
+ * {@link RateLimiter}，按删除的行数限速，避免大量删除挤占前台写入和 compaction。Region 在删除过程中分裂或移动时，
+ * 从上次返回的行继续。
+ * <p>
+ * 删除是幂等的，失败后用同一个 Scan 再次调用即可，已删除的行不会再被选中。
+ */
+public class BulkDeleteClient {
+
+	private final static Log log = LogFactory.getLog(BulkDeleteClient.class);
+
+	/**
+	 * batchRows 为一次调用最多删除的行数，在 RegionServer 上作为一批写入，默认 1000
+	 */
+	public static class Params extends RegionTasks.Params<Params> {
+		private double rowsPerSecond = Double.POSITIVE_INFINITY;
+		private long timestamp = HConstants.LATEST_TIMESTAMP;
+		private int timeLimitMillis = 10000;
+
+		public Params() {
+			super(1000);
+		}
+
+		public double getRowsPerSecond() {
+			return rowsPerSecond;
+		}
+
+		/**
+		 * 所有 Region 合计每秒最多删除的行数，默认不限
+		 */
+		public Params rowsPerSecond(double rowsPerSecond) {
+			this.rowsPerSecond = rowsPerSecond;
+			return this;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * 只删除该时间戳及之前的版本，用于按时间保留数据；默认删除所有版本
+		 */
+		public Params timestamp(long timestamp) {
+			this.timestamp = timestamp;
+			return this;
+		}
+
+		public int getTimeLimitMillis() {
+			return timeLimitMillis;
+		}
+
+		/**
+		 * 一次调用的扫描时长上限，应小于 hbase.rpc.timeout
+		 */
+		public Params timeLimitMillis(int timeLimitMillis) {
+			this.timeLimitMillis = timeLimitMillis;
+			return this;
+		}
+	}
+
+	/**
+	 * 一个 Region 删除的行数。Region 在删除过程中分裂时，分裂前后的 Region 各有一条
+	 */
+	public static final class RegionCount {
+		private final byte[] regionName;
+		private long rowsDeleted = 0;
+		private int calls = 0;
+
+		RegionCount(byte[] regionName) {
+			this.regionName = regionName;
+		}
+
+		public byte[] getRegionName() {
+			return regionName;
+		}
+
+		public String getRegionNameAsString() {
+			return Bytes.toStringBinary(regionName);
+		}
+
+		public long getRowsDeleted() {
+			return rowsDeleted;
+		}
+
+		/**
+		 * 调用 endpoint 的次数
+		 */
+		public int getCalls() {
+			return calls;
+		}
+
+		@Override
+		public String toString() {
+			return HRegionInfo.encodeRegionName(regionName) + ":deleted=" + rowsDeleted + ",calls=" + calls;
+		}
+	}
+
+	/**
+	 * 表上没有加载 BulkDeleteEndpoint
+	 */
+	public static class EndpointNotLoadedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		EndpointNotLoadedException(TableName tableName, Throwable cause) {
+			super("BulkDeleteEndpoint is not loaded on " + tableName, cause);
+		}
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final Params params;
+	private final RateLimiter limiter;
+	private final TreeMap<byte[], RegionCount> counts = new TreeMap<byte[], RegionCount>(Bytes.BYTES_COMPARATOR);
+
+	public BulkDeleteClient(Connection conn, TableName tableName, Params params) {
+		this.conn = conn;
+		this.tableName = tableName;
+		this.params = params;
+		this.limiter = new RateLimiter(params.getRowsPerSecond());
+	}
+
+	/**
+	 * 删除 Scan 行范围内满足其过滤器的整行，阻塞到全部完成。Scan 中的列只用于过滤器判断
+	 *
+	 * @return 各 Region 删除的行数，按 Region 名排序；同一个客户端多次调用时累加
+	 * @throws IOException 任一 Region 失败，或表上没有加载 BulkDeleteEndpoint；已删除的行不会恢复
+	 */
+	public List<RegionCount> delete(final Scan scan) throws IOException {
+		List<Pair<byte[], byte[]>> ranges = ranges(scan.getStartRow(), scan.getStopRow());
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final Pair<byte[], byte[]> range : ranges) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					deleteRange(scan, range.getFirst(), range.getSecond());
+					return null;
+				}
+			});
+		}
+		RegionTasks.runAll(tasks, params.getParallelism(), "bulk delete");
+		return getCounts();
+	}
+
+	/**
+	 * 已经完成的各 Region 删除的行数，delete 失败后可用于查看进度
+	 */
+	public synchronized List<RegionCount> getCounts() {
+		return Collections.unmodifiableList(new ArrayList<RegionCount>(counts.values()));
+	}
+
+	/**
+	 * [start, stop) 与各 Region 的交集
+	 */
+	private List<Pair<byte[], byte[]>> ranges(byte[] start, byte[] stop) throws IOException {
+		Pair<byte[][], byte[][]> keys;
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			keys = locator.getStartEndKeys();
+		} finally {
+			locator.close();
+		}
+		List<Pair<byte[], byte[]>> ranges = new ArrayList<Pair<byte[], byte[]>>();
+		for (int i = 0; i < keys.getFirst().length; i++) {
+			byte[] regionStart = keys.getFirst()[i];
+			byte[] regionEnd = keys.getSecond()[i];
+			if (regionEnd.length > 0 && Bytes.compareTo(regionEnd, start) <= 0) {
+				continue;
+			}
+			if (stop.length > 0 && Bytes.compareTo(regionStart, stop) >= 0) {
+				continue;
+			}
+			ranges.add(new Pair<byte[], byte[]>(Bytes.compareTo(regionStart, start) > 0 ? regionStart : start,
+					regionEnd.length > 0 && (stop.length == 0 || Bytes.compareTo(regionEnd, stop) < 0) ? regionEnd
+							: stop));
+		}
+		return ranges;
+	}
+
+	private void deleteRange(Scan scan, byte[] start, byte[] stop) throws IOException {
+		Table table = conn.getTable(tableName);
+		try {
+			byte[] from = start;
+			while (true) {
+				Scan part = new Scan(scan);
+				part.setStartRow(from);
+				part.setStopRow(stop);
+				BulkDeleteRequest.Builder request = BulkDeleteRequest.newBuilder()
+						.setScan(ProtobufUtil.toScan(part).toByteString()).setBatchRows(params.getBatchRows())
+						.setTimeLimitMillis(params.getTimeLimitMillis());
+				if (params.getTimestamp() != HConstants.LATEST_TIMESTAMP) {
+					request.setTimestamp(params.getTimestamp());
+				}
+				BulkDeleteResponse response = call(table, from, request.build());
+				record(response);
+				if (response.getRowsDeleted() > 0) {
+					limiter.acquire((int) response.getRowsDeleted());
+				}
+
+				if (response.hasNextRow()) {
+					from = response.getNextRow().toByteArray();
+				} else {
+					// 处理本次请求的 Region 比开始时小（已经分裂），从它的结束行继续
+					byte[] regionEnd = response.getRegionEndKey().toByteArray();
+					if (regionEnd.length == 0 || (stop.length > 0 && Bytes.compareTo(regionEnd, stop) >= 0)) {
+						break;
+					}
+					from = regionEnd;
+				}
+			}
+		} finally {
+			table.close();
+		}
+	}
+
+	/**
+	 * 调用 row 所在 Region 上的 endpoint，Region 移动时由 RPC 通道重新定位并重试
+	 */
+	private BulkDeleteResponse call(Table table, byte[] row, BulkDeleteRequest request) throws IOException {
+		try {
+			return BulkDeleteService.newBlockingStub(table.coprocessorService(row)).delete(null, request);
+		} catch (ServiceException e) {
+			if (GroupAggregateClient.isUnknownProtocol(e)) {
+				throw new EndpointNotLoadedException(tableName, e);
+			}
+			throw ProtobufUtil.getRemoteException(e);
+		}
+	}
+
+	private synchronized void record(BulkDeleteResponse response) {
+		byte[] regionName = response.getRegionName().toByteArray();
+		RegionCount count = counts.get(regionName);
+		if (count == null) {
+			count = new RegionCount(regionName);
+			counts.put(regionName, count);
+		}
+		count.rowsDeleted += response.getRowsDeleted();
+		count.calls++;
+		if (log.isDebugEnabled()) {
+			log.debug("Deleted " + response.getRowsDeleted() + " rows from " + count.getRegionNameAsString());
+		}
+	}
+}
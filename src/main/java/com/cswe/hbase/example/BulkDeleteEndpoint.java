@@ -0,0 +1,243 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.Coprocessor;
+import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HConstants.OperationStatusCode;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorException;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorService;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.ResponseConverter;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.protobuf.generated.BulkDeleteProtos.BulkDeleteRequest;
+import com.cswe.hbase.example.protobuf.generated.BulkDeleteProtos.BulkDeleteResponse;
+import com.cswe.hbase.example.protobuf.generated.BulkDeleteProtos.BulkDeleteService;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+import com.google.protobuf.Service;
+
+/**
+ * 在 Region 内按请求中的 Scan（行范围、列、过滤器）扫描，就地删除满足条件的整行，行不经过网络。
+ * <p>
+ * 一次调用最多删除 batch_rows 行，作为一批交给 {@link HRegion#batchMutate}，与客户端的 Delete 一样写 WAL
+ * 并经过表上其它协处理器（如索引协处理器）。没有删完时返回下一行，由 {@link BulkDeleteClient} 继续调用。
+ * Scan 只用于选出行，删除的总是整行（或整行中不晚于 timestamp 的版本），不只是 Scan 中的列。
+ * <p>
+ * 扫描与删除之间该行可能被并发修改，因此删除前对这一批行加行锁，用同样的列、时间范围和过滤器重新读取一次，
+ * 仍然满足条件的行才删除；batchMutate 在同一线程内重入这些行锁。
+ * 时限在每一行的行键上检查，包括被过滤器跳过的行，见 {@link Deadline}。
+ * <p>
+ * 部署：本类所在的 jar 放到 RegionServer 的 classpath 或 HDFS 上，再用 {@link HbaseExample#enableBulkDelete} 加到表上。
+ */
+public class BulkDeleteEndpoint extends BulkDeleteService implements Coprocessor, CoprocessorService {
+
+	private final static Log log = LogFactory.getLog(BulkDeleteEndpoint.class);
+
+	private RegionCoprocessorEnvironment env;
+
+	@Override
+	public void delete(RpcController controller, BulkDeleteRequest request, RpcCallback<BulkDeleteResponse> done) {
+		BulkDeleteResponse response = null;
+		RegionScanner scanner = null;
+		try {
+			HRegion region = env.getRegion();
+			HRegionInfo info = region.getRegionInfo();
+			ClientProtos.Scan scanProto = ClientProtos.Scan.parseFrom(request.getScan());
+			Scan scan = clamp(ProtobufUtil.toScan(scanProto), info);
+			scan.setCacheBlocks(false);
+			long timestamp = request.hasTimestamp() ? request.getTimestamp() : HConstants.LATEST_TIMESTAMP;
+			// 过滤器放在用户的过滤器之前，被过滤的行也检查时限
+			Deadline deadline = new Deadline(System.currentTimeMillis() + request.getTimeLimitMillis());
+			scan.setFilter(scan.getFilter() == null ? deadline : new FilterList(deadline, scan.getFilter()));
+
+			List<Mutation> deletes = new ArrayList<Mutation>(request.getBatchRows());
+			byte[] nextRow = null;
+			scanner = region.getScanner(scan);
+			List<Cell> row = new ArrayList<Cell>();
+			boolean more;
+			do {
+				row.clear();
+				more = scanner.next(row);
+				if (!row.isEmpty()) {
+					deletes.add(new Delete(CellUtil.cloneRow(row.get(0)), timestamp));
+				}
+				if (more && deletes.size() >= request.getBatchRows()) {
+					nextRow = Bytes.add(deletes.get(deletes.size() - 1).getRow(), new byte[] { 0 });
+					break;
+				}
+			} while (more);
+			scanner.close();
+			scanner = null;
+			if (deadline.getStoppedAt() != null) {
+				// 超时时停在的行还没有判断过，下次从这一行开始
+				nextRow = deadline.getStoppedAt();
+			}
+
+			int deleted = 0;
+			if (!deletes.isEmpty()) {
+				deleted = deleteMatching(region, scanProto, scan, deletes);
+			}
+			BulkDeleteResponse.Builder builder = BulkDeleteResponse.newBuilder().setRowsDeleted(deleted)
+					.setRegionName(ByteString.copyFrom(info.getRegionName()))
+					.setRegionEndKey(ByteString.copyFrom(info.getEndKey()));
+			if (nextRow != null) {
+				builder.setNextRow(ByteString.copyFrom(nextRow));
+			}
+			response = builder.build();
+			if (log.isDebugEnabled()) {
+				log.debug("Deleted " + deleted + " of " + deletes.size() + " rows in " + info.getRegionNameAsString());
+			}
+		} catch (IOException e) {
+			ResponseConverter.setControllerException(controller, e);
+		} finally {
+			if (scanner != null) {
+				try {
+					scanner.close();
+				} catch (IOException e) {
+					log.warn("Close scanner failed ", e);
+				}
+			}
+		}
+		done.run(response);
+	}
+
+	/**
+	 * 对扫描选出的行加行锁，重新读取后仍满足条件的才删除，避免删掉扫描之后被并发写入、已不再满足条件的行
+	 *
+	 * @return 删除的行数
+	 */
+	private static int deleteMatching(HRegion region, ClientProtos.Scan scanProto, Scan scan, List<Mutation> deletes)
+			throws IOException {
+		List<HRegion.RowLock> locks = new ArrayList<HRegion.RowLock>(deletes.size());
+		try {
+			List<Mutation> matching = new ArrayList<Mutation>(deletes.size());
+			for (Mutation delete : deletes) {
+				locks.add(region.getRowLock(delete.getRow()));
+				Get get = new Get(delete.getRow());
+				for (Map.Entry<byte[], NavigableSet<byte[]>> family : scan.getFamilyMap().entrySet()) {
+					if (family.getValue() == null) {
+						get.addFamily(family.getKey());
+					} else {
+						for (byte[] qualifier : family.getValue()) {
+							get.addColumn(family.getKey(), qualifier);
+						}
+					}
+				}
+				get.setTimeRange(scan.getTimeRange().getMin(), scan.getTimeRange().getMax());
+				// 过滤器可能有跨行的状态，每行重新反序列化一个
+				if (scanProto.hasFilter()) {
+					get.setFilter(ProtobufUtil.toFilter(scanProto.getFilter()));
+				}
+				if (!region.get(get).isEmpty()) {
+					matching.add(delete);
+				}
+			}
+			if (matching.isEmpty()) {
+				return 0;
+			}
+			OperationStatus[] statuses = region.batchMutate(matching.toArray(new Mutation[matching.size()]));
+			for (int i = 0; i < statuses.length; i++) {
+				if (statuses[i].getOperationStatusCode() != OperationStatusCode.SUCCESS) {
+					throw new IOException("Delete " + Bytes.toStringBinary(matching.get(i).getRow()) + " failed: "
+							+ statuses[i].getExceptionMsg());
+				}
+			}
+			return matching.size();
+		} finally {
+			region.releaseRowLocks(locks);
+		}
+	}
+
+	/**
+	 * 在每一行的行键上检查时限。过滤器跳过的行不会从 RegionScanner.next 返回，只有这里能看到；
+	 * 超时后记下当前行并让 filterAllRemaining 返回 true，扫描随即结束。至少判断一行后才会超时，保证每次调用都有进展。
+	 */
+	static final class Deadline extends FilterBase {
+		private final long deadline;
+		private boolean examined = false;
+		private byte[] stoppedAt = null;
+
+		Deadline(long deadline) {
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean filterRowKey(byte[] buffer, int offset, int length) {
+			if (stoppedAt == null && examined && System.currentTimeMillis() >= deadline) {
+				stoppedAt = Bytes.copy(buffer, offset, length);
+			}
+			examined = true;
+			return stoppedAt != null;
+		}
+
+		@Override
+		public ReturnCode filterKeyValue(Cell cell) {
+			return ReturnCode.INCLUDE;
+		}
+
+		@Override
+		public boolean filterAllRemaining() {
+			return stoppedAt != null;
+		}
+
+		/** 超时时停在的行，未超时为 null */
+		byte[] getStoppedAt() {
+			return stoppedAt;
+		}
+	}
+
+	/**
+	 * 把 Scan 的行范围限制在 Region 内
+	 */
+	static Scan clamp(Scan scan, HRegionInfo info) {
+		if (Bytes.compareTo(scan.getStartRow(), info.getStartKey()) < 0) {
+			scan.setStartRow(info.getStartKey());
+		}
+		byte[] end = info.getEndKey();
+		if (end.length > 0 && (scan.getStopRow().length == 0 || Bytes.compareTo(end, scan.getStopRow()) < 0)) {
+			scan.setStopRow(end);
+		}
+		return scan;
+	}
+
+	@Override
+	public Service getService() {
+		return this;
+	}
+
+	@Override
+	public void start(CoprocessorEnvironment env) throws IOException {
+		if (!(env instanceof RegionCoprocessorEnvironment)) {
+			throw new CoprocessorException("Must be loaded on a table region!");
+		}
+		this.env = (RegionCoprocessorEnvironment) env;
+	}
+
+	@Override
+	public void stop(CoprocessorEnvironment env) throws IOException {
+	}
+}
@@ -0,0 +1,238 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.NoSuchColumnFamilyException;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 不经过 RPC 写入的批量导入：在客户端把数据排序后直接写成 HFile，再交给 LoadIncrementalHFiles 挂载到各 Region。
+ * <p>
+ * 数据先在内存中累积，超过 chunkBytes 后排序并按当前 Region 边界和列族切分写出一批 HFile。
+ * HFile 使用列族上配置的编码、压缩、块大小和布隆过滤器。导入期间 Region 发生拆分时，
+ * LoadIncrementalHFiles 会自动把跨 Region 的文件再切开。
+ * <p>
+ * 导入的数据不写 WAL，也不经过 MemStore，出错时可以整批重导。stagingDir 要位于 HBase 所用的文件系统上。
+ */
+public class BulkLoader implements Closeable {
+
+	private final static Log log = LogFactory.getLog(BulkLoader.class);
+
+	public static final long DEFAULT_CHUNK_BYTES = 256L * 1024 * 1024;
+
+	private final Connection conn;
+	private final Configuration conf;
+	private final TableName tableName;
+	private final Path stagingDir;
+	private final FileSystem fs;
+	private final Map<String, HColumnDescriptor> families = new HashMap<String, HColumnDescriptor>();
+	private final byte[][] startKeys;
+	private final CacheConfig cacheConfig;
+
+	private long chunkBytes = DEFAULT_CHUNK_BYTES;
+	private List<KeyValue> buffer = new ArrayList<KeyValue>();
+	private long bufferBytes = 0;
+
+	private long cells = 0;
+	private int files = 0;
+	private boolean loaded = false;
+
+	/**
+	 * @param stagingDir 存放临时 HFile 的目录，导入完成或 close 时删除
+	 */
+	public BulkLoader(Connection conn, TableName tableName, Path stagingDir) throws IOException {
+		this.conn = conn;
+		this.conf = conn.getConfiguration();
+		this.tableName = tableName;
+		this.stagingDir = stagingDir;
+		this.fs = stagingDir.getFileSystem(conf);
+
+		Admin admin = conn.getAdmin();
+		try {
+			for (HColumnDescriptor hcd : admin.getTableDescriptor(tableName).getColumnFamilies()) {
+				families.put(hcd.getNameAsString(), hcd);
+			}
+		} finally {
+			admin.close();
+		}
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			startKeys = locator.getStartKeys();
+		} finally {
+			locator.close();
+		}
+		// 写 HFile 时不需要块缓存
+		Configuration writerConf = new Configuration(conf);
+		writerConf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+		this.cacheConfig = new CacheConfig(writerConf);
+	}
+
+	/**
+	 * 内存中累积多少字节后排序写出一批 HFile
+	 */
+	public void setChunkBytes(long chunkBytes) {
+		this.chunkBytes = chunkBytes;
+	}
+
+	/**
+	 * 加入一行。未指定时间戳的 Cell 使用加入时的时间
+	 */
+	public void add(Put put) throws IOException {
+		if (loaded) {
+			throw new IllegalStateException("Already loaded");
+		}
+		long now = System.currentTimeMillis();
+		for (List<Cell> familyCells : put.getFamilyCellMap().values()) {
+			for (Cell cell : familyCells) {
+				KeyValue kv = KeyValueUtil.ensureKeyValue(cell);
+				if (kv.getTimestamp() == HConstants.LATEST_TIMESTAMP) {
+					kv = KeyValueUtil.copyToNewKeyValue(kv);
+					kv.updateLatestStamp(Bytes.toBytes(now));
+				}
+				buffer.add(kv);
+				bufferBytes += kv.heapSize();
+			}
+		}
+		if (bufferBytes >= chunkBytes) {
+			spill();
+		}
+	}
+
+	private void spill() throws IOException {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		Collections.sort(buffer, KeyValue.COMPARATOR);
+		// 排序后同一行内按列族有序，因此每个 (Region, 列族) 的 Cell 是连续有序地写入的
+		Map<String, StoreFile.Writer> writers = new HashMap<String, StoreFile.Writer>();
+		int region = 0;
+		try {
+			for (KeyValue kv : buffer) {
+				while (region + 1 < startKeys.length && Bytes.compareTo(kv.getRowArray(), kv.getRowOffset(),
+						kv.getRowLength(), startKeys[region + 1], 0, startKeys[region + 1].length) >= 0) {
+					region++;
+					closeAll(writers);
+				}
+				String family = Bytes.toString(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+				StoreFile.Writer writer = writers.get(family);
+				if (writer == null) {
+					writer = createWriter(family);
+					writers.put(family, writer);
+				}
+				writer.append(kv);
+			}
+		} finally {
+			closeAll(writers);
+		}
+		cells += buffer.size();
+		log.debug("Spilled " + buffer.size() + " cells (" + bufferBytes + " bytes) for " + tableName);
+		buffer = new ArrayList<KeyValue>();
+		bufferBytes = 0;
+	}
+
+	private StoreFile.Writer createWriter(String family) throws IOException {
+		HColumnDescriptor hcd = families.get(family);
+		if (hcd == null) {
+			throw new NoSuchColumnFamilyException("Column family " + family + " does not exist in " + tableName);
+		}
+		HFileContext context = new HFileContextBuilder().withCompression(hcd.getCompressionType())
+				.withDataBlockEncoding(hcd.getDataBlockEncoding()).withBlockSize(hcd.getBlocksize())
+				.withChecksumType(HStore.getChecksumType(conf)).withBytesPerCheckSum(HStore.getBytesPerChecksum(conf))
+				.build();
+		Path familyDir = new Path(stagingDir, family);
+		fs.mkdirs(familyDir);
+		files++;
+		return new StoreFile.WriterBuilder(conf, cacheConfig, fs).withOutputDir(familyDir)
+				.withComparator(KeyValue.COMPARATOR).withBloomType(hcd.getBloomFilterType()).withFileContext(context)
+				.build();
+	}
+
+	private void closeAll(Map<String, StoreFile.Writer> writers) throws IOException {
+		for (StoreFile.Writer writer : writers.values()) {
+			// 与 HFileOutputFormat2 写入的元数据一致
+			writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+			writer.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(stagingDir.getName()));
+			writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+			writer.appendFileInfo(StoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+			writer.appendTrackedTimestampsToMetadata();
+			writer.close();
+		}
+		writers.clear();
+	}
+
+	/**
+	 * 写出剩余数据并导入表中
+	 *
+	 * @return 导入的 Cell 数
+	 */
+	public long load() throws IOException {
+		if (loaded) {
+			throw new IllegalStateException("Already loaded");
+		}
+		spill();
+		loaded = true;
+		if (cells == 0) {
+			return 0;
+		}
+		long start = System.currentTimeMillis();
+		HTable table = (HTable) conn.getTable(tableName);
+		try {
+			new LoadIncrementalHFiles(conf).doBulkLoad(stagingDir, table);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Bulk load into " + tableName + " failed", e);
+		} finally {
+			table.close();
+		}
+		log.info("Bulk loaded " + cells + " cells in " + files + " HFiles into " + tableName + " in "
+				+ (System.currentTimeMillis() - start) + "ms");
+		return cells;
+	}
+
+	public long getCells() {
+		return cells + buffer.size();
+	}
+
+	public int getFiles() {
+		return files;
+	}
+
+	/**
+	 * 删除临时目录。未 load 的数据会被丢弃
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer = new ArrayList<KeyValue>();
+		bufferBytes = 0;
+		fs.delete(stagingDir, true);
+	}
+}
@@ -0,0 +1,17 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.Cell;
+
+/**
+ * 逐个访问 Cell，不复制行键、列族、列名和值。
+ * <p>
+ * 实现通过 {@link Cell#getRowArray()}、{@link Cell#getValueOffset()} 等访问器直接读取底层数组，
+ * 配合 {@link Cells} 与 {@link Utf8Decoder} 解码，代替 CellUtil.clone* 加 Bytes.toString。
+ * 传入的 Cell 只在 visit 期间有效，需要保留时由实现自行复制。
+ */
+public interface CellVisitor {
+
+	void visit(Cell cell) throws IOException;
+}
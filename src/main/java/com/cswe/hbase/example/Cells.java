@@ -0,0 +1,110 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 基于 Cell 访问器的零拷贝工具方法，配合 {@link CellVisitor} 使用。
+ */
+public final class Cells {
+
+	private Cells() {
+	}
+
+	/**
+	 * 依次访问 result 中的 Cell。Result.rawCells 返回内部数组，不产生复制。
+	 */
+	public static void forEach(Result result, CellVisitor visitor) throws IOException {
+		Cell[] cells = result.rawCells();
+		if (cells == null) {
+			return;
+		}
+		for (Cell cell : cells) {
+			visitor.visit(cell);
+		}
+	}
+
+	/**
+	 * 访问 scanner 返回的全部 Cell，不关闭 scanner
+	 *
+	 * @return 行数
+	 */
+	public static long forEach(ResultScanner scanner, CellVisitor visitor) throws IOException {
+		long rows = 0;
+		for (Result r = scanner.next(); r != null; r = scanner.next()) {
+			forEach(r, visitor);
+			rows++;
+		}
+		return rows;
+	}
+
+	public static boolean matchingColumn(Cell cell, byte[] family, byte[] qualifier) {
+		return CellUtil.matchingColumn(cell, family, qualifier);
+	}
+
+	public static boolean valueEquals(Cell cell, byte[] value) {
+		return Bytes.equals(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength(), value, 0,
+				value.length);
+	}
+
+	/**
+	 * 值为 Bytes.toLong 写入的 8 字节
+	 */
+	public static long toLong(Cell cell) {
+		return Bytes.toLong(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	/**
+	 * 值为 Bytes.toInt 写入的 4 字节
+	 */
+	public static int toInt(Cell cell) {
+		return Bytes.toInt(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	/**
+	 * 值为十进制字符串（如 putData 写入的 age "18"），原地解析
+	 *
+	 * @throws NumberFormatException 值不是合法的十进制整数
+	 */
+	public static long parseLong(Cell cell) {
+		byte[] b = cell.getValueArray();
+		int i = cell.getValueOffset();
+		int end = i + cell.getValueLength();
+		if (i == end) {
+			throw new NumberFormatException("empty value");
+		}
+		boolean negative = b[i] == '-';
+		if (negative || b[i] == '+') {
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException("no digits");
+		}
+		long v = 0;
+		for (; i < end; i++) {
+			int d = b[i] - '0';
+			if (d < 0 || d > 9) {
+				throw new NumberFormatException("invalid digit at offset " + (i - cell.getValueOffset()));
+			}
+			v = v * 10 + d;
+		}
+		return negative ? -v : v;
+	}
+
+	/**
+	 * 按 "row:family,qualifier,value" 格式写入 sb（先清空），与 HbaseExample 中的日志格式一致
+	 */
+	public static StringBuilder format(StringBuilder sb, Utf8Decoder decoder, Cell cell) {
+		sb.setLength(0);
+		decoder.appendTo(sb, cell.getRowArray(), cell.getRowOffset(), cell.getRowLength()).append(':');
+		decoder.appendTo(sb, cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength()).append(',');
+		decoder.appendTo(sb, cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength())
+				.append(',');
+		return decoder.appendTo(sb, cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+}
@@ -0,0 +1,383 @@
+package com.cswe.hbase.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 增量读取表的变更：按 Region 并行扫描时间戳位于 [上次高水位, 本次截止时间) 的 Cell，包括删除标记，
+ * 完成后把该 Region 的高水位推进到截止时间，保存在 {@link CheckpointStore} 中。
+ * <p>
+ * 扫描使用 Scan 的时间范围和 raw 模式，返回时间范围内的全部版本和删除标记。RegionServer 按 HFile 记录的时间范围
+ * 跳过没有新数据的文件，开销与变更量而不是表的大小成正比。截止时间是当前时间减去 lagMillis，
+ * 给已分配时间戳但还没有可见的写入以及各 RegionServer 的时钟偏差留出余量。
+ * <p>
+ * 变更至少送达一次：Region 内按批保存已读到的行，重启后从该行之后继续。检查点以 Region 的起止行命名，
+ * Region 分裂或合并后，新 Region 从与它相交的各检查点中最小的高水位开始，可能重复送达；
+ * 全部 Region 完成后删除与当前 Region 对不上的旧检查点。限制：
+ * <ul>
+ * <li>只能发现时间戳由 RegionServer 生成、或客户端指定但不早于高水位的写入</li>
+ * <li>删除标记和被覆盖的版本在 major compaction 后消失，两次读取的间隔应小于 major compaction 周期，
+ * 或列族设置 KEEP_DELETED_CELLS 与足够的 VERSIONS</li>
+ * </ul>
+ */
+public class ChangeCapture {
+
+	private final static Log log = LogFactory.getLog(ChangeCapture.class);
+
+	/**
+	 * 接收变更。多个 Region 的线程并发调用；同一 Region 内按行键顺序，同一列按时间戳从新到旧
+	 */
+	public interface Listener {
+
+		/**
+		 * @param cell 只在调用期间有效，需要保留时自行复制
+		 * @param tombstone 为 true 时 cell 是删除标记，类型由 cell.getTypeByte() 区分删除单个版本、整列、整个列族
+		 */
+		void onChange(Cell cell, boolean tombstone) throws IOException;
+	}
+
+	/**
+	 * batchRows 为 Scan 的 caching，每读这么多行保存一次进度，默认 500
+	 */
+	public static class Params extends RegionTasks.Params<Params> {
+		private long lagMillis = 5000;
+		private long startTimestamp = 0;
+		private final List<byte[]> families = new ArrayList<byte[]>();
+
+		public Params() {
+			super(500);
+		}
+
+		public long getLagMillis() {
+			return lagMillis;
+		}
+
+		/** 截止时间落后当前时间的毫秒数，应大于 RegionServer 之间的时钟偏差 */
+		public Params lagMillis(long lagMillis) {
+			this.lagMillis = lagMillis;
+			return this;
+		}
+
+		public long getStartTimestamp() {
+			return startTimestamp;
+		}
+
+		/** 没有检查点的 Region 从该时间戳开始，默认 0 即第一次读取全部数据 */
+		public Params startTimestamp(long startTimestamp) {
+			this.startTimestamp = startTimestamp;
+			return this;
+		}
+
+		public List<byte[]> getFamilies() {
+			return families;
+		}
+
+		/** 只读取这些列族的变更，不调用时读取全部列族 */
+		public Params addFamily(byte[] family) {
+			families.add(family);
+			return this;
+		}
+	}
+
+	/**
+	 * 一次读取的统计，运行中可以在其它线程读取
+	 */
+	public static final class Progress extends RegionTasks.Progress {
+		private final long until;
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong cells = new AtomicLong();
+		private final AtomicLong tombstones = new AtomicLong();
+
+		Progress(int regions, long until) {
+			super(regions);
+			this.until = until;
+		}
+
+		/**
+		 * 本次的截止时间，全部完成后各 Region 的高水位都推进到该值
+		 */
+		public long getUntil() {
+			return until;
+		}
+
+		/** 有变更的行数 */
+		public long getRows() {
+			return rows.get();
+		}
+
+		/** 送达的 Cell 数，包括删除标记 */
+		public long getCells() {
+			return cells.get();
+		}
+
+		public long getTombstones() {
+			return tombstones.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("regions %d/%d, %d rows, %d cells, %d tombstones, until %d in %dms",
+					getRegionsDone(), getRegions(), rows.get(), cells.get(), tombstones.get(), until,
+					getElapsedNanos() / 1000000);
+		}
+	}
+
+	/**
+	 * 一个 Region 的高水位：时间戳早于 highWater 的变更都已送达。
+	 * windowEnd 与 lastRow 记录进行中的一轮：[highWater, windowEnd) 已读到 lastRow（包含）
+	 */
+	static final class Checkpoint {
+		final byte[] startKey;
+		final byte[] endKey;
+		final long highWater;
+		final long windowEnd;
+		final byte[] lastRow;
+
+		Checkpoint(byte[] startKey, byte[] endKey, long highWater, long windowEnd, byte[] lastRow) {
+			this.startKey = startKey;
+			this.endKey = endKey;
+			this.highWater = highWater;
+			this.windowEnd = windowEnd;
+			this.lastRow = lastRow;
+		}
+
+		/**
+		 * 以区间命名，父 Region 的检查点保留到两个子 Region 都保存了自己的，右子 Region 才能继承高水位
+		 */
+		String name() {
+			return RegionTasks.checkpointName(startKey, endKey);
+		}
+
+		byte[] encode() {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			try {
+				Bytes.writeByteArray(out, startKey);
+				Bytes.writeByteArray(out, endKey);
+				out.writeLong(highWater);
+				out.writeLong(windowEnd);
+				out.writeBoolean(lastRow != null);
+				if (lastRow != null) {
+					Bytes.writeByteArray(out, lastRow);
+				}
+				out.close();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return bytes.toByteArray();
+		}
+
+		static Checkpoint decode(byte[] value) throws IOException {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+			byte[] startKey = Bytes.readByteArray(in);
+			byte[] endKey = Bytes.readByteArray(in);
+			long highWater = in.readLong();
+			long windowEnd = in.readLong();
+			byte[] lastRow = in.readBoolean() ? Bytes.readByteArray(in) : null;
+			return new Checkpoint(startKey, endKey, highWater, windowEnd, lastRow);
+		}
+
+		boolean sameRange(byte[] start, byte[] end) {
+			return Bytes.equals(startKey, start) && Bytes.equals(endKey, end);
+		}
+
+		/**
+		 * 检查点的区间与 [start, end) 是否相交，空数组表示表头或表尾
+		 */
+		boolean overlaps(byte[] start, byte[] end) {
+			return (endKey.length == 0 || Bytes.compareTo(start, endKey) < 0)
+					&& (end.length == 0 || Bytes.compareTo(startKey, end) < 0);
+		}
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final Params params;
+
+	public ChangeCapture(Connection conn, TableName tableName, Params params) {
+		this.conn = conn;
+		this.tableName = tableName;
+		this.params = params;
+	}
+
+	/**
+	 * 读取上次之后的变更，阻塞到全部 Region 完成
+	 *
+	 * @throws IOException 任一 Region 失败；已完成的 Region 和批次保存在 checkpoints 中，再次调用时继续，
+	 *             分裂、合并前的检查点保留到全部 Region 完成
+	 */
+	public Progress poll(final Listener listener, final CheckpointStore checkpoints) throws IOException {
+		return poll(listener, checkpoints, System.currentTimeMillis() - params.getLagMillis());
+	}
+
+	/**
+	 * @param until 本次的截止时间，时间戳不早于该值的变更留到下次
+	 */
+	public Progress poll(final Listener listener, final CheckpointStore checkpoints, final long until)
+			throws IOException {
+		final List<Checkpoint> saved = new ArrayList<Checkpoint>();
+		for (byte[] value : checkpoints.load().values()) {
+			saved.add(Checkpoint.decode(value));
+		}
+		List<HRegionLocation> locations;
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			locations = RegionTasks.interleave(locator.getAllRegionLocations());
+		} finally {
+			locator.close();
+		}
+
+		final Progress progress = new Progress(locations.size(), until);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (HRegionLocation location : locations) {
+			final HRegionInfo region = location.getRegionInfo();
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					pollRegion(region, resume(region, saved), until, listener, checkpoints, progress);
+					return null;
+				}
+			});
+		}
+		try {
+			RegionTasks.runAll(tasks, params.getParallelism(), "change capture");
+			removeSuperseded(locations, checkpoints);
+		} finally {
+			progress.finish();
+		}
+		log.info("Captured changes of " + tableName + ": " + progress);
+		return progress;
+	}
+
+	/**
+	 * 当前各 Region 都已保存了自己的检查点，它们覆盖整张表；其余的检查点属于分裂、合并前的 Region，不再需要
+	 */
+	private void removeSuperseded(List<HRegionLocation> locations, CheckpointStore checkpoints) throws IOException {
+		Set<String> current = new HashSet<String>();
+		for (HRegionLocation location : locations) {
+			current.add(RegionTasks.checkpointName(location.getRegionInfo().getStartKey(), location.getRegionInfo()
+					.getEndKey()));
+		}
+		for (String name : checkpoints.load().keySet()) {
+			if (name.startsWith(RegionTasks.CHECKPOINT_PREFIX) && !current.contains(name)) {
+				checkpoints.remove(name);
+				log.debug("Removed superseded checkpoint " + name + " of " + tableName);
+			}
+		}
+	}
+
+	/**
+	 * Region 的起点：区间相同的检查点原样继续；否则（分裂、合并后）取相交的检查点中最小的高水位，
+	 * 丢弃进行中的一轮；没有相交的检查点时从 startTimestamp 开始
+	 */
+	Checkpoint resume(HRegionInfo region, List<Checkpoint> saved) {
+		byte[] start = region.getStartKey();
+		byte[] end = region.getEndKey();
+		long highWater = Long.MAX_VALUE;
+		for (Checkpoint c : saved) {
+			if (c.sameRange(start, end)) {
+				return c;
+			}
+			if (c.overlaps(start, end)) {
+				highWater = Math.min(highWater, c.highWater);
+			}
+		}
+		if (highWater == Long.MAX_VALUE) {
+			highWater = params.getStartTimestamp();
+		}
+		return new Checkpoint(start, end, highWater, highWater, null);
+	}
+
+	private void pollRegion(HRegionInfo region, Checkpoint from, long until, Listener listener,
+			CheckpointStore checkpoints, Progress progress) throws IOException {
+		long start = System.nanoTime();
+		long highWater = from.highWater;
+		if (from.lastRow != null) {
+			// 先读完上次中断的一轮，再读新的一轮，两轮的时间范围首尾相接
+			byte[] next = Bytes.add(from.lastRow, new byte[] { 0 });
+			if (region.getEndKey().length == 0 || Bytes.compareTo(next, region.getEndKey()) < 0) {
+				scan(region, next, highWater, from.windowEnd, listener, checkpoints, progress);
+			}
+			highWater = from.windowEnd;
+		}
+		if (highWater < until) {
+			scan(region, region.getStartKey(), highWater, until, listener, checkpoints, progress);
+			highWater = until;
+		}
+		progress.regionsDone.incrementAndGet();
+		if (log.isDebugEnabled()) {
+			log.debug("Captured changes of region " + region.getRegionNameAsString() + " up to " + highWater
+					+ " in " + (System.nanoTime() - start) / 1000000 + "ms (" + progress + ")");
+		}
+	}
+
+	/**
+	 * 扫描 [startRow, Region 末尾) 中时间戳位于 [minStamp, maxStamp) 的 Cell，完成后高水位推进到 maxStamp
+	 */
+	private void scan(HRegionInfo region, byte[] startRow, long minStamp, long maxStamp, Listener listener,
+			CheckpointStore checkpoints, Progress progress) throws IOException {
+		Scan scan = new Scan(startRow, region.getEndKey());
+		for (byte[] family : params.getFamilies()) {
+			scan.addFamily(family);
+		}
+		scan.setTimeRange(minStamp, maxStamp);
+		scan.setRaw(true);
+		scan.setMaxVersions();
+		scan.setCaching(params.getBatchRows());
+		scan.setCacheBlocks(false);
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				int batch = 0;
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					for (Cell cell : r.rawCells()) {
+						boolean tombstone = CellUtil.isDelete(cell);
+						listener.onChange(cell, tombstone);
+						progress.cells.incrementAndGet();
+						if (tombstone) {
+							progress.tombstones.incrementAndGet();
+						}
+					}
+					progress.rows.incrementAndGet();
+					if (++batch == params.getBatchRows()) {
+						batch = 0;
+						Checkpoint cp = new Checkpoint(region.getStartKey(), region.getEndKey(), minStamp, maxStamp,
+								r.getRow());
+						checkpoints.save(cp.name(), cp.encode());
+					}
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		Checkpoint done = new Checkpoint(region.getStartKey(), region.getEndKey(), maxStamp, maxStamp, null);
+		checkpoints.save(done.name(), done.encode());
+	}
+}
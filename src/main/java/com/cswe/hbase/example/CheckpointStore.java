@@ -0,0 +1,32 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 按名字保存的任务进度，长时间运行的任务重启后从上次保存的位置继续，如 {@link IndexBackfiller}。
+ * <p>
+ * save 完成后的值在进程崩溃后仍然可以 load 到；同一个名字同一时间只由一个线程保存。
+ */
+public interface CheckpointStore {
+
+	/**
+	 * 已保存的全部进度，名字 -&gt; 值
+	 */
+	Map<String, byte[]> load() throws IOException;
+
+	/**
+	 * 保存或覆盖一个进度。名字只能包含字母、数字和 _ . -
+	 */
+	void save(String name, byte[] value) throws IOException;
+
+	/**
+	 * 删除一个进度，不存在时忽略
+	 */
+	void remove(String name) throws IOException;
+
+	/**
+	 * 删除全部进度，任务完成后调用
+	 */
+	void clear() throws IOException;
+}
@@ -0,0 +1,139 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.TableName;
+
+/**
+ * 按 (表, 操作) 分组的客户端指标。
+ * <p>
+ * 每组指标在第一次使用时创建，并注册为 JMX MBean：
+ * com.cswe.hbase.example:type=ClientMetrics,name=&lt;name&gt;,table=&lt;table&gt;,operation=&lt;operation&gt;。
+ * 之后的 {@link #forOperation} 只做两次 ConcurrentHashMap 查找，不分配内存。
+ * 不再使用时调用 {@link #close()} 注销 MBean 并停止报告线程。
+ */
+public class ClientMetrics implements Closeable {
+
+	private final static Log log = LogFactory.getLog(ClientMetrics.class);
+
+	public static final String DOMAIN = "com.cswe.hbase.example";
+
+	private final String name;
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	private final ConcurrentMap<TableName, ConcurrentMap<String, OperationMetrics>> metrics = new ConcurrentHashMap<TableName, ConcurrentMap<String, OperationMetrics>>();
+	private final List<ObjectName> registered = new ArrayList<ObjectName>();
+	private ScheduledExecutorService reporters;
+
+	/**
+	 * @param name 区分同一进程中的多个客户端，作为 ObjectName 的 name 属性
+	 */
+	public ClientMetrics(String name) {
+		this.name = name;
+	}
+
+	public OperationMetrics forOperation(TableName table, String operation) {
+		ConcurrentMap<String, OperationMetrics> byOperation = metrics.get(table);
+		if (byOperation == null) {
+			byOperation = new ConcurrentHashMap<String, OperationMetrics>();
+			ConcurrentMap<String, OperationMetrics> existing = metrics.putIfAbsent(table, byOperation);
+			if (existing != null) {
+				byOperation = existing;
+			}
+		}
+		OperationMetrics m = byOperation.get(operation);
+		if (m == null) {
+			m = new OperationMetrics(table, operation);
+			OperationMetrics existing = byOperation.putIfAbsent(operation, m);
+			if (existing != null) {
+				return existing;
+			}
+			register(m);
+		}
+		return m;
+	}
+
+	private void register(OperationMetrics m) {
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=ClientMetrics,name=" + ObjectName.quote(name)
+					+ ",table=" + ObjectName.quote(m.getTable()) + ",operation=" + ObjectName.quote(m.getOperation()));
+			server.registerMBean(m, objectName);
+			synchronized (registered) {
+				registered.add(objectName);
+			}
+		} catch (InstanceAlreadyExistsException e) {
+			log.warn("Metrics MBean already registered, another client uses the same name: " + name);
+		} catch (JMException e) {
+			log.warn("Failed to register metrics MBean for " + m.getTable() + " " + m.getOperation(), e);
+		}
+	}
+
+	public Collection<OperationMetrics> getAll() {
+		List<OperationMetrics> all = new ArrayList<OperationMetrics>();
+		for (ConcurrentMap<String, OperationMetrics> byOperation : metrics.values()) {
+			all.addAll(byOperation.values());
+		}
+		return all;
+	}
+
+	/**
+	 * 每隔 period 调用一次 reporter，所有 reporter 共用一个守护线程
+	 */
+	public synchronized void addReporter(final MetricsReporter reporter, long period, TimeUnit unit) {
+		if (reporters == null) {
+			reporters = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ClientMetrics-" + name + "-reporter");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		reporters.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reporter.report(getAll());
+				} catch (RuntimeException e) {
+					// 异常会使 scheduleAtFixedRate 停止后续执行，这里只记录
+					log.warn("Metrics reporter failed", e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (reporters != null) {
+			reporters.shutdownNow();
+			reporters = null;
+		}
+		synchronized (registered) {
+			for (ObjectName objectName : registered) {
+				try {
+					server.unregisterMBean(objectName);
+				} catch (JMException e) {
+					log.warn("Failed to unregister metrics MBean " + objectName, e);
+				}
+			}
+			registered.clear();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.cswe.hbase.example;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 单列比较条件，如 info:name = "zhang san"。列族为 null 时表示对行键的比较。
+ * <p>
+ * 比较语义与 SingleColumnValueFilter 加 setFilterIfMissing(true) 一致：
+ * 按字节序比较列值与给定值，行中缺少该列时不满足。
+ */
+public class ColumnPredicate {
+
+	private final byte[] family;
+	private final byte[] qualifier;
+	private final CompareOp op;
+	private final byte[] value;
+
+	private ColumnPredicate(byte[] family, byte[] qualifier, CompareOp op, byte[] value) {
+		if (op == CompareOp.NO_OP) {
+			throw new IllegalArgumentException("NO_OP is not a predicate");
+		}
+		this.family = family;
+		this.qualifier = qualifier;
+		this.op = op;
+		this.value = value;
+	}
+
+	public static ColumnPredicate column(byte[] family, byte[] qualifier, CompareOp op, byte[] value) {
+		return new ColumnPredicate(family, qualifier, op, value);
+	}
+
+	public static ColumnPredicate rowKey(CompareOp op, byte[] value) {
+		return new ColumnPredicate(null, null, op, value);
+	}
+
+	public boolean isRowKey() {
+		return family == null;
+	}
+
+	public byte[] getFamily() {
+		return family;
+	}
+
+	public byte[] getQualifier() {
+		return qualifier;
+	}
+
+	public CompareOp getOp() {
+		return op;
+	}
+
+	public byte[] getValue() {
+		return value;
+	}
+
+	/**
+	 * 在客户端对一行求值，用于采样统计
+	 */
+	public boolean matches(Result result) {
+		if (isRowKey()) {
+			return accept(Bytes.compareTo(result.getRow(), value));
+		}
+		Cell cell = result.getColumnLatestCell(family, qualifier);
+		if (cell == null) {
+			return false;
+		}
+		return accept(Bytes.compareTo(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength(), value, 0,
+				value.length));
+	}
+
+	private boolean accept(int cmp) {
+		switch (op) {
+		case LESS:
+			return cmp < 0;
+		case LESS_OR_EQUAL:
+			return cmp <= 0;
+		case EQUAL:
+			return cmp == 0;
+		case NOT_EQUAL:
+			return cmp != 0;
+		case GREATER_OR_EQUAL:
+			return cmp >= 0;
+		case GREATER:
+			return cmp > 0;
+		default:
+			throw new IllegalStateException(op.toString());
+		}
+	}
+
+	/**
+	 * 转换为服务端过滤器
+	 */
+	public Filter toFilter() {
+		if (isRowKey()) {
+			// RowFilter 的比较方向与 SingleColumnValueFilter 相同：比较的是行键 op value
+			return new RowFilter(op, new BinaryComparator(value));
+		}
+		SingleColumnValueFilter filter = new SingleColumnValueFilter(family, qualifier, op, value);
+		filter.setFilterIfMissing(true);
+		filter.setLatestVersionOnly(true);
+		return filter;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ColumnPredicate)) {
+			return false;
+		}
+		ColumnPredicate other = (ColumnPredicate) o;
+		return op == other.op && Bytes.equals(family, other.family) && Bytes.equals(qualifier, other.qualifier)
+				&& Bytes.equals(value, other.value);
+	}
+
+	@Override
+	public int hashCode() {
+		return ((Arrays.hashCode(family) * 31 + Arrays.hashCode(qualifier)) * 31 + op.hashCode()) * 31
+				+ Arrays.hashCode(value);
+	}
+
+	@Override
+	public String toString() {
+		String column = isRowKey() ? "ROW" : Bytes.toString(family) + ":" + Bytes.toString(qualifier);
+		return column + " " + op + " " + Bytes.toStringBinary(value);
+	}
+}
@@ -0,0 +1,297 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 连接预热：在服务接收请求前把首个请求要付出的开销提前做掉。
+ * <p>
+ * Connection 创建后什么都没有连接，第一次访问某个 Region 时要先查 meta 得到位置，
+ * 第一次访问某个 RegionServer 时要建立 TCP 连接和 RPC 会话，第一次调用 Admin 时要连接 Master。
+ * 预热按顺序完成这几步：连接 Master，逐个 Region 查询位置放入 Connection 的位置缓存（多个线程并行），
+ * 再向每个 RegionServer 发一个只判断存在性的 Get。全部完成后 {@link #isReady} 返回 true，
+ * 部分 RegionServer 探测失败时仍然就绪，失败的 Server 记录在报告中。
+ */
+public class ConnectionWarmer {
+
+	private final static Log log = LogFactory.getLog(ConnectionWarmer.class);
+
+	public static class Params {
+		private final List<TableName> tables = new ArrayList<TableName>();
+		private int parallelism = 8;
+		private long timeoutMillis = 60000;
+		private boolean warmMaster = true;
+
+		public Params(TableName... tables) {
+			Collections.addAll(this.tables, tables);
+		}
+
+		public List<TableName> getTables() {
+			return tables;
+		}
+
+		public Params addTable(TableName table) {
+			tables.add(table);
+			return this;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		/** 并行查询位置和探测 Server 的线程数 */
+		public Params parallelism(int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		public long getTimeoutMillis() {
+			return timeoutMillis;
+		}
+
+		/** 整个预热的超时，超时后抛出异常，不进入就绪状态 */
+		public Params timeoutMillis(long timeoutMillis) {
+			this.timeoutMillis = timeoutMillis;
+			return this;
+		}
+
+		public boolean isWarmMaster() {
+			return warmMaster;
+		}
+
+		/** 是否预先连接 Master，只用数据读写、不调用 Admin 的服务可以关闭 */
+		public Params warmMaster(boolean warmMaster) {
+			this.warmMaster = warmMaster;
+			return this;
+		}
+	}
+
+	/**
+	 * 一次预热的结果
+	 */
+	public static final class Report {
+		private final int regions;
+		private final int servers;
+		private final List<ServerName> failedServers;
+		private final long locateNanos;
+		private final long pingNanos;
+		private final long elapsedNanos;
+
+		Report(int regions, int servers, List<ServerName> failedServers, long locateNanos, long pingNanos,
+				long elapsedNanos) {
+			this.regions = regions;
+			this.servers = servers;
+			this.failedServers = Collections.unmodifiableList(failedServers);
+			this.locateNanos = locateNanos;
+			this.pingNanos = pingNanos;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * 位置已缓存的 Region 数，所有表合计
+		 */
+		public int getRegions() {
+			return regions;
+		}
+
+		/**
+		 * 探测过的 RegionServer 数，包括失败的
+		 */
+		public int getServers() {
+			return servers;
+		}
+
+		public List<ServerName> getFailedServers() {
+			return failedServers;
+		}
+
+		public long getLocateMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(locateNanos);
+		}
+
+		public long getPingMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(pingNanos);
+		}
+
+		/**
+		 * 预热的总耗时，即服务启动因预热推迟的时间
+		 */
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("regions=%d servers=%d failed=%s locate=%dms ping=%dms total=%dms", regions,
+					servers, failedServers, getLocateMillis(), getPingMillis(), getElapsedMillis());
+		}
+	}
+
+	private final Connection conn;
+	private final Params params;
+	private final CountDownLatch ready = new CountDownLatch(1);
+
+	public ConnectionWarmer(Connection conn, Params params) {
+		this.conn = conn;
+		this.params = params;
+	}
+
+	/**
+	 * 执行预热并阻塞到完成。可以重复调用，例如表拆分或迁移较多后重新加载位置
+	 *
+	 * @throws IOException 连接 Master 或查询 Region 位置失败、超时，此时不进入就绪状态
+	 */
+	public Report warm() throws IOException {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(params.getTimeoutMillis());
+		if (params.isWarmMaster()) {
+			Admin admin = conn.getAdmin();
+			try {
+				admin.getClusterStatus();
+			} finally {
+				admin.close();
+			}
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, params.getParallelism()));
+		try {
+			// 每张表扫一次 meta 得到 Region 列表，再逐个查询位置，查询结果进入 Connection 的位置缓存
+			List<Future<HRegionLocation>> located = new ArrayList<Future<HRegionLocation>>();
+			for (final TableName table : params.getTables()) {
+				List<HRegionLocation> regions;
+				RegionLocator locator = conn.getRegionLocator(table);
+				try {
+					regions = locator.getAllRegionLocations();
+				} finally {
+					locator.close();
+				}
+				if (regions.isEmpty()) {
+					throw new TableNotFoundException(table);
+				}
+				for (final HRegionLocation region : regions) {
+					located.add(pool.submit(new Callable<HRegionLocation>() {
+						@Override
+						public HRegionLocation call() throws IOException {
+							RegionLocator locator = conn.getRegionLocator(table);
+							try {
+								return locator.getRegionLocation(region.getRegionInfo().getStartKey());
+							} finally {
+								locator.close();
+							}
+						}
+					}));
+				}
+			}
+			// 每个 Server 选一个 Region 探测
+			Map<ServerName, HRegionLocation> servers = new LinkedHashMap<ServerName, HRegionLocation>();
+			for (Future<HRegionLocation> f : located) {
+				HRegionLocation location = await(f, deadline);
+				if (location.getServerName() != null && !servers.containsKey(location.getServerName())
+						&& probeRow(location.getRegionInfo()) != null) {
+					servers.put(location.getServerName(), location);
+				}
+			}
+			long locateNanos = System.nanoTime() - start;
+
+			long pingStart = System.nanoTime();
+			Map<ServerName, Future<Boolean>> pings = new LinkedHashMap<ServerName, Future<Boolean>>();
+			for (Map.Entry<ServerName, HRegionLocation> e : servers.entrySet()) {
+				final HRegionInfo region = e.getValue().getRegionInfo();
+				pings.put(e.getKey(), pool.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws IOException {
+						Table table = conn.getTable(region.getTable());
+						try {
+							return table.exists(new Get(probeRow(region)));
+						} finally {
+							table.close();
+						}
+					}
+				}));
+			}
+			List<ServerName> failed = new ArrayList<ServerName>();
+			for (Map.Entry<ServerName, Future<Boolean>> e : pings.entrySet()) {
+				try {
+					await(e.getValue(), deadline);
+				} catch (IOException ex) {
+					log.warn("Warm up " + e.getKey() + " failed", ex);
+					failed.add(e.getKey());
+				}
+			}
+			Report report = new Report(located.size(), servers.size(), failed, locateNanos, System.nanoTime()
+					- pingStart, System.nanoTime() - start);
+			ready.countDown();
+			log.info("Connection warmed up: " + report);
+			return report;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static <T> T await(Future<T> f, long deadline) throws IOException {
+		try {
+			return f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted during warm up").initCause(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out warming up connection", e);
+		}
+	}
+
+	/**
+	 * Region 内的一个行键：起始行，第一个 Region 的起始行为空，用 0x00 代替
+	 */
+	static byte[] probeRow(HRegionInfo region) {
+		byte[] row = region.getStartKey().length > 0 ? region.getStartKey() : new byte[1];
+		if (region.getEndKey().length > 0 && Bytes.compareTo(row, region.getEndKey()) >= 0) {
+			return null;
+		}
+		return row;
+	}
+
+	/**
+	 * 至少完成过一次预热
+	 */
+	public boolean isReady() {
+		return ready.getCount() == 0;
+	}
+
+	/**
+	 * 等待另一个线程中的预热完成，供健康检查等在预热结束前拒绝流量
+	 *
+	 * @return 超时前是否就绪
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return ready.await(timeout, unit);
+	}
+}
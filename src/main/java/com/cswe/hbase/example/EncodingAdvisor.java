@@ -0,0 +1,408 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.io.hfile.HFileScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CompressionTest;
+
+/**
+ * 用真实数据的样本为列族选择数据块编码和压缩算法。
+ * <p>
+ * 对每种编码（NONE、PREFIX、DIFF、FAST_DIFF、PREFIX_TREE）与本机可用的每种压缩算法的组合，
+ * 把样本写成本地 HFile，测量文件大小、写入速度、随机按行读取和全文件扫描的耗时，再按 {@link Goal} 给出推荐。
+ * <p>
+ * 读取时不使用块缓存，每次都要解压和解码数据块，测到的是缓存未命中时的代价。
+ * 块缓存中的块是解压后但仍编码的，缓存命中率高的列族压缩算法对读性能的影响比这里测到的小。
+ */
+public class EncodingAdvisor {
+
+	private final static Log log = LogFactory.getLog(EncodingAdvisor.class);
+
+	public static final DataBlockEncoding[] ENCODINGS = { DataBlockEncoding.NONE, DataBlockEncoding.PREFIX,
+			DataBlockEncoding.DIFF, DataBlockEncoding.FAST_DIFF, DataBlockEncoding.PREFIX_TREE };
+
+	/**
+	 * 选择的侧重点
+	 */
+	public enum Goal {
+		/** 热数据：随机读最快，相差不到 5% 时选文件小的 */
+		HOT,
+		/** 冷数据：文件最小，相差不到 5% 时选扫描快的 */
+		COLD,
+		/** 文件大小与随机读耗时（各自除以最优值）的乘积最小 */
+		BALANCED
+	}
+
+	/**
+	 * 一种组合的测量结果
+	 */
+	public static class Trial {
+		private final DataBlockEncoding encoding;
+		private final Compression.Algorithm compression;
+		private final long fileBytes;
+		private final long writeNanos;
+		private final long getNanos;
+		private final long scanNanos;
+		private final long cells;
+
+		Trial(DataBlockEncoding encoding, Compression.Algorithm compression, long fileBytes, long writeNanos,
+				long getNanos, long scanNanos, long cells) {
+			this.encoding = encoding;
+			this.compression = compression;
+			this.fileBytes = fileBytes;
+			this.writeNanos = writeNanos;
+			this.getNanos = getNanos;
+			this.scanNanos = scanNanos;
+			this.cells = cells;
+		}
+
+		public DataBlockEncoding getEncoding() {
+			return encoding;
+		}
+
+		public Compression.Algorithm getCompression() {
+			return compression;
+		}
+
+		public long getFileBytes() {
+			return fileBytes;
+		}
+
+		/**
+		 * 写入并关闭 HFile 的总耗时
+		 */
+		public long getWriteNanos() {
+			return writeNanos;
+		}
+
+		/**
+		 * 平均每次随机按行读取的耗时
+		 */
+		public long getGetNanos() {
+			return getNanos;
+		}
+
+		/**
+		 * 全文件扫描一次的耗时
+		 */
+		public long getScanNanos() {
+			return scanNanos;
+		}
+
+		public long getCells() {
+			return cells;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-11s %-6s size=%,dB write=%.1fms get=%.1fus scan=%.1fms", encoding, compression
+					.getName(), fileBytes, writeNanos / 1e6, getNanos / 1e3, scanNanos / 1e6);
+		}
+	}
+
+	/**
+	 * 推荐的列族设置
+	 */
+	public static class Recommendation {
+		private final byte[] family;
+		private final Goal goal;
+		private final Trial trial;
+
+		Recommendation(byte[] family, Goal goal, Trial trial) {
+			this.family = family;
+			this.goal = goal;
+			this.trial = trial;
+		}
+
+		public byte[] getFamily() {
+			return family;
+		}
+
+		public Goal getGoal() {
+			return goal;
+		}
+
+		public DataBlockEncoding getEncoding() {
+			return trial.getEncoding();
+		}
+
+		public Compression.Algorithm getCompression() {
+			return trial.getCompression();
+		}
+
+		public Trial getTrial() {
+			return trial;
+		}
+
+		/**
+		 * 把编码和压缩算法设置到列族描述上
+		 */
+		public HColumnDescriptor applyTo(HColumnDescriptor hcd) {
+			hcd.setDataBlockEncoding(getEncoding());
+			hcd.setCompressionType(getCompression());
+			return hcd;
+		}
+
+		@Override
+		public String toString() {
+			return Bytes.toString(family) + " " + goal + ": " + trial;
+		}
+	}
+
+	private final Configuration conf;
+	private final Path workDir;
+	private final FileSystem fs;
+	private final CacheConfig cacheConfig;
+	private int blockSize = HConstants.DEFAULT_BLOCKSIZE;
+	private int gets = 2000;
+
+	/**
+	 * @param workDir 存放试写 HFile 的目录，每个 HFile 测量完即删除
+	 */
+	public EncodingAdvisor(Configuration conf, Path workDir) throws IOException {
+		this.conf = new Configuration(conf);
+		// 不使用块缓存，见类注释
+		this.conf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+		this.workDir = workDir;
+		this.fs = workDir.getFileSystem(this.conf);
+		this.cacheConfig = new CacheConfig(this.conf);
+	}
+
+	/**
+	 * 数据块大小，默认 64KB，应与列族设置一致
+	 */
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * 每种组合随机读的次数
+	 */
+	public void setGets(int gets) {
+		this.gets = gets;
+	}
+
+	/**
+	 * 本机可用的压缩算法，NONE 总是可用
+	 */
+	public static List<Compression.Algorithm> availableCompressions() {
+		List<Compression.Algorithm> available = new ArrayList<Compression.Algorithm>();
+		for (Compression.Algorithm algorithm : Compression.Algorithm.values()) {
+			if (algorithm == Compression.Algorithm.NONE || CompressionTest.testCompression(algorithm.getName())) {
+				available.add(algorithm);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * 从表中取前 maxRows 行中 family 的数据作为样本
+	 */
+	public static List<Cell> sample(Connection conn, TableName tableName, byte[] family, int maxRows)
+			throws IOException {
+		List<Cell> cells = new ArrayList<Cell>();
+		Scan scan = new Scan();
+		scan.addFamily(family);
+		scan.setCaching(Math.min(maxRows, 1000));
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				int rows = 0;
+				for (Result r = scanner.next(); r != null && rows < maxRows; r = scanner.next()) {
+					Collections.addAll(cells, r.rawCells());
+					rows++;
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		return cells;
+	}
+
+	/**
+	 * 测量所有编码与可用压缩算法的组合
+	 *
+	 * @param sample 同一列族的 Cell，不要求有序
+	 */
+	public List<Trial> evaluate(List<? extends Cell> sample) throws IOException {
+		List<KeyValue> cells = new ArrayList<KeyValue>(sample.size());
+		for (Cell cell : sample) {
+			cells.add(KeyValueUtil.ensureKeyValue(cell));
+		}
+		Collections.sort(cells, KeyValue.COMPARATOR);
+		List<byte[]> rows = new ArrayList<byte[]>();
+		for (KeyValue kv : cells) {
+			if (rows.isEmpty() || !CellUtil.matchingRow(kv, rows.get(rows.size() - 1))) {
+				rows.add(CellUtil.cloneRow(kv));
+			}
+		}
+
+		List<Trial> trials = new ArrayList<Trial>();
+		for (Compression.Algorithm compression : availableCompressions()) {
+			for (DataBlockEncoding encoding : ENCODINGS) {
+				Trial trial = measure(cells, rows, encoding, compression);
+				log.info(trial);
+				trials.add(trial);
+			}
+		}
+		return trials;
+	}
+
+	private Trial measure(List<KeyValue> cells, List<byte[]> rows, DataBlockEncoding encoding,
+			Compression.Algorithm compression) throws IOException {
+		Path path = new Path(workDir, encoding + "-" + compression.getName());
+		HFileContext context = new HFileContextBuilder().withCompression(compression).withDataBlockEncoding(encoding)
+				.withBlockSize(blockSize).build();
+		try {
+			long start = System.nanoTime();
+			HFile.Writer writer = HFile.getWriterFactory(conf, cacheConfig).withPath(fs, path)
+					.withComparator(KeyValue.COMPARATOR).withFileContext(context).create();
+			try {
+				for (KeyValue kv : cells) {
+					writer.append(kv);
+				}
+			} finally {
+				writer.close();
+			}
+			long writeNanos = System.nanoTime() - start;
+			long fileBytes = fs.getFileStatus(path).getLen();
+
+			HFile.Reader reader = HFile.createReader(fs, path, cacheConfig, conf);
+			try {
+				reader.loadFileInfo();
+				// 先各读一遍，使文件进入操作系统页缓存，测到的是解压和解码的代价而不是磁盘
+				scan(reader);
+				long scanStart = System.nanoTime();
+				long scanned = scan(reader);
+				long scanNanos = System.nanoTime() - scanStart;
+				if (scanned != cells.size()) {
+					throw new IOException("Scanned " + scanned + " of " + cells.size() + " cells from " + path);
+				}
+				long getNanos = randomGets(reader, rows);
+				return new Trial(encoding, compression, fileBytes, writeNanos, getNanos, scanNanos, cells.size());
+			} finally {
+				reader.close(false);
+			}
+		} finally {
+			fs.delete(path, false);
+		}
+	}
+
+	private static long scan(HFile.Reader reader) throws IOException {
+		HFileScanner scanner = reader.getScanner(false, false);
+		long cells = 0;
+		if (scanner.seekTo()) {
+			do {
+				cells++;
+			} while (scanner.next());
+		}
+		return cells;
+	}
+
+	/**
+	 * @return 平均每次读取一行的耗时
+	 */
+	private long randomGets(HFile.Reader reader, List<byte[]> rows) throws IOException {
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		Random random = new Random(rows.size());
+		long start = System.nanoTime();
+		for (int i = 0; i < gets; i++) {
+			byte[] row = rows.get(random.nextInt(rows.size()));
+			// 与 RegionServer 的 Get 相同，每次使用新的 pread 扫描器
+			HFileScanner scanner = reader.getScanner(false, true);
+			// 行首之前的键不存在于文件中：返回 1 时停在它前面的一个 Cell 上，-1 表示在文件第一个 Cell 之前
+			int position = scanner.seekTo(KeyValueUtil.createFirstOnRow(row));
+			boolean positioned = position < 0 ? scanner.seekTo() : position == 0 || scanner.next();
+			if (!positioned) {
+				continue;
+			}
+			do {
+				if (!CellUtil.matchingRow(scanner.getKeyValue(), row)) {
+					break;
+				}
+			} while (scanner.next());
+		}
+		return (System.nanoTime() - start) / gets;
+	}
+
+	/**
+	 * 按 goal 从测量结果中选出推荐的组合
+	 */
+	public static Recommendation recommend(byte[] family, List<Trial> trials, Goal goal) {
+		if (trials.isEmpty()) {
+			throw new IllegalArgumentException("No trials");
+		}
+		long minBytes = Long.MAX_VALUE;
+		long minGet = Long.MAX_VALUE;
+		for (Trial t : trials) {
+			minBytes = Math.min(minBytes, t.getFileBytes());
+			minGet = Math.min(minGet, t.getGetNanos());
+		}
+		Trial best = null;
+		for (Trial t : trials) {
+			if (best == null || better(t, best, goal, Math.max(minBytes, 1), Math.max(minGet, 1))) {
+				best = t;
+			}
+		}
+		return new Recommendation(family, goal, best);
+	}
+
+	private static boolean better(Trial a, Trial b, Goal goal, long minBytes, long minGet) {
+		switch (goal) {
+		case HOT:
+			if (!close(a.getGetNanos(), b.getGetNanos())) {
+				return a.getGetNanos() < b.getGetNanos();
+			}
+			return a.getFileBytes() < b.getFileBytes();
+		case COLD:
+			if (!close(a.getFileBytes(), b.getFileBytes())) {
+				return a.getFileBytes() < b.getFileBytes();
+			}
+			return a.getScanNanos() < b.getScanNanos();
+		default:
+			double scoreA = (double) a.getFileBytes() / minBytes * a.getGetNanos() / minGet;
+			double scoreB = (double) b.getFileBytes() / minBytes * b.getGetNanos() / minGet;
+			return scoreA < scoreB;
+		}
+	}
+
+	/**
+	 * 相差不到 5%
+	 */
+	private static boolean close(long a, long b) {
+		return Math.abs(a - b) <= 0.05 * Math.max(a, b);
+	}
+}
@@ -0,0 +1,111 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+/**
+ * 每个进度一个文件，保存在 Hadoop FileSystem 的一个目录下（本地目录或 HDFS）。
+ * <p>
+ * 保存时先写 name.tmp，再删除旧文件并把 name.tmp 改名为 name。在删除和改名之间崩溃时只剩下完整的 name.tmp，
+ * load 时使用它；name 存在时 name.tmp 可能没有写完，忽略。
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.\\-]+");
+
+	private final FileSystem fs;
+	private final Path dir;
+
+	public FileCheckpointStore(FileSystem fs, Path dir) {
+		this.fs = fs;
+		this.dir = dir;
+	}
+
+	@Override
+	public Map<String, byte[]> load() throws IOException {
+		Map<String, byte[]> checkpoints = new HashMap<String, byte[]>();
+		if (!fs.exists(dir)) {
+			return checkpoints;
+		}
+		Map<String, Path> pending = new HashMap<String, Path>();
+		for (FileStatus status : fs.listStatus(dir)) {
+			String name = status.getPath().getName();
+			if (name.endsWith(TMP_SUFFIX)) {
+				pending.put(name.substring(0, name.length() - TMP_SUFFIX.length()), status.getPath());
+			} else {
+				checkpoints.put(name, read(status.getPath(), status.getLen()));
+			}
+		}
+		for (Map.Entry<String, Path> e : pending.entrySet()) {
+			if (!checkpoints.containsKey(e.getKey())) {
+				checkpoints.put(e.getKey(), read(e.getValue(), fs.getFileStatus(e.getValue()).getLen()));
+			}
+		}
+		return checkpoints;
+	}
+
+	private byte[] read(Path path, long length) throws IOException {
+		byte[] value = new byte[(int) length];
+		FSDataInputStream in = fs.open(path);
+		try {
+			IOUtils.readFully(in, value, 0, value.length);
+		} finally {
+			in.close();
+		}
+		return value;
+	}
+
+	@Override
+	public void save(String name, byte[] value) throws IOException {
+		if (!NAME.matcher(name).matches() || name.endsWith(TMP_SUFFIX)) {
+			throw new IllegalArgumentException("Illegal checkpoint name: " + name);
+		}
+		Path path = new Path(dir, name);
+		Path tmp = new Path(dir, name + TMP_SUFFIX);
+		FSDataOutputStream out = fs.create(tmp, true);
+		try {
+			out.write(value);
+			out.hsync();
+		} finally {
+			out.close();
+		}
+		if (fs.exists(path) && !fs.delete(path, false)) {
+			throw new IOException("Failed to delete " + path);
+		}
+		if (!fs.rename(tmp, path)) {
+			throw new IOException("Failed to rename " + tmp + " to " + path);
+		}
+	}
+
+	@Override
+	public void remove(String name) throws IOException {
+		// 先删 tmp：只剩 tmp 时 load 会把它当作完整的进度
+		for (Path path : new Path[] { new Path(dir, name + TMP_SUFFIX), new Path(dir, name) }) {
+			if (fs.exists(path) && !fs.delete(path, false)) {
+				throw new IOException("Failed to delete " + path);
+			}
+		}
+	}
+
+	@Override
+	public void clear() throws IOException {
+		if (fs.exists(dir) && !fs.delete(dir, true)) {
+			throw new IOException("Failed to delete " + dir);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return fs.makeQualified(dir).toString();
+	}
+}
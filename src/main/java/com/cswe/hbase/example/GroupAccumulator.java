@@ -0,0 +1,180 @@
+package com.cswe.hbase.example;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.Column;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.ColumnStats;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.Group;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateRequest;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateResponse;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.ValueType;
+import com.google.protobuf.ByteString;
+
+/**
+ * 逐行累加分组聚合的部分结果。GroupAggregateEndpoint 在 Region 内使用，
+ * GroupAggregateClient 在客户端聚合时使用同一份实现，两者的结果一致。
+ * <p>
+ * 同一列有多个版本时只取第一个（最新的）。值不能按类型解析的列不计入该列的统计，但行仍计入分组的行数。
+ * 非线程安全。
+ */
+final class GroupAccumulator {
+
+	private static final class Stats {
+		final long[] count;
+		final long[] sum;
+		final long[] min;
+		final long[] max;
+		long rows = 0;
+
+		Stats(int columns) {
+			count = new long[columns];
+			sum = new long[columns];
+			min = new long[columns];
+			max = new long[columns];
+		}
+	}
+
+	private final byte[] groupFamily;
+	private final byte[] groupQualifier;
+	private final byte[][] families;
+	private final byte[][] qualifiers;
+	private final ValueType[] types;
+	private final Map<ImmutableBytesWritable, Stats> groups = new HashMap<ImmutableBytesWritable, Stats>();
+	/** 行中没有分组列的行 */
+	private Stats missing;
+	/** 查找已有分组时复用，不复制分组列的值 */
+	private final ImmutableBytesWritable probe = new ImmutableBytesWritable();
+	private final boolean[] seen;
+	private long rows = 0;
+
+	GroupAccumulator(GroupAggregateRequest request) {
+		this.groupFamily = request.hasGroupFamily() ? request.getGroupFamily().toByteArray() : null;
+		this.groupQualifier = request.hasGroupQualifier() ? request.getGroupQualifier().toByteArray() : null;
+		int n = request.getColumnsCount();
+		this.families = new byte[n][];
+		this.qualifiers = new byte[n][];
+		this.types = new ValueType[n];
+		for (int j = 0; j < n; j++) {
+			Column column = request.getColumns(j);
+			families[j] = column.getFamily().toByteArray();
+			qualifiers[j] = column.getQualifier().toByteArray();
+			types[j] = column.getType();
+		}
+		this.seen = new boolean[n];
+	}
+
+	void add(List<Cell> row) {
+		add(row.toArray(new Cell[row.size()]));
+	}
+
+	void add(Cell[] row) {
+		if (row == null || row.length == 0) {
+			return;
+		}
+		rows++;
+		Stats stats = group(row);
+		stats.rows++;
+		for (int j = 0; j < types.length; j++) {
+			seen[j] = false;
+		}
+		for (Cell cell : row) {
+			for (int j = 0; j < types.length; j++) {
+				if (seen[j] || !CellUtil.matchingColumn(cell, families[j], qualifiers[j])) {
+					continue;
+				}
+				seen[j] = true;
+				long v;
+				try {
+					v = value(types[j], cell);
+				} catch (IllegalArgumentException e) {
+					// 包括 NumberFormatException
+					break;
+				}
+				if (stats.count[j]++ == 0) {
+					stats.min[j] = v;
+					stats.max[j] = v;
+				} else {
+					stats.min[j] = Math.min(stats.min[j], v);
+					stats.max[j] = Math.max(stats.max[j], v);
+				}
+				stats.sum[j] += v;
+				break;
+			}
+		}
+	}
+
+	private Stats group(Cell[] row) {
+		if (groupFamily == null) {
+			return missing != null ? missing : (missing = new Stats(types.length));
+		}
+		for (Cell cell : row) {
+			if (CellUtil.matchingColumn(cell, groupFamily, groupQualifier)) {
+				probe.set(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+				Stats stats = groups.get(probe);
+				if (stats == null) {
+					stats = new Stats(types.length);
+					groups.put(new ImmutableBytesWritable(CellUtil.cloneValue(cell)), stats);
+				}
+				return stats;
+			}
+		}
+		return missing != null ? missing : (missing = new Stats(types.length));
+	}
+
+	static long value(ValueType type, Cell cell) {
+		switch (type) {
+		case LONG:
+			return Cells.toLong(cell);
+		case INT:
+			return Cells.toInt(cell);
+		default:
+			return Cells.parseLong(cell);
+		}
+	}
+
+	/**
+	 * 已处理的行数
+	 */
+	long getRows() {
+		return rows;
+	}
+
+	GroupAggregateResponse toResponse() {
+		GroupAggregateResponse.Builder response = GroupAggregateResponse.newBuilder();
+		if (missing != null) {
+			response.addGroups(toGroup(null, missing));
+		}
+		for (Map.Entry<ImmutableBytesWritable, Stats> e : groups.entrySet()) {
+			response.addGroups(toGroup(e.getKey().copyBytes(), e.getValue()));
+		}
+		return response.build();
+	}
+
+	private Group toGroup(byte[] key, Stats stats) {
+		Group.Builder group = Group.newBuilder().setRows(stats.rows);
+		if (key != null) {
+			group.setKey(ByteString.copyFrom(key));
+		}
+		for (int j = 0; j < types.length; j++) {
+			ColumnStats.Builder column = ColumnStats.newBuilder().setCount(stats.count[j]);
+			if (stats.count[j] > 0) {
+				column.setSum(stats.sum[j]).setMin(stats.min[j]).setMax(stats.max[j]);
+			}
+			group.addColumns(column);
+		}
+		return group.build();
+	}
+
+	@Override
+	public String toString() {
+		return "GroupAccumulator(" + (groupFamily != null ? Bytes.toString(groupFamily) + ":"
+				+ Bytes.toString(groupQualifier) : "-") + ", " + groups.size() + " groups, " + rows + " rows)";
+	}
+}
@@ -0,0 +1,343 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.coprocessor.Batch;
+import org.apache.hadoop.hbase.exceptions.UnknownProtocolException;
+import org.apache.hadoop.hbase.ipc.BlockingRpcCallback;
+import org.apache.hadoop.hbase.ipc.ServerRpcController;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateRequest;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateResponse;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateService;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.ValueType;
+import com.google.protobuf.ByteString;
+
+/**
+ * 分组聚合：行数，以及每个统计列的计数、求和、最小值、最大值。
+ * <p>
+ * {@link #aggregate} 在各 Region 上并行调用 {@link GroupAggregateEndpoint}，每个 Region 只返回各分组的部分结果，
+ * 客户端在结果到达时合并。{@link #aggregateOnClient} 用普通 Scan 把行取回客户端计算，结果相同，
+ * 用于表上没有加载 endpoint 时，或作为对比。
+ * <p>
+ * Scan 中的行范围、列和过滤器在两种方式下含义相同。Scan 指定了列时，分组列和统计列会被加入；不能设置 batch，
+ * 否则一行会被拆成几部分分别计数。求和按 long 累加，溢出时不报错。
+ */
+public class GroupAggregateClient {
+
+	/**
+	 * 分组列和统计列
+	 */
+	public static class Request {
+		private byte[] groupFamily;
+		private byte[] groupQualifier;
+		private final List<GroupAggregateProtos.Column> columns = new ArrayList<GroupAggregateProtos.Column>();
+
+		/**
+		 * 按该列的值分组，不调用时所有行为一组
+		 */
+		public Request groupBy(byte[] family, byte[] qualifier) {
+			this.groupFamily = family;
+			this.groupQualifier = qualifier;
+			return this;
+		}
+
+		/**
+		 * 统计该列，结果中列的顺序与调用顺序相同
+		 */
+		public Request column(byte[] family, byte[] qualifier, ValueType type) {
+			columns.add(GroupAggregateProtos.Column.newBuilder().setFamily(ByteString.copyFrom(family))
+					.setQualifier(ByteString.copyFrom(qualifier)).setType(type).build());
+			return this;
+		}
+
+		GroupAggregateRequest toProto(Scan scan) throws IOException {
+			GroupAggregateRequest.Builder builder = GroupAggregateRequest.newBuilder()
+					.setScan(ProtobufUtil.toScan(scan).toByteString()).addAllColumns(columns);
+			if (groupFamily != null) {
+				builder.setGroupFamily(ByteString.copyFrom(groupFamily)).setGroupQualifier(
+						ByteString.copyFrom(groupQualifier));
+			}
+			return builder.build();
+		}
+
+		/**
+		 * Scan 指定了列时加入分组列和统计列。已经选择整个列族的不再加列，否则反而只剩这一列
+		 */
+		Scan prepare(Scan scan) throws IOException {
+			if (scan.getBatch() > 0) {
+				throw new IllegalArgumentException("Scan batch is not supported: " + scan.getBatch());
+			}
+			Scan copy = new Scan(scan);
+			if (copy.hasFamilies()) {
+				if (groupFamily != null) {
+					addColumn(copy, groupFamily, groupQualifier);
+				}
+				for (GroupAggregateProtos.Column c : columns) {
+					addColumn(copy, c.getFamily().toByteArray(), c.getQualifier().toByteArray());
+				}
+			}
+			return copy;
+		}
+
+		private static void addColumn(Scan scan, byte[] family, byte[] qualifier) {
+			Map<byte[], NavigableSet<byte[]>> familyMap = scan.getFamilyMap();
+			if (!familyMap.containsKey(family) || familyMap.get(family) != null) {
+				scan.addColumn(family, qualifier);
+			}
+		}
+	}
+
+	/**
+	 * 一列的统计，count 为 0 时 sum、min、max 无意义
+	 */
+	public static final class ColumnStats {
+		private long count = 0;
+		private long sum = 0;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+
+		void merge(GroupAggregateProtos.ColumnStats stats) {
+			if (stats.getCount() == 0) {
+				return;
+			}
+			count += stats.getCount();
+			sum += stats.getSum();
+			min = Math.min(min, stats.getMin());
+			max = Math.max(max, stats.getMax());
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getSum() {
+			return sum;
+		}
+
+		public long getMin() {
+			return min;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public double getMean() {
+			return count == 0 ? Double.NaN : (double) sum / count;
+		}
+
+		@Override
+		public String toString() {
+			return count == 0 ? "count=0" : "count=" + count + ",sum=" + sum + ",min=" + min + ",max=" + max;
+		}
+	}
+
+	/**
+	 * 一个分组的合并结果
+	 */
+	public static final class Group {
+		private final byte[] key;
+		private long rows = 0;
+		private final ColumnStats[] columns;
+
+		Group(byte[] key, int columns) {
+			this.key = key;
+			this.columns = new ColumnStats[columns];
+			for (int j = 0; j < columns; j++) {
+				this.columns[j] = new ColumnStats();
+			}
+		}
+
+		void merge(GroupAggregateProtos.Group group) {
+			rows += group.getRows();
+			for (int j = 0; j < columns.length; j++) {
+				columns[j].merge(group.getColumns(j));
+			}
+		}
+
+		/**
+		 * 分组列的值，行中没有分组列或没有分组时为 null
+		 */
+		public byte[] getKey() {
+			return key;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * 第 j 个统计列，顺序与 {@link Request#column} 的调用顺序相同
+		 */
+		public ColumnStats getColumn(int j) {
+			return columns[j];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(key != null ? Bytes.toString(key) : "(none)");
+			sb.append(":rows=").append(rows);
+			for (ColumnStats c : columns) {
+				sb.append(" [").append(c).append(']');
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * 按分组列的值合并各 Region 的部分结果，没有分组列的行单独一组
+	 */
+	private static final class Merger {
+		private final int columns;
+		private final TreeMap<byte[], Group> groups = new TreeMap<byte[], Group>(Bytes.BYTES_COMPARATOR);
+		private Group missing;
+
+		Merger(int columns) {
+			this.columns = columns;
+		}
+
+		synchronized void merge(GroupAggregateResponse response) {
+			for (GroupAggregateProtos.Group g : response.getGroupsList()) {
+				Group group;
+				if (g.hasKey()) {
+					byte[] key = g.getKey().toByteArray();
+					group = groups.get(key);
+					if (group == null) {
+						group = new Group(key, columns);
+						groups.put(key, group);
+					}
+				} else {
+					group = missing != null ? missing : (missing = new Group(null, columns));
+				}
+				group.merge(g);
+			}
+		}
+
+		synchronized List<Group> result() {
+			List<Group> result = new ArrayList<Group>(groups.size() + 1);
+			if (missing != null) {
+				result.add(missing);
+			}
+			result.addAll(groups.values());
+			return Collections.unmodifiableList(result);
+		}
+	}
+
+	/**
+	 * 表上没有加载 GroupAggregateEndpoint，可以改用 {@link GroupAggregateClient#aggregateOnClient}
+	 */
+	public static class EndpointNotLoadedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		EndpointNotLoadedException(TableName tableName, Throwable cause) {
+			super("GroupAggregateEndpoint is not loaded on " + tableName, cause);
+		}
+	}
+
+	/**
+	 * RegionServer 返回的 UnknownProtocolException 在客户端可能被包装为 RemoteException，只能按类名判断
+	 */
+	static boolean isUnknownProtocol(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof UnknownProtocolException
+					|| (t.getMessage() != null && t.getMessage().contains(UnknownProtocolException.class.getName()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+
+	public GroupAggregateClient(Connection conn, TableName tableName) {
+		this.conn = conn;
+		this.tableName = tableName;
+	}
+
+	/**
+	 * 在 Scan 行范围内的各 Region 上并行聚合，结果按分组列的值排序，没有分组列的一组在最前
+	 *
+	 * @throws IOException 任一 Region 失败，或表上没有加载 GroupAggregateEndpoint
+	 */
+	public List<Group> aggregate(Scan scan, Request request) throws IOException {
+		final GroupAggregateRequest proto = request.toProto(request.prepare(scan));
+		final Merger merger = new Merger(proto.getColumnsCount());
+		Table table = conn.getTable(tableName);
+		try {
+			// 各 Region 的调用在 Connection 的线程池中并行执行，回调在结果到达时合并
+			table.coprocessorService(GroupAggregateService.class, scan.getStartRow(), scan.getStopRow(),
+					new Batch.Call<GroupAggregateService, GroupAggregateResponse>() {
+						@Override
+						public GroupAggregateResponse call(GroupAggregateService service) throws IOException {
+							ServerRpcController controller = new ServerRpcController();
+							BlockingRpcCallback<GroupAggregateResponse> callback =
+									new BlockingRpcCallback<GroupAggregateResponse>();
+							service.aggregate(controller, proto, callback);
+							GroupAggregateResponse response = callback.get();
+							if (controller.failedOnException()) {
+								throw controller.getFailedOn();
+							}
+							return response;
+						}
+					}, new Batch.Callback<GroupAggregateResponse>() {
+						@Override
+						public void update(byte[] region, byte[] row, GroupAggregateResponse response) {
+							merger.merge(response);
+						}
+					});
+		} catch (Throwable t) {
+			if (isUnknownProtocol(t)) {
+				throw new EndpointNotLoadedException(tableName, t);
+			}
+			if (t instanceof IOException) {
+				throw (IOException) t;
+			}
+			throw new IOException("Aggregation on " + tableName + " failed", t);
+		} finally {
+			table.close();
+		}
+		return merger.result();
+	}
+
+	/**
+	 * 把 Scan 的结果取回客户端聚合，语义与 {@link #aggregate} 相同
+	 */
+	public List<Group> aggregateOnClient(Scan scan, Request request) throws IOException {
+		Scan prepared = request.prepare(scan);
+		GroupAggregateRequest proto = request.toProto(prepared);
+		GroupAccumulator accumulator = new GroupAccumulator(proto);
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(prepared);
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					accumulator.add(r.rawCells());
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		Merger merger = new Merger(proto.getColumnsCount());
+		merger.merge(accumulator.toResponse());
+		return merger.result();
+	}
+}
@@ -0,0 +1,92 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.Coprocessor;
+import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorException;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorService;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.ResponseConverter;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateRequest;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateResponse;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.GroupAggregateService;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+import com.google.protobuf.Service;
+
+/**
+ * 在 Region 内按请求中的 Scan（行范围、列、过滤器）扫描并分组聚合，只返回每个分组的部分结果。
+ * <p>
+ * 部署：本类所在的 jar 放到 RegionServer 的 classpath 或 HDFS 上，再用
+ * {@link HbaseExample#enableAggregation} 加到表上。客户端通过 {@link GroupAggregateClient} 调用。
+ * <p>
+ * 分组数没有上限，每个分组在 RegionServer 上占用一份统计，分组列应是取值有限的列（如 sex、adress）。
+ */
+public class GroupAggregateEndpoint extends GroupAggregateService implements Coprocessor, CoprocessorService {
+
+	private final static Log log = LogFactory.getLog(GroupAggregateEndpoint.class);
+
+	private RegionCoprocessorEnvironment env;
+
+	@Override
+	public void aggregate(RpcController controller, GroupAggregateRequest request,
+			RpcCallback<GroupAggregateResponse> done) {
+		GroupAggregateResponse response = null;
+		RegionScanner scanner = null;
+		try {
+			Scan scan = ProtobufUtil.toScan(ClientProtos.Scan.parseFrom(request.getScan()));
+			GroupAccumulator accumulator = new GroupAccumulator(request);
+			scanner = env.getRegion().getScanner(scan);
+			List<Cell> row = new ArrayList<Cell>();
+			boolean more;
+			do {
+				row.clear();
+				more = scanner.next(row);
+				accumulator.add(row);
+			} while (more);
+			response = accumulator.toResponse();
+			if (log.isDebugEnabled()) {
+				log.debug(accumulator + " in " + env.getRegion().getRegionNameAsString());
+			}
+		} catch (IOException e) {
+			ResponseConverter.setControllerException(controller, e);
+		} finally {
+			if (scanner != null) {
+				try {
+					scanner.close();
+				} catch (IOException e) {
+					log.warn("Close scanner failed ", e);
+				}
+			}
+		}
+		done.run(response);
+	}
+
+	@Override
+	public Service getService() {
+		return this;
+	}
+
+	@Override
+	public void start(CoprocessorEnvironment env) throws IOException {
+		if (!(env instanceof RegionCoprocessorEnvironment)) {
+			throw new CoprocessorException("Must be loaded on a table region!");
+		}
+		this.env = (RegionCoprocessorEnvironment) env;
+	}
+
+	@Override
+	public void stop(CoprocessorEnvironment env) throws IOException {
+	}
+}
@@ -1,17 +1,24 @@
 package com.cswe.hbase.example;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.Coprocessor;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HRegionLocation;
@@ -23,9 +30,11 @@ import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
@@ -40,26 +49,203 @@ import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
 import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos.RegionInfo;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos;
 
-public class HbaseExample {
+
+public class HbaseExample implements Closeable {
 	
 	private final static Log log=LogFactory.getLog(HbaseExample.class);
 	
+	//列族和列名由UserInfo.SCHEMA编译一次，各操作共用同一组字节数组
+	private final static byte[] INFO=UserInfo.SCHEMA.family("info");
+	private final static byte[] NAME=UserInfo.SCHEMA.qualifier("info", "name");
+	private final static byte[] SEX=UserInfo.SCHEMA.qualifier("info", "sex");
+	private final static byte[] AGE=UserInfo.SCHEMA.qualifier("info", "age");
+	private final static byte[] ADRESS=UserInfo.SCHEMA.qualifier("info", "adress");
+	private final static byte[] MOB_FAMILY=Bytes.toBytes("mobcf");
+	private final static byte[] MOB_QUALIFIER=Bytes.toBytes("cf1");
+	//testMOBDataRead只读取并打印不超过该大小的MOB值
+	private final static int MAX_LOGGED_MOB_VALUE=1024;
+	//createIndexOnline等待在线修改表完成的时长
+	private final static long ALTER_TIMEOUT_MILLIS=10*60*1000L;
+	//createIndexOnline在表描述上标记索引已加上，后接索引名，值为加上的时刻
+	private final static String ONLINE_INDEX_KEY_PREFIX="ONLINE_INDEX.";
+	//createIndexOnline补建的时间戳界限在checkpoints中的名字
+	private final static String REWRITE_BEFORE_CHECKPOINT="rewrite-before";
+	//补建的时间戳界限上加的RegionServer时钟偏差余量
+	private final static long CLOCK_SKEW_MILLIS=60*1000L;
+	
 	private TableName tableName=null;
 	private Connection conn=null;
 	private Configuration conf=null;
+	//可选的客户端读缓存，为null时getData每次都访问RegionServer
+	private RowCache rowCache=null;
+	//可选的行键加盐，为null时直接使用原行键
+	private SaltedKeyCodec keyCodec=null;
+	//按操作记录耗时、字节数和RPC次数，通过JMX查看
+	private final ClientMetrics metrics;
+	//getDataAsync等非阻塞方法使用，第一次调用时创建
+	private AsyncHbaseClient asyncClient=null;
+	//putDataAdaptive使用，第一次调用时创建，多次写入共用各Server的并发上限和热点统计
+	private AdaptiveWriter adaptiveWriter=null;
+	//scanDataByPlan使用，第一次调用时创建，采样统计在有效期内复用
+	private QueryPlanner queryPlanner=null;
+	//warmUp完成后就绪，未调用warmUp时不需要等待
+	private final ConnectionWarmer warmer;
 	
 	public HbaseExample(Configuration conf) throws IOException{
 		this.conf=conf;
 		this.conn=ConnectionFactory.createConnection(conf);
 		this.tableName=TableName.valueOf("hbase_sample_table");
+		this.metrics=new ClientMetrics("HbaseExample@"+Integer.toHexString(System.identityHashCode(this)));
+		this.warmer=new ConnectionWarmer(conn, new ConnectionWarmer.Params(tableName));
+	}
+	
+	/**
+	 * 预热连接：连接Master，把表的全部Region位置加载到Connection的缓存，并向每个RegionServer发一个探测请求，
+	 * 使之后的第一批请求不再承担查meta和建立连接的延迟。应在接收流量之前调用，耗时记录在 warmUp 操作中
+	 *
+	 * @return 是否完成，失败时之后的请求仍可正常执行，只是首次访问较慢
+	 */
+	public boolean warmUp(){
+		OperationMetrics op=metrics.forOperation(tableName, "warmUp");
+		long start=System.nanoTime();
+		try {
+			ConnectionWarmer.Report report=warmer.warm();
+			op.record(start, 0, 0, report.getRegions()+report.getServers());
+			log.info("Warm up "+tableName+": "+report);
+			return true;
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Warm up failed ", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * warmUp 是否已经完成，可用于健康检查
+	 */
+	public boolean isReady(){
+		return warmer.isReady();
+	}
+	
+	/**
+	 * 各操作的延迟分位数、吞吐量、读写字节数和RPC次数，可以再通过 addReporter 定期输出
+	 */
+	public ClientMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * 释放客户端：关闭第一次使用时创建的异步客户端和自适应写入器，注销各操作指标的MBean，最后关闭连接。
+	 * 同一进程中反复创建HbaseExample时，不关闭的实例的MBean会一直留在平台MBeanServer上
+	 */
+	@Override
+	public synchronized void close(){
+		try {
+			if(asyncClient!=null){
+				asyncClient.close();
+				asyncClient=null;
+			}
+		} catch (IOException e) {
+			log.error("Close async client failed ", e);
+		}
+		try {
+			if(adaptiveWriter!=null){
+				adaptiveWriter.close();
+				adaptiveWriter=null;
+			}
+		} catch (IOException e) {
+			log.error("Close adaptive writer failed ", e);
+		}
+		metrics.close();
+		try {
+			conn.close();
+		} catch (IOException e) {
+			log.error("Close connection failed ", e);
+		}
+	}
+	
+	/**
+	 * 开启客户端读缓存，putData、putDataBuffered、deleteData写入的行会从缓存中失效
+	 */
+	public void setRowCache(RowCache rowCache){
+		this.rowCache=rowCache;
+	}
+	
+	public RowCache getRowCache(){
+		return rowCache;
+	}
+	
+	/**
+	 * 开启行键加盐：写入时在行键前加桶号，读取时去掉。要在createTable之前设置，表按桶预分区
+	 */
+	public void setKeyCodec(SaltedKeyCodec keyCodec){
+		this.keyCodec=keyCodec;
+	}
+	
+	public SaltedKeyCodec getKeyCodec(){
+		return keyCodec;
+	}
+	
+	private synchronized AsyncHbaseClient asyncClient(){
+		if(asyncClient==null){
+			asyncClient=new AsyncHbaseClient(conn, new AsyncHbaseClient.Params(tableName).metrics(metrics));
+		}
+		return asyncClient;
+	}
+	
+	private synchronized AdaptiveWriter adaptiveWriter() throws IOException{
+		if(adaptiveWriter==null){
+			adaptiveWriter=new AdaptiveWriter(conn, tableName, new AdaptiveWriter.Params());
+		}
+		return adaptiveWriter;
+	}
+	
+	private synchronized QueryPlanner queryPlanner(){
+		if(queryPlanner==null){
+			queryPlanner=new QueryPlanner(conn, tableName);
+			queryPlanner.addIndex(nameIndexSpec());
+		}
+		return queryPlanner;
+	}
+	
+	private byte[] row(String key){
+		byte[] row=Bytes.toBytes(key);
+		return keyCodec!=null?keyCodec.encode(row):row;
+	}
+	
+	private Result decode(Result result){
+		return keyCodec!=null?keyCodec.decode(result):result;
 	}
 	
 	/**
 	 * 创建表
 	 */
 	public void createTable(){
+		createTable(keyCodec!=null?keyCodec.splitKeys():null);
+	}
+	
+	/**
+	 * 按给定的分区点预分区建表，splitKeys 为 null 时只有一个 Region
+	 */
+	public void createTable(byte[][] splitKeys){
+		createTable(splitKeys, null);
+	}
+	
+	/**
+	 * 按 EncodingAdvisor 的推荐设置 info 列族的编码和压缩，recommendation 为 null 时使用 PREFIX_TREE 和 SNAPPY
+	 */
+	public void createTable(byte[][] splitKeys, EncodingAdvisor.Recommendation recommendation){
+		createTable(splitKeys, recommendation, null);
+	}
+	
+	/**
+	 * 同时按访问方式设置布隆过滤器、块大小和块缓存，profile 为 null 时使用 HBase 的默认值
+	 */
+	public void createTable(byte[][] splitKeys, EncodingAdvisor.Recommendation recommendation, WorkloadProfile profile){
 		log.info("Hbase 表创建");
 		//1.创建表描述符
 		HTableDescriptor htd=new HTableDescriptor(tableName);
@@ -71,6 +257,12 @@ public class HbaseExample {
 		//GZ:有很高的压缩率但是压缩和解压缩效率低 适合冷数据
 		//SNAPP:有比较低的压缩率但是压缩和解压缩效率高 适合热数据
 		hcd.setCompressionType(Compression.Algorithm.SNAPPY);
+		if(recommendation!=null){
+			recommendation.applyTo(hcd);
+		}
+		if(profile!=null){
+			profile.applyTo(hcd);
+		}
 		
 		//5.添加列族描述到表描述中
 		htd.addFamily(hcd);
@@ -88,7 +280,11 @@ public class HbaseExample {
 				return;
 			}
 			
-			admin.createTable(htd);
+			if(splitKeys==null){
+				admin.createTable(htd);
+			}else{
+				admin.createTable(htd, splitKeys);
+			}
 			ClusterStatus clusterStatus=admin.getClusterStatus();
 			log.info(clusterStatus);
 			log.info(admin.listNamespaceDescriptors());
@@ -124,22 +320,20 @@ public class HbaseExample {
 				admin.deleteTable(tableName);
 			}
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			log.error("Drop table failed ", e);
 		}finally{
 			if(admin!=null){
 				try {
 					admin.close();
 				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					log.error("Close admin failed ", e);
 				}
 			}
 		}
 	}
 	/**
 	 * 多点分割  分割操作只对空Region起作用。
-	 * 使用multiSplit进行多点分割将HBase表按照“A~D”、“D~F”、“F~H”、“H~Z”分为四f个Region。
+	 * 分割点由SplitPlanner按putData写入的行键抽样计算，使每个Region承担相同比例的行。
 	 */
 	public void multiSplit(){
 		Table table=null;
@@ -156,11 +350,7 @@ public class HbaseExample {
 			for(HRegionLocation hrl:regionLocations){
 				regionInfos.add(hrl.getRegionInfo());
 			}
-			byte[][] sk = new byte[4][];
-		    sk[0] = "J".getBytes();
-		    sk[1] = "M".getBytes();
-		    sk[2] = "P".getBytes();
-		    sk[3] = "T".getBytes();
+			byte[][] sk = SplitPlanner.splitPoints(rowsOf(buildSamplePuts()), 5);
 			for(HRegionInfo regionInfo:regionInfos){
 				((HBaseAdmin)admin).multiSplit(regionInfo.getRegionName(), sk);
 			}
@@ -185,78 +375,265 @@ public class HbaseExample {
 		}
 	}
 	
+	private static List<byte[]> rowsOf(List<? extends Mutation> mutations){
+		List<byte[]> rows=new ArrayList<byte[]>(mutations.size());
+		for(Mutation m:mutations){
+			rows.add(m.getRow());
+		}
+		return rows;
+	}
+	
+	/**
+	 * 按行键样本文件（每行一个行键）计算 regions 个 Region 的分区点：表不存在时预分区建表，存在时逐个拆分
+	 */
+	public void presplitFromFile(File keyFile, int regions){
+		Admin admin=null;
+		try {
+			byte[][] splitKeys=SplitPlanner.splitPoints(SplitPlanner.sampleFromFile(keyFile, 100000), regions);
+			admin=conn.getAdmin();
+			if(!admin.tableExists(tableName)){
+				createTable(splitKeys);
+			}else{
+				SplitPlanner.split(admin, tableName, splitKeys);
+			}
+			log.info("Presplit "+tableName+" into "+(splitKeys.length+1)+" regions");
+		} catch (IOException e) {
+			log.error("Presplit failed ", e);
+		}finally{
+			if(admin!=null){
+				try {
+					admin.close();
+				} catch (IOException e) {
+					log.error("Failed to close admin",e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 输出各 Region 按样本文件预计的负载与实际的写请求分布
+	 */
+	public void reportRegionLoad(File keyFile){
+		try {
+			SplitPlanner.report(conn, tableName, SplitPlanner.sampleFromFile(keyFile, 100000));
+		} catch (IOException e) {
+			log.error("Report region load failed ", e);
+		}
+	}
+	
+	/**
+	 * 按 putDataAdaptive 统计的写入样本拆分热点和慢 Region，拆分点是各 Region 写入行键的中位数
+	 */
+	public void splitHotRegions(){
+		Admin admin=null;
+		try {
+			AdaptiveWriter writer=adaptiveWriter();
+			byte[][] splitKeys=writer.getTracker().hotSplitPoints();
+			if(splitKeys.length==0){
+				log.info("No hot region to split");
+				return;
+			}
+			admin=conn.getAdmin();
+			SplitPlanner.split(admin, tableName, splitKeys);
+			writer.refreshRegions();
+			log.info("Split "+splitKeys.length+" hot regions of "+tableName);
+		} catch (IOException e) {
+			log.error("Split hot regions failed ", e);
+		}finally{
+			if(admin!=null){
+				try {
+					admin.close();
+				} catch (IOException e) {
+					log.error("Failed to close admin",e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 用表中已有的 info 列族数据试写各种编码和压缩组合，返回按 goal 推荐的设置，可传给 createTable 使用
+	 *
+	 * @param sampleRows 取样的行数
+	 */
+	public EncodingAdvisor.Recommendation adviseEncoding(EncodingAdvisor.Goal goal, int sampleRows){
+		byte[] family=INFO;
+		try {
+			List<Cell> sample=EncodingAdvisor.sample(conn, tableName, family, sampleRows);
+			if(sample.isEmpty()){
+				log.warn("No data to sample in "+tableName);
+				return null;
+			}
+			//试写的HFile放在本地临时目录
+			Path workDir=new Path(new File(System.getProperty("java.io.tmpdir"), "encoding-advisor-"+System.currentTimeMillis()).toURI());
+			List<EncodingAdvisor.Trial> trials=new EncodingAdvisor(conf, workDir).evaluate(sample);
+			EncodingAdvisor.Recommendation recommendation=EncodingAdvisor.recommend(family, trials, goal);
+			log.info("Recommended "+recommendation);
+			return recommendation;
+		} catch (IOException e) {
+			log.error("Advise encoding failed ", e);
+			return null;
+		}
+	}
+	
 	/**
 	 * hbase �������ݣ�hbase �����е����ݿ⣬һ�����ݿ��ܶ�Ӧ������壬һ��������ܶ�Ӧ�����
 	 * д�����ݵ�ʱ����Ҫָ��Ҫд��������������ͨ��Put����װһ������
 	 */
 	public void putData(){
-		//ָ��������
-		byte []familyName=Bytes.toBytes("info");
-		//����
-		byte[][] qualifiers={Bytes.toBytes("name"),Bytes.toBytes("sex"),Bytes.toBytes("age"),
-				Bytes.toBytes("adress")};
 		Table table =null;
-		Put put=null;
+		List<Put> puts=buildSamplePuts();
+		OperationMetrics op=metrics.forOperation(tableName, "put");
+		long start=System.nanoTime();
 		try {
 			table=conn.getTable(tableName);
-			List<Put> puts=new ArrayList<Put>();
-			//new Put��������װһ�е�����
-			put =new Put(Bytes.toBytes("2017122601"));
-			put.addColumn(familyName, qualifiers[0], Bytes.toBytes("zhang san"));
-			put.addColumn(familyName, qualifiers[1], Bytes.toBytes("F"));
-			put.addColumn(familyName, qualifiers[2], Bytes.toBytes("18"));
-			put.addColumn(familyName, qualifiers[3], Bytes.toBytes("wuhan"));
-			puts.add(put);
-			
-			put =new Put(Bytes.toBytes("2017122602"));
-			put.addColumn(familyName, qualifiers[0], Bytes.toBytes("li si"));
-			put.addColumn(familyName, qualifiers[1], Bytes.toBytes("M"));
-			put.addColumn(familyName, qualifiers[2], Bytes.toBytes("17"));
-			put.addColumn(familyName, qualifiers[3], Bytes.toBytes("wuhan"));
-			puts.add(put);
-			
-			put =new Put(Bytes.toBytes("2017122603"));
-			put.addColumn(familyName, qualifiers[0], Bytes.toBytes("wang wu"));
-			put.addColumn(familyName, qualifiers[1], Bytes.toBytes("F"));
-			put.addColumn(familyName, qualifiers[2], Bytes.toBytes("20"));
-			put.addColumn(familyName, qualifiers[3], Bytes.toBytes("beijing"));
-			puts.add(put);
-			
-			put =new Put(Bytes.toBytes("2017122604"));
-			put.addColumn(familyName, qualifiers[0], Bytes.toBytes("zhao liu"));
-			put.addColumn(familyName, qualifiers[1], Bytes.toBytes("F"));
-			put.addColumn(familyName, qualifiers[2], Bytes.toBytes("20"));
-			put.addColumn(familyName, qualifiers[3], Bytes.toBytes("nanjing"));
-			puts.add(put);
-			
-			put =new Put(Bytes.toBytes("2017122605"));
-			put.addColumn(familyName, qualifiers[0], Bytes.toBytes("xiao he"));
-			put.addColumn(familyName, qualifiers[1], Bytes.toBytes("F"));
-			put.addColumn(familyName, qualifiers[2], Bytes.toBytes("20"));
-			put.addColumn(familyName, qualifiers[3], Bytes.toBytes("beijing"));
-			puts.add(put);
-			
-			put =new Put(Bytes.toBytes("2017122606"));
-			put.addColumn(familyName, qualifiers[0], Bytes.toBytes("xiao xin"));
-			put.addColumn(familyName, qualifiers[1], Bytes.toBytes("F"));
-			put.addColumn(familyName, qualifiers[2], Bytes.toBytes("20"));
-			put.addColumn(familyName, qualifiers[3], Bytes.toBytes("beijing"));
-			puts.add(put);
 			table.put(puts);
+			op.record(start, 0, heapSize(puts), 1);
 			
 			log.info("�������ݳɹ�");
 		} catch (IOException e) {
+			op.recordError(start);
 			log.error("Put failed ", e);
-			e.printStackTrace();
 		}finally{
+			//写入失败时行的状态未知，同样需要失效
+			invalidateRows(puts);
 			if(table!=null){
 				try {
 					table.close();
 				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					log.error("Close table failed ", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 构造示例数据，putData 与 putDataBuffered 共用
+	 */
+	private List<Put> buildSamplePuts(){
+		UserInfo[] users={
+				new UserInfo("2017122601", "zhang san", "F", 18, "wuhan"),
+				new UserInfo("2017122602", "li si", "M", 17, "wuhan"),
+				new UserInfo("2017122603", "wang wu", "F", 20, "beijing"),
+				new UserInfo("2017122604", "zhao liu", "F", 20, "nanjing"),
+				new UserInfo("2017122605", "xiao he", "F", 20, "beijing"),
+				new UserInfo("2017122606", "xiao xin", "F", 20, "beijing")};
+		List<Put> puts=new ArrayList<Put>(users.length);
+		for(UserInfo user:users){
+			//行键可能加盐，由row()编码后传入
+			puts.add(UserInfo.SCHEMA.toPut(row(user.getRowKey()), user));
+		}
+		return puts;
+	}
+	
+	private static long heapSize(List<? extends Mutation> mutations){
+		long size=0;
+		for(Mutation m:mutations){
+			size+=m.heapSize();
+		}
+		return size;
+	}
+	
+	private void invalidateRows(List<? extends Mutation> mutations){
+		if(rowCache==null){
+			return;
+		}
+		for(Mutation m:mutations){
+			rowCache.invalidate(m.getRow());
+		}
+	}
+
+	/**
+	 * 通过 WritePipeline 异步写入数据：按大小或时间刷写，失败的写操作通过回调报告，不阻塞调用线程等待每一批 RPC。
+	 */
+	public void putDataBuffered(){
+		WritePipeline pipeline=null;
+		List<Put> puts=buildSamplePuts();
+		OperationMetrics op=metrics.forOperation(tableName, "putBuffered");
+		long start=System.nanoTime();
+		try {
+			WritePipeline.Params params=new WritePipeline.Params(tableName)
+					.listener(new WritePipeline.FailureListener() {
+						@Override
+						public void onFailure(Row row, Throwable cause, String hostnamePort) {
+							log.error("Put failed for row "+Bytes.toString(row.getRow())+" on "+hostnamePort, cause);
+						}
+					});
+			pipeline=new WritePipeline(conn, params);
+			pipeline.submit(puts);
+			//close 等待缓冲区刷写完成，计入本次操作的耗时
+			pipeline.close();
+			op.record(start, 0, heapSize(puts), 1);
+			log.info("Put data buffered successfully.");
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Put failed ", e);
+		}finally{
+			if(pipeline!=null){
+				try {
+					pipeline.close();
+				} catch (IOException e) {
+					log.error("Close pipeline failed ", e);
+				}
+			}
+			invalidateRows(puts);
+		}
+	}
+	
+	/**
+	 * 按 RegionServer 自适应并发写入：某个 Server 因热点 Region 变慢或失败时只减少发往它的批次，
+	 * 其它 Server 照常写入。写入后输出热点 Region，可以再调用 splitHotRegions 拆分
+	 */
+	public void putDataAdaptive(){
+		List<Put> puts=buildSamplePuts();
+		OperationMetrics op=metrics.forOperation(tableName, "putAdaptive");
+		long start=System.nanoTime();
+		try {
+			AdaptiveWriter writer=adaptiveWriter();
+			writer.write(puts);
+			op.record(start, 0, heapSize(puts), 1);
+			for(HotRegionTracker.RegionStat stat:writer.getTracker().getStats()){
+				if(stat.isHot()||stat.isSlow()){
+					log.warn("Hot region: "+stat);
+				}
+			}
+			log.info("Put data adaptive successfully.");
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Put failed ", e);
+		}finally{
+			invalidateRows(puts);
+		}
+	}
+	
+	/**
+	 * 批量导入：在客户端写成HFile后直接挂载到Region，不经过WAL和MemStore，适合大批量回填历史数据
+	 */
+	public void putDataBulk(){
+		BulkLoader loader=null;
+		List<Put> puts=buildSamplePuts();
+		OperationMetrics op=metrics.forOperation(tableName, "bulkLoad");
+		long start=System.nanoTime();
+		try {
+			Path stagingDir=new Path(conf.get("hbase.fs.tmp.dir", "/tmp"), "bulkload-"+tableName.getQualifierAsString()+"-"+System.currentTimeMillis());
+			loader=new BulkLoader(conn, tableName, stagingDir);
+			for(Put put:puts){
+				loader.add(put);
+			}
+			long cells=loader.load();
+			op.record(start, 0, heapSize(puts), loader.getFiles());
+			log.info("Bulk load data successfully, cells: "+cells);
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Bulk load failed ", e);
+		}finally{
+			if(loader!=null){
+				try {
+					loader.close();
+				} catch (IOException e) {
+					log.error("Close bulk loader failed ", e);
 				}
 			}
+			invalidateRows(puts);
 		}
 	}
 	
@@ -267,7 +644,9 @@ public class HbaseExample {
 		
 		Table table=null;
 		//�йؼ�ֵ������������
-		byte [] rowKey=Bytes.toBytes("2017122603");
+		byte [] rowKey=row("2017122603");
+		OperationMetrics op=metrics.forOperation(tableName, "delete");
+		long start=System.nanoTime();
 		try {
 			table=conn.getTable(tableName);
 			
@@ -275,33 +654,62 @@ public class HbaseExample {
 			Delete deleteObj=new Delete(rowKey);
 			
 			table.delete(deleteObj);
+			op.record(start, 0, deleteObj.heapSize(), 1);
 		} catch (IOException e) {
-			log.error("ɾ������ʧ��");
-			e.printStackTrace();
+			op.recordError(start);
+			log.error("ɾ������ʧ��", e);
 		}finally{
+			if(rowCache!=null){
+				rowCache.invalidate(rowKey);
+			}
 			if(table!=null){
 				try {
 					table.close();
 				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					log.error("Close table failed ", e);
 				}
 			}
 		}
 		
 	}
 	
+	/**
+	 * 在RegionServer上删除[startRow, stopRow)中满足filter的行，行不经过客户端，每秒最多删除rowsPerSecond行。
+	 * filter为null时删除整个范围；开启加盐时行范围按加盐后的行键计算。表上须已加载BulkDeleteEndpoint，见enableBulkDelete
+	 */
+	public void bulkDeleteData(byte[] startRow, byte[] stopRow, Filter filter, double rowsPerSecond){
+		Scan scan=new Scan(startRow, stopRow);
+		scan.setFilter(filter);
+		BulkDeleteClient client=new BulkDeleteClient(conn, tableName, new BulkDeleteClient.Params().rowsPerSecond(rowsPerSecond));
+		OperationMetrics op=metrics.forOperation(tableName, "bulkDelete");
+		long start=System.nanoTime();
+		try {
+			long rows=0;
+			int calls=0;
+			for(BulkDeleteClient.RegionCount count:client.delete(scan)){
+				log.info(count);
+				rows+=count.getRowsDeleted();
+				calls+=count.getCalls();
+			}
+			op.record(start, 0, 0, calls);
+			log.info("Bulk delete "+rows+" rows successfully.");
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Bulk delete failed, deleted so far: "+client.getCounts(), e);
+		}finally{
+			//删除了哪些行客户端不知道，整个清空
+			if(rowCache!=null){
+				rowCache.clear();
+			}
+		}
+	}
+	
 	/**
 	 * ������������������������֧���޸ģ������޸ģ�ɾ���ɵ��ٴ����µ�
 	 */
 	public void createIndex(){
 		
-		String indexName="index_name";
-		//1.��������ʵ��
-		IndexSpecification indexSpec=new IndexSpecification(indexName);
-		
-		//2.ȷ������Щ�ֶ����洴������
-		indexSpec.addIndexColumn(new HColumnDescriptor("info"),"name", ValueType.String);
+		IndexSpecification indexSpec=nameIndexSpec();
 		
 		//Hbase ֧���ڶ���ֶ��ϴ������������Ǵ�����������ʱ��Ҫָ��ÿ���еĳ���
 //		IndexSpecification indexUnite=new IndexSpecification("index_unite");
@@ -341,8 +749,7 @@ public class HbaseExample {
 			
 			log.info("���������ɹ�");
 		} catch (IOException e) {
-			log.info("��������ʧ��");
-			e.printStackTrace();
+			log.error("��������ʧ��", e);
 		}finally{
 			try {
 				if(admin!=null){
@@ -352,44 +759,150 @@ public class HbaseExample {
 					iAdmin.close();
 				}
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				log.error("Close admin failed ", e);
 			}
 			
 		}
 	}
 	
+	/**
+	 * 在线建索引：不禁用表。索引加到表上、表描述在各Region生效后，新写入的行立即建索引，
+	 * 已有的行由IndexBackfiller按Region并行、限速地补建，只重写表描述生效之前写入的Cell，进度保存在checkpoints中。
+	 * 是否已加过索引看表描述上的标记：中断后用同一个checkpoints再次调用，跳过加索引，从上次保存的位置继续补建；
+	 * 新加索引时先清空checkpoints。
+	 * 需要集群开启在线修改表（hbase.online.schema.update.enable，1.0默认开启）
+	 */
+	public void createIndexOnline(CheckpointStore checkpoints, IndexBackfiller.Params params){
+		IndexSpecification indexSpec=nameIndexSpec();
+		IndexAdmin iAdmin=null;
+		Admin admin=null;
+		OperationMetrics op=metrics.forOperation(tableName, "indexBackfill");
+		long start=System.nanoTime();
+		try {
+			admin=conn.getAdmin();
+			String addedKey=ONLINE_INDEX_KEY_PREFIX+indexSpec.getName();
+			if(admin.getTableDescriptor(tableName).getValue(addedKey)==null){
+				//之前的进度（包括完成标记）属于别的索引或上一次加的索引
+				checkpoints.clear();
+				iAdmin=new IndexAdmin(conf);
+				iAdmin.addIndex(tableName, indexSpec);
+				
+				HTableDescriptor htd=admin.getTableDescriptor(tableName);
+				HColumnDescriptor indexColDesc=new HColumnDescriptor(IndexMasterObserver.DEFAULT_INDEX_COL_DESC);
+				htd.setValue(Constants.INDEX_COL_DESC_BYTES, indexColDesc.toByteArray());
+				htd.setValue(addedKey, String.valueOf(System.currentTimeMillis()));
+				//在线修改，各Region依次重新打开，表不下线
+				admin.modifyTable(tableName, htd);
+				waitForAlter(admin);
+				log.info("Index added online, backfilling existing rows");
+			}else{
+				log.info("Index "+indexSpec.getName()+" already added, resuming backfill from "+checkpoints);
+			}
+			params.rewriteBefore(rewriteBefore(checkpoints));
+			
+			IndexBackfiller.Progress progress=new IndexBackfiller(conn, tableName, params).backfill(indexSpec, checkpoints);
+			op.record(start, 0, 0, 0);
+			log.info("Create index online successfully: "+progress);
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Create index online failed ", e);
+		}finally{
+			try {
+				if(admin!=null){
+					admin.close();
+				}
+				if(iAdmin!=null){
+					iAdmin.close();
+				}
+			} catch (IOException e) {
+				log.error("Close admin failed ", e);
+			}
+		}
+	}
+	
+	/**
+	 * 补建只需重写各Region用上带索引的表描述之前写入的Cell。该时刻在加上索引后第一次调用时确定、保存在checkpoints中，
+	 * 继续补建时沿用；没有保存时取当前时刻，此时表描述已经生效
+	 */
+	private long rewriteBefore(CheckpointStore checkpoints) throws IOException{
+		byte[] saved=checkpoints.load().get(REWRITE_BEFORE_CHECKPOINT);
+		if(saved!=null){
+			return Bytes.toLong(saved);
+		}
+		long rewriteBefore=System.currentTimeMillis()+CLOCK_SKEW_MILLIS;
+		checkpoints.save(REWRITE_BEFORE_CHECKPOINT, Bytes.toBytes(rewriteBefore));
+		return rewriteBefore;
+	}
+	
+	/**
+	 * modifyTable 是异步的，等待所有Region用上新的表描述
+	 */
+	private void waitForAlter(Admin admin) throws IOException{
+		long deadline=System.currentTimeMillis()+ALTER_TIMEOUT_MILLIS;
+		while(true){
+			Pair<Integer, Integer> status=admin.getAlterStatus(tableName);
+			if(status.getFirst()==0){
+				return;
+			}
+			if(System.currentTimeMillis()>deadline){
+				throw new IOException("Timed out altering "+tableName+", "+status.getFirst()+" of "
+						+status.getSecond()+" regions not updated");
+			}
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while altering "+tableName);
+			}
+		}
+	}
+	
+	/**
+	 * info:name 上的单列索引，createIndex 与 scanDataByPlan 共用
+	 */
+	private IndexSpecification nameIndexSpec(){
+		String indexName="index_name";
+		//1.��������ʵ��
+		IndexSpecification indexSpec=new IndexSpecification(indexName);
+		
+		//2.ȷ������Щ�ֶ����洴������
+		indexSpec.addIndexColumn(new HColumnDescriptor("info"),"name", ValueType.String);
+		return indexSpec;
+	}
+	
 	/**
 	 * ���ڶ���������ѯ
 	 */
 	public void scanDataByIndex(){
+		CellLogger cellLogger=new CellLogger();
 		log.info("���ڶ�������ɨ������");
 		
 		Table table=null;
 		ResultScanner resultScanner=null;
+		OperationMetrics op=metrics.forOperation(tableName, "indexScan");
+		long start=System.nanoTime();
 		try {
 			//1.ʵ����tableʵ��
 			table=conn.getTable(tableName);
 			//2.����scan����
 			Scan scan=new Scan();
 			//�����������ϵĹ���������
-			Filter filter=new SingleColumnValueFilter(Bytes.toBytes("info"), Bytes.toBytes("name"), CompareOp.EQUAL, "zhang san".getBytes());
+			//索引协处理器根据索引列上的 SingleColumnValueFilter 选择索引，这里不能改用 PredicateFilter
+			Filter filter=new SingleColumnValueFilter(INFO, NAME, CompareOp.EQUAL, "zhang san".getBytes());
 			scan.setFilter(filter);
+			scan.setScanMetricsEnabled(true);
 			//3.ɨ�����Ķ������ݱ�����ResultScanner������,ÿ��������result�������ʽ�洢��Result�д洢���cell
 			resultScanner= table.getScanner(scan);
 			for(Result result:resultScanner){
-				for(Cell cell:result.rawCells()){
-					log.info(Bytes.toString(CellUtil.cloneRow(cell))+":"
-							+Bytes.toString(CellUtil.cloneFamily(cell))+","
-							+Bytes.toString(CellUtil.cloneQualifier(cell))+","
-							+Bytes.toString(CellUtil.cloneValue(cell)));
-				}
+				Cells.forEach(decode(result), cellLogger);
 			}
 			
+			resultScanner.close();
+			op.recordScan(start, scan);
 			 log.info("Scan data by index successfully.");
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			op.recordError(start);
+			log.error("Scan data by index failed ", e);
 		}finally{
 			if(resultScanner!=null){
 				resultScanner.close();
@@ -406,15 +919,51 @@ public class HbaseExample {
 		
 	}
 	
+	/**
+	 * 由 QueryPlanner 根据采样统计决定走索引还是扫描，条件与 scanDataByIndex 相同
+	 */
+	public void scanDataByPlan(){
+		final CellLogger cellLogger=new CellLogger();
+		final long[] bytes=new long[1];
+		OperationMetrics op=metrics.forOperation(tableName, "planScan");
+		long start=System.nanoTime();
+		try {
+			QueryPlanner planner=queryPlanner();
+			
+			List<ColumnPredicate> predicates=new ArrayList<ColumnPredicate>();
+			predicates.add(ColumnPredicate.column(INFO, NAME, CompareOp.EQUAL, Bytes.toBytes("zhang san")));
+			//只输出姓名和地址，扫描计划只读取这两列
+			List<byte[][]> columns=new ArrayList<byte[][]>();
+			columns.add(new byte[][]{INFO,NAME});
+			columns.add(new byte[][]{INFO,ADRESS});
+			QueryPlan plan=planner.plan(predicates, columns);
+			
+			planner.execute(plan, new ParallelScanner.ResultHandler() {
+				@Override
+				public void onResult(Result r) throws IOException {
+					Cells.forEach(decode(r), cellLogger);
+					bytes[0]+=Result.getTotalSizeOfCells(r);
+				}
+			});
+			op.record(start, bytes[0], 0, 0);
+			log.info("Scan data by plan successfully.");
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Scan data by plan failed ", e);
+		}
+	}
+	
 	/**
 	 * ʹ��Get��������ȡ����
 	 */
 	public void getData(){
 		Table table=null;
 		
-		byte [] rowKey=Bytes.toBytes("2017122602");
-		byte [] familyName=Bytes.toBytes("info");
-		byte [][] qualifier={Bytes.toBytes("name"),Bytes.toBytes("adress")};
+		byte [] rowKey=row("2017122602");
+		byte [] familyName=INFO;
+		byte [][] qualifier={NAME,ADRESS};
+		OperationMetrics op=metrics.forOperation(tableName, "get");
+		long start=System.nanoTime();
 		
 		try {
 			//1.ʵ�����ñ��Ӧ��tableʵ��
@@ -427,20 +976,26 @@ public class HbaseExample {
 			get.addColumn(familyName, qualifier[1]);
 			
 			//4.�ύGet��ѯ������ ,��ѯ����ĸ������ݱ�����Result�С�Result�д洢�˶��Cell�����������Ϣ��
-			Result result = table.get(get);
-			
-			//5.����cell  
-			for(Cell cell:result.rawCells()){
-				 log.info(Bytes.toString(CellUtil.cloneRow(cell)) + ":"
-				            + Bytes.toString(CellUtil.cloneFamily(cell)) + ","
-				            + Bytes.toString(CellUtil.cloneQualifier(cell)) + ","
-				            + Bytes.toString(CellUtil.cloneValue(cell)));
-
+			Result result = rowCache!=null?rowCache.get(get):null;
+			int rpcs=0;
+			if(result==null){
+				//读取前取得版本号，读取期间该行被写入时不缓存旧值
+				long generation=rowCache!=null?rowCache.generation(rowKey):0;
+				result = table.get(get);
+				rpcs=1;
+				if(rowCache!=null){
+					rowCache.put(get, result, generation);
+				}
 			}
+			op.record(start, Result.getTotalSizeOfCells(result), 0, rpcs);
+			
+			//5.映射为UserInfo，只读取请求的列，其余字段为null
+			log.info(UserInfo.SCHEMA.fromResult(decode(result)));
 			log.info("Get data successfully.");
 
 			
 		} catch (IOException e) {
+			op.recordError(start);
 			log.error("get data failed ", e);
 		}finally{
 			try {
@@ -453,42 +1008,186 @@ public class HbaseExample {
 		}
 	}
 	
+	/**
+	 * 批量Get：按RegionServer分组并行查询多行，结果按输入顺序返回
+	 */
+	public void batchGetData(){
+		CellLogger cellLogger=new CellLogger();
+		byte [] familyName=INFO;
+		byte [][] qualifier={NAME,ADRESS};
+		List<Get> gets=new ArrayList<Get>();
+		for(int i=1;i<=6;i++){
+			Get get=new Get(row("201712260"+i));
+			get.addColumn(familyName, qualifier[0]);
+			get.addColumn(familyName, qualifier[1]);
+			gets.add(get);
+		}
+		
+		BatchGetter getter=new BatchGetter(conn, tableName, 8);
+		OperationMetrics op=metrics.forOperation(tableName, "batchGet");
+		long start=System.nanoTime();
+		try {
+			BatchGetter.BatchGetResult result=getter.get(gets, 5, TimeUnit.SECONDS);
+			long bytes=0;
+			int failures=0;
+			for(int i=0;i<gets.size();i++){
+				if(result.getFailure(i)!=null){
+					failures++;
+					log.error("Get failed for row "+Bytes.toStringBinary(gets.get(i).getRow()), result.getFailure(i));
+				}else{
+					bytes+=Result.getTotalSizeOfCells(result.getResult(i));
+					Cells.forEach(decode(result.getResult(i)), cellLogger);
+				}
+			}
+			if(failures>0){
+				op.recordError(start);
+			}else{
+				op.record(start, bytes, 0, 1);
+			}
+			log.info("Batch get data successfully.");
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Batch get data failed ", e);
+		}finally{
+			getter.close();
+		}
+	}
+	
+	/**
+	 * getData 的非阻塞版本：立即返回，查询结果在 Future 完成时输出
+	 */
+	public CompletableFuture<Result> getDataAsync(){
+		final CellLogger cellLogger=new CellLogger();
+		final Get get=new Get(row("2017122602"));
+		get.addColumn(INFO, NAME);
+		get.addColumn(INFO, ADRESS);
+		
+		Result cached=rowCache!=null?rowCache.get(get):null;
+		final long generation=rowCache!=null?rowCache.generation(get.getRow()):0;
+		CompletableFuture<Result> future=cached!=null?CompletableFuture.completedFuture(cached):asyncClient().get(get);
+		return future.thenApply(result->{
+			if(cached==null&&rowCache!=null){
+				rowCache.put(get, result, generation);
+			}
+			Result decoded=decode(result);
+			try {
+				Cells.forEach(decoded, cellLogger);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+			log.info("Get data async successfully.");
+			return decoded;
+		}).whenComplete((result,e)->{
+			if(e!=null){
+				log.error("Get data async failed ", e);
+			}
+		});
+	}
+	
+	/**
+	 * putData 的非阻塞版本，写入完成（无论成败）后失效读缓存
+	 */
+	public CompletableFuture<Void> putDataAsync(){
+		final List<Put> puts=buildSamplePuts();
+		return asyncClient().put(puts).whenComplete((v,e)->{
+			invalidateRows(puts);
+			if(e!=null){
+				log.error("Put data async failed ", e);
+			}else{
+				log.info("Put data async successfully.");
+			}
+		});
+	}
+	
+	/**
+	 * scanData 的非阻塞版本：每处理完一批再请求下一批，客户端最多缓存一批结果。Future 的值为行数。
+	 * 加盐时各桶的结果不按原行键排序
+	 */
+	public CompletableFuture<Long> scanDataAsync(){
+		final int batch=1000;
+		final CellLogger cellLogger=new CellLogger();
+		final CompletableFuture<Long> rows=new CompletableFuture<Long>();
+		Scan scan=new Scan();
+		scan.addColumn(INFO, NAME);
+		scan.addColumn(INFO, AGE);
+		scan.setCaching(batch);
+		scan.setScanMetricsEnabled(true);
+		
+		asyncClient().scan(scan, new AsyncHbaseClient.ScanObserver() {
+			private AsyncHbaseClient.ScanSubscription subscription;
+			private long count=0;
+			
+			@Override
+			public void onStart(AsyncHbaseClient.ScanSubscription subscription) {
+				this.subscription=subscription;
+				subscription.request(batch);
+			}
+			
+			@Override
+			public void onNext(Result result) throws IOException {
+				Cells.forEach(decode(result), cellLogger);
+				if(++count%batch==0){
+					subscription.request(batch);
+				}
+			}
+			
+			@Override
+			public void onError(Throwable error) {
+				log.error("Scan data async failed ", error);
+				rows.completeExceptionally(error);
+			}
+			
+			@Override
+			public void onComplete() {
+				log.info("Scan data async successfully, rows: "+count);
+				rows.complete(count);
+			}
+		});
+		return rows;
+	}
+	
 	/**
 	 * ͨ��Scan ������ɨ���ȡ����
 	 */
 	public void scanData(){
+		CellLogger cellLogger=new CellLogger();
 		Table table=null;
 		ResultScanner resultScanner=null;
+		OperationMetrics op=metrics.forOperation(tableName, "scan");
+		long start=System.nanoTime();
 		try {
 			//1.ʵ����table����
 			table =conn.getTable(tableName);
 			//2.ʵ����scan ����
 			Scan scan=new Scan();
 			//3.����scan �����ѯ����
-			scan.addColumn(Bytes.toBytes("info"), Bytes.toBytes("name"));
-			scan.addColumn(Bytes.toBytes("info"), Bytes.toBytes("age"));
+			scan.addColumn(INFO, NAME);
+			scan.addColumn(INFO, AGE);
 			
 			//4.��������Batch��Caching ����
 			//batch:ʹ��scan����next�ӿ�ÿ����󷵻صļ�¼������һ�ζ�ȡ�������
 			//caching:һ��RPC��ѯ�������ķ��ص�next��Ŀ����һ��RPC��ȡ�������й�
 			scan.setCaching(1000);
+			scan.setScanMetricsEnabled(true);
+			//AdaptiveScanner 以此为初始值，再按实测的行大小和 RPC 耗时调整 caching，maxResultSize 限制单次 RPC 的数据量
 			
 			//5.�ύscan ��ѯ����  ,ɨ�����Ķ������ݱ�����ResultScanner������,ÿ��������result�������ʽ�洢��Result�д洢���cell
-			resultScanner =table.getScanner(scan);
+			ResultScanner delegate=keyCodec!=null?new SaltedScanner(table, scan, keyCodec):new AdaptiveScanner(table, scan);
+			//后台线程预读下一批，输出当前批时下一批的RPC同时进行
+			resultScanner =new PrefetchingScanner(delegate, 2*scan.getCaching());
 			
 			//6.������ӡ
 			for(Result r=resultScanner.next();r!=null;r=resultScanner.next()){
-				for(Cell cell:r.rawCells()){
-					  log.info(Bytes.toString(CellUtil.cloneRow(cell)) + ":"
-				              + Bytes.toString(CellUtil.cloneFamily(cell)) + ","
-				              + Bytes.toString(CellUtil.cloneQualifier(cell)) + ","
-				              + Bytes.toString(CellUtil.cloneValue(cell)));
-				}
+				Cells.forEach(r, cellLogger);
 				
 			}
 			
+			//ScanMetrics 在扫描器关闭时才写入 scan
+			resultScanner.close();
+			op.recordScan(start, scan);
 			 log.info("Scan data successfully.");
 		} catch (IOException e) {
+			op.recordError(start);
 			log.error("Scan data failed ", e);
 		}finally{
 			if(resultScanner!=null){
@@ -504,47 +1203,108 @@ public class HbaseExample {
 		}
 	}
 	
+	/**
+	 * 增量读取：只输出上次调用以来 info 列族的变更，删除以 tombstone 输出。各 Region 的高水位保存在 checkpoints 中，
+	 * 第一次调用时输出全部数据。代替下游反复调用 scanData 再比较结果
+	 */
+	public void scanChanges(CheckpointStore checkpoints){
+		final CellLogger cellLogger=new CellLogger();
+		OperationMetrics op=metrics.forOperation(tableName, "changeCapture");
+		long start=System.nanoTime();
+		try {
+			ChangeCapture capture=new ChangeCapture(conn, tableName, new ChangeCapture.Params().addFamily(INFO));
+			ChangeCapture.Progress progress=capture.poll(new ChangeCapture.Listener() {
+				@Override
+				public synchronized void onChange(Cell cell, boolean tombstone) {
+					if(tombstone){
+						log.info("Tombstone "+cell);
+					}else{
+						cellLogger.visit(cell);
+					}
+				}
+			}, checkpoints);
+			op.record(start, 0, 0, progress.getRegions());
+			log.info("Scan changes successfully: "+progress);
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Scan changes failed ", e);
+		}
+	}
+	
+	/**
+	 * 按 Region 并行扫描，查询条件与 scanData 相同，结果按行键顺序输出。
+	 * 加盐时各桶的结果不按原行键排序，ParallelScanner 不支持在加盐表上有序归并
+	 */
+	public void parallelScanData(){
+		final CellLogger cellLogger=new CellLogger();
+		final long[] bytes=new long[1];
+		ParallelScanner scanner=null;
+		OperationMetrics op=metrics.forOperation(tableName, "parallelScan");
+		long start=System.nanoTime();
+		try {
+			Scan scan=new Scan();
+			scan.addColumn(INFO, NAME);
+			scan.addColumn(INFO, AGE);
+			scan.setCaching(1000);
+			
+			scanner=new ParallelScanner(conn, tableName, 8, 2);
+			//扫描线程中已还原原行键
+			scanner.setKeyCodec(keyCodec);
+			ParallelScanner.MergeMode mode=keyCodec!=null?ParallelScanner.MergeMode.UNORDERED:ParallelScanner.MergeMode.ORDERED;
+			long rows=scanner.scan(scan, mode, new ParallelScanner.ResultHandler() {
+				@Override
+				public void onResult(Result r) throws IOException {
+					Cells.forEach(r, cellLogger);
+					bytes[0]+=Result.getTotalSizeOfCells(r);
+				}
+			});
+			op.record(start, bytes[0], 0, 0);
+			log.info("Parallel scan data successfully, rows: "+rows);
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Parallel scan data failed ", e);
+		}finally{
+			if(scanner!=null){
+				scanner.close();
+			}
+		}
+	}
+	
 	/**
 	 * filter:��Ҫ����Scan��Get�����н������ݹ��ˣ�
 	 */
 	public void valueFilter(){
+		CellLogger cellLogger=new CellLogger();
 		Table table=null;
 		ResultScanner resultScanner=null;
+		OperationMetrics op=metrics.forOperation(tableName, "filterScan");
+		long start=System.nanoTime();
 		try {
 			//1.ʵ����table����
 			table=conn.getTable(tableName);
-			//2.����scan����
-			Scan scan=new Scan();
-			//3.��Ӳ��ҵ���
-			scan.addColumn(Bytes.toBytes("info"), Bytes.toBytes("name"));
-			scan.addColumn(Bytes.toBytes("info"), Bytes.toBytes("sex"));
-			
-			//4.����һ��������
-			SingleColumnValueFilter filter=new SingleColumnValueFilter(Bytes.toBytes("info"), Bytes.toBytes("sex"),
-					CompareOp.EQUAL, Bytes.toBytes("F"));
-			
-			//���߶���������������ϵΪand��
-//			FilterList filterList=new FilterList(Operator.MUST_PASS_ALL);
-//			filterList.addFilter(filter);
-//			scan.setFilter(filterList);
-			//5.���ù�����
-			scan.setFilter(filter);
+			//2.创建scan对象：只读取 name、sex，条件 sex=F 编译为内置的 SingleColumnValueFilter，RegionServer上不需要部署额外的jar
+			Scan scan=PredicateCompiler.compile(Predicate.column(INFO, SEX).eq(Bytes.toBytes("F")), INFO, NAME, SEX);
+			
+			//多个条件用 and/or/not 组合，如 sex=F 且 age 在 [20, 30) 且 adress 不是 wuhan、nanjing。
+			//age、adress 不在返回的列中，需要在服务端判断后丢弃，编译为 PredicateFilter，须先按该类的说明部署到每个RegionServer：
+//			Predicate where=Predicate.and(
+//					Predicate.column(INFO, SEX).eq(Bytes.toBytes("F")),
+//					Predicate.column(INFO, AGE).range(Bytes.toBytes("20"), Bytes.toBytes("30")),
+//					Predicate.not(Predicate.column(INFO, ADRESS).in(Bytes.toBytes("wuhan"), Bytes.toBytes("nanjing"))));
+			scan.setScanMetricsEnabled(true);
 			
 			//6.�ύscan ��ѯ
 			resultScanner=table.getScanner(scan);
 			
 			//7.ѭ������resultScanner
 			for(Result r=resultScanner.next();r!=null;r=resultScanner.next()){
-				for(Cell cell:r.rawCells()){
-			          log.info(Bytes.toString(CellUtil.cloneRow(cell)) + ":"
-			                  + Bytes.toString(CellUtil.cloneFamily(cell)) + ","
-			                  + Bytes.toString(CellUtil.cloneQualifier(cell)) + ","
-			                  + Bytes.toString(CellUtil.cloneValue(cell)));
-				}
+				Cells.forEach(decode(r), cellLogger);
 			}
-			
+			resultScanner.close();
+			op.recordScan(start, scan);
 			
 		} catch (IOException e) {
+			op.recordError(start);
 			log.error("Scan data failed ", e);
 		}finally{
 			if(resultScanner!=null){
@@ -561,6 +1321,80 @@ public class HbaseExample {
 		}
 	}
 	
+	/**
+	 * 与 valueFilter 相同的条件（sex=F），在各 Region 内按 adress 分组统计人数和年龄，只返回每组的统计结果。
+	 * 表上没有加载 GroupAggregateEndpoint 时退回到客户端聚合
+	 */
+	public void aggregateData(){
+		GroupAggregateClient client=new GroupAggregateClient(conn, tableName);
+		Scan scan=new Scan();
+		scan.addColumn(INFO, SEX);
+		scan.setFilter(new SingleColumnValueFilter(INFO, SEX, CompareOp.EQUAL, Bytes.toBytes("F")));
+		GroupAggregateClient.Request request=new GroupAggregateClient.Request()
+				.groupBy(INFO, ADRESS)
+				.column(INFO, AGE, GroupAggregateProtos.ValueType.DECIMAL);
+		OperationMetrics op=metrics.forOperation(tableName, "aggregate");
+		long start=System.nanoTime();
+		try {
+			List<GroupAggregateClient.Group> groups;
+			try {
+				groups=client.aggregate(scan, request);
+			} catch (GroupAggregateClient.EndpointNotLoadedException e) {
+				log.warn(e.getMessage()+", aggregating on client");
+				groups=client.aggregateOnClient(scan, request);
+			}
+			op.record(start, 0, 0, 1);
+			for(GroupAggregateClient.Group group:groups){
+				log.info(group);
+			}
+			log.info("Aggregate data successfully.");
+		} catch (IOException e) {
+			op.recordError(start);
+			log.error("Aggregate data failed ", e);
+		}
+	}
+	
+	/**
+	 * 在表上加载 GroupAggregateEndpoint，jarPath 为 null 时该类须已在 RegionServer 的 classpath 中
+	 */
+	public void enableAggregation(Path jarPath){
+		enableEndpoint(GroupAggregateEndpoint.class, jarPath);
+	}
+	
+	/**
+	 * 在表上加载 BulkDeleteEndpoint，jarPath 为 null 时该类须已在 RegionServer 的 classpath 中
+	 */
+	public void enableBulkDelete(Path jarPath){
+		enableEndpoint(BulkDeleteEndpoint.class, jarPath);
+	}
+	
+	private void enableEndpoint(Class<? extends Coprocessor> endpoint, Path jarPath){
+		Admin admin=null;
+		try {
+			admin=conn.getAdmin();
+			HTableDescriptor htd=admin.getTableDescriptor(tableName);
+			if(htd.hasCoprocessor(endpoint.getName())){
+				log.info(endpoint.getSimpleName()+" already loaded on "+tableName);
+				return;
+			}
+			htd.addCoprocessor(endpoint.getName(), jarPath, Coprocessor.PRIORITY_USER, null);
+			admin.disableTable(tableName);
+			admin.modifyTable(tableName, htd);
+			admin.enableTable(tableName);
+			log.info("Enable "+endpoint.getSimpleName()+" successfully.");
+		} catch (IOException e) {
+			log.error("Enable "+endpoint.getSimpleName()+" failed ", e);
+		}finally{
+			try {
+				if(admin!=null){
+					admin.close();
+				}
+			} catch (IOException e) {
+				log.error("Close admin failed ", e);
+			}
+		}
+	}
+	
 	/**
 	 * �޸ı��������
 	 */
@@ -589,8 +1423,42 @@ public class HbaseExample {
 					admin.close();
 				}
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				log.error("Close admin failed ", e);
+			}
+		}
+	}
+	
+	/**
+	 * 按访问方式修改表中所有列族的布隆过滤器、块大小和块缓存设置，已经符合的列族不修改
+	 */
+	public void modifyTable(WorkloadProfile profile){
+		Admin admin=null;
+		try {
+			admin=conn.getAdmin();
+			HTableDescriptor htd=admin.getTableDescriptor(tableName);
+			boolean changed=false;
+			for(HColumnDescriptor hcd:htd.getColumnFamilies()){
+				HColumnDescriptor tuned=profile.applyTo(new HColumnDescriptor(hcd));
+				if(!tuned.equals(hcd)){
+					htd.modifyFamily(tuned);
+					changed=true;
+				}
+			}
+			if(changed){
+				admin.disableTable(tableName);
+				admin.modifyTable(tableName, htd);
+				admin.enableTable(tableName);
+			}
+			log.info("Modify table to "+profile+" successfully.");
+		} catch (IOException e) {
+			log.error("Modify table failed ", e);
+		}finally{
+			try {
+				if(admin!=null){
+					admin.close();
+				}
+			} catch (IOException e) {
+				log.error("Close admin failed ", e);
 			}
 		}
 	}
@@ -607,8 +1475,7 @@ public class HbaseExample {
 			//ɾ����������
 			iAdmin.dropIndex(tableName, "index_name");
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			log.error("Drop index failed ", e);
 		}finally{
 			try {
 				if(iAdmin!=null){
@@ -628,6 +1495,8 @@ public class HbaseExample {
 	    ResultScanner scanner = null;
 	    Table table = null;
 	    Admin admin = null;
+	    OperationMetrics op = null;
+	    long start = 0;
 	    try {
 
 	      //ʵ����table
@@ -635,16 +1504,31 @@ public class HbaseExample {
 	      admin = conn.getAdmin();
 	      admin.flush(table.getName());
 	      
-	      Scan scan = new Scan();
+	      // 只取各值的大小，RegionServer 不读取 MOB 文件
+	      MobReader mobReader = new MobReader(conn, tableName);
+	      Scan scan = MobReader.referenceScan(new Scan().addColumn(MOB_FAMILY, MOB_QUALIFIER));
+	      scan.setScanMetricsEnabled(true);
+	      // flush 不计入读耗时
+	      op = metrics.forOperation(tableName, "mobScan");
+	      start = System.nanoTime();
 	      // get table scanner
 	      scanner = table.getScanner(scan);
 	      for (Result result : scanner) {
-	        byte[] value = result.getValue(Bytes.toBytes("mobcf"), Bytes.toBytes("cf1"));
-	        String string = Bytes.toString(value);
-	        log.info("value:" + string);
+	        MobValueRef ref = mobReader.reference(result, MOB_FAMILY, MOB_QUALIFIER);
+	        // 只读取并打印较小的值，大的值只打印大小
+	        if (ref.getSize() <= MAX_LOGGED_MOB_VALUE) {
+	          log.info("value:" + Bytes.toString(Bytes.getBytes(ref.read())));
+	        } else {
+	          log.info("value:" + ref);
+	        }
 	      }
+	      scanner.close();
+	      op.recordScan(start, scan);
 	      log.info("MOB data read successfully.");
 	    } catch (Exception e) {
+	      if (op != null) {
+	        op.recordError(start);
+	      }
 	      log.error("MOB data read failed ", e);
 	    } finally {
 	      if (scanner != null) {
@@ -677,6 +1561,8 @@ public class HbaseExample {
 	    log.info("Entering testMOBDataInsertion.");
 
 	    Table table = null;
+	    OperationMetrics op = metrics.forOperation(tableName, "mobPut");
+	    long start = System.nanoTime();
 	    try {
 	      // ��������
 	      Put p = new Put(Bytes.toBytes("row"));
@@ -688,9 +1574,11 @@ public class HbaseExample {
 	      table = conn.getTable(tableName);
 	      // ������
 	      table.put(p);
+	      op.record(start, 0, p.heapSize(), 1);
 	      log.info("MOB data inserted successfully.");
 
 	    } catch (Exception e) {
+	      op.recordError(start);
 	      log.error("MOB data inserted failed ", e);
 	    } finally {
 	      if (table != null) {
@@ -742,4 +1630,18 @@ public class HbaseExample {
 	    log.info("Exiting testCreateMOBTable.");
 	  }
 	
+	/**
+	 * 按 "row:family,qualifier,value" 格式输出 Cell，复用缓冲区，不调用 CellUtil.clone*
+	 */
+	private static final class CellLogger implements CellVisitor {
+		private final StringBuilder sb=new StringBuilder();
+		private final Utf8Decoder decoder=new Utf8Decoder();
+		
+		@Override
+		public void visit(Cell cell) {
+			if(log.isInfoEnabled()){
+				log.info(Cells.format(sb, decoder, cell).toString());
+			}
+		}
+	}
 }
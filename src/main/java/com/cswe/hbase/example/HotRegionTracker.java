@@ -0,0 +1,329 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 在客户端按 Region 统计写入：最近一段时间的写入行数及其占比、每行的平均延迟和失败次数，
+ * 并对每个 Region 的行键抽样，用于给写入集中的 Region 计算拆分点。
+ * <p>
+ * 计数按半衰期指数衰减，反映的是最近的负载。占比超过平均值 hotFactor 倍的 Region 为热点，
+ * 每行延迟超过各 Region 中位数 slowFactor 倍的为慢 Region。与 {@link SplitPlanner#report} 不同，
+ * 这里统计的是本客户端实际发出的写入，不需要等 RegionServer 的心跳上报。线程安全。
+ */
+public class HotRegionTracker {
+
+	/** 每个 Region 保留的行键样本数 */
+	private static final int SAMPLES_PER_REGION = 128;
+
+	public static class Params {
+		private long halfLifeMillis = 10000;
+		private double hotFactor = 2.0;
+		private double slowFactor = 3.0;
+		private long minRows = 1000;
+
+		public long getHalfLifeMillis() {
+			return halfLifeMillis;
+		}
+
+		/** 计数衰减一半的时长 */
+		public Params halfLifeMillis(long halfLifeMillis) {
+			this.halfLifeMillis = halfLifeMillis;
+			return this;
+		}
+
+		public double getHotFactor() {
+			return hotFactor;
+		}
+
+		/** 写入占比超过平均占比的该倍数时为热点 */
+		public Params hotFactor(double hotFactor) {
+			this.hotFactor = hotFactor;
+			return this;
+		}
+
+		public double getSlowFactor() {
+			return slowFactor;
+		}
+
+		/** 每行延迟超过各 Region 中位数的该倍数时为慢 Region */
+		public Params slowFactor(double slowFactor) {
+			this.slowFactor = slowFactor;
+			return this;
+		}
+
+		public long getMinRows() {
+			return minRows;
+		}
+
+		/** 衰减后的写入行数少于该值的 Region 不判定为热点或慢 Region，避免刚开始时误判 */
+		public Params minRows(long minRows) {
+			this.minRows = minRows;
+			return this;
+		}
+	}
+
+	/**
+	 * 一个 Region 的统计快照
+	 */
+	public static final class RegionStat {
+		private final HRegionInfo region;
+		private final ServerName server;
+		private final double rows;
+		private final double share;
+		private final double nanosPerRow;
+		private final long failures;
+		private final boolean hot;
+		private final boolean slow;
+		private final byte[] splitPoint;
+
+		RegionStat(HRegionInfo region, ServerName server, double rows, double share, double nanosPerRow,
+				long failures, boolean hot, boolean slow, byte[] splitPoint) {
+			this.region = region;
+			this.server = server;
+			this.rows = rows;
+			this.share = share;
+			this.nanosPerRow = nanosPerRow;
+			this.failures = failures;
+			this.hot = hot;
+			this.slow = slow;
+			this.splitPoint = splitPoint;
+		}
+
+		public HRegionInfo getRegion() {
+			return region;
+		}
+
+		public ServerName getServer() {
+			return server;
+		}
+
+		/**
+		 * 衰减后的写入行数
+		 */
+		public double getRows() {
+			return rows;
+		}
+
+		/**
+		 * 占所有 Region 写入行数的比例
+		 */
+		public double getShare() {
+			return share;
+		}
+
+		/**
+		 * 每行的平均写入延迟（毫秒），按写入批次的耗时除以行数计算
+		 */
+		public double getMillisPerRow() {
+			return nanosPerRow / 1e6;
+		}
+
+		/**
+		 * 失败的批次数，不衰减
+		 */
+		public long getFailures() {
+			return failures;
+		}
+
+		public boolean isHot() {
+			return hot;
+		}
+
+		public boolean isSlow() {
+			return slow;
+		}
+
+		/**
+		 * 按样本的中位数拆分的行键，样本不足或都等于起始行时为 null
+		 */
+		public byte[] getSplitPoint() {
+			return splitPoint;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s on %s share=%.1f%% rows=%.0f %.3fms/row failures=%d%s%s split=%s",
+					region.getEncodedName(), server == null ? "-" : server.getHostAndPort(), share * 100, rows,
+					getMillisPerRow(), failures, hot ? " HOT" : "", slow ? " SLOW" : "",
+					splitPoint == null ? "-" : Bytes.toStringBinary(splitPoint));
+		}
+	}
+
+	/**
+	 * 一个 Region 的累计值，由 tracker 的锁保护
+	 */
+	private static final class Counter {
+		HRegionInfo region;
+		ServerName server;
+		double rows;
+		double nanos;
+		long lastNanos;
+		long failures;
+		final List<byte[]> samples = new ArrayList<byte[]>(SAMPLES_PER_REGION);
+		long sampled;
+
+		Counter(HRegionInfo region, ServerName server, long now) {
+			this.region = region;
+			this.server = server;
+			this.lastNanos = now;
+		}
+
+		void decay(long now, double halfLifeNanos) {
+			if (now > lastNanos) {
+				double w = Math.pow(0.5, (now - lastNanos) / halfLifeNanos);
+				rows *= w;
+				nanos *= w;
+				lastNanos = now;
+			}
+		}
+	}
+
+	private final Params params;
+	private final Map<String, Counter> counters = new HashMap<String, Counter>();
+	private final Random random = new Random();
+
+	public HotRegionTracker(Params params) {
+		this.params = params;
+	}
+
+	/**
+	 * 登记表的全部 Region。没有写入的 Region 也计入平均占比，否则只写了两个 Region 时看不出集中。
+	 * Region 分裂或移动后再次调用，已经不存在的 Region 被移除
+	 */
+	public synchronized void register(List<HRegionLocation> locations) {
+		long now = System.nanoTime();
+		Map<String, Counter> current = new HashMap<String, Counter>();
+		for (HRegionLocation location : locations) {
+			String name = location.getRegionInfo().getEncodedName();
+			Counter counter = counters.get(name);
+			if (counter == null) {
+				counter = new Counter(location.getRegionInfo(), location.getServerName(), now);
+			}
+			counter.server = location.getServerName();
+			current.put(name, counter);
+		}
+		counters.clear();
+		counters.putAll(current);
+	}
+
+	/**
+	 * 记录一批发往 location 的写入
+	 *
+	 * @param rows 这一批的行键
+	 * @param elapsedNanos 这一批的耗时
+	 * @param failed 这一批是否失败
+	 */
+	public synchronized void record(HRegionLocation location, List<byte[]> rows, long elapsedNanos, boolean failed) {
+		long now = System.nanoTime();
+		String name = location.getRegionInfo().getEncodedName();
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counter = new Counter(location.getRegionInfo(), location.getServerName(), now);
+			counters.put(name, counter);
+		}
+		counter.server = location.getServerName();
+		counter.decay(now, params.getHalfLifeMillis() * 1e6);
+		if (failed) {
+			counter.failures++;
+			return;
+		}
+		counter.rows += rows.size();
+		counter.nanos += elapsedNanos;
+		// 水库抽样，样本是 Region 内所有写入行的均匀抽样
+		for (byte[] row : rows) {
+			counter.sampled++;
+			if (counter.samples.size() < SAMPLES_PER_REGION) {
+				counter.samples.add(row);
+			} else {
+				long j = (long) (random.nextDouble() * counter.sampled);
+				if (j < SAMPLES_PER_REGION) {
+					counter.samples.set((int) j, row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 当前各 Region 的统计，按写入占比从高到低排列
+	 */
+	public synchronized List<RegionStat> getStats() {
+		long now = System.nanoTime();
+		double total = 0;
+		List<Double> perRow = new ArrayList<Double>();
+		for (Counter c : counters.values()) {
+			c.decay(now, params.getHalfLifeMillis() * 1e6);
+			total += c.rows;
+			if (c.rows >= params.getMinRows()) {
+				perRow.add(c.nanos / c.rows);
+			}
+		}
+		Collections.sort(perRow);
+		double median = perRow.isEmpty() ? 0 : perRow.get(perRow.size() / 2);
+		double fairShare = counters.isEmpty() ? 0 : 1.0 / counters.size();
+
+		List<RegionStat> stats = new ArrayList<RegionStat>(counters.size());
+		for (Counter c : counters.values()) {
+			double share = total == 0 ? 0 : c.rows / total;
+			double nanosPerRow = c.rows == 0 ? 0 : c.nanos / c.rows;
+			boolean enough = c.rows >= params.getMinRows();
+			// 只有一个 Region 时没有可比较的对象
+			boolean hot = enough && counters.size() > 1 && share > params.getHotFactor() * fairShare;
+			boolean slow = enough && perRow.size() > 1 && nanosPerRow > params.getSlowFactor() * median;
+			stats.add(new RegionStat(c.region, c.server, c.rows, share, nanosPerRow, c.failures, hot, slow,
+					splitPoint(c.region, c.samples)));
+		}
+		Collections.sort(stats, new Comparator<RegionStat>() {
+			@Override
+			public int compare(RegionStat a, RegionStat b) {
+				return Double.compare(b.getShare(), a.getShare());
+			}
+		});
+		return stats;
+	}
+
+	/**
+	 * 热点或慢 Region 的拆分点，按行键排序，可直接交给 {@link SplitPlanner#split}
+	 */
+	public byte[][] hotSplitPoints() {
+		List<byte[]> points = new ArrayList<byte[]>();
+		for (RegionStat stat : getStats()) {
+			if ((stat.isHot() || stat.isSlow()) && stat.getSplitPoint() != null) {
+				points.add(stat.getSplitPoint());
+			}
+		}
+		byte[][] sorted = points.toArray(new byte[points.size()][]);
+		Arrays.sort(sorted, Bytes.BYTES_COMPARATOR);
+		return sorted;
+	}
+
+	/**
+	 * 样本的中位数，须严格位于 Region 内部，否则拆不出两个非空的 Region
+	 */
+	static byte[] splitPoint(HRegionInfo region, List<byte[]> samples) {
+		if (samples.size() < 2) {
+			return null;
+		}
+		List<byte[]> sorted = new ArrayList<byte[]>(samples);
+		Collections.sort(sorted, Bytes.BYTES_COMPARATOR);
+		for (int i = sorted.size() / 2; i < sorted.size(); i++) {
+			byte[] point = sorted.get(i);
+			if (Bytes.compareTo(point, region.getStartKey()) > 0
+					&& (region.getEndKey().length == 0 || Bytes.compareTo(point, region.getEndKey()) < 0)) {
+				return point;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,388 @@
+package com.cswe.hbase.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.index.ColumnQualifier;
+import org.apache.hadoop.hbase.index.IndexSpecification;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 在线补建二级索引：表保持可用，已有的行按 Region 并行、限速地重写索引列，由索引协处理器为其生成索引。
+ * <p>
+ * 调用前索引已经用 IndexAdmin.addIndex 加到表上、表描述已经生效，之后写入的行由协处理器直接建索引。
+ * 补建只读取索引列的最新版本，用原来的时间戳和值重新 Put：数据不变，重写是幂等的。
+ * 与前台更新并发时可能为刚被覆盖的旧值多写一条索引，查询时 Scan 上的过滤器仍作用于数据行，不影响结果。
+ * <p>
+ * 进度按 Region 保存到 {@link CheckpointStore}：Region 的起止行、已补建到的行、是否完成，每批写入成功后保存。
+ * 检查点以起止行命名，分裂出的子 Region 不会覆盖父 Region 的检查点。重启后对每个 Region 查找覆盖其起始行的检查点，
+ * 从记录的行之后继续；Region 分裂或合并后对不上的部分从头补建。全部完成后各 Region 的检查点换成一个完成标记。
+ * <p>
+ * 限速对所有 Region 共用，按扫描的行数计算，不需要重写的行同样计入。等待发生在两次 next 之间，
+ * batchRows 除以每秒行数应远小于扫描器租约（hbase.client.scanner.timeout.period）。
+ */
+public class IndexBackfiller {
+
+	private final static Log log = LogFactory.getLog(IndexBackfiller.class);
+
+	/**
+	 * batchRows 为每批扫描的行数，也是 Scan 的 caching；每批写入后保存一次进度，默认 500
+	 */
+	public static class Params extends RegionTasks.Params<Params> {
+		private double rowsPerSecond = 10000;
+		private long rewriteBefore = Long.MAX_VALUE;
+
+		public Params() {
+			super(500);
+		}
+
+		public double getRowsPerSecond() {
+			return rowsPerSecond;
+		}
+
+		/** 所有 Region 合计每秒扫描的行数上限，Double.POSITIVE_INFINITY 为不限速 */
+		public Params rowsPerSecond(double rowsPerSecond) {
+			this.rowsPerSecond = rowsPerSecond;
+			return this;
+		}
+
+		public long getRewriteBefore() {
+			return rewriteBefore;
+		}
+
+		/**
+		 * 只重写时间戳早于该值的 Cell，之后的写入已由协处理器建了索引。取各 Region 用上带索引的表描述之后的时刻；
+		 * 时间戳由 RegionServer 的时钟生成，时钟偏快的 Server 之前写入的 Cell 时间戳可能更晚，应再加上时钟偏差的余量。
+		 * 默认全部重写
+		 */
+		public Params rewriteBefore(long rewriteBefore) {
+			this.rewriteBefore = rewriteBefore;
+			return this;
+		}
+	}
+
+	/**
+	 * 补建进度，运行中可以在其它线程读取。已完成的 Region 数包括之前运行时已完成的
+	 */
+	public static final class Progress extends RegionTasks.Progress {
+		private final AtomicLong rowsScanned = new AtomicLong();
+		private final AtomicLong rowsWritten = new AtomicLong();
+		private final AtomicLong throttledNanos = new AtomicLong();
+
+		Progress(int regions) {
+			super(regions);
+		}
+
+		/** 本次运行扫描的行数 */
+		public long getRowsScanned() {
+			return rowsScanned.get();
+		}
+
+		/** 本次运行重写的行数 */
+		public long getRowsWritten() {
+			return rowsWritten.get();
+		}
+
+		/** 各线程因限速等待的总时间 */
+		public long getThrottledNanos() {
+			return throttledNanos.get();
+		}
+
+		/** 每秒扫描的行数 */
+		public double getRowsPerSecond() {
+			long elapsed = getElapsedNanos();
+			return elapsed == 0 ? 0 : rowsScanned.get() * 1e9 / elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("regions %d/%d, scanned %d rows, rewrote %d rows, %.0f rows/s, throttled %dms",
+					getRegionsDone(), getRegions(), rowsScanned.get(), rowsWritten.get(), getRowsPerSecond(),
+					throttledNanos.get() / 1000000);
+		}
+	}
+
+	/** 全部 Region 完成后保存的标记，值为完成时刻 */
+	static final String COMPLETE = "complete";
+
+	/**
+	 * 一个 Region 的进度
+	 */
+	static final class Checkpoint {
+		final byte[] startKey;
+		final byte[] endKey;
+		/** 已补建到的行，包含该行；null 表示还没有开始 */
+		final byte[] lastRow;
+		final boolean done;
+
+		Checkpoint(byte[] startKey, byte[] endKey, byte[] lastRow, boolean done) {
+			this.startKey = startKey;
+			this.endKey = endKey;
+			this.lastRow = lastRow;
+			this.done = done;
+		}
+
+		String name() {
+			return RegionTasks.checkpointName(startKey, endKey);
+		}
+
+		byte[] encode() {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			try {
+				out.writeBoolean(done);
+				Bytes.writeByteArray(out, startKey);
+				Bytes.writeByteArray(out, endKey);
+				out.writeBoolean(lastRow != null);
+				if (lastRow != null) {
+					Bytes.writeByteArray(out, lastRow);
+				}
+				out.close();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return bytes.toByteArray();
+		}
+
+		static Checkpoint decode(byte[] value) throws IOException {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+			boolean done = in.readBoolean();
+			byte[] startKey = Bytes.readByteArray(in);
+			byte[] endKey = Bytes.readByteArray(in);
+			byte[] lastRow = in.readBoolean() ? Bytes.readByteArray(in) : null;
+			return new Checkpoint(startKey, endKey, lastRow, done);
+		}
+
+		/**
+		 * 检查点的区间是否包含 row
+		 */
+		boolean contains(byte[] row) {
+			return Bytes.compareTo(startKey, row) <= 0 && (endKey.length == 0 || Bytes.compareTo(row, endKey) < 0);
+		}
+
+		/**
+		 * 检查点的区间是否覆盖到 end（空数组表示表尾）
+		 */
+		boolean coversEnd(byte[] end) {
+			return endKey.length == 0 || (end.length > 0 && Bytes.compareTo(end, endKey) <= 0);
+		}
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final Params params;
+	private final RateLimiter limiter;
+
+	public IndexBackfiller(Connection conn, TableName tableName, Params params) {
+		this.conn = conn;
+		this.tableName = tableName;
+		this.params = params;
+		this.limiter = new RateLimiter(params.getRowsPerSecond());
+	}
+
+	/**
+	 * 运行中调整限速，如前台延迟升高时降低速率
+	 */
+	public void setRowsPerSecond(double rowsPerSecond) {
+		limiter.setRate(rowsPerSecond);
+	}
+
+	/**
+	 * 补建 spec 中各索引列的索引，阻塞到全部 Region 完成。全部完成后 checkpoints 中只留下完成标记，
+	 * 再次调用会直接返回；要重新补建先 clear
+	 *
+	 * @throws IOException 任一 Region 失败；已完成的批次保存在 checkpoints 中，再次调用时继续
+	 */
+	public Progress backfill(IndexSpecification spec, CheckpointStore checkpoints) throws IOException {
+		List<byte[][]> columns = new ArrayList<byte[][]>();
+		for (ColumnQualifier column : spec.getIndexColumns()) {
+			columns.add(new byte[][] { column.getColumnFamily(), column.getQualifier() });
+		}
+		return backfill(columns, checkpoints);
+	}
+
+	/**
+	 * @param columns 索引列，形如 {family, qualifier}
+	 */
+	public Progress backfill(final List<byte[][]> columns, final CheckpointStore checkpoints) throws IOException {
+		Map<String, byte[]> values = checkpoints.load();
+		List<HRegionLocation> locations;
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			locations = RegionTasks.interleave(locator.getAllRegionLocations());
+		} finally {
+			locator.close();
+		}
+
+		final Progress progress = new Progress(locations.size());
+		if (values.containsKey(COMPLETE)) {
+			progress.regionsDone.set(locations.size());
+			progress.finish();
+			log.info("Index on " + tableName + " already backfilled");
+			return progress;
+		}
+		List<Checkpoint> saved = new ArrayList<Checkpoint>();
+		for (Map.Entry<String, byte[]> e : values.entrySet()) {
+			if (e.getKey().startsWith(RegionTasks.CHECKPOINT_PREFIX)) {
+				saved.add(Checkpoint.decode(e.getValue()));
+			}
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (HRegionLocation location : locations) {
+			final HRegionInfo region = location.getRegionInfo();
+			final byte[] from = resumeRow(region.getStartKey(), region.getEndKey(), saved);
+			if (from == null) {
+				progress.regionsDone.incrementAndGet();
+				continue;
+			}
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					backfillRegion(region, from, columns, checkpoints, progress);
+					return null;
+				}
+			});
+		}
+		try {
+			RegionTasks.runAll(tasks, params.getParallelism(), "backfill");
+			complete(checkpoints);
+		} finally {
+			progress.finish();
+		}
+		log.info("Backfilled index on " + tableName + ": " + progress);
+		return progress;
+	}
+
+	/**
+	 * 先保存完成标记，再删除各 Region 的检查点；中途退出时标记已经保存，再次调用直接返回
+	 */
+	private static void complete(CheckpointStore checkpoints) throws IOException {
+		checkpoints.save(COMPLETE, Bytes.toBytes(System.currentTimeMillis()));
+		for (String name : checkpoints.load().keySet()) {
+			if (name.startsWith(RegionTasks.CHECKPOINT_PREFIX)) {
+				checkpoints.remove(name);
+			}
+		}
+	}
+
+	/**
+	 * Region [start, end) 应从哪一行开始补建，已经完成时返回 null
+	 */
+	static byte[] resumeRow(byte[] start, byte[] end, List<Checkpoint> saved) {
+		Checkpoint cp = null;
+		for (Checkpoint c : saved) {
+			// 多个检查点包含起始行时（分裂前后的都在），取起始行最大即最近的一个
+			if (c.contains(start) && (cp == null || Bytes.compareTo(c.startKey, cp.startKey) > 0)) {
+				cp = c;
+			}
+		}
+		if (cp == null) {
+			return start;
+		}
+		if (cp.done) {
+			return cp.coversEnd(end) ? null : start;
+		}
+		if (cp.lastRow == null || Bytes.compareTo(cp.lastRow, start) < 0) {
+			return start;
+		}
+		byte[] next = Bytes.add(cp.lastRow, new byte[] { 0 });
+		if (end.length > 0 && Bytes.compareTo(next, end) >= 0) {
+			return null;
+		}
+		return next;
+	}
+
+	private void backfillRegion(HRegionInfo region, byte[] from, List<byte[][]> columns,
+			CheckpointStore checkpoints, Progress progress) throws IOException {
+		long start = System.nanoTime();
+		Scan scan = new Scan(from, region.getEndKey());
+		for (byte[][] column : columns) {
+			scan.addColumn(column[0], column[1]);
+		}
+		scan.setCaching(params.getBatchRows());
+		scan.setCacheBlocks(false);
+		long scanned = 0;
+		long written = 0;
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				List<Put> puts = new ArrayList<Put>();
+				int batch = 0;
+				byte[] lastRow = null;
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					Put put = null;
+					for (Cell cell : r.rawCells()) {
+						if (cell.getTimestamp() < params.getRewriteBefore()) {
+							if (put == null) {
+								put = new Put(r.getRow());
+							}
+							put.add(cell);
+						}
+					}
+					if (put != null) {
+						puts.add(put);
+					}
+					lastRow = r.getRow();
+					if (++batch == params.getBatchRows()) {
+						written += flush(table, puts, batch, progress);
+						scanned += batch;
+						batch = 0;
+						Checkpoint cp = new Checkpoint(region.getStartKey(), region.getEndKey(), lastRow, false);
+						checkpoints.save(cp.name(), cp.encode());
+					}
+				}
+				written += flush(table, puts, batch, progress);
+				scanned += batch;
+				Checkpoint done = new Checkpoint(region.getStartKey(), region.getEndKey(), lastRow, true);
+				checkpoints.save(done.name(), done.encode());
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		progress.regionsDone.incrementAndGet();
+		log.info("Backfilled region " + region.getRegionNameAsString() + " from " + Bytes.toStringBinary(from)
+				+ ": scanned " + scanned + " rows, rewrote " + written + " rows in "
+				+ (System.nanoTime() - start) / 1000000 + "ms (" + progress + ")");
+	}
+
+	/**
+	 * 按扫描的行数限速后写入一批
+	 */
+	private int flush(Table table, List<Put> puts, int scannedRows, Progress progress) throws IOException {
+		if (scannedRows > 0) {
+			progress.throttledNanos.addAndGet(limiter.acquire(scannedRows));
+		}
+		int n = puts.size();
+		if (n > 0) {
+			table.put(puts);
+			puts.clear();
+		}
+		progress.rowsScanned.addAndGet(scannedRows);
+		progress.rowsWritten.addAndGet(n);
+		return n;
+	}
+}
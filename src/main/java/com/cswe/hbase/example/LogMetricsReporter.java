@@ -0,0 +1,34 @@
+package com.cswe.hbase.example;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 把指标写入日志，吞吐量按两次报告之间的增量计算，本周期内没有新操作的指标不输出
+ */
+public class LogMetricsReporter implements MetricsReporter {
+
+	private final static Log log = LogFactory.getLog(LogMetricsReporter.class);
+
+	private final Map<OperationMetrics, Long> lastCounts = new HashMap<OperationMetrics, Long>();
+	private long lastNanos = System.nanoTime();
+
+	@Override
+	public synchronized void report(Collection<OperationMetrics> metrics) {
+		long now = System.nanoTime();
+		double seconds = Math.max(now - lastNanos, 1) / 1e9;
+		lastNanos = now;
+		for (OperationMetrics m : metrics) {
+			long count = m.getCount();
+			Long last = lastCounts.put(m, count);
+			long delta = count - (last == null ? 0 : last);
+			if (delta > 0) {
+				log.info(String.format("%s ops/s=%.1f", m, delta / seconds));
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.cswe.hbase.example;
+
+import java.util.Collection;
+
+/**
+ * 定期输出 {@link ClientMetrics} 中的指标，通过 {@link ClientMetrics#addReporter} 注册
+ */
+public interface MetricsReporter {
+
+	/**
+	 * 在报告线程中调用，不应长时间阻塞
+	 */
+	void report(Collection<OperationMetrics> metrics);
+}
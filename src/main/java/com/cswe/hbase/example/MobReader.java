@@ -0,0 +1,125 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 先取大小、用到时再取值的读取方式，用于值很大的 MOB 列族。
+ * <p>
+ * {@link #getScanner(Scan)} 以 MOB 原始模式扫描，并由 {@link ValueSizeFilter} 在 RegionServer 上把值替换为长度：
+ * RegionServer 不读取 MOB 文件，每个 Cell 只返回行、列、时间戳和 4 字节的长度。{@link #references(Result)}
+ * 把这样的结果转为 {@link MobValueRef}，调用方按大小或其它列决定读取哪些值，每个值单独一次 Get。
+ * <p>
+ * Scan 上原有的过滤器在替换之前执行，但作用于 MOB 列时看到的是引用而不是值。
+ * 单个值仍由一次 RPC 整体返回，HBase 客户端不支持分段读取一个 Cell；内存中只保留正在读取的那一个值。
+ * 非 MOB 列族同样适用，只是 RegionServer 仍要读出整个值。
+ */
+public class MobReader {
+
+	/** MOB 原始扫描：返回引用本身，不读取 MOB 文件 */
+	public static final String MOB_SCAN_RAW = "hbase.mob.scan.raw";
+
+	private final Connection conn;
+	private final TableName tableName;
+
+	public MobReader(Connection conn, TableName tableName) {
+		this.conn = conn;
+		this.tableName = tableName;
+	}
+
+	/**
+	 * 只返回值的大小的扫描器，结果用 {@link #references(Result)} 解析
+	 */
+	public ResultScanner getScanner(Scan scan) throws IOException {
+		Table table = conn.getTable(tableName);
+		try {
+			return table.getScanner(referenceScan(scan));
+		} finally {
+			table.close();
+		}
+	}
+
+	/**
+	 * scan 的副本，加上 ValueSizeFilter 和 MOB 原始扫描的属性。ScanMetrics 发布在返回的副本上
+	 */
+	public static Scan referenceScan(Scan scan) throws IOException {
+		Scan refScan = new Scan(scan);
+		if (scan.getFilter() != null) {
+			refScan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, scan.getFilter(), new ValueSizeFilter()));
+		} else {
+			refScan.setFilter(new ValueSizeFilter());
+		}
+		refScan.setAttribute(MOB_SCAN_RAW, Bytes.toBytes(true));
+		return refScan;
+	}
+
+	/**
+	 * getScanner 或 referenceScan 扫描得到的一行中的所有值，顺序与 Cell 相同
+	 */
+	public List<MobValueRef> references(Result result) {
+		Cell[] cells = result.rawCells();
+		List<MobValueRef> refs = new ArrayList<MobValueRef>(cells == null ? 0 : cells.length);
+		if (cells != null) {
+			for (Cell cell : cells) {
+				refs.add(toRef(cell));
+			}
+		}
+		return refs;
+	}
+
+	/**
+	 * 一列最新版本的值，行中没有该列时返回 null
+	 */
+	public MobValueRef reference(Result result, byte[] family, byte[] qualifier) {
+		Cell cell = result.getColumnLatestCell(family, qualifier);
+		return cell != null ? toRef(cell) : null;
+	}
+
+	private MobValueRef toRef(Cell cell) {
+		if (cell.getValueLength() != Bytes.SIZEOF_INT) {
+			throw new IllegalArgumentException("Not a value size cell, use MobReader.getScanner: " + cell);
+		}
+		return new MobValueRef(this, CellUtil.cloneRow(cell), CellUtil.cloneFamily(cell),
+				CellUtil.cloneQualifier(cell), cell.getTimestamp(), Bytes.toInt(cell.getValueArray(),
+						cell.getValueOffset()));
+	}
+
+	ByteBuffer fetch(MobValueRef ref) throws IOException {
+		Get get = new Get(ref.getRow());
+		get.addColumn(ref.getFamily(), ref.getQualifier());
+		get.setTimeStamp(ref.getTimestamp());
+		// 只读一次的大值不放入块缓存
+		get.setCacheBlocks(false);
+		Result result;
+		Table table = conn.getTable(tableName);
+		try {
+			result = table.get(get);
+		} finally {
+			table.close();
+		}
+		Cell cell = result.getColumnLatestCell(ref.getFamily(), ref.getQualifier());
+		if (cell == null) {
+			throw new IOException(ref + " no longer exists");
+		}
+		if (cell.getValueLength() != ref.getSize()) {
+			// MOB 文件丢失时 RegionServer 返回空值
+			throw new IOException("Expected " + ref.getSize() + " bytes for " + ref + " but read "
+					+ cell.getValueLength() + ", the MOB file may be missing");
+		}
+		return ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()).slice();
+	}
+}
@@ -0,0 +1,78 @@
+package com.cswe.hbase.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * {@link MobReader} 扫描得到的一个值的位置和大小，值本身在调用 {@link #read()} 或 {@link #openStream()} 时才读取。
+ * <p>
+ * 每次读取都是一次 Get，结果不缓存；只持有本对象不占用值的内存。
+ */
+public final class MobValueRef {
+
+	private final MobReader reader;
+	private final byte[] row;
+	private final byte[] family;
+	private final byte[] qualifier;
+	private final long timestamp;
+	private final int size;
+
+	MobValueRef(MobReader reader, byte[] row, byte[] family, byte[] qualifier, long timestamp, int size) {
+		this.reader = reader;
+		this.row = row;
+		this.family = family;
+		this.qualifier = qualifier;
+		this.timestamp = timestamp;
+		this.size = size;
+	}
+
+	public byte[] getRow() {
+		return row;
+	}
+
+	public byte[] getFamily() {
+		return family;
+	}
+
+	public byte[] getQualifier() {
+		return qualifier;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * 值的字节数，不读取值
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * 读取该版本的值。返回的缓冲区直接包装 RPC 结果中的字节数组，不再复制
+	 *
+	 * @throws IOException 该版本已被删除或 MOB 文件已丢失
+	 */
+	public ByteBuffer read() throws IOException {
+		return reader.fetch(this);
+	}
+
+	/**
+	 * 读取该版本的值并以流的形式返回，用于按块写出
+	 */
+	public InputStream openStream() throws IOException {
+		ByteBuffer value = read();
+		return new ByteArrayInputStream(value.array(), value.arrayOffset() + value.position(), value.remaining());
+	}
+
+	@Override
+	public String toString() {
+		return Bytes.toStringBinary(row) + "/" + Bytes.toString(family) + ":" + Bytes.toString(qualifier) + "/"
+				+ timestamp + " (" + size + " bytes)";
+	}
+}
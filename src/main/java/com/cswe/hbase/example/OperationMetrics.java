@@ -0,0 +1,228 @@
+package com.cswe.hbase.example;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.metrics.ScanMetrics;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+
+/**
+ * 单个 (表, 操作) 的耗时、吞吐、读写字节数和 RPC 次数。吞吐是最近 {@value #THROUGHPUT_WINDOW_SECONDS} 秒的滑动窗口，
+ * 其余都是从创建开始的累计值。
+ * <p>
+ * 由 {@link ClientMetrics#forOperation(TableName, String)} 创建。记录方法只做原子累加，不分配内存，可以常开。
+ * HBase 1.0.2 客户端只对 Scan 暴露 RPC 和重试次数（ScanMetrics），其他操作的 RPC 数由调用方按请求数给出，重试数为 0。
+ * ScanMetrics 在扫描器关闭时才写入 Scan 的属性，扫描器上的 getScanMetrics() 在扫描过程中不会更新。
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+	/** 吞吐的滑动窗口长度，每秒一个计数槽 */
+	static final int THROUGHPUT_WINDOW_SECONDS = 60;
+
+	private final TableName table;
+	private final String operation;
+	private final long createdNanos = System.nanoTime();
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private final AtomicLong rpcs = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	/** 每个槽的高 32 位是从创建开始的秒数，低 32 位是这一秒的操作数，一次 CAS 同时换秒和计数 */
+	private final AtomicLongArray slots = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+
+	OperationMetrics(TableName table, String operation) {
+		this.table = table;
+		this.operation = operation;
+	}
+
+	/**
+	 * 记录一次成功的操作
+	 *
+	 * @param startNanos 操作开始时的 System.nanoTime()
+	 */
+	public void record(long startNanos, long read, long written, long rpcCount) {
+		long now = System.nanoTime();
+		latency.record(now - startNanos);
+		tick(now);
+		add(bytesRead, read);
+		add(bytesWritten, written);
+		add(rpcs, rpcCount);
+	}
+
+	/**
+	 * 记录一次成功的扫描，字节数、RPC 和重试次数取自 scan.getScanMetrics()。
+	 * 需要 Scan.setScanMetricsEnabled(true)，并在扫描器关闭之后调用
+	 */
+	public void recordScan(long startNanos, Scan scan) {
+		long now = System.nanoTime();
+		latency.record(now - startNanos);
+		tick(now);
+		ScanMetrics scanMetrics = scan.getScanMetrics();
+		if (scanMetrics != null) {
+			add(bytesRead, scanMetrics.countOfBytesInResults.get());
+			add(rpcs, scanMetrics.countOfRPCcalls.get());
+			add(retries, scanMetrics.countOfRPCRetries.get());
+		}
+	}
+
+	/**
+	 * 记录一次失败的操作，耗时同样计入直方图
+	 */
+	public void recordError(long startNanos) {
+		long now = System.nanoTime();
+		latency.record(now - startNanos);
+		tick(now);
+		errors.incrementAndGet();
+	}
+
+	/**
+	 * 当前这一秒的槽加 1；槽里还是一个窗口之前的秒时从 1 重新计数
+	 */
+	void tick(long nowNanos) {
+		long second = (nowNanos - createdNanos) / 1000000000L;
+		int slot = (int) (second % THROUGHPUT_WINDOW_SECONDS);
+		long v;
+		long next;
+		do {
+			v = slots.get(slot);
+			next = v >>> 32 == second ? v + 1 : second << 32 | 1;
+		} while (!slots.compareAndSet(slot, v, next));
+	}
+
+	/**
+	 * 截至 nowNanos 的滑动窗口吞吐：窗口内的操作数除以窗口覆盖的时长，创建不足一个窗口时除以已运行的时长
+	 */
+	double throughput(long nowNanos) {
+		long elapsedNanos = nowNanos - createdNanos;
+		long second = elapsedNanos / 1000000000L;
+		long oldest = Math.max(0, second - THROUGHPUT_WINDOW_SECONDS + 1);
+		long count = 0;
+		for (int i = 0; i < THROUGHPUT_WINDOW_SECONDS; i++) {
+			long v = slots.get(i);
+			long s = v >>> 32;
+			if (s >= oldest && s <= second) {
+				count += v & 0xffffffffL;
+			}
+		}
+		double seconds = elapsedNanos / 1e9 - oldest;
+		return seconds <= 0 ? 0 : count / seconds;
+	}
+
+	private static void add(AtomicLong counter, long delta) {
+		if (delta != 0) {
+			counter.addAndGet(delta);
+		}
+	}
+
+	/**
+	 * 把内部扫描器关闭后发布在 delegateScan 上的 ScanMetrics 累加到 target 上，用于 AdaptiveScanner 等包装类
+	 */
+	static void mergeScanMetrics(ScanMetrics target, Scan delegateScan) {
+		ScanMetrics source = target != null ? delegateScan.getScanMetrics() : null;
+		if (source == null) {
+			return;
+		}
+		Map<String, Long> current = target.getMetricsMap();
+		for (Map.Entry<String, Long> e : source.getMetricsMap().entrySet()) {
+			Long value = current.get(e.getKey());
+			target.setCounter(e.getKey(), (value == null ? 0 : value) + e.getValue());
+		}
+	}
+
+	/**
+	 * 与 ClientScanner 关闭时相同，把汇总后的 ScanMetrics 写入 scan 的属性，调用方通过 scan.getScanMetrics() 读取
+	 */
+	static void publishScanMetrics(Scan scan, ScanMetrics scanMetrics) {
+		if (scanMetrics != null) {
+			scan.setAttribute(Scan.SCAN_ATTRIBUTES_METRICS_DATA, ProtobufUtil.toScanMetrics(scanMetrics).toByteArray());
+		}
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public String getTable() {
+		return table.getNameAsString();
+	}
+
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+
+	@Override
+	public long getCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public double getThroughput() {
+		return throughput(System.nanoTime());
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latency.getMeanNanos() / 1e6;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return latency.percentileNanos(0.5) / 1e6;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return latency.percentileNanos(0.99) / 1e6;
+	}
+
+	@Override
+	public double getP999Millis() {
+		return latency.percentileNanos(0.999) / 1e6;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latency.getMaxNanos() / 1e6;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public long getRpcs() {
+		return rpcs.get();
+	}
+
+	@Override
+	public long getRetries() {
+		return retries.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s %s count=%d errors=%d mean=%.2fms p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms "
+						+ "read=%dB written=%dB rpcs=%d retries=%d",
+				getTable(), operation, getCount(), getErrors(), getMeanMillis(), getP50Millis(), getP99Millis(),
+				getP999Millis(), getMaxMillis(), getBytesRead(), getBytesWritten(), getRpcs(), getRetries());
+	}
+}
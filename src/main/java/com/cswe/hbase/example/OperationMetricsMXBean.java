@@ -0,0 +1,38 @@
+package com.cswe.hbase.example;
+
+/**
+ * 单个 (表, 操作) 的 JMX 视图，耗时单位为毫秒。除吞吐外均为从创建开始的累计值
+ */
+public interface OperationMetricsMXBean {
+
+	String getTable();
+
+	String getOperation();
+
+	long getCount();
+
+	long getErrors();
+
+	/**
+	 * 最近一分钟的平均每秒操作数，包括失败的操作
+	 */
+	double getThroughput();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP99Millis();
+
+	double getP999Millis();
+
+	double getMaxMillis();
+
+	long getBytesRead();
+
+	long getBytesWritten();
+
+	long getRpcs();
+
+	long getRetries();
+}
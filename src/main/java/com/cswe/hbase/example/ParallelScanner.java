@@ -0,0 +1,409 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.RegionScanSplitter.RegionScan;
+
+/**
+ * 按 Region 并行扫描：把 Scan 在 Region 边界处切分，子 Scan 在 ForkJoinPool 上并行执行。
+ * <p>
+ * 同时执行的子 Scan 不超过 parallelism，每个 RegionServer 上不超过 maxScansPerServer，避免热点 Server 被打满；
+ * 有空闲时总是先派发行键最小的子 Scan。
+ * 结果统一在调用 {@link #scan(Scan, MergeMode, ResultHandler)} 的线程中回调：
+ * {@link MergeMode#ORDERED} 按行键顺序回调，当前最靠前的 Region 边扫描边回调，
+ * 后面的 Region 的结果暂存在有界缓冲中，缓冲满时这些子 Scan 阻塞，等前面的 Region 回调完再继续；
+ * {@link MergeMode#UNORDERED} 按到达顺序回调，适合聚合类计算。
+ * <p>
+ * 加盐表设置 {@link #setKeyCodec(SaltedKeyCodec)} 后回调的 Result 中的行键已去掉桶号。Region 按桶排列，
+ * 按原行键有序需要同时扫描全部的桶再归并，与边扫描边回调、缓冲有界冲突，因此加盐表只支持 UNORDERED，
+ * 需要有序时用 {@link SaltedScanner}。
+ */
+public class ParallelScanner implements Closeable {
+
+	private final static Log log = LogFactory.getLog(ParallelScanner.class);
+
+	public enum MergeMode {
+		ORDERED, UNORDERED
+	}
+
+	/**
+	 * 结果回调，只在调用 scan 的线程中执行
+	 */
+	public interface ResultHandler {
+		void onResult(Result result) throws IOException;
+	}
+
+	/** 子 Scan 结束消息 */
+	private static final class RegionDone {
+		private final int index;
+		private final Throwable error;
+
+		RegionDone(int index, Throwable error) {
+			this.index = index;
+			this.error = error;
+		}
+	}
+
+	/** ORDERED 模式下一个 Region 的结果缓冲，由 ScanContext 的锁保护 */
+	private static final class RegionBuffer {
+		private final ArrayDeque<Result> rows = new ArrayDeque<Result>();
+		private boolean done = false;
+	}
+
+	/** UNORDERED 模式的结果队列容量，也是 ORDERED 模式下缓冲的总行数上限 */
+	private static final int QUEUE_CAPACITY = 10000;
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final int parallelism;
+	private final int maxScansPerServer;
+	private final int queueCapacity;
+	private final ForkJoinPool pool;
+	private volatile SaltedKeyCodec keyCodec = null;
+
+	/**
+	 * @param parallelism 并行执行的子 Scan 总数
+	 * @param maxScansPerServer 单个 RegionServer 上同时执行的子 Scan 数上限
+	 */
+	public ParallelScanner(Connection conn, TableName tableName, int parallelism, int maxScansPerServer) {
+		this(conn, tableName, parallelism, maxScansPerServer, QUEUE_CAPACITY);
+	}
+
+	ParallelScanner(Connection conn, TableName tableName, int parallelism, int maxScansPerServer, int queueCapacity) {
+		if (parallelism <= 0 || maxScansPerServer <= 0) {
+			throw new IllegalArgumentException("parallelism and maxScansPerServer must be positive");
+		}
+		this.conn = conn;
+		this.tableName = tableName;
+		this.parallelism = parallelism;
+		this.maxScansPerServer = maxScansPerServer;
+		this.queueCapacity = queueCapacity;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * 表使用加盐行键：回调前在扫描线程中还原原行键，Scan 的起止行仍是加盐行键。为 null 时不还原
+	 */
+	public void setKeyCodec(SaltedKeyCodec keyCodec) {
+		this.keyCodec = keyCodec;
+	}
+
+	/**
+	 * 执行并行扫描
+	 *
+	 * @return 扫描到的行数
+	 * @throws IllegalArgumentException 加盐表上使用 ORDERED
+	 */
+	public long scan(Scan scan, MergeMode mode, ResultHandler handler) throws IOException {
+		if (keyCodec != null && mode == MergeMode.ORDERED) {
+			throw new IllegalArgumentException(
+					"ORDERED merge is not supported on salted keys, regions are ordered by bucket");
+		}
+		List<HRegionLocation> locations;
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			locations = locator.getAllRegionLocations();
+		} finally {
+			locator.close();
+		}
+		return scan(RegionScanSplitter.split(scan, locations), mode, handler);
+	}
+
+	private long scan(List<RegionScan> regionScans, MergeMode mode, ResultHandler handler) throws IOException {
+		// 按 Server 分组排队，组内按行键顺序
+		Map<ServerName, Deque<Integer>> pending = new LinkedHashMap<ServerName, Deque<Integer>>();
+		Map<ServerName, Integer> running = new HashMap<ServerName, Integer>();
+		for (int i = 0; i < regionScans.size(); i++) {
+			ServerName server = regionScans.get(i).getLocation().getServerName();
+			Deque<Integer> queue = pending.get(server);
+			if (queue == null) {
+				queue = new ArrayDeque<Integer>();
+				pending.put(server, queue);
+				running.put(server, 0);
+			}
+			queue.add(i);
+		}
+
+		ScanContext ctx = new ScanContext(mode, regionScans.size(), keyCodec);
+		dispatch(ctx, regionScans, pending, running);
+
+		long rows = 0;
+		boolean finished = false;
+		try {
+			for (Object o = ctx.take(); o != null; o = ctx.take()) {
+				if (o instanceof Result) {
+					handler.onResult((Result) o);
+					rows++;
+					continue;
+				}
+				RegionDone done = (RegionDone) o;
+				if (done.error != null) {
+					throw toIOException(done.error, regionScans.get(done.index));
+				}
+				ServerName server = regionScans.get(done.index).getLocation().getServerName();
+				running.put(server, running.get(server) - 1);
+				ctx.running--;
+				dispatch(ctx, regionScans, pending, running);
+			}
+			finished = true;
+		} finally {
+			if (!finished) {
+				ctx.cancel();
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 派发子 Scan 直到总数达到 parallelism：每次选行键最小、所在 Server 未达到 maxScansPerServer 的子 Scan。
+	 * ORDERED 模式下当前最靠前的 Region 因此总能拿到执行线程，不会被缓冲已满而阻塞的后续 Region 饿死。
+	 */
+	private void dispatch(final ScanContext ctx, List<RegionScan> regionScans,
+			Map<ServerName, Deque<Integer>> pending, Map<ServerName, Integer> running) {
+		while (ctx.running < parallelism) {
+			ServerName next = null;
+			for (Map.Entry<ServerName, Deque<Integer>> e : pending.entrySet()) {
+				Deque<Integer> queue = e.getValue();
+				if (!queue.isEmpty() && running.get(e.getKey()) < maxScansPerServer
+						&& (next == null || queue.peek() < pending.get(next).peek())) {
+					next = e.getKey();
+				}
+			}
+			if (next == null) {
+				return;
+			}
+			final int index = pending.get(next).poll();
+			final RegionScan regionScan = regionScans.get(index);
+			running.put(next, running.get(next) + 1);
+			ctx.running++;
+			ctx.futures.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					ctx.runRegion(index, regionScan.getScan());
+				}
+			}));
+		}
+	}
+
+	private IOException toIOException(Throwable t, RegionScan regionScan) {
+		String region = regionScan.getLocation().getRegionInfo().getRegionNameAsString();
+		if (t instanceof IOException) {
+			log.error("Scan failed on region " + region, t);
+			return (IOException) t;
+		}
+		return new IOException("Scan failed on region " + region, t);
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * 一次 scan 调用的共享状态。UNORDERED 模式下结果和结束消息都经过 queue；
+	 * ORDERED 模式下结果放在各 Region 的 buffers 中，结束消息放在 finished 中，都由本对象的锁保护。
+	 */
+	private final class ScanContext {
+		private final MergeMode mode;
+		private final SaltedKeyCodec keyCodec;
+		private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>(queueCapacity);
+		private final List<Future<?>> futures = new ArrayList<Future<?>>();
+		private volatile boolean cancelled = false;
+		/** 已派发未结束的子 Scan 数，只在调用 scan 的线程中访问 */
+		private int running = 0;
+		/** 尚未收到结束消息的 Region 数，只在调用 scan 的线程中访问 */
+		private int remaining;
+
+		private final RegionBuffer[] buffers;
+		private final Deque<RegionDone> finished = new ArrayDeque<RegionDone>();
+		/** 正在回调的 Region */
+		private int head = 0;
+		/** 除 head 以外的缓冲中的总行数 */
+		private int buffered = 0;
+
+		ScanContext(MergeMode mode, int regions, SaltedKeyCodec keyCodec) {
+			this.mode = mode;
+			this.keyCodec = keyCodec;
+			this.remaining = regions;
+			this.buffers = mode == MergeMode.ORDERED ? new RegionBuffer[regions] : null;
+			for (int i = 0; buffers != null && i < regions; i++) {
+				buffers[i] = new RegionBuffer();
+			}
+		}
+
+		void runRegion(int index, Scan scan) {
+			Throwable error = null;
+			Table table = null;
+			ResultScanner scanner = null;
+			try {
+				table = conn.getTable(tableName);
+				scanner = table.getScanner(scan);
+				for (Result r = scanner.next(); r != null && !cancelled; r = scanner.next()) {
+					if (!offer(index, keyCodec != null ? keyCodec.decode(r) : r)) {
+						break;
+					}
+				}
+			} catch (Throwable t) {
+				error = t;
+			} finally {
+				if (scanner != null) {
+					scanner.close();
+				}
+				if (table != null) {
+					try {
+						table.close();
+					} catch (IOException e) {
+						log.error("Close table failed ", e);
+					}
+				}
+			}
+			finish(new RegionDone(index, error));
+		}
+
+		/**
+		 * 交出一行结果。UNORDERED 模式下队列满时等待调用方消费；ORDERED 模式下 head 的缓冲、
+		 * 或其他 Region 缓冲的总行数达到 queueCapacity 时等待。取消后放弃。
+		 */
+		private boolean offer(int index, Result r) {
+			if (mode == MergeMode.UNORDERED) {
+				return offer(r);
+			}
+			try {
+				synchronized (this) {
+					RegionBuffer buffer = buffers[index];
+					while (!cancelled && (index == head ? buffer.rows.size() : buffered) >= queueCapacity) {
+						wait();
+					}
+					if (cancelled) {
+						return false;
+					}
+					buffer.rows.add(r);
+					if (index == head) {
+						notifyAll();
+					} else {
+						buffered++;
+					}
+					return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		private void finish(RegionDone done) {
+			if (mode == MergeMode.UNORDERED) {
+				offer(done);
+				return;
+			}
+			synchronized (this) {
+				buffers[done.index].done = true;
+				finished.add(done);
+				notifyAll();
+			}
+		}
+
+		/**
+		 * 队列满时等待调用方消费，取消后放弃
+		 */
+		private boolean offer(Object o) {
+			try {
+				while (!cancelled) {
+					if (queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		/**
+		 * 下一个结果或结束消息，全部 Region 结束且结果都已取出后返回 null
+		 */
+		Object take() throws InterruptedIOException {
+			try {
+				if (mode == MergeMode.UNORDERED) {
+					if (remaining == 0) {
+						return null;
+					}
+					Object o = queue.take();
+					if (o instanceof RegionDone) {
+						remaining--;
+					}
+					return o;
+				}
+				synchronized (this) {
+					while (true) {
+						// 先处理结束消息，及时派发后续子 Scan
+						if (!finished.isEmpty()) {
+							return finished.poll();
+						}
+						if (head == buffers.length) {
+							return null;
+						}
+						RegionBuffer buffer = buffers[head];
+						Result r = buffer.rows.poll();
+						if (r != null) {
+							if (buffer.rows.size() == queueCapacity - 1) {
+								notifyAll();
+							}
+							return r;
+						}
+						if (buffer.done) {
+							head++;
+							if (head < buffers.length) {
+								// 新的 head 不再计入 buffered，等待 buffered 的子 Scan 可能可以继续
+								buffered -= buffers[head].rows.size();
+								notifyAll();
+							}
+							continue;
+						}
+						wait();
+					}
+				}
+			} catch (InterruptedException e) {
+				throw (InterruptedIOException) new InterruptedIOException("Interrupted while scanning").initCause(e);
+			}
+		}
+
+		void cancel() {
+			cancelled = true;
+			if (buffers != null) {
+				synchronized (this) {
+					notifyAll();
+				}
+			}
+			for (Future<?> f : futures) {
+				f.cancel(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,395 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.protobuf.generated.PredicateProtos;
+import com.google.protobuf.ByteString;
+
+/**
+ * 条件表达式：列值或行键上的比较、前缀、IN、范围，以及 and、or、not 组合。
+ * <p>
+ * 叶子条件按字节序比较。行中缺少该列时叶子条件为未知，与 SQL 中的 NULL 相同：not 未知仍为未知，
+ * and、or 按三值逻辑计算，最后只有结果为 true 的行满足条件。因此缺少该列的行既不满足 eq 也不满足 not(eq)，
+ * ne 与 not(eq) 等价，与 SingleColumnValueFilter 加 setFilterIfMissing(true) 的行为一致。
+ * 同一列有多个版本时只看第一个（最新的）。
+ * 用 {@link PredicateCompiler} 编译为 Scan，由 {@link PredicateFilter} 在 RegionServer 上求值。
+ * 不可变，可以在线程间共享。
+ *
+ * <pre>
+ * Predicate where = Predicate.and(
+ * 		Predicate.column(INFO, SEX).eq(Bytes.toBytes("F")),
+ * 		Predicate.column(INFO, AGE).range(Bytes.toBytes("20"), Bytes.toBytes("30")),
+ * 		Predicate.not(Predicate.column(INFO, ADRESS).in(Bytes.toBytes("wuhan"), Bytes.toBytes("nanjing"))));
+ * </pre>
+ */
+public final class Predicate {
+
+	public enum Kind {
+		AND, OR, NOT,
+		EQUAL, NOT_EQUAL, LESS, LESS_OR_EQUAL, GREATER, GREATER_OR_EQUAL,
+		/** 以给定值开头 */
+		PREFIX,
+		/** 等于给定值之一 */
+		IN,
+		/** from &lt;= v &lt; to，与 Scan 的起止行含义相同 */
+		RANGE;
+
+		public boolean isLeaf() {
+			return ordinal() > NOT.ordinal();
+		}
+	}
+
+	/**
+	 * 叶子条件的左侧：一列或行键
+	 */
+	public static final class Operand {
+		private final byte[] family;
+		private final byte[] qualifier;
+
+		private Operand(byte[] family, byte[] qualifier) {
+			this.family = family;
+			this.qualifier = qualifier;
+		}
+
+		public Predicate eq(byte[] value) {
+			return leaf(Kind.EQUAL, value);
+		}
+
+		public Predicate ne(byte[] value) {
+			return leaf(Kind.NOT_EQUAL, value);
+		}
+
+		public Predicate lt(byte[] value) {
+			return leaf(Kind.LESS, value);
+		}
+
+		public Predicate le(byte[] value) {
+			return leaf(Kind.LESS_OR_EQUAL, value);
+		}
+
+		public Predicate gt(byte[] value) {
+			return leaf(Kind.GREATER, value);
+		}
+
+		public Predicate ge(byte[] value) {
+			return leaf(Kind.GREATER_OR_EQUAL, value);
+		}
+
+		public Predicate prefix(byte[] prefix) {
+			return leaf(Kind.PREFIX, prefix);
+		}
+
+		/**
+		 * 没有取值时恒为 false
+		 */
+		public Predicate in(byte[]... values) {
+			return new Predicate(Kind.IN, family, qualifier, values, null);
+		}
+
+		public Predicate in(List<byte[]> values) {
+			return in(values.toArray(new byte[values.size()][]));
+		}
+
+		/**
+		 * from &lt;= v &lt; to
+		 */
+		public Predicate range(byte[] from, byte[] to) {
+			return new Predicate(Kind.RANGE, family, qualifier, new byte[][] { from, to }, null);
+		}
+
+		private Predicate leaf(Kind kind, byte[] value) {
+			return new Predicate(kind, family, qualifier, new byte[][] { value }, null);
+		}
+	}
+
+	private static final Operand ROW_KEY = new Operand(null, null);
+
+	private final Kind kind;
+	private final byte[] family;
+	private final byte[] qualifier;
+	/** IN 的取值已排序去重，可以二分查找 */
+	private final byte[][] values;
+	private final Predicate[] children;
+
+	private Predicate(Kind kind, byte[] family, byte[] qualifier, byte[][] values, Predicate[] children) {
+		if (values != null) {
+			for (byte[] v : values) {
+				if (v == null) {
+					throw new IllegalArgumentException("Null value in " + kind);
+				}
+			}
+			if (kind == Kind.IN) {
+				values = values.clone();
+				Arrays.sort(values, Bytes.BYTES_COMPARATOR);
+				int n = 0;
+				for (int i = 0; i < values.length; i++) {
+					if (n == 0 || !Bytes.equals(values[n - 1], values[i])) {
+						values[n++] = values[i];
+					}
+				}
+				values = Arrays.copyOf(values, n);
+			}
+		}
+		if (children != null) {
+			for (Predicate c : children) {
+				if (c == null) {
+					throw new IllegalArgumentException("Null operand in " + kind);
+				}
+			}
+		}
+		this.kind = kind;
+		this.family = family;
+		this.qualifier = qualifier;
+		this.values = values;
+		this.children = children;
+	}
+
+	public static Operand column(byte[] family, byte[] qualifier) {
+		if (family == null || qualifier == null) {
+			throw new IllegalArgumentException("Column family and qualifier must not be null");
+		}
+		return new Operand(family, qualifier);
+	}
+
+	public static Operand rowKey() {
+		return ROW_KEY;
+	}
+
+	public static Predicate and(Predicate... operands) {
+		return combine(Kind.AND, operands);
+	}
+
+	public static Predicate or(Predicate... operands) {
+		return combine(Kind.OR, operands);
+	}
+
+	public static Predicate not(Predicate operand) {
+		return new Predicate(Kind.NOT, null, null, null, new Predicate[] { operand });
+	}
+
+	private static Predicate combine(Kind kind, Predicate[] operands) {
+		if (operands.length == 0) {
+			throw new IllegalArgumentException(kind + " needs at least one operand");
+		}
+		return operands.length == 1 ? operands[0] : new Predicate(kind, null, null, null, operands.clone());
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * 叶子条件是否作用于行键
+	 */
+	public boolean isRowKey() {
+		return kind.isLeaf() && family == null;
+	}
+
+	byte[] getFamily() {
+		return family;
+	}
+
+	byte[] getQualifier() {
+		return qualifier;
+	}
+
+	byte[][] getValues() {
+		return values;
+	}
+
+	Predicate[] getChildren() {
+		return children;
+	}
+
+	/**
+	 * 条件中出现的列，形如 {family, qualifier}，不去重
+	 */
+	void collectColumns(List<byte[][]> columns) {
+		if (kind.isLeaf()) {
+			if (family != null) {
+				columns.add(new byte[][] { family, qualifier });
+			}
+			return;
+		}
+		for (Predicate c : children) {
+			c.collectColumns(columns);
+		}
+	}
+
+	/**
+	 * 对叶子条件求值，b[off, off + len) 为列值或行键
+	 */
+	boolean test(byte[] b, int off, int len) {
+		switch (kind) {
+		case EQUAL:
+			return Bytes.equals(b, off, len, values[0], 0, values[0].length);
+		case NOT_EQUAL:
+			return !Bytes.equals(b, off, len, values[0], 0, values[0].length);
+		case LESS:
+			return compare(b, off, len, values[0]) < 0;
+		case LESS_OR_EQUAL:
+			return compare(b, off, len, values[0]) <= 0;
+		case GREATER:
+			return compare(b, off, len, values[0]) > 0;
+		case GREATER_OR_EQUAL:
+			return compare(b, off, len, values[0]) >= 0;
+		case PREFIX:
+			return len >= values[0].length && Bytes.equals(b, off, values[0].length, values[0], 0, values[0].length);
+		case IN:
+			return contains(b, off, len);
+		case RANGE:
+			return compare(b, off, len, values[0]) >= 0 && compare(b, off, len, values[1]) < 0;
+		default:
+			throw new IllegalStateException(kind + " is not a leaf");
+		}
+	}
+
+	private static int compare(byte[] b, int off, int len, byte[] value) {
+		return Bytes.compareTo(b, off, len, value, 0, value.length);
+	}
+
+	private boolean contains(byte[] b, int off, int len) {
+		int low = 0;
+		int high = values.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = compare(b, off, len, values[mid]);
+			if (c == 0) {
+				return true;
+			}
+			if (c > 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 在客户端对一行求值，结果与 PredicateFilter 相同
+	 */
+	public boolean matches(Result result) {
+		return Boolean.TRUE.equals(evaluate(result));
+	}
+
+	/**
+	 * 三值求值，null 表示未知
+	 */
+	private Boolean evaluate(Result result) {
+		switch (kind) {
+		case AND: {
+			Boolean v = Boolean.TRUE;
+			for (Predicate c : children) {
+				Boolean r = c.evaluate(result);
+				if (Boolean.FALSE.equals(r)) {
+					return Boolean.FALSE;
+				}
+				if (r == null) {
+					v = null;
+				}
+			}
+			return v;
+		}
+		case OR: {
+			Boolean v = Boolean.FALSE;
+			for (Predicate c : children) {
+				Boolean r = c.evaluate(result);
+				if (Boolean.TRUE.equals(r)) {
+					return Boolean.TRUE;
+				}
+				if (r == null) {
+					v = null;
+				}
+			}
+			return v;
+		}
+		case NOT: {
+			Boolean r = children[0].evaluate(result);
+			return r == null ? null : !r;
+		}
+		default:
+			if (family == null) {
+				byte[] row = result.getRow();
+				return row != null && test(row, 0, row.length);
+			}
+			Cell cell = result.getColumnLatestCell(family, qualifier);
+			return cell == null ? null : test(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+		}
+	}
+
+	PredicateProtos.Predicate toProto() {
+		PredicateProtos.Predicate.Builder builder = PredicateProtos.Predicate.newBuilder().setKind(
+				PredicateProtos.Kind.valueOf(kind.name()));
+		if (family != null) {
+			builder.setFamily(ByteString.copyFrom(family)).setQualifier(ByteString.copyFrom(qualifier));
+		}
+		if (values != null) {
+			for (byte[] v : values) {
+				builder.addValues(ByteString.copyFrom(v));
+			}
+		}
+		if (children != null) {
+			for (Predicate c : children) {
+				builder.addChildren(c.toProto());
+			}
+		}
+		return builder.build();
+	}
+
+	static Predicate fromProto(PredicateProtos.Predicate proto) {
+		Kind kind = Kind.valueOf(proto.getKind().name());
+		if (kind.isLeaf()) {
+			byte[][] values = new byte[proto.getValuesCount()][];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = proto.getValues(i).toByteArray();
+			}
+			int expected = kind == Kind.IN ? values.length : kind == Kind.RANGE ? 2 : 1;
+			if (values.length != expected) {
+				throw new IllegalArgumentException(kind + " expects " + expected + " values: " + values.length);
+			}
+			return proto.hasFamily() ? new Predicate(kind, proto.getFamily().toByteArray(), proto.getQualifier()
+					.toByteArray(), values, null) : new Predicate(kind, null, null, values, null);
+		}
+		List<Predicate> children = new ArrayList<Predicate>(proto.getChildrenCount());
+		for (PredicateProtos.Predicate c : proto.getChildrenList()) {
+			children.add(fromProto(c));
+		}
+		if (children.isEmpty() || (kind == Kind.NOT && children.size() != 1)) {
+			throw new IllegalArgumentException("Bad operand count for " + kind + ": " + children.size());
+		}
+		return new Predicate(kind, null, null, null, children.toArray(new Predicate[children.size()]));
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case AND:
+		case OR:
+			StringBuilder sb = new StringBuilder("(");
+			for (int i = 0; i < children.length; i++) {
+				if (i > 0) {
+					sb.append(' ').append(kind).append(' ');
+				}
+				sb.append(children[i]);
+			}
+			return sb.append(')').toString();
+		case NOT:
+			return "NOT " + children[0];
+		default:
+			StringBuilder leaf = new StringBuilder(family == null ? "ROW" : Bytes.toString(family) + ":"
+					+ Bytes.toString(qualifier));
+			leaf.append(' ').append(kind);
+			for (int i = 0; i < values.length; i++) {
+				leaf.append(i == 0 ? " " : ", ").append(Bytes.toStringBinary(values[i]));
+			}
+			return leaf.toString();
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.protobuf.generated.PredicateProtos;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * 在 RegionServer 上按 {@link Predicate} 过滤行，代替由多个 SingleColumnValueFilter 嵌套组成的 FilterList。
+ * <p>
+ * 构造时把条件中的列去重排序，叶子条件按列分组编号。每个 Cell 用二分查找定位到列，只对该列上的叶子条件
+ * 各做一次字节比较，结果记在按叶子编号的数组中；行键上的条件在 filterRowKey 中求值。每得到新的结果就按三值逻辑
+ * （尚未读到的列为未知）求一次条件树，已确定不满足时返回 NEXT_ROW，跳过该行剩余的 Cell。
+ * 行结束时仍未读到的列即缺少该列，其上的叶子条件保持未知，结果不为 true 的行被过滤，语义见 {@link Predicate}。
+ * <p>
+ * hiddenColumns 中的列只用于判断，求值后返回 SKIP，不返回客户端，见 {@link PredicateCompiler}。
+ * 使用本过滤器的 Scan 不能设置 batch。
+ * <p>
+ * 部署：RegionServer 反序列化过滤器时按类名加载，须把包含本类、{@link Predicate} 和 PredicateProtos 的 jar
+ * 放到每个 RegionServer 的 classpath 上（如 $HBASE_HOME/lib）并重启，否则扫描会失败。
+ * {@link PredicateCompiler} 只在内置过滤器无法表达条件时才使用本类。
+ */
+public class PredicateFilter extends FilterBase {
+
+	private static final byte UNKNOWN = 0;
+	private static final byte TRUE = 1;
+	private static final byte FALSE = 2;
+
+	/**
+	 * 条件树中的一个节点，叶子节点的 leaf 为叶子编号
+	 */
+	private static final class Node {
+		final Predicate.Kind kind;
+		final int leaf;
+		final Node[] children;
+
+		Node(Predicate.Kind kind, int leaf, Node[] children) {
+			this.kind = kind;
+			this.leaf = leaf;
+			this.children = children;
+		}
+	}
+
+	private static final Comparator<byte[][]> COLUMN_COMPARATOR = new Comparator<byte[][]>() {
+		@Override
+		public int compare(byte[][] a, byte[][] b) {
+			int c = Bytes.compareTo(a[0], b[0]);
+			return c != 0 ? c : Bytes.compareTo(a[1], b[1]);
+		}
+	};
+
+	private final Predicate predicate;
+	private final List<byte[][]> hiddenColumns;
+
+	private final Node root;
+	private final Predicate[] leaves;
+	private final int[] rowLeaves;
+	/** 条件中的列，按 (列族, 列名) 排序 */
+	private final byte[][] families;
+	private final byte[][] qualifiers;
+	/** 每列上的叶子编号 */
+	private final int[][] columnLeaves;
+	private final boolean[] hidden;
+
+	// 当前行的状态，reset 时清除
+	private final byte[] state;
+	private final boolean[] seen;
+	private boolean filterOut = false;
+
+	public PredicateFilter(Predicate predicate) {
+		this(predicate, Collections.<byte[][]> emptyList());
+	}
+
+	/**
+	 * @param hiddenColumns 只用于判断、不返回客户端的列，形如 {family, qualifier}
+	 */
+	public PredicateFilter(Predicate predicate, List<byte[][]> hiddenColumns) {
+		this.predicate = predicate;
+		this.hiddenColumns = hiddenColumns;
+
+		List<Predicate> leafList = new ArrayList<Predicate>();
+		this.root = compile(predicate, leafList);
+		this.leaves = leafList.toArray(new Predicate[leafList.size()]);
+
+		List<byte[][]> columns = new ArrayList<byte[][]>();
+		predicate.collectColumns(columns);
+		Collections.sort(columns, COLUMN_COMPARATOR);
+		int n = 0;
+		for (int i = 0; i < columns.size(); i++) {
+			if (n == 0 || COLUMN_COMPARATOR.compare(columns.get(n - 1), columns.get(i)) != 0) {
+				columns.set(n++, columns.get(i));
+			}
+		}
+		this.families = new byte[n][];
+		this.qualifiers = new byte[n][];
+		this.columnLeaves = new int[n][];
+		this.hidden = new boolean[n];
+		int[] counts = new int[n];
+		int rows = 0;
+		for (Predicate leaf : leaves) {
+			if (leaf.isRowKey()) {
+				rows++;
+			} else {
+				counts[find(columns, n, leaf)]++;
+			}
+		}
+		for (int j = 0; j < n; j++) {
+			families[j] = columns.get(j)[0];
+			qualifiers[j] = columns.get(j)[1];
+			columnLeaves[j] = new int[counts[j]];
+			counts[j] = 0;
+		}
+		this.rowLeaves = new int[rows];
+		rows = 0;
+		for (int i = 0; i < leaves.length; i++) {
+			if (leaves[i].isRowKey()) {
+				rowLeaves[rows++] = i;
+			} else {
+				int j = find(columns, n, leaves[i]);
+				columnLeaves[j][counts[j]++] = i;
+			}
+		}
+		for (byte[][] column : hiddenColumns) {
+			int j = Collections.binarySearch(columns.subList(0, n), column, COLUMN_COMPARATOR);
+			if (j >= 0) {
+				hidden[j] = true;
+			}
+		}
+		this.state = new byte[leaves.length];
+		this.seen = new boolean[n];
+	}
+
+	private static Node compile(Predicate p, List<Predicate> leaves) {
+		if (p.getKind().isLeaf()) {
+			leaves.add(p);
+			return new Node(p.getKind(), leaves.size() - 1, null);
+		}
+		Predicate[] children = p.getChildren();
+		Node[] nodes = new Node[children.length];
+		for (int i = 0; i < children.length; i++) {
+			nodes[i] = compile(children[i], leaves);
+		}
+		return new Node(p.getKind(), -1, nodes);
+	}
+
+	private static int find(List<byte[][]> columns, int n, Predicate leaf) {
+		return Collections.binarySearch(columns.subList(0, n), new byte[][] { leaf.getFamily(), leaf.getQualifier() },
+				COLUMN_COMPARATOR);
+	}
+
+	/**
+	 * Cell 所在的列在条件列中的下标，不是条件中的列时返回负数
+	 */
+	private int find(Cell cell) {
+		int low = 0;
+		int high = families.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = Bytes.compareTo(families[mid], 0, families[mid].length, cell.getFamilyArray(),
+					cell.getFamilyOffset(), cell.getFamilyLength());
+			if (c == 0) {
+				c = Bytes.compareTo(qualifiers[mid], 0, qualifiers[mid].length, cell.getQualifierArray(),
+						cell.getQualifierOffset(), cell.getQualifierLength());
+			}
+			if (c == 0) {
+				return mid;
+			}
+			if (c < 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 三值求值，未知的叶子为 UNKNOWN。未知的叶子无论之后取何值都不会把 FALSE 变为 TRUE，因此中途得到 FALSE 即可放弃该行
+	 */
+	private byte evaluate(Node node) {
+		switch (node.kind) {
+		case AND: {
+			byte result = TRUE;
+			for (Node c : node.children) {
+				byte v = evaluate(c);
+				if (v == FALSE) {
+					return FALSE;
+				}
+				if (v == UNKNOWN) {
+					result = UNKNOWN;
+				}
+			}
+			return result;
+		}
+		case OR: {
+			byte result = FALSE;
+			for (Node c : node.children) {
+				byte v = evaluate(c);
+				if (v == TRUE) {
+					return TRUE;
+				}
+				if (v == UNKNOWN) {
+					result = UNKNOWN;
+				}
+			}
+			return result;
+		}
+		case NOT: {
+			byte v = evaluate(node.children[0]);
+			return v == UNKNOWN ? UNKNOWN : v == TRUE ? FALSE : TRUE;
+		}
+		default:
+			return state[node.leaf];
+		}
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(state, UNKNOWN);
+		Arrays.fill(seen, false);
+		filterOut = false;
+	}
+
+	@Override
+	public boolean filterRowKey(byte[] buffer, int offset, int length) {
+		if (rowLeaves.length > 0) {
+			for (int i : rowLeaves) {
+				state[i] = leaves[i].test(buffer, offset, length) ? TRUE : FALSE;
+			}
+			if (evaluate(root) == FALSE) {
+				filterOut = true;
+			}
+		}
+		return filterOut;
+	}
+
+	@Override
+	public ReturnCode filterKeyValue(Cell cell) {
+		if (filterOut) {
+			return ReturnCode.NEXT_ROW;
+		}
+		int j = find(cell);
+		if (j < 0) {
+			return ReturnCode.INCLUDE;
+		}
+		// 同一列较早的版本不再判断
+		if (!seen[j]) {
+			seen[j] = true;
+			for (int i : columnLeaves[j]) {
+				state[i] = leaves[i].test(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()) ? TRUE
+						: FALSE;
+			}
+			if (evaluate(root) == FALSE) {
+				filterOut = true;
+				return ReturnCode.NEXT_ROW;
+			}
+		}
+		return hidden[j] ? ReturnCode.SKIP : ReturnCode.INCLUDE;
+	}
+
+	@Override
+	public boolean hasFilterRow() {
+		return true;
+	}
+
+	@Override
+	public boolean filterRow() {
+		// 读完一行后仍未知的叶子对应缺少的列，结果为 UNKNOWN 的行同样不满足
+		if (!filterOut && evaluate(root) != TRUE) {
+			filterOut = true;
+		}
+		return filterOut;
+	}
+
+	public Predicate getPredicate() {
+		return predicate;
+	}
+
+	@Override
+	public byte[] toByteArray() {
+		PredicateProtos.PredicateFilter.Builder builder = PredicateProtos.PredicateFilter.newBuilder().setPredicate(
+				predicate.toProto());
+		for (byte[][] column : hiddenColumns) {
+			builder.addHiddenColumns(PredicateProtos.ColumnName.newBuilder().setFamily(ByteString.copyFrom(column[0]))
+					.setQualifier(ByteString.copyFrom(column[1])));
+		}
+		return builder.build().toByteArray();
+	}
+
+	/**
+	 * RegionServer 通过反射调用，反序列化 {@link #toByteArray()} 的结果
+	 */
+	public static PredicateFilter parseFrom(byte[] bytes) throws DeserializationException {
+		try {
+			PredicateProtos.PredicateFilter proto = PredicateProtos.PredicateFilter.parseFrom(bytes);
+			List<byte[][]> hiddenColumns = new ArrayList<byte[][]>(proto.getHiddenColumnsCount());
+			for (PredicateProtos.ColumnName c : proto.getHiddenColumnsList()) {
+				hiddenColumns.add(new byte[][] { c.getFamily().toByteArray(), c.getQualifier().toByteArray() });
+			}
+			return new PredicateFilter(Predicate.fromProto(proto.getPredicate()), hiddenColumns);
+		} catch (InvalidProtocolBufferException e) {
+			throw new DeserializationException(e);
+		} catch (IllegalArgumentException e) {
+			throw new DeserializationException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + predicate;
+	}
+}
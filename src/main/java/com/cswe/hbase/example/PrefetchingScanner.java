@@ -0,0 +1,246 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+
+/**
+ * 在后台线程中预读的扫描器，调用方处理当前一批行时，下一批的 RPC 已经在进行。
+ * <p>
+ * 双缓冲：后台线程不断调用被包装扫描器的 next 填充预读缓冲区，调用方读完手中的一批后把预读缓冲区整个换过来，
+ * 每批只加锁一次。调用方等待时，预读满 maxBufferRows 的一半（一般即一次 RPC 的 caching 行）才唤醒它，
+ * 避免逐行交接线程。两个缓冲区合计的行数达到 maxBufferRows 或字节数达到 maxBufferBytes 时暂停预读，
+ * maxBufferRows 一般取 Scan 的 caching 的两倍。单行超过 maxBufferBytes 时仍然放入，但缓冲区中只有这一行。
+ * <p>
+ * 被包装扫描器抛出的异常在缓冲区中已有的行读完之后由 next 抛出。
+ * close 停止预读并等待后台线程结束，被包装的扫描器由后台线程关闭，它的 ScanMetrics 照常写入 Scan。
+ * 被包装的扫描器只在后台线程中访问，本扫描器只能在一个线程中使用。
+ */
+public class PrefetchingScanner extends AbstractClientScanner {
+
+	private final static Log log = LogFactory.getLog(PrefetchingScanner.class);
+
+	public static final long DEFAULT_MAX_BUFFER_BYTES = 4L * 1024 * 1024;
+
+	private static final AtomicInteger threadIds = new AtomicInteger();
+
+	private final ResultScanner delegate;
+	private final int maxBufferRows;
+	private final long maxBufferBytes;
+	private final Thread fetcher;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	// 以下字段由 lock 保护
+	private ArrayDeque<Result> buffer = new ArrayDeque<Result>();
+	private long bufferedBytes = 0;
+	/** 调用方手中尚未读完的一批，计入缓冲上限 */
+	private int heldRows = 0;
+	private long heldBytes = 0;
+	/** 调用方在等待预读 */
+	private boolean waiting = false;
+	/** 后台线程因缓冲区满在等待 */
+	private boolean blocked = false;
+	private boolean exhausted = false;
+	private Throwable error = null;
+	private boolean stopped = false;
+	private boolean fetcherDone = false;
+
+	/** 调用方手中的一批，只在调用线程中访问 */
+	private ArrayDeque<Result> current = new ArrayDeque<Result>();
+	private boolean closed = false;
+	private long waitNanos = 0;
+
+	/**
+	 * @param maxBufferRows 预读的行数上限，一般为 Scan caching 的两倍
+	 */
+	public PrefetchingScanner(ResultScanner delegate, int maxBufferRows) {
+		this(delegate, maxBufferRows, DEFAULT_MAX_BUFFER_BYTES);
+	}
+
+	public PrefetchingScanner(ResultScanner delegate, int maxBufferRows, long maxBufferBytes) {
+		if (maxBufferRows <= 0 || maxBufferBytes <= 0) {
+			throw new IllegalArgumentException("Buffer limits must be positive: " + maxBufferRows + " rows, "
+					+ maxBufferBytes + " bytes");
+		}
+		this.delegate = delegate;
+		this.maxBufferRows = maxBufferRows;
+		this.maxBufferBytes = maxBufferBytes;
+		this.fetcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				fetch();
+			}
+		}, "PrefetchingScanner-" + threadIds.incrementAndGet());
+		this.fetcher.setDaemon(true);
+		this.fetcher.start();
+	}
+
+	private void fetch() {
+		try {
+			while (true) {
+				Result r = delegate.next();
+				lock.lock();
+				try {
+					if (r == null) {
+						exhausted = true;
+						notEmpty.signal();
+						return;
+					}
+					long size = Result.getTotalSizeOfCells(r);
+					while (!stopped && (!buffer.isEmpty() || heldRows > 0) && full(size)) {
+						// 缓冲区已满，不必等到半批，让等待的调用方先取走
+						blocked = true;
+						if (waiting) {
+							notEmpty.signal();
+						}
+						notFull.await();
+						blocked = false;
+					}
+					if (stopped) {
+						return;
+					}
+					buffer.add(r);
+					bufferedBytes += size;
+					if (waiting && buffer.size() >= (maxBufferRows + 1) / 2) {
+						notEmpty.signal();
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+		} catch (Throwable t) {
+			lock.lock();
+			try {
+				error = t;
+				notEmpty.signal();
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			try {
+				delegate.close();
+			} catch (Throwable t) {
+				log.warn("Close scanner failed ", t);
+			}
+			lock.lock();
+			try {
+				fetcherDone = true;
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 再放入一行 size 字节的结果是否超过缓冲上限
+	 */
+	private boolean full(long size) {
+		return buffer.size() + heldRows >= maxBufferRows || bufferedBytes + heldBytes + size > maxBufferBytes;
+	}
+
+	@Override
+	public Result next() throws IOException {
+		if (closed) {
+			return null;
+		}
+		Result r = current.poll();
+		return r != null ? r : swap();
+	}
+
+	/**
+	 * 手中的一批读完后，与预读缓冲区交换
+	 */
+	private Result swap() throws IOException {
+		lock.lock();
+		try {
+			if (buffer.isEmpty() && !exhausted && error == null) {
+				long start = System.nanoTime();
+				waiting = true;
+				// 释放手中这一批占用的额度，让后台线程继续预读
+				heldRows = 0;
+				heldBytes = 0;
+				notFull.signal();
+				try {
+					while (!exhausted && error == null && buffer.size() < (maxBufferRows + 1) / 2
+							&& !(blocked && !buffer.isEmpty())) {
+						notEmpty.await();
+					}
+				} finally {
+					waiting = false;
+				}
+				waitNanos += System.nanoTime() - start;
+			}
+			if (buffer.isEmpty()) {
+				if (error != null) {
+					throw error instanceof IOException ? (IOException) error : new IOException(error);
+				}
+				return null;
+			}
+			ArrayDeque<Result> batch = buffer;
+			buffer = current;
+			current = batch;
+			heldRows = batch.size();
+			heldBytes = bufferedBytes;
+			bufferedBytes = 0;
+			notFull.signal();
+			return current.poll();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted while waiting for rows")
+					.initCause(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 被包装的扫描器在后台线程中使用，不能在调用线程中续租
+	 */
+	@Override
+	public boolean renewLease() {
+		return false;
+	}
+
+	/**
+	 * 停止预读并等待后台线程关闭被包装的扫描器。后台线程正在等待 RPC 时，要等这次 RPC 返回
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		lock.lock();
+		try {
+			stopped = true;
+			buffer.clear();
+			current.clear();
+			bufferedBytes = 0;
+			notFull.signal();
+			while (!fetcherDone) {
+				notEmpty.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 调用方在 next 中等待后台线程的总时间，接近 0 说明预读完全掩盖了 RPC 耗时
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+}
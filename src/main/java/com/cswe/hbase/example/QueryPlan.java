@@ -0,0 +1,77 @@
+package com.cswe.hbase.example;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * {@link QueryPlanner} 选出的执行计划。
+ */
+public class QueryPlan {
+
+	public enum Type {
+		/** 由二级索引协处理器根据索引列上的条件定位行 */
+		INDEX_LOOKUP,
+		/** 按行键条件确定起止行后扫描 */
+		KEY_RANGE_SCAN,
+		/** 全表扫描，只读取需要的列，条件下推为服务端过滤器 */
+		PRUNED_FULL_SCAN
+	}
+
+	private final Type type;
+	private final Scan scan;
+	private final double estimatedCost;
+	private final long estimatedRows;
+	private final String indexName;
+
+	QueryPlan(Type type, Scan scan, double estimatedCost, long estimatedRows, String indexName) {
+		this.type = type;
+		this.scan = scan;
+		this.estimatedCost = estimatedCost;
+		this.estimatedRows = estimatedRows;
+		this.indexName = indexName;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Scan getScan() {
+		return scan;
+	}
+
+	/**
+	 * 估算代价，单位为顺序读取一行的代价
+	 */
+	public double getEstimatedCost() {
+		return estimatedCost;
+	}
+
+	/**
+	 * 估算返回的行数
+	 */
+	public long getEstimatedRows() {
+		return estimatedRows;
+	}
+
+	/**
+	 * 使用的索引名，非 INDEX_LOOKUP 时为 null
+	 */
+	public String getIndexName() {
+		return indexName;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(type.name());
+		if (indexName != null) {
+			sb.append("(").append(indexName).append(")");
+		}
+		sb.append(" cost=").append(String.format("%.1f", estimatedCost));
+		sb.append(" rows=").append(estimatedRows);
+		if (type == Type.KEY_RANGE_SCAN) {
+			sb.append(" range=[").append(Bytes.toStringBinary(scan.getStartRow())).append(", ")
+					.append(Bytes.toStringBinary(scan.getStopRow())).append(")");
+		}
+		return sb.toString();
+	}
+}
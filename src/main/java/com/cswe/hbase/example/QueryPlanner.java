@@ -0,0 +1,293 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.index.ColumnQualifier;
+import org.apache.hadoop.hbase.index.Constants;
+import org.apache.hadoop.hbase.index.IndexSpecification;
+import org.apache.hadoop.hbase.index.client.IndexUtils;
+import org.apache.hadoop.hbase.index.client.NoIndexExpression;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 基于代价的查询计划：根据采样得到的选择率，在二级索引查询、行键范围扫描和全表扫描之间选择。
+ * <p>
+ * 代价以顺序读取一行为单位：
+ * <ul>
+ * <li>全表扫描：N</li>
+ * <li>行键范围扫描：N * 行键条件选择率 + {@link #SEEK_COST}</li>
+ * <li>索引查询：每个 Region 查一次索引 {@link #INDEX_REGION_COST}，命中的每行再随机读一次 {@link #INDEX_ROW_COST}</li>
+ * </ul>
+ * 只有单列索引且条件不是 NOT_EQUAL 时才考虑走索引。不走索引的计划会显式关闭索引，
+ * 避免协处理器看到索引列上的过滤器后自行改走索引。
+ * <p>
+ * 采样统计缓存在 planner 中，在 statisticsTtlMillis 内复用；新出现的条件会与缓存中的条件一起重新采样。
+ * 数据量变化较大后可以调用 {@link #refreshStatistics(List)} 立即重新采样。
+ */
+public class QueryPlanner {
+
+	private final static Log log = LogFactory.getLog(QueryPlanner.class);
+
+	static final double SEEK_COST = 50;
+	static final double INDEX_REGION_COST = 50;
+	static final double INDEX_ROW_COST = 10;
+
+	private static final int DEFAULT_SAMPLE_PER_REGION = 1000;
+	private static final long DEFAULT_STATISTICS_TTL_MILLIS = 10 * 60 * 1000L;
+
+	/**
+	 * 已注册的单列索引
+	 */
+	static final class IndexInfo {
+		private final String name;
+		private final byte[] family;
+		private final byte[] qualifier;
+
+		IndexInfo(String name, byte[] family, byte[] qualifier) {
+			this.name = name;
+			this.family = family;
+			this.qualifier = qualifier;
+		}
+
+		boolean covers(ColumnPredicate p) {
+			return !p.isRowKey() && p.getOp() != CompareOp.NOT_EQUAL && Bytes.equals(family, p.getFamily())
+					&& Bytes.equals(qualifier, p.getQualifier());
+		}
+	}
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final List<IndexInfo> indexes = new ArrayList<IndexInfo>();
+	private int samplePerRegion = DEFAULT_SAMPLE_PER_REGION;
+	private long statisticsTtlMillis = DEFAULT_STATISTICS_TTL_MILLIS;
+	/** 最近一次采样的结果和时间，由 this 保护 */
+	private TableStatistics statistics;
+	private long statisticsTime;
+
+	public QueryPlanner(Connection conn, TableName tableName) {
+		this.conn = conn;
+		this.tableName = tableName;
+	}
+
+	/**
+	 * 注册表上已创建的索引，通常就是传给 IndexAdmin.addIndex 的 IndexSpecification
+	 */
+	public void addIndex(IndexSpecification spec) {
+		if (spec.getIndexColumns().size() != 1) {
+			log.info("Skip multi-column index " + spec.getName() + ", only single-column indexes are planned");
+			return;
+		}
+		ColumnQualifier column = spec.getIndexColumns().iterator().next();
+		addIndex(spec.getName(), column.getColumnFamily(), column.getQualifier());
+	}
+
+	void addIndex(String name, byte[] family, byte[] qualifier) {
+		indexes.add(new IndexInfo(name, family, qualifier));
+	}
+
+	public void setSamplePerRegion(int samplePerRegion) {
+		this.samplePerRegion = samplePerRegion;
+	}
+
+	/**
+	 * 采样统计的有效期，超过后下一次 plan 重新采样
+	 */
+	public void setStatisticsTtlMillis(long statisticsTtlMillis) {
+		this.statisticsTtlMillis = statisticsTtlMillis;
+	}
+
+	/**
+	 * 根据采样统计生成计划，统计在有效期内且包含全部条件时直接复用
+	 *
+	 * @param predicates 条件之间为 AND 关系
+	 * @param columns 需要返回的列，形如 {family, qualifier}，为空时返回整行
+	 */
+	public QueryPlan plan(List<ColumnPredicate> predicates, List<byte[][]> columns) throws IOException {
+		return plan(predicates, columns, statistics(predicates));
+	}
+
+	/**
+	 * 有效期内且包含 predicates 的缓存统计，否则重新采样
+	 */
+	public synchronized TableStatistics statistics(List<ColumnPredicate> predicates) throws IOException {
+		boolean fresh = statistics != null && System.currentTimeMillis() - statisticsTime < statisticsTtlMillis;
+		if (fresh && statistics.covers(predicates)) {
+			return statistics;
+		}
+		// 未过期时连同已统计的条件一起采样，交替使用不同条件时不会反复采样
+		Set<ColumnPredicate> all = new LinkedHashSet<ColumnPredicate>(predicates);
+		if (fresh) {
+			all.addAll(statistics.getPredicates());
+		}
+		return refreshStatistics(new ArrayList<ColumnPredicate>(all));
+	}
+
+	/**
+	 * 立即重新采样，结果替换缓存的统计
+	 */
+	public synchronized TableStatistics refreshStatistics(List<ColumnPredicate> predicates) throws IOException {
+		statistics = collect(predicates);
+		statisticsTime = System.currentTimeMillis();
+		return statistics;
+	}
+
+	TableStatistics collect(List<ColumnPredicate> predicates) throws IOException {
+		return TableStatistics.collect(conn, tableName, predicates, samplePerRegion);
+	}
+
+	QueryPlan plan(List<ColumnPredicate> predicates, List<byte[][]> columns, TableStatistics stats)
+			throws IOException {
+		long n = stats.getEstimatedRows();
+		double resultSelectivity = 1.0;
+		for (ColumnPredicate p : predicates) {
+			resultSelectivity *= stats.selectivity(p);
+		}
+		long estimatedRows = Math.round(n * resultSelectivity);
+
+		QueryPlan.Type type = QueryPlan.Type.PRUNED_FULL_SCAN;
+		double cost = n;
+
+		// 行键范围
+		byte[] startRow = HConstants.EMPTY_START_ROW;
+		byte[] stopRow = HConstants.EMPTY_END_ROW;
+		double keySelectivity = 1.0;
+		boolean ranged = false;
+		for (ColumnPredicate p : predicates) {
+			if (!p.isRowKey() || p.getOp() == CompareOp.NOT_EQUAL) {
+				continue;
+			}
+			byte[] v = p.getValue();
+			CompareOp op = p.getOp();
+			if (op == CompareOp.EQUAL || op == CompareOp.GREATER_OR_EQUAL) {
+				startRow = maxStart(startRow, v);
+			} else if (op == CompareOp.GREATER) {
+				startRow = maxStart(startRow, successor(v));
+			}
+			if (op == CompareOp.EQUAL || op == CompareOp.LESS_OR_EQUAL) {
+				stopRow = minStop(stopRow, successor(v));
+			} else if (op == CompareOp.LESS) {
+				stopRow = minStop(stopRow, v);
+			}
+			keySelectivity *= stats.selectivity(p);
+			ranged = true;
+		}
+		if (ranged) {
+			double rangeCost = n * keySelectivity + SEEK_COST;
+			if (rangeCost < cost) {
+				type = QueryPlan.Type.KEY_RANGE_SCAN;
+				cost = rangeCost;
+			}
+		}
+
+		// 索引：选择率最低的可用索引
+		IndexInfo bestIndex = null;
+		ColumnPredicate indexed = null;
+		for (IndexInfo index : indexes) {
+			for (ColumnPredicate p : predicates) {
+				if (!index.covers(p)) {
+					continue;
+				}
+				double indexCost = INDEX_REGION_COST * stats.getRegions() + n * stats.selectivity(p) * INDEX_ROW_COST;
+				if (indexCost < cost) {
+					type = QueryPlan.Type.INDEX_LOOKUP;
+					cost = indexCost;
+					bestIndex = index;
+					indexed = p;
+				}
+			}
+		}
+
+		Scan scan = new Scan();
+		if (type == QueryPlan.Type.KEY_RANGE_SCAN) {
+			scan.setStartRow(startRow);
+			scan.setStopRow(stopRow);
+		}
+		if (columns != null && !columns.isEmpty()) {
+			for (byte[][] column : columns) {
+				scan.addColumn(column[0], column[1]);
+			}
+			// SingleColumnValueFilter 需要读到条件列才能判断
+			for (ColumnPredicate p : predicates) {
+				if (!p.isRowKey()) {
+					scan.addColumn(p.getFamily(), p.getQualifier());
+				}
+			}
+		}
+		FilterList filters = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+		if (indexed != null) {
+			filters.addFilter(indexed.toFilter());
+		}
+		for (ColumnPredicate p : predicates) {
+			if (p != indexed) {
+				filters.addFilter(p.toFilter());
+			}
+		}
+		if (!filters.getFilters().isEmpty()) {
+			scan.setFilter(filters);
+		}
+		if (type != QueryPlan.Type.INDEX_LOOKUP) {
+			scan.setAttribute(Constants.INDEX_EXPRESSION, IndexUtils.toBytes(new NoIndexExpression()));
+		}
+		QueryPlan plan = new QueryPlan(type, scan, cost, estimatedRows, bestIndex == null ? null : bestIndex.name);
+		log.info("Planned " + predicates + " on " + tableName + ": " + plan + " (" + stats + ")");
+		return plan;
+	}
+
+	/**
+	 * 执行计划并记录实际耗时，便于与估算代价对照
+	 *
+	 * @return 返回的行数
+	 */
+	public long execute(QueryPlan plan, ParallelScanner.ResultHandler handler) throws IOException {
+		long start = System.nanoTime();
+		long rows = 0;
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(plan.getScan());
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					rows++;
+					handler.onResult(r);
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		log.info("Executed " + plan + " on " + tableName + ": rows=" + rows + ", elapsed=" + elapsedMillis + "ms");
+		return rows;
+	}
+
+	private static byte[] successor(byte[] row) {
+		return Bytes.add(row, new byte[] { 0 });
+	}
+
+	private static byte[] maxStart(byte[] a, byte[] b) {
+		return Bytes.compareTo(a, b) >= 0 ? a : b;
+	}
+
+	private static byte[] minStop(byte[] a, byte[] b) {
+		// 空的结束行表示无上界
+		if (a.length == 0) {
+			return b;
+		}
+		return Bytes.compareTo(a, b) <= 0 ? a : b;
+	}
+}
@@ -0,0 +1,85 @@
+package com.cswe.hbase.example;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流：每秒产生 permitsPerSecond 个许可，空闲时最多积攒 1 秒的许可。
+ * <p>
+ * 一次申请超过已有许可时先放行，欠下的许可由之后的申请等待补足，因此一次可以申请一整批（如一批 Put 的行数）。
+ * 行为与 Guava 的 RateLimiter 相同，HBase 1.0 依赖的 Guava 12 中还没有该类。线程安全。
+ */
+public class RateLimiter {
+
+	private double permitsPerSecond;
+	/** 空闲时积攒的许可 */
+	private double stored = 0;
+	/** 此时刻之前的许可已经发出 */
+	private long nextFreeNanos = System.nanoTime();
+
+	/**
+	 * @param permitsPerSecond 为 Double.POSITIVE_INFINITY 时不限流
+	 */
+	public RateLimiter(double permitsPerSecond) {
+		setRate(permitsPerSecond);
+	}
+
+	/**
+	 * 调整速率，之前欠下的许可仍按原速率计算
+	 */
+	public synchronized void setRate(double permitsPerSecond) {
+		if (!(permitsPerSecond > 0)) {
+			throw new IllegalArgumentException("Rate must be positive: " + permitsPerSecond);
+		}
+		resync(System.nanoTime());
+		this.permitsPerSecond = permitsPerSecond;
+		this.stored = Math.min(stored, permitsPerSecond);
+	}
+
+	public synchronized double getRate() {
+		return permitsPerSecond;
+	}
+
+	/**
+	 * 申请 permits 个许可，必要时阻塞
+	 *
+	 * @return 等待的纳秒数
+	 */
+	public long acquire(int permits) throws InterruptedIOException {
+		long waitNanos;
+		synchronized (this) {
+			if (Double.isInfinite(permitsPerSecond)) {
+				return 0;
+			}
+			long now = System.nanoTime();
+			resync(now);
+			waitNanos = nextFreeNanos - now;
+			double fromStored = Math.min(permits, stored);
+			stored -= fromStored;
+			nextFreeNanos += (long) ((permits - fromStored) * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		}
+		if (waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw (InterruptedIOException) new InterruptedIOException("Interrupted while throttled").initCause(e);
+			}
+			return waitNanos;
+		}
+		return 0;
+	}
+
+	/**
+	 * 把空闲的时间折算为积攒的许可
+	 */
+	private void resync(long now) {
+		if (now > nextFreeNanos) {
+			if (!Double.isInfinite(permitsPerSecond) && permitsPerSecond > 0) {
+				stored = Math.min(permitsPerSecond, stored + (now - nextFreeNanos) * permitsPerSecond
+						/ TimeUnit.SECONDS.toNanos(1));
+			}
+			nextFreeNanos = now;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 按 Region 边界把一个 Scan 切分为多个子 Scan，每个子 Scan 只落在一个 Region 内。
+ */
+public class RegionScanSplitter {
+
+	/**
+	 * 一个 Region 上的子 Scan
+	 */
+	public static class RegionScan {
+		private final HRegionLocation location;
+		private final Scan scan;
+
+		public RegionScan(HRegionLocation location, Scan scan) {
+			this.location = location;
+			this.scan = scan;
+		}
+
+		public HRegionLocation getLocation() {
+			return location;
+		}
+
+		public Scan getScan() {
+			return scan;
+		}
+	}
+
+	private static final Comparator<HRegionLocation> BY_START_KEY = new Comparator<HRegionLocation>() {
+		@Override
+		public int compare(HRegionLocation a, HRegionLocation b) {
+			return Bytes.compareTo(a.getRegionInfo().getStartKey(), b.getRegionInfo().getStartKey());
+		}
+	};
+
+	private RegionScanSplitter() {
+	}
+
+	/**
+	 * 把 scan 的 [startRow, stopRow) 与每个 Region 的 [startKey, endKey) 求交集，结果按行键顺序排列。
+	 * 子 Scan 复制原 Scan 的列、过滤器、caching 等全部属性。
+	 */
+	public static List<RegionScan> split(Scan scan, List<HRegionLocation> locations) throws IOException {
+		if (scan.isReversed()) {
+			throw new IllegalArgumentException("Reversed scan can not be split by region");
+		}
+		List<HRegionLocation> sorted = new ArrayList<HRegionLocation>(locations);
+		Collections.sort(sorted, BY_START_KEY);
+
+		byte[] scanStart = scan.getStartRow();
+		byte[] scanStop = scan.getStopRow();
+		List<RegionScan> result = new ArrayList<RegionScan>(sorted.size());
+		for (HRegionLocation location : sorted) {
+			byte[] start = max(scanStart, location.getRegionInfo().getStartKey());
+			byte[] stop = minStop(scanStop, location.getRegionInfo().getEndKey());
+			if (stop.length > 0 && Bytes.compareTo(start, stop) >= 0) {
+				continue;
+			}
+			Scan sub = new Scan(scan);
+			sub.setStartRow(start);
+			sub.setStopRow(stop);
+			result.add(new RegionScan(location, sub));
+		}
+		return result;
+	}
+
+	private static byte[] max(byte[] a, byte[] b) {
+		return Bytes.compareTo(a, b) >= 0 ? a : b;
+	}
+
+	/**
+	 * 空数组表示无上界
+	 */
+	private static byte[] minStop(byte[] a, byte[] b) {
+		if (a.length == 0) {
+			return b;
+		}
+		if (b.length == 0) {
+			return a;
+		}
+		return Bytes.compareTo(a, b) <= 0 ? a : b;
+	}
+}
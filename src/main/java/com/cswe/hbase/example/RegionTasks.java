@@ -0,0 +1,162 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 按 Region 并行执行的批处理任务共用的部分：参数、进度、线程池、按 Region 区间命名的检查点。
+ * 由 {@link IndexBackfiller}、{@link ChangeCapture}、{@link BulkDeleteClient} 使用。
+ */
+public final class RegionTasks {
+
+	/** 各 Region 检查点名字的前缀 */
+	static final String CHECKPOINT_PREFIX = "region-";
+
+	private RegionTasks() {
+	}
+
+	/**
+	 * 各任务共有的参数，P 为子类自身，用于链式调用
+	 */
+	public abstract static class Params<P extends Params<P>> {
+		private int parallelism = 4;
+		private int batchRows;
+
+		protected Params(int batchRows) {
+			this.batchRows = batchRows;
+		}
+
+		@SuppressWarnings("unchecked")
+		private P self() {
+			return (P) this;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		/** 同时处理的 Region 数 */
+		public P parallelism(int parallelism) {
+			this.parallelism = parallelism;
+			return self();
+		}
+
+		public int getBatchRows() {
+			return batchRows;
+		}
+
+		/** 每批处理的行数，具体含义见各任务的 Params */
+		public P batchRows(int batchRows) {
+			this.batchRows = batchRows;
+			return self();
+		}
+	}
+
+	/**
+	 * 各任务共有的进度，运行中可以在其它线程读取
+	 */
+	public abstract static class Progress {
+		private final int regions;
+		final AtomicInteger regionsDone = new AtomicInteger();
+		private final long startNanos = System.nanoTime();
+		private volatile long endNanos = 0;
+
+		protected Progress(int regions) {
+			this.regions = regions;
+		}
+
+		public int getRegions() {
+			return regions;
+		}
+
+		/** 已完成的 Region 数 */
+		public int getRegionsDone() {
+			return regionsDone.get();
+		}
+
+		public long getElapsedNanos() {
+			return (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+		}
+
+		void finish() {
+			endNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * 区间 [start, end) 的检查点名字。分裂出的左子 Region 与父 Region 起始行相同，名字中需要有结束行，
+	 * 否则左子 Region 会覆盖父 Region 的检查点
+	 */
+	static String checkpointName(byte[] start, byte[] end) {
+		// 第一个 Region 的起始行、最后一个 Region 的结束行为空，Bytes.toHex 不接受空数组
+		return CHECKPOINT_PREFIX + (start.length > 0 ? Bytes.toHex(start) : "") + "_"
+				+ (end.length > 0 ? Bytes.toHex(end) : "");
+	}
+
+	/**
+	 * 按 RegionServer 交错排列，同时运行的任务尽量落在不同的 Server 上
+	 */
+	static List<HRegionLocation> interleave(List<HRegionLocation> locations) {
+		Map<ServerName, List<HRegionLocation>> byServer = new LinkedHashMap<ServerName, List<HRegionLocation>>();
+		for (HRegionLocation location : locations) {
+			List<HRegionLocation> list = byServer.get(location.getServerName());
+			if (list == null) {
+				list = new ArrayList<HRegionLocation>();
+				byServer.put(location.getServerName(), list);
+			}
+			list.add(location);
+		}
+		List<HRegionLocation> result = new ArrayList<HRegionLocation>(locations.size());
+		for (int i = 0; result.size() < locations.size(); i++) {
+			for (List<HRegionLocation> list : byServer.values()) {
+				if (i < list.size()) {
+					result.add(list.get(i));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 在最多 parallelism 个线程上执行 tasks，阻塞到全部完成。任一任务失败时中断其余任务，抛出按提交顺序第一个失败的异常
+	 *
+	 * @param operation 被中断时异常信息中的操作名
+	 */
+	static void runAll(List<Callable<Void>> tasks, int parallelism, String operation) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())));
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (Callable<Void> task : tasks) {
+				futures.add(pool.submit(task));
+			}
+			for (Future<Void> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e
+							.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted during " + operation)
+					.initCause(e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,407 @@
+package com.cswe.hbase.example;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 客户端读缓存，以行键加列集合为键缓存 Get 的结果。
+ * <p>
+ * 按字节数限制容量，条目超过 TTL 后失效。淘汰策略为 LRU，可选 TinyLFU 准入：
+ * 容量不足时，新条目的访问频率不高于 LRU 队尾条目则不进入缓存，避免偶发的冷数据冲掉热点数据。
+ * 只缓存不带过滤器、时间范围和多版本的 Get。写入同一行后需调用 {@link #invalidate(byte[])}，
+ * HbaseExample 在 putData、putDataBuffered 和 deleteData 中自动完成。
+ * <p>
+ * 读取和填充之间可能有并发的写入使该行失效，因此填充前需在读取之前用 {@link #generation(byte[])} 取得该行的版本号，
+ * 失效会使版本号增加，{@link #put(Get, Result, long)} 发现版本号变化时丢弃这次填充，不会缓存旧值。
+ * 版本号按行键哈希分段保存，不同的行落在同一段时只会多丢弃一些填充。
+ */
+public class RowCache {
+
+	public enum EvictionPolicy {
+		LRU, TINY_LFU
+	}
+
+	/** 每个条目的固定开销估算：键包装、链表节点、行索引 */
+	private static final int ENTRY_OVERHEAD = 128;
+	/** 行版本号的分段数，必须是 2 的幂 */
+	private static final int GENERATION_STRIPES = 1024;
+
+	private static final class Entry {
+		private final ByteBuffer row;
+		private final Result result;
+		private final long size;
+		private final long expireAt;
+
+		Entry(ByteBuffer row, Result result, long size, long expireAt) {
+			this.row = row;
+			this.result = result;
+			this.size = size;
+			this.expireAt = expireAt;
+		}
+	}
+
+	private final long maxBytes;
+	private final long ttlMillis;
+	private final EvictionPolicy policy;
+	private final FrequencySketch sketch;
+
+	private final LinkedHashMap<ByteBuffer, Entry> entries = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true);
+	/** 行键到该行所有缓存键的索引，用于按行失效 */
+	private final Map<ByteBuffer, Set<ByteBuffer>> rows = new HashMap<ByteBuffer, Set<ByteBuffer>>();
+	private long sizeBytes = 0;
+	/** 按行键哈希分段的版本号，失效时增加 */
+	private final long[] generations = new long[GENERATION_STRIPES];
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong expiredCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final AtomicLong staleCount = new AtomicLong();
+
+	/**
+	 * @param maxBytes 缓存结果的总字节数上限
+	 * @param ttlMillis 条目存活时间
+	 * @param policy 淘汰策略
+	 */
+	public RowCache(long maxBytes, long ttlMillis, EvictionPolicy policy) {
+		if (maxBytes <= 0 || ttlMillis <= 0) {
+			throw new IllegalArgumentException("maxBytes and ttlMillis must be positive");
+		}
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMillis;
+		this.policy = policy;
+		// 按平均每个条目 1KB 估算频率统计的规模
+		this.sketch = policy == EvictionPolicy.TINY_LFU
+				? new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 16, Math.max(1024, maxBytes / 1024)))
+				: null;
+	}
+
+	/**
+	 * 该 Get 是否可以缓存：只有按列查询最新版本的 Get 才缓存
+	 */
+	public static boolean isCacheable(Get get) {
+		return get.getFilter() == null && get.getTimeRange().isAllTime() && get.getMaxVersions() == 1
+				&& get.getMaxResultsPerColumnFamily() < 0 && get.getRowOffsetPerColumnFamily() == 0
+				&& !get.isCheckExistenceOnly();
+	}
+
+	/**
+	 * @return 缓存的结果，未命中或已过期时返回 null
+	 */
+	public Result get(Get get) {
+		if (!isCacheable(get)) {
+			return null;
+		}
+		ByteBuffer key = keyOf(get);
+		synchronized (this) {
+			if (sketch != null) {
+				sketch.increment(key.hashCode());
+			}
+			Entry e = entries.get(key);
+			if (e == null) {
+				missCount.incrementAndGet();
+				return null;
+			}
+			if (e.expireAt <= System.currentTimeMillis()) {
+				remove(key, e);
+				expiredCount.incrementAndGet();
+				missCount.incrementAndGet();
+				return null;
+			}
+			hitCount.incrementAndGet();
+			return e.result;
+		}
+	}
+
+	/**
+	 * 行的当前版本号，需在向服务端读取之前取得，填充时传给 {@link #put(Get, Result, long)}
+	 */
+	public synchronized long generation(byte[] row) {
+		return generations[stripe(row)];
+	}
+
+	/**
+	 * 缓存 Get 的结果，容量不足时按淘汰策略腾出空间或拒绝。
+	 * 读取之后该行被失效过（版本号不再是 generation）时丢弃这次填充。
+	 */
+	public void put(Get get, Result result, long generation) {
+		if (!isCacheable(get)) {
+			return;
+		}
+		ByteBuffer key = keyOf(get);
+		long size = sizeOf(key, result);
+		if (size > maxBytes) {
+			rejectedCount.incrementAndGet();
+			return;
+		}
+		ByteBuffer row = ByteBuffer.wrap(get.getRow());
+		synchronized (this) {
+			if (generations[stripe(get.getRow())] != generation) {
+				staleCount.incrementAndGet();
+				return;
+			}
+			Entry old = entries.get(key);
+			if (old != null) {
+				remove(key, old);
+			}
+			if (!makeRoom(key, size)) {
+				rejectedCount.incrementAndGet();
+				return;
+			}
+			entries.put(key, new Entry(row, result, size, System.currentTimeMillis() + ttlMillis));
+			Set<ByteBuffer> keys = rows.get(row);
+			if (keys == null) {
+				keys = new HashSet<ByteBuffer>();
+				rows.put(row, keys);
+			}
+			keys.add(key);
+			sizeBytes += size;
+		}
+	}
+
+	/**
+	 * 使某一行的所有缓存条目失效
+	 */
+	public synchronized void invalidate(byte[] row) {
+		generations[stripe(row)]++;
+		Set<ByteBuffer> keys = rows.remove(ByteBuffer.wrap(row));
+		if (keys == null) {
+			return;
+		}
+		for (ByteBuffer key : keys) {
+			Entry e = entries.remove(key);
+			if (e != null) {
+				sizeBytes -= e.size;
+				invalidationCount.incrementAndGet();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		for (int i = 0; i < generations.length; i++) {
+			generations[i]++;
+		}
+		entries.clear();
+		rows.clear();
+		sizeBytes = 0;
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	/** 因超过容量或未通过 TinyLFU 准入而没有缓存的结果数 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+
+	/** 读取期间该行被失效而丢弃的填充数 */
+	public long getStaleCount() {
+		return staleCount.get();
+	}
+
+	public EvictionPolicy getPolicy() {
+		return policy;
+	}
+
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return "RowCache[entries=" + getEntryCount() + ", sizeBytes=" + getSizeBytes() + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ", expired="
+				+ getExpiredCount() + ", rejected=" + getRejectedCount() + ", invalidations="
+				+ getInvalidationCount() + ", stale=" + getStaleCount() + "]";
+	}
+
+	/**
+	 * 淘汰 LRU 队尾条目直到放得下 size 字节。TinyLFU 下队尾条目比新条目更常用时放弃插入。
+	 * 先选出要淘汰的条目，确定能放下后才真正淘汰，放弃插入时缓存不变。
+	 */
+	private boolean makeRoom(ByteBuffer key, long size) {
+		long now = System.currentTimeMillis();
+		long freed = 0;
+		List<Map.Entry<ByteBuffer, Entry>> victims = new ArrayList<Map.Entry<ByteBuffer, Entry>>();
+		Iterator<Map.Entry<ByteBuffer, Entry>> it = entries.entrySet().iterator();
+		while (sizeBytes - freed + size > maxBytes && it.hasNext()) {
+			Map.Entry<ByteBuffer, Entry> victim = it.next();
+			Entry e = victim.getValue();
+			if (e.expireAt > now && sketch != null
+					&& sketch.frequency(key.hashCode()) <= sketch.frequency(victim.getKey().hashCode())) {
+				return false;
+			}
+			victims.add(victim);
+			freed += e.size;
+		}
+		if (sizeBytes - freed + size > maxBytes) {
+			return false;
+		}
+		for (Map.Entry<ByteBuffer, Entry> victim : victims) {
+			Entry e = victim.getValue();
+			remove(victim.getKey(), e);
+			if (e.expireAt <= now) {
+				expiredCount.incrementAndGet();
+			} else {
+				evictionCount.incrementAndGet();
+			}
+		}
+		return true;
+	}
+
+	private static int stripe(byte[] row) {
+		return Bytes.hashCode(row) & (GENERATION_STRIPES - 1);
+	}
+
+	private void remove(ByteBuffer key, Entry e) {
+		entries.remove(key);
+		unindex(key, e);
+	}
+
+	private void unindex(ByteBuffer key, Entry e) {
+		sizeBytes -= e.size;
+		Set<ByteBuffer> keys = rows.get(e.row);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				rows.remove(e.row);
+			}
+		}
+	}
+
+	/**
+	 * 缓存键：行键长度、行键、按顺序排列的列族和列名。Get 中的列族和列名本身已经排序。
+	 * 列名个数写成 4 字节，整个列族时写 -1。
+	 */
+	static ByteBuffer keyOf(Get get) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		writeChunk(out, get.getRow());
+		for (Map.Entry<byte[], NavigableSet<byte[]>> family : get.getFamilyMap().entrySet()) {
+			writeChunk(out, family.getKey());
+			if (family.getValue() == null) {
+				writeInt(out, -1);
+				continue;
+			}
+			writeInt(out, family.getValue().size());
+			for (byte[] qualifier : family.getValue()) {
+				writeChunk(out, qualifier);
+			}
+		}
+		return ByteBuffer.wrap(out.toByteArray());
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int v) {
+		out.write(v >>> 24);
+		out.write(v >>> 16);
+		out.write(v >>> 8);
+		out.write(v);
+	}
+
+	private static void writeChunk(ByteArrayOutputStream out, byte[] b) {
+		out.write(b.length >>> 8);
+		out.write(b.length);
+		out.write(b, 0, b.length);
+	}
+
+	private static long sizeOf(ByteBuffer key, Result result) {
+		long size = ENTRY_OVERHEAD + key.capacity();
+		Cell[] cells = result.rawCells();
+		if (cells != null) {
+			for (Cell cell : cells) {
+				size += CellUtil.estimatedHeapSizeOf(cell);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * TinyLFU 使用的 Count-Min Sketch：4 组计数器，计数达到 10 倍容量后全部减半，使频率随时间衰减。
+	 */
+	static final class FrequencySketch {
+		private static final int[] SEEDS = { 0x97cb3127, 0x5cd1c2b3, 0x2f0a9e7d, 0x7b1f4c39 };
+		private final int[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int additions = 0;
+
+		FrequencySketch(int capacity) {
+			int size = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+			this.table = new int[size];
+			this.mask = size - 1;
+			this.sampleSize = 10 * capacity;
+		}
+
+		void increment(int hash) {
+			for (int seed : SEEDS) {
+				int i = indexOf(hash, seed);
+				if (table[i] < 15) {
+					table[i]++;
+				}
+			}
+			if (++additions >= sampleSize) {
+				for (int i = 0; i < table.length; i++) {
+					table[i] >>>= 1;
+				}
+				additions /= 2;
+			}
+		}
+
+		int frequency(int hash) {
+			int min = Integer.MAX_VALUE;
+			for (int seed : SEEDS) {
+				min = Math.min(min, table[indexOf(hash, seed)]);
+			}
+			return min;
+		}
+
+		private int indexOf(int hash, int seed) {
+			int h = (hash ^ seed) * 0x9e3779b9;
+			return (h ^ (h >>> 16)) & mask;
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 声明式的行结构：列族、列名、值类型，以及与类型 T 的字段之间的对应关系。
+ * <p>
+ * {@link Builder#build()} 时把列族名和列名编码为字节数组，同一列族的所有列共用一个数组实例，之后不再调用 Bytes.toBytes。
+ * 列按 (列族, 列名) 排序，与 Result 中 Cell 的顺序相同，{@link #fromResult(Result)} 只需把两个有序序列归并一遍，
+ * 不做按列名的查找，也不复制列名和值。字段通过构建时传入的 getter/setter 访问，不使用反射。
+ * <p>
+ * 构建后不可变，可以在线程间共享。
+ *
+ * <pre>
+ * RowSchema&lt;UserInfo&gt; schema = RowSchema.builder(UserInfo::new)
+ * 		.rowKey(ValueCodec.STRING, UserInfo::getRowKey, UserInfo::setRowKey)
+ * 		.family("info")
+ * 		.column("name", ValueCodec.STRING, UserInfo::getName, UserInfo::setName)
+ * 		.build();
+ * </pre>
+ */
+public final class RowSchema<T> {
+
+	private static final class Column<T, V> {
+		private final byte[] family;
+		private final byte[] qualifier;
+		private final ValueCodec<V> codec;
+		private final Function<T, V> getter;
+		private final BiConsumer<T, V> setter;
+
+		Column(byte[] family, byte[] qualifier, ValueCodec<V> codec, Function<T, V> getter, BiConsumer<T, V> setter) {
+			this.family = family;
+			this.qualifier = qualifier;
+			this.codec = codec;
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		void write(T row, Put put) {
+			V value = getter.apply(row);
+			if (value != null) {
+				put.addColumn(family, qualifier, codec.encode(value));
+			}
+		}
+
+		void read(Cell cell, T row) {
+			setter.accept(row, codec.decode(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()));
+		}
+
+		int compareTo(Cell cell) {
+			int c = Bytes.compareTo(family, 0, family.length, cell.getFamilyArray(), cell.getFamilyOffset(),
+					cell.getFamilyLength());
+			return c != 0 ? c : Bytes.compareTo(qualifier, 0, qualifier.length, cell.getQualifierArray(),
+					cell.getQualifierOffset(), cell.getQualifierLength());
+		}
+	}
+
+	private final Supplier<T> factory;
+	private final ValueCodec<?> rowCodec;
+	private final Function<T, ?> rowGetter;
+	private final BiConsumer<T, ?> rowSetter;
+	private final Column<T, ?>[] columns;
+	private final Map<String, byte[]> families;
+	private final Map<String, byte[]> qualifiers;
+
+	private RowSchema(Builder<T> builder, Column<T, ?>[] columns) {
+		this.factory = builder.factory;
+		this.rowCodec = builder.rowCodec;
+		this.rowGetter = builder.rowGetter;
+		this.rowSetter = builder.rowSetter;
+		this.columns = columns;
+		this.families = builder.families;
+		Map<String, byte[]> qualifiers = new HashMap<String, byte[]>();
+		for (Column<T, ?> c : columns) {
+			qualifiers.put(Bytes.toString(c.family) + ":" + Bytes.toString(c.qualifier), c.qualifier);
+		}
+		this.qualifiers = qualifiers;
+	}
+
+	public static <T> Builder<T> builder(Supplier<T> factory) {
+		return new Builder<T>(factory);
+	}
+
+	public static final class Builder<T> {
+		private final Supplier<T> factory;
+		private final List<Column<T, ?>> columns = new ArrayList<Column<T, ?>>();
+		private final Map<String, byte[]> families = new HashMap<String, byte[]>();
+		private byte[] family;
+		private ValueCodec<?> rowCodec;
+		private Function<T, ?> rowGetter;
+		private BiConsumer<T, ?> rowSetter;
+
+		private Builder(Supplier<T> factory) {
+			this.factory = factory;
+		}
+
+		/**
+		 * 行键与字段的对应关系，不设置时只能使用 {@link RowSchema#toPut(byte[], Object)}
+		 */
+		public <V> Builder<T> rowKey(ValueCodec<V> codec, Function<T, V> getter, BiConsumer<T, V> setter) {
+			this.rowCodec = codec;
+			this.rowGetter = getter;
+			this.rowSetter = setter;
+			return this;
+		}
+
+		/**
+		 * 之后的 column 都属于该列族
+		 */
+		public Builder<T> family(String name) {
+			byte[] f = families.get(name);
+			if (f == null) {
+				f = Bytes.toBytes(name);
+				families.put(name, f);
+			}
+			this.family = f;
+			return this;
+		}
+
+		public <V> Builder<T> column(String qualifier, ValueCodec<V> codec, Function<T, V> getter,
+				BiConsumer<T, V> setter) {
+			if (family == null) {
+				throw new IllegalStateException("family() must be called before column()");
+			}
+			columns.add(new Column<T, V>(family, Bytes.toBytes(qualifier), codec, getter, setter));
+			return this;
+		}
+
+		@SuppressWarnings("unchecked")
+		public RowSchema<T> build() {
+			Column<T, ?>[] sorted = columns.toArray(new Column[columns.size()]);
+			Arrays.sort(sorted, new Comparator<Column<T, ?>>() {
+				@Override
+				public int compare(Column<T, ?> a, Column<T, ?> b) {
+					int c = Bytes.compareTo(a.family, b.family);
+					return c != 0 ? c : Bytes.compareTo(a.qualifier, b.qualifier);
+				}
+			});
+			for (int i = 1; i < sorted.length; i++) {
+				if (Bytes.equals(sorted[i - 1].family, sorted[i].family)
+						&& Bytes.equals(sorted[i - 1].qualifier, sorted[i].qualifier)) {
+					throw new IllegalArgumentException("Duplicate column " + Bytes.toString(sorted[i].family) + ":"
+							+ Bytes.toString(sorted[i].qualifier));
+				}
+			}
+			return new RowSchema<T>(this, sorted);
+		}
+	}
+
+	/**
+	 * 编译后的列名，用于构造 Get、Scan 和过滤器
+	 *
+	 * @throws IllegalArgumentException 列不在 schema 中
+	 */
+	public byte[] qualifier(String family, String qualifier) {
+		byte[] q = qualifiers.get(family + ":" + qualifier);
+		if (q == null) {
+			throw new IllegalArgumentException("Unknown column " + family + ":" + qualifier);
+		}
+		return q;
+	}
+
+	/**
+	 * 编译后的列族名
+	 *
+	 * @throws IllegalArgumentException 列族不在 schema 中
+	 */
+	public byte[] family(String family) {
+		byte[] f = families.get(family);
+		if (f == null) {
+			throw new IllegalArgumentException("Unknown family " + family);
+		}
+		return f;
+	}
+
+	/**
+	 * 只读取 schema 中的列
+	 */
+	public Get addColumns(Get get) {
+		for (Column<T, ?> c : columns) {
+			get.addColumn(c.family, c.qualifier);
+		}
+		return get;
+	}
+
+	public Scan addColumns(Scan scan) {
+		for (Column<T, ?> c : columns) {
+			scan.addColumn(c.family, c.qualifier);
+		}
+		return scan;
+	}
+
+	/**
+	 * 用 rowKey 字段作为行键
+	 */
+	public Put toPut(T row) {
+		if (rowGetter == null) {
+			throw new IllegalStateException("No rowKey mapping, use toPut(byte[], T)");
+		}
+		return toPut(encodeRow(row), row);
+	}
+
+	/**
+	 * 用给定的行键，如加盐后的行键。值为 null 的字段不写入
+	 */
+	public Put toPut(byte[] rowKey, T row) {
+		Put put = new Put(rowKey);
+		for (Column<T, ?> c : columns) {
+			c.write(row, put);
+		}
+		return put;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <V> byte[] encodeRow(T row) {
+		return ((ValueCodec<V>) rowCodec).encode(((Function<T, V>) rowGetter).apply(row));
+	}
+
+	/**
+	 * @return result 为空时返回 null；不在 schema 中的列被忽略，缺少的列保持默认值
+	 */
+	public T fromResult(Result result) {
+		Cell[] cells = result.rawCells();
+		if (cells == null || cells.length == 0) {
+			return null;
+		}
+		T row = factory.get();
+		if (rowSetter != null) {
+			decodeRow(cells[0], row);
+		}
+		int i = 0;
+		for (Cell cell : cells) {
+			int c = 1;
+			while (i < columns.length && (c = columns[i].compareTo(cell)) < 0) {
+				i++;
+			}
+			if (i == columns.length) {
+				break;
+			}
+			// 同一列有多个版本时只取第一个（最新的），之后的版本小于下一列，被跳过
+			if (c == 0) {
+				columns[i++].read(cell, row);
+			}
+		}
+		return row;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <V> void decodeRow(Cell cell, T row) {
+		V key = ((ValueCodec<V>) rowCodec).decode(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
+		((BiConsumer<T, V>) rowSetter).accept(row, key);
+	}
+}
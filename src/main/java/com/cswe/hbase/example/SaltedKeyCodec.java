@@ -0,0 +1,104 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Hash;
+import org.apache.hadoop.hbase.util.MurmurHash3;
+
+/**
+ * 加盐行键：在原行键前加一个字节的桶号，桶号由行键的 MurmurHash3 决定。
+ * <p>
+ * 单调递增的行键（如 2017122601、2017122602）加盐后分散到 buckets 个连续的行键区间，
+ * 配合 {@link #splitKeys()} 预分区，写入会均匀落到各个 Region 上。
+ * 点查只需对行键编码；范围扫描要在每个桶内各扫一次再按原行键归并，见 {@link SaltedScanner}。
+ */
+public class SaltedKeyCodec {
+
+	public static final int MAX_BUCKETS = 256;
+
+	private static final Hash HASH = MurmurHash3.getInstance();
+
+	private final int buckets;
+
+	public SaltedKeyCodec(int buckets) {
+		if (buckets < 1 || buckets > MAX_BUCKETS) {
+			throw new IllegalArgumentException("buckets must be in [1, " + MAX_BUCKETS + "]: " + buckets);
+		}
+		this.buckets = buckets;
+	}
+
+	public int getBuckets() {
+		return buckets;
+	}
+
+	public int bucket(byte[] row) {
+		return (HASH.hash(row, 0, row.length, 0) & Integer.MAX_VALUE) % buckets;
+	}
+
+	/**
+	 * 原行键 -> 加盐行键
+	 */
+	public byte[] encode(byte[] row) {
+		byte[] salted = new byte[row.length + 1];
+		salted[0] = (byte) bucket(row);
+		System.arraycopy(row, 0, salted, 1, row.length);
+		return salted;
+	}
+
+	/**
+	 * 加盐行键 -> 原行键
+	 */
+	public byte[] decode(byte[] salted) {
+		return Bytes.copy(salted, 1, salted.length - 1);
+	}
+
+	/**
+	 * 把 Result 中的行键还原为原行键，会复制所有 Cell
+	 */
+	public Result decode(Result result) {
+		if (result.isEmpty()) {
+			return result;
+		}
+		byte[] row = decode(result.getRow());
+		List<Cell> cells = new ArrayList<Cell>(result.size());
+		for (Cell c : result.rawCells()) {
+			cells.add(new KeyValue(row, CellUtil.cloneFamily(c), CellUtil.cloneQualifier(c), c.getTimestamp(),
+					KeyValue.Type.codeToType(c.getTypeByte()), CellUtil.cloneValue(c)));
+		}
+		return Result.create(cells);
+	}
+
+	/**
+	 * 每个桶一个 Region 的预分区点
+	 */
+	public byte[][] splitKeys() {
+		byte[][] splits = new byte[buckets - 1][];
+		for (int b = 1; b < buckets; b++) {
+			splits[b - 1] = new byte[] { (byte) b };
+		}
+		return splits;
+	}
+
+	/**
+	 * 桶 b 内与原行键区间 [startRow, stopRow) 对应的加盐区间，空数组表示无界
+	 */
+	byte[][] bucketRange(int b, byte[] startRow, byte[] stopRow) {
+		byte[] prefix = new byte[] { (byte) b };
+		byte[] start = Bytes.add(prefix, startRow);
+		byte[] stop;
+		if (stopRow.length > 0) {
+			stop = Bytes.add(prefix, stopRow);
+		} else if (b + 1 < MAX_BUCKETS) {
+			stop = new byte[] { (byte) (b + 1) };
+		} else {
+			stop = new byte[0];
+		}
+		return new byte[][] { start, stop };
+	}
+}
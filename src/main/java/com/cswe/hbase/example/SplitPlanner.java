@@ -0,0 +1,343 @@
+package com.cswe.hbase.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.NotServingRegionException;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 根据行键样本计算均衡的预分区点。
+ * <p>
+ * 样本可以来自文件（每行一个行键，支持 Bytes.toStringBinary 的 \xNN 转义）或已有的表。
+ * 分区点取样本排序后的 N 等分位点，因此每个 Region 预计承担相同比例的行。
+ * 建表或拆分之后可以用 {@link #report(Connection, TableName, List)} 对比预计与实际的负载。
+ */
+public class SplitPlanner {
+
+	private final static Log log = LogFactory.getLog(SplitPlanner.class);
+
+	private static final long SPLIT_TIMEOUT_MILLIS = 60000;
+	private static final long SPLIT_POLL_MILLIS = 200;
+
+	private SplitPlanner() {
+	}
+
+	/**
+	 * 从文件中蓄水池抽样至多 maxSamples 个行键，空行忽略
+	 */
+	public static List<byte[]> sampleFromFile(File file, int maxSamples) throws IOException {
+		Reservoir reservoir = new Reservoir(maxSamples);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				line = line.trim();
+				if (!line.isEmpty()) {
+					reservoir.offer(Bytes.toBytesBinary(line));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return reservoir.samples;
+	}
+
+	/**
+	 * 从已有的表中蓄水池抽样至多 maxSamples 个行键，只读取每行的第一个 KeyValue 的键
+	 */
+	public static List<byte[]> sampleFromTable(Connection conn, TableName tableName, int maxSamples)
+			throws IOException {
+		Reservoir reservoir = new Reservoir(maxSamples);
+		Scan scan = new Scan();
+		scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, new FirstKeyOnlyFilter(),
+				new KeyOnlyFilter()));
+		scan.setCaching(1000);
+		scan.setCacheBlocks(false);
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					reservoir.offer(r.getRow());
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		return reservoir.samples;
+	}
+
+	/**
+	 * 计算 regions 个 Region 的分区点。样本中重复的行键较多时，得到的分区点可能少于 regions - 1 个。
+	 */
+	public static byte[][] splitPoints(List<byte[]> samples, int regions) {
+		if (regions < 1) {
+			throw new IllegalArgumentException("regions must be positive: " + regions);
+		}
+		List<byte[]> sorted = new ArrayList<byte[]>(samples);
+		Collections.sort(sorted, Bytes.BYTES_COMPARATOR);
+		List<byte[]> points = new ArrayList<byte[]>();
+		for (int i = 1; i < regions && !sorted.isEmpty(); i++) {
+			byte[] point = sorted.get((int) ((long) sorted.size() * i / regions));
+			// 空行键是第一个 Region 的起始行，不能作为分区点
+			if (point.length == 0) {
+				continue;
+			}
+			if (points.isEmpty() || Bytes.compareTo(points.get(points.size() - 1), point) < 0) {
+				points.add(point);
+			}
+		}
+		return points.toArray(new byte[points.size()][]);
+	}
+
+	/**
+	 * 按样本估算各 Region 的负载比例，结果长度为 splits.length + 1
+	 */
+	public static double[] expectedLoad(List<byte[]> samples, byte[][] splits) {
+		double[] load = new double[splits.length + 1];
+		if (samples.isEmpty()) {
+			return load;
+		}
+		for (byte[] key : samples) {
+			load[regionIndex(splits, key)]++;
+		}
+		for (int i = 0; i < load.length; i++) {
+			load[i] /= samples.size();
+		}
+		return load;
+	}
+
+	private static int regionIndex(byte[][] splits, byte[] key) {
+		int lo = 0;
+		int hi = splits.length;
+		// 第一个大于 key 的分区点的下标即为 Region 下标
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (Bytes.compareTo(splits[mid], key) <= 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * 在已有的表上逐个分区点拆分，每次等待拆分完成后再拆下一个
+	 */
+	public static void split(Admin admin, TableName tableName, byte[][] splits) throws IOException {
+		for (byte[] point : splits) {
+			if (hasRegionStartingAt(admin, tableName, point)) {
+				continue;
+			}
+			long deadline = System.currentTimeMillis() + SPLIT_TIMEOUT_MILLIS;
+			while (true) {
+				try {
+					admin.split(tableName, point);
+					break;
+				} catch (NotServingRegionException e) {
+					// 上一次拆分出的子 Region 还没有上线
+					await(deadline, tableName, point);
+				}
+			}
+			while (!hasRegionStartingAt(admin, tableName, point)) {
+				await(deadline, tableName, point);
+			}
+			log.info("Split " + tableName + " at " + Bytes.toStringBinary(point));
+		}
+	}
+
+	private static void await(long deadline, TableName tableName, byte[] point) throws IOException {
+		if (System.currentTimeMillis() > deadline) {
+			throw new IOException("Timed out splitting " + tableName + " at " + Bytes.toStringBinary(point));
+		}
+		try {
+			Thread.sleep(SPLIT_POLL_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted splitting " + tableName);
+		}
+	}
+
+	private static boolean hasRegionStartingAt(Admin admin, TableName tableName, byte[] point) throws IOException {
+		for (HRegionInfo region : admin.getTableRegions(tableName)) {
+			if (!region.isOffline() && !region.isSplitParent() && Bytes.equals(region.getStartKey(), point)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 单个 Region 的预计与实际负载
+	 */
+	public static class RegionReport {
+		private final HRegionInfo region;
+		private final ServerName server;
+		private final double expectedShare;
+		private final long writeRequests;
+		private final long readRequests;
+		private final int storefileSizeMB;
+		private double observedShare;
+
+		RegionReport(HRegionInfo region, ServerName server, double expectedShare, RegionLoad load) {
+			this.region = region;
+			this.server = server;
+			this.expectedShare = expectedShare;
+			this.writeRequests = load == null ? 0 : load.getWriteRequestsCount();
+			this.readRequests = load == null ? 0 : load.getReadRequestsCount();
+			this.storefileSizeMB = load == null ? 0 : load.getStorefileSizeMB();
+		}
+
+		public HRegionInfo getRegion() {
+			return region;
+		}
+
+		public ServerName getServer() {
+			return server;
+		}
+
+		/**
+		 * 落在该 Region 的样本比例
+		 */
+		public double getExpectedShare() {
+			return expectedShare;
+		}
+
+		/**
+		 * 该 Region 写请求数占全表写请求数的比例
+		 */
+		public double getObservedShare() {
+			return observedShare;
+		}
+
+		public long getWriteRequests() {
+			return writeRequests;
+		}
+
+		public long getReadRequests() {
+			return readRequests;
+		}
+
+		public int getStorefileSizeMB() {
+			return storefileSizeMB;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("[%s, %s) on %s expected=%.1f%% observed=%.1f%% writes=%d reads=%d storefiles=%dMB",
+					Bytes.toStringBinary(region.getStartKey()), Bytes.toStringBinary(region.getEndKey()),
+					server == null ? "-" : server.getHostAndPort(), expectedShare * 100, observedShare * 100,
+					writeRequests, readRequests, storefileSizeMB);
+		}
+	}
+
+	/**
+	 * 按当前的 Region 划分对比样本预计的负载与 RegionServer 上报的写请求数。
+	 * RegionLoad 随心跳上报，刚写入的数据要过几秒才能体现出来。
+	 * 表没有在线的 Region（例如全部处于分裂、下线过程中）时返回空列表。
+	 */
+	public static List<RegionReport> report(Connection conn, TableName tableName, List<byte[]> samples)
+			throws IOException {
+		Map<String, RegionLoad> loads = new HashMap<String, RegionLoad>();
+		Map<String, ServerName> servers = new HashMap<String, ServerName>();
+		List<HRegionInfo> regions = new ArrayList<HRegionInfo>();
+		Admin admin = conn.getAdmin();
+		try {
+			List<HRegionInfo> tableRegions = admin.getTableRegions(tableName);
+			if (tableRegions != null) {
+				for (HRegionInfo region : tableRegions) {
+					if (!region.isOffline() && !region.isSplitParent()) {
+						regions.add(region);
+					}
+				}
+			}
+			if (regions.isEmpty()) {
+				log.warn(tableName + " has no online regions");
+				return Collections.emptyList();
+			}
+			ClusterStatus status = admin.getClusterStatus();
+			for (ServerName server : status.getServers()) {
+				for (RegionLoad load : status.getLoad(server).getRegionsLoad().values()) {
+					loads.put(Bytes.toStringBinary(load.getName()), load);
+					servers.put(Bytes.toStringBinary(load.getName()), server);
+				}
+			}
+		} finally {
+			admin.close();
+		}
+		Collections.sort(regions);
+
+		byte[][] splits = new byte[regions.size() - 1][];
+		for (int i = 1; i < regions.size(); i++) {
+			splits[i - 1] = regions.get(i).getStartKey();
+		}
+		double[] expected = expectedLoad(samples, splits);
+
+		List<RegionReport> reports = new ArrayList<RegionReport>(regions.size());
+		long totalWrites = 0;
+		for (int i = 0; i < regions.size(); i++) {
+			String name = Bytes.toStringBinary(regions.get(i).getRegionName());
+			RegionReport report = new RegionReport(regions.get(i), servers.get(name), expected[i], loads.get(name));
+			totalWrites += report.writeRequests;
+			reports.add(report);
+		}
+		for (RegionReport report : reports) {
+			report.observedShare = totalWrites == 0 ? 0 : (double) report.writeRequests / totalWrites;
+			log.info(tableName + " " + report);
+		}
+		return reports;
+	}
+
+	private static final class Reservoir {
+		private final int capacity;
+		private final List<byte[]> samples;
+		private final Random random = new Random();
+		private long seen = 0;
+
+		Reservoir(int capacity) {
+			this.capacity = capacity;
+			this.samples = new ArrayList<byte[]>(Math.min(capacity, 1 << 16));
+		}
+
+		void offer(byte[] key) {
+			seen++;
+			if (samples.size() < capacity) {
+				samples.add(key);
+			} else {
+				long j = (long) (random.nextDouble() * seen);
+				if (j < capacity) {
+					samples.set((int) j, key);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.RandomRowFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 采样得到的表统计信息：估算行数和各条件的选择率。
+ * <p>
+ * 采样读取整行，行的平均大小包含全部列。先从每个 Region 开头读取至多 samplePerRegion 行，
+ * 行数少于采样数时即为精确值；否则按 RegionLoad 中未压缩的 StoreFile 大小与 MemStore 大小之和除以平均行大小
+ * 估算行数，再用 {@link RandomRowFilter} 在整个 Region 上按 samplePerRegion / 估算行数 的比例随机采样，
+ * 统计选择率并重新估算行数。只读开头的行在行键有序时会严重偏斜，随机采样需要 RegionServer 扫描整个 Region，
+ * 但只返回采中的行。
+ * <p>
+ * RegionLoad 以 MB 为单位，不足 1MB 的 Region 直接读完；不在 ClusterStatus 中的 Region 按开头读到的行计。
+ */
+public class TableStatistics {
+
+	private final static Log log = LogFactory.getLog(TableStatistics.class);
+
+	private final long estimatedRows;
+	private final int regions;
+	private final long sampledRows;
+	private final Map<ColumnPredicate, Long> matches;
+
+	TableStatistics(long estimatedRows, int regions, long sampledRows, Map<ColumnPredicate, Long> matches) {
+		this.estimatedRows = estimatedRows;
+		this.regions = regions;
+		this.sampledRows = sampledRows;
+		this.matches = matches;
+	}
+
+	/**
+	 * 采样统计 predicates 中每个条件的选择率
+	 */
+	public static TableStatistics collect(Connection conn, TableName tableName, List<ColumnPredicate> predicates,
+			int samplePerRegion) throws IOException {
+		List<HRegionLocation> locations;
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try {
+			locations = locator.getAllRegionLocations();
+		} finally {
+			locator.close();
+		}
+		Map<String, Long> regionBytes = regionSizes(conn);
+
+		Scan base = new Scan();
+		base.setCaching(samplePerRegion);
+		base.setCacheBlocks(false);
+
+		Map<ColumnPredicate, Long> matches = new HashMap<ColumnPredicate, Long>();
+		for (ColumnPredicate p : predicates) {
+			matches.put(p, 0L);
+		}
+		long sampled = 0;
+		long estimated = 0;
+		Table table = conn.getTable(tableName);
+		try {
+			for (RegionScanSplitter.RegionScan rs : RegionScanSplitter.split(base, locations)) {
+				Long size = regionBytes.get(Bytes.toStringBinary(rs.getLocation().getRegionInfo().getRegionName()));
+				boolean small = size != null && size == 0;
+				Sample sample = Sample.read(table, rs.getScan(), small ? Long.MAX_VALUE : samplePerRegion, predicates);
+				long rows = sample.rows;
+				if (!small && size != null && sample.rows >= samplePerRegion && sample.bytes > 0) {
+					rows = Math.max(sample.rows, size / (sample.bytes / sample.rows));
+					Scan scan = new Scan(rs.getScan());
+					scan.setFilter(new RandomRowFilter(Math.min(1f, (float) samplePerRegion / rows)));
+					Sample random = Sample.read(table, scan, Long.MAX_VALUE, predicates);
+					if (random.bytes > 0) {
+						sample = random;
+						rows = Math.max(samplePerRegion, size / (random.bytes / random.rows));
+					}
+				}
+				sampled += sample.rows;
+				estimated += rows;
+				for (ColumnPredicate p : predicates) {
+					matches.put(p, matches.get(p) + sample.matches.get(p));
+				}
+			}
+		} finally {
+			table.close();
+		}
+		TableStatistics stats = new TableStatistics(estimated, locations.size(), sampled, matches);
+		log.debug("Collected statistics for " + tableName + ": " + stats);
+		return stats;
+	}
+
+	/**
+	 * 一次采样读到的行数、Cell 大小之和和各条件命中的行数
+	 */
+	private static final class Sample {
+		private long rows = 0;
+		private long bytes = 0;
+		private final Map<ColumnPredicate, Long> matches = new HashMap<ColumnPredicate, Long>();
+
+		/**
+		 * 读取 scan 的前 limit 行
+		 */
+		static Sample read(Table table, Scan scan, long limit, List<ColumnPredicate> predicates) throws IOException {
+			Sample sample = new Sample();
+			for (ColumnPredicate p : predicates) {
+				sample.matches.put(p, 0L);
+			}
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				for (Result r = scanner.next(); r != null && sample.rows < limit; r = scanner.next()) {
+					sample.rows++;
+					sample.bytes += Result.getTotalSizeOfCells(r);
+					for (ColumnPredicate p : predicates) {
+						if (p.matches(r)) {
+							sample.matches.put(p, sample.matches.get(p) + 1);
+						}
+					}
+				}
+			} finally {
+				scanner.close();
+			}
+			return sample;
+		}
+	}
+
+	/**
+	 * 各 Region 的数据量。采样得到的是未压缩的 Cell 大小，因此用未压缩的 StoreFile 大小，压缩表也不会低估行数
+	 */
+	private static Map<String, Long> regionSizes(Connection conn) throws IOException {
+		Map<String, Long> sizes = new HashMap<String, Long>();
+		Admin admin = conn.getAdmin();
+		try {
+			ClusterStatus status = admin.getClusterStatus();
+			for (ServerName server : status.getServers()) {
+				for (RegionLoad load : status.getLoad(server).getRegionsLoad().values()) {
+					long mb = load.getStoreUncompressedSizeMB() + load.getMemStoreSizeMB();
+					sizes.put(Bytes.toStringBinary(load.getName()), mb * 1024 * 1024);
+				}
+			}
+		} finally {
+			admin.close();
+		}
+		return sizes;
+	}
+
+	public long getEstimatedRows() {
+		return estimatedRows;
+	}
+
+	public int getRegions() {
+		return regions;
+	}
+
+	public long getSampledRows() {
+		return sampledRows;
+	}
+
+	/**
+	 * 是否统计过 predicates 中的全部条件
+	 */
+	public boolean covers(Collection<ColumnPredicate> predicates) {
+		return matches.keySet().containsAll(predicates);
+	}
+
+	Collection<ColumnPredicate> getPredicates() {
+		return matches.keySet();
+	}
+
+	/**
+	 * 条件的选择率估计，带拉普拉斯平滑，未采样过的条件返回 1
+	 */
+	public double selectivity(ColumnPredicate predicate) {
+		Long m = matches.get(predicate);
+		if (m == null) {
+			return 1.0;
+		}
+		return (m + 1.0) / (sampledRows + 2.0);
+	}
+
+	@Override
+	public String toString() {
+		return "estimatedRows=" + estimatedRows + ", regions=" + regions + ", sampledRows=" + sampledRows;
+	}
+}
@@ -0,0 +1,79 @@
+package com.cswe.hbase.example;
+
+/**
+ * info 列族中的一行：name、sex、age、adress，行键为日期加序号（如 2017122601）。
+ */
+public class UserInfo {
+
+	/** 编译一次，所有 UserInfo 的读写共用 */
+	public static final RowSchema<UserInfo> SCHEMA = RowSchema.builder(UserInfo::new)
+			.rowKey(ValueCodec.STRING, UserInfo::getRowKey, UserInfo::setRowKey)
+			.family("info")
+			.column("name", ValueCodec.STRING, UserInfo::getName, UserInfo::setName)
+			.column("sex", ValueCodec.STRING, UserInfo::getSex, UserInfo::setSex)
+			.column("age", ValueCodec.DECIMAL_INT, UserInfo::getAge, UserInfo::setAge)
+			.column("adress", ValueCodec.STRING, UserInfo::getAdress, UserInfo::setAdress)
+			.build();
+
+	private String rowKey;
+	private String name;
+	private String sex;
+	private Integer age;
+	private String adress;
+
+	public UserInfo() {
+	}
+
+	public UserInfo(String rowKey, String name, String sex, Integer age, String adress) {
+		this.rowKey = rowKey;
+		this.name = name;
+		this.sex = sex;
+		this.age = age;
+		this.adress = adress;
+	}
+
+	public String getRowKey() {
+		return rowKey;
+	}
+
+	public void setRowKey(String rowKey) {
+		this.rowKey = rowKey;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getSex() {
+		return sex;
+	}
+
+	public void setSex(String sex) {
+		this.sex = sex;
+	}
+
+	public Integer getAge() {
+		return age;
+	}
+
+	public void setAge(Integer age) {
+		this.age = age;
+	}
+
+	public String getAdress() {
+		return adress;
+	}
+
+	public void setAdress(String adress) {
+		this.adress = adress;
+	}
+
+	@Override
+	public String toString() {
+		return rowKey + ":name=" + name + ",sex=" + sex + ",age=" + age + ",adress=" + adress;
+	}
+}
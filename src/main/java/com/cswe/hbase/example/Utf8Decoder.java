@@ -0,0 +1,71 @@
+package com.cswe.hbase.example;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 可重用的 UTF-8 解码器，把数组片段解码到内部字符缓冲区，不创建 String。
+ * <p>
+ * 纯 ASCII 数据（行键、列名、大部分值）逐字节转换，不产生任何对象；含多字节字符时退回 CharsetDecoder。
+ * {@link #decode(byte[], int, int)} 返回的 CharSequence 在下一次调用前有效。非线程安全，每个线程一个实例。
+ */
+public final class Utf8Decoder {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final CharsetDecoder decoder = UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private char[] chars;
+	private CharBuffer view;
+
+	public Utf8Decoder() {
+		this(64);
+	}
+
+	public Utf8Decoder(int initialCapacity) {
+		this.chars = new char[initialCapacity];
+		this.view = CharBuffer.wrap(chars);
+	}
+
+	/**
+	 * 解码 bytes[offset, offset+length)，结果在下一次调用前有效
+	 */
+	public CharSequence decode(byte[] bytes, int offset, int length) {
+		// UTF-8 解码后的字符数不会超过字节数
+		if (length > chars.length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+			view = CharBuffer.wrap(chars);
+		}
+		int n = 0;
+		int i = offset;
+		int end = offset + length;
+		for (; i < end; i++) {
+			byte b = bytes[i];
+			if (b < 0) {
+				break;
+			}
+			chars[n++] = (char) b;
+		}
+		if (i < end) {
+			CharBuffer out = CharBuffer.wrap(chars, n, chars.length - n);
+			decoder.reset();
+			decoder.decode(ByteBuffer.wrap(bytes, i, end - i), out, true);
+			decoder.flush(out);
+			n = out.position();
+		}
+		view.clear();
+		view.limit(n);
+		return view;
+	}
+
+	/**
+	 * 解码并追加到 sb
+	 */
+	public StringBuilder appendTo(StringBuilder sb, byte[] bytes, int offset, int length) {
+		return sb.append(decode(bytes, offset, length));
+	}
+}
@@ -0,0 +1,97 @@
+package com.cswe.hbase.example;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 值与字节数组之间的转换，供 {@link RowSchema} 使用。
+ * <p>
+ * decode 直接读取 Cell 底层数组的片段，不先复制出值。实现必须无状态、线程安全。
+ */
+public interface ValueCodec<V> {
+
+	byte[] encode(V value);
+
+	V decode(byte[] bytes, int offset, int length);
+
+	/** UTF-8 字符串 */
+	ValueCodec<String> STRING = new ValueCodec<String>() {
+		@Override
+		public byte[] encode(String value) {
+			return Bytes.toBytes(value);
+		}
+
+		@Override
+		public String decode(byte[] bytes, int offset, int length) {
+			return Bytes.toString(bytes, offset, length);
+		}
+	};
+
+	/** 十进制字符串形式的整数，如 putData 写入的 age "18"，解码时原地解析 */
+	ValueCodec<Integer> DECIMAL_INT = new ValueCodec<Integer>() {
+		@Override
+		public byte[] encode(Integer value) {
+			return Bytes.toBytes(Integer.toString(value));
+		}
+
+		@Override
+		public Integer decode(byte[] bytes, int offset, int length) {
+			int i = offset;
+			int end = offset + length;
+			boolean negative = i < end && bytes[i] == '-';
+			if (negative || i < end && bytes[i] == '+') {
+				i++;
+			}
+			if (i == end) {
+				throw new NumberFormatException("no digits");
+			}
+			int v = 0;
+			for (; i < end; i++) {
+				int d = bytes[i] - '0';
+				if (d < 0 || d > 9) {
+					throw new NumberFormatException("invalid digit at offset " + (i - offset));
+				}
+				v = v * 10 + d;
+			}
+			return negative ? -v : v;
+		}
+	};
+
+	/** Bytes.toBytes(int) 写入的 4 字节 */
+	ValueCodec<Integer> INT = new ValueCodec<Integer>() {
+		@Override
+		public byte[] encode(Integer value) {
+			return Bytes.toBytes(value);
+		}
+
+		@Override
+		public Integer decode(byte[] bytes, int offset, int length) {
+			return Bytes.toInt(bytes, offset, length);
+		}
+	};
+
+	/** Bytes.toBytes(long) 写入的 8 字节 */
+	ValueCodec<Long> LONG = new ValueCodec<Long>() {
+		@Override
+		public byte[] encode(Long value) {
+			return Bytes.toBytes(value);
+		}
+
+		@Override
+		public Long decode(byte[] bytes, int offset, int length) {
+			return Bytes.toLong(bytes, offset, length);
+		}
+	};
+
+	/** 原样保存，解码时复制 */
+	ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+		@Override
+		public byte[] encode(byte[] value) {
+			return value;
+		}
+
+		@Override
+		public byte[] decode(byte[] bytes, int offset, int length) {
+			return Bytes.copy(bytes, offset, length);
+		}
+	};
+}
@@ -0,0 +1,60 @@
+package com.cswe.hbase.example;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.Tag;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 在 RegionServer 上把每个 Cell 的值替换为值的长度（4 字节 int），用于只取大小不取值的扫描，见 {@link MobReader}。
+ * <p>
+ * 与 KeyOnlyFilter(true) 不同的是 MOB 引用 Cell：MOB 列族中超过阈值的值在 Store 中只保存引用，
+ * 引用的值为实际长度（4 字节）加 MOB 文件名。配合 {@link MobReader#MOB_SCAN_RAW} 扫描时本过滤器看到的是引用，
+ * 返回其中记录的实际长度，不读取 MOB 文件。替换后的 Cell 不带标签，不会再被当作引用去读取 MOB 文件。
+ * <p>
+ * 本类须在 RegionServer 的 classpath 上。
+ */
+public class ValueSizeFilter extends FilterBase {
+
+	/** MOB 引用 Cell 的标签类型 */
+	static final byte MOB_REFERENCE_TAG_TYPE = 5;
+
+	@Override
+	public ReturnCode filterKeyValue(Cell cell) {
+		return ReturnCode.INCLUDE;
+	}
+
+	@Override
+	public Cell transformCell(Cell cell) {
+		return new KeyValue(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(), cell.getFamilyArray(),
+				cell.getFamilyOffset(), cell.getFamilyLength(), cell.getQualifierArray(), cell.getQualifierOffset(),
+				cell.getQualifierLength(), cell.getTimestamp(), KeyValue.Type.codeToType(cell.getTypeByte()),
+				Bytes.toBytes(valueSize(cell)), 0, Bytes.SIZEOF_INT);
+	}
+
+	/**
+	 * 值的实际长度，MOB 引用返回引用中记录的长度
+	 */
+	static int valueSize(Cell cell) {
+		if (cell.getTagsLength() > 0 && cell.getValueLength() > Bytes.SIZEOF_INT
+				&& Tag.getTag(cell.getTagsArray(), cell.getTagsOffset(), cell.getTagsLength(),
+						MOB_REFERENCE_TAG_TYPE) != null) {
+			return Bytes.toInt(cell.getValueArray(), cell.getValueOffset());
+		}
+		return cell.getValueLength();
+	}
+
+	@Override
+	public byte[] toByteArray() {
+		return new byte[0];
+	}
+
+	/**
+	 * RegionServer 通过反射调用，本过滤器没有参数
+	 */
+	public static ValueSizeFilter parseFrom(byte[] bytes) throws DeserializationException {
+		return new ValueSizeFilter();
+	}
+}
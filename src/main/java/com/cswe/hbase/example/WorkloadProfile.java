@@ -0,0 +1,77 @@
+package com.cswe.hbase.example;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+
+/**
+ * 按访问方式设置列族的布隆过滤器、数据块大小和块缓存优先级。
+ * <p>
+ * 只修改这几项，编码和压缩仍由建表时的默认值或 {@link EncodingAdvisor} 决定。
+ * 修改后的设置只对新写出的 HFile 生效，已有文件要等到 major compaction 后才会按新的块大小和布隆过滤器重写。
+ */
+public enum WorkloadProfile {
+
+	/**
+	 * 按行键读取指定列，如 getData。
+	 * ROWCOL 布隆过滤器让 Get 跳过不含该行该列的 HFile，16KB 的小块减少每次读取需要解压和解码的数据量，
+	 * 列族放入块缓存的 in-memory 区，不会被扫描读入的块挤出
+	 */
+	POINT_GET(BloomType.ROWCOL, 16 * 1024, true, true),
+
+	/**
+	 * 顺序扫描大量行，如 scanData。
+	 * 扫描总要读取范围内所有 HFile，布隆过滤器用不上；256KB 的大块减少块索引和读取次数；
+	 * 数据块不进入块缓存，避免一次全表扫描把其他列族的热点块挤出（索引块仍然缓存）
+	 */
+	SCAN_HEAVY(BloomType.NONE, 256 * 1024, false, false),
+
+	/**
+	 * 读写和扫描兼有，使用 HBase 的默认块大小，ROW 布隆过滤器同时对 Get 和单行 Scan 有效
+	 */
+	MIXED(BloomType.ROW, HColumnDescriptor.DEFAULT_BLOCKSIZE, false, true);
+
+	private final BloomType bloomType;
+	private final int blockSize;
+	private final boolean inMemory;
+	private final boolean blockCacheEnabled;
+
+	private WorkloadProfile(BloomType bloomType, int blockSize, boolean inMemory, boolean blockCacheEnabled) {
+		this.bloomType = bloomType;
+		this.blockSize = blockSize;
+		this.inMemory = inMemory;
+		this.blockCacheEnabled = blockCacheEnabled;
+	}
+
+	public BloomType getBloomType() {
+		return bloomType;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public boolean isInMemory() {
+		return inMemory;
+	}
+
+	public boolean isBlockCacheEnabled() {
+		return blockCacheEnabled;
+	}
+
+	public HColumnDescriptor applyTo(HColumnDescriptor hcd) {
+		hcd.setBloomFilterType(bloomType);
+		hcd.setBlocksize(blockSize);
+		hcd.setInMemory(inMemory);
+		hcd.setBlockCacheEnabled(blockCacheEnabled);
+		// 布隆过滤器和索引块写出时就放入缓存，新 flush 的文件第一次 Get 不用再读一次磁盘
+		hcd.setCacheBloomsOnWrite(bloomType != BloomType.NONE);
+		hcd.setCacheIndexesOnWrite(blockCacheEnabled);
+		return hcd;
+	}
+
+	@Override
+	public String toString() {
+		return name() + "(bloom=" + bloomType + ", blocksize=" + blockSize + ", inMemory=" + inMemory
+				+ ", blockCache=" + blockCacheEnabled + ")";
+	}
+}
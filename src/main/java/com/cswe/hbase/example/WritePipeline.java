@@ -0,0 +1,436 @@
+package com.cswe.hbase.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+
+/**
+ * 基于 BufferedMutator 的异步写入管道。
+ * <p>
+ * 调用方通过 {@link #submit(Mutation)} 提交写操作后立即返回，后台写线程在缓冲区达到
+ * {@link Params#flushSizeBytes(long)} 或距离上次刷写超过 {@link Params#flushIntervalMillis(long)}
+ * 时刷写。已提交但尚未刷写成功的字节数超过 {@link Params#maxInFlightBytes(int)} 时，
+ * submit 会阻塞调用方（背压）。写失败的 Mutation 通过 {@link FailureListener} 回调，
+ * 不会在调用方线程抛出。
+ * <p>
+ * submit 和 flush 持读锁入队，close 持写锁入队最后一个 Barrier，因此 close 返回前成功的 submit
+ * 都排在最后一个 Barrier 之前、一定会被写出；之后的 submit 抛出 IllegalStateException 并归还许可。
+ */
+public class WritePipeline implements Closeable {
+
+	private final static Log log = LogFactory.getLog(WritePipeline.class);
+
+	/**
+	 * 写失败回调，在后台写线程中执行，实现应尽量轻量。
+	 */
+	public interface FailureListener {
+		/**
+		 * @param row 失败的 Mutation
+		 * @param cause 失败原因
+		 * @param hostnamePort 最后一次尝试的 RegionServer，未知时为 null
+		 */
+		void onFailure(Row row, Throwable cause, String hostnamePort);
+	}
+
+	/**
+	 * 管道参数，写法与 {@link BufferedMutatorParams} 一致。
+	 */
+	public static class Params {
+		private final TableName tableName;
+		private long flushSizeBytes = 2L * 1024 * 1024;
+		private long flushIntervalMillis = 1000L;
+		private int maxInFlightBytes = 32 * 1024 * 1024;
+		private FailureListener listener;
+
+		public Params(TableName tableName) {
+			this.tableName = tableName;
+		}
+
+		public TableName getTableName() {
+			return tableName;
+		}
+
+		public long getFlushSizeBytes() {
+			return flushSizeBytes;
+		}
+
+		/** 缓冲区达到该字节数时刷写 */
+		public Params flushSizeBytes(long flushSizeBytes) {
+			this.flushSizeBytes = flushSizeBytes;
+			return this;
+		}
+
+		public long getFlushIntervalMillis() {
+			return flushIntervalMillis;
+		}
+
+		/** 缓冲区中的数据最多等待该时长后刷写 */
+		public Params flushIntervalMillis(long flushIntervalMillis) {
+			this.flushIntervalMillis = flushIntervalMillis;
+			return this;
+		}
+
+		public int getMaxInFlightBytes() {
+			return maxInFlightBytes;
+		}
+
+		/** 未确认字节数上限，超过后 submit 阻塞 */
+		public Params maxInFlightBytes(int maxInFlightBytes) {
+			this.maxInFlightBytes = maxInFlightBytes;
+			return this;
+		}
+
+		public FailureListener getListener() {
+			return listener;
+		}
+
+		public Params listener(FailureListener listener) {
+			this.listener = listener;
+			return this;
+		}
+	}
+
+	/**
+	 * 队列中的写操作，带着提交时计算的大小和许可数：提交后调用方修改 Mutation 也不会让归还的许可与取得的不一致
+	 */
+	private static final class Entry {
+		private final Mutation mutation;
+		private final long bytes;
+		private final int permits;
+
+		Entry(Mutation mutation, long bytes, int permits) {
+			this.mutation = mutation;
+			this.bytes = bytes;
+			this.permits = permits;
+		}
+	}
+
+	/** 写线程在队列中遇到该标记时刷写并唤醒等待者 */
+	private static final class Barrier {
+		private final CountDownLatch done = new CountDownLatch(1);
+		private final boolean last;
+
+		Barrier(boolean last) {
+			this.last = last;
+		}
+	}
+
+	private final Params params;
+	private final BufferedMutator mutator;
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+	private final Semaphore inFlight;
+	private final Thread writer;
+	/** 保证入队与关闭互斥：入队持读锁，关闭持写锁 */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private volatile boolean closed = false;
+
+	/** 以下字段只在写线程中访问 */
+	private final List<Mutation> unflushed = new ArrayList<Mutation>();
+	private long unflushedBytes = 0;
+	private int unflushedPermits = 0;
+	private long lastFlushTime;
+
+	private final AtomicLong submittedCount = new AtomicLong();
+	private final AtomicLong flushedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+
+	public WritePipeline(Connection conn, Params params) throws IOException {
+		if (params.getFlushSizeBytes() <= 0 || params.getFlushIntervalMillis() <= 0
+				|| params.getMaxInFlightBytes() <= 0) {
+			throw new IllegalArgumentException("flush size, flush interval and max in-flight bytes must be positive");
+		}
+		this.params = params;
+		this.inFlight = new Semaphore(params.getMaxInFlightBytes());
+		BufferedMutatorParams bmp = new BufferedMutatorParams(params.getTableName())
+				.writeBufferSize(params.getFlushSizeBytes())
+				.listener(new BufferedMutator.ExceptionListener() {
+					@Override
+					public void onException(RetriesExhaustedWithDetailsException e, BufferedMutator mutator) {
+						for (int i = 0; i < e.getNumExceptions(); i++) {
+							fail(e.getRow(i), e.getCause(i), e.getHostnamePort(i));
+						}
+					}
+				});
+		this.mutator = conn.getBufferedMutator(bmp);
+		this.lastFlushTime = System.currentTimeMillis();
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "WritePipeline-" + params.getTableName().getNameAsString());
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * 提交一个写操作。in-flight 字节数超过上限时阻塞，直到之前的数据刷写完成。
+	 *
+	 * @throws InterruptedIOException 等待期间线程被中断
+	 */
+	public void submit(Mutation mutation) throws InterruptedIOException {
+		if (closed) {
+			throw new IllegalStateException("WritePipeline is closed");
+		}
+		long bytes = mutation.heapSize();
+		int permits = permitsOf(bytes);
+		try {
+			inFlight.acquire(permits);
+		} catch (InterruptedException e) {
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted while waiting for write buffer")
+					.initCause(e);
+		}
+		// 等待许可期间可能已经关闭，此时写线程已退出，归还许可
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				inFlight.release(permits);
+				throw new IllegalStateException("WritePipeline is closed");
+			}
+			submittedCount.incrementAndGet();
+			queue.add(new Entry(mutation, bytes, permits));
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	public void submit(List<? extends Mutation> mutations) throws InterruptedIOException {
+		for (Mutation m : mutations) {
+			submit(m);
+		}
+	}
+
+	/**
+	 * 刷写此前提交的全部写操作并等待完成。失败的写操作仍通过回调报告。
+	 */
+	public void flush() throws InterruptedIOException {
+		Barrier barrier;
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("WritePipeline is closed");
+			}
+			barrier = enqueueBarrier(false);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+		await(barrier);
+	}
+
+	@Override
+	public void close() throws IOException {
+		Barrier last;
+		closeLock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			last = enqueueBarrier(true);
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		try {
+			await(last);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted while closing").initCause(e);
+		} finally {
+			mutator.close();
+		}
+	}
+
+	public long getSubmittedCount() {
+		return submittedCount.get();
+	}
+
+	public long getFlushedCount() {
+		return flushedCount.get();
+	}
+
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	/** 已提交但尚未刷写完成的字节数 */
+	public long getInFlightBytes() {
+		return params.getMaxInFlightBytes() - inFlight.availablePermits();
+	}
+
+	private Barrier enqueueBarrier(boolean last) {
+		Barrier barrier = new Barrier(last);
+		queue.add(barrier);
+		return barrier;
+	}
+
+	private void await(Barrier barrier) throws InterruptedIOException {
+		try {
+			barrier.done.await();
+		} catch (InterruptedException e) {
+			throw (InterruptedIOException) new InterruptedIOException("Interrupted while flushing").initCause(e);
+		}
+	}
+
+	private int permitsOf(long bytes) {
+		// 单个超大 Mutation 不能超过总许可数，否则永远拿不到许可
+		return (int) Math.max(1, Math.min(bytes, params.getMaxInFlightBytes()));
+	}
+
+	private void writeLoop() {
+		List<Object> drained = new ArrayList<Object>();
+		List<Mutation> batch = new ArrayList<Mutation>();
+		while (true) {
+			long wait = lastFlushTime + params.getFlushIntervalMillis() - System.currentTimeMillis();
+			Object head;
+			try {
+				head = queue.poll(Math.max(wait, 1), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// 写线程只能通过 close 退出，忽略中断
+				continue;
+			}
+			if (head != null) {
+				drained.add(head);
+				queue.drainTo(drained);
+			}
+			boolean exit = false;
+			for (Object o : drained) {
+				if (o instanceof Entry) {
+					Entry entry = (Entry) o;
+					batch.add(entry.mutation);
+					unflushed.add(entry.mutation);
+					unflushedBytes += entry.bytes;
+					unflushedPermits += entry.permits;
+				} else {
+					Barrier barrier = (Barrier) o;
+					mutate(batch);
+					doFlush();
+					barrier.done.countDown();
+					exit |= barrier.last;
+				}
+			}
+			drained.clear();
+			mutate(batch);
+			if (unflushedBytes >= params.getFlushSizeBytes()
+					|| System.currentTimeMillis() - lastFlushTime >= params.getFlushIntervalMillis()) {
+				doFlush();
+			}
+			if (exit) {
+				return;
+			}
+		}
+	}
+
+	private void mutate(List<Mutation> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			mutator.mutate(batch);
+		} catch (RetriesExhaustedWithDetailsException e) {
+			// 已经通过 ExceptionListener 报告
+		} catch (IOException e) {
+			log.error("Buffered mutate failed ", e);
+			// 失败的这一批位于 unflushed 末尾，刷写时不再重复报告
+			unflushed.subList(unflushed.size() - batch.size(), unflushed.size()).clear();
+			for (Mutation m : batch) {
+				fail(m, e, null);
+			}
+		} catch (RuntimeException e) {
+			// 没有列的 Put、超大的 KeyValue 在进入缓冲区之前被拒绝，整批都没有写入；逐个重新提交，只报告被拒绝的
+			unflushed.subList(unflushed.size() - batch.size(), unflushed.size()).clear();
+			for (Mutation m : batch) {
+				mutateOne(m);
+			}
+		}
+		batch.clear();
+	}
+
+	private void mutateOne(Mutation m) {
+		try {
+			mutator.mutate(m);
+			unflushed.add(m);
+		} catch (RetriesExhaustedWithDetailsException e) {
+			// m 已进入缓冲区，失败的是之前的写操作，已经通过 ExceptionListener 报告
+			unflushed.add(m);
+		} catch (IOException e) {
+			fail(m, e, null);
+		} catch (RuntimeException e) {
+			fail(m, e, null);
+		}
+	}
+
+	private void doFlush() {
+		lastFlushTime = System.currentTimeMillis();
+		if (unflushed.isEmpty()) {
+			// 被拒绝的写操作不在 unflushed 中，许可同样在这里归还
+			releaseUnflushed();
+			return;
+		}
+		try {
+			mutator.flush();
+		} catch (RetriesExhaustedWithDetailsException e) {
+			// 已经通过 ExceptionListener 报告
+		} catch (IOException e) {
+			log.error("Flush failed ", e);
+			for (Mutation m : unflushed) {
+				fail(m, e, null);
+			}
+		} catch (RuntimeException e) {
+			// 写线程不能因此退出，否则 flush、close 永远等不到 Barrier，submit 等不到许可
+			log.error("Flush failed ", e);
+			for (Mutation m : unflushed) {
+				fail(m, e, null);
+			}
+		}
+		flushCount.incrementAndGet();
+		flushedCount.addAndGet(unflushed.size());
+		unflushed.clear();
+		releaseUnflushed();
+	}
+
+	private void releaseUnflushed() {
+		unflushedBytes = 0;
+		inFlight.release(unflushedPermits);
+		unflushedPermits = 0;
+	}
+
+	private void fail(Row row, Throwable cause, String hostnamePort) {
+		failedCount.incrementAndGet();
+		FailureListener listener = params.getListener();
+		if (listener == null) {
+			log.error("Mutation failed on " + hostnamePort, cause);
+			return;
+		}
+		try {
+			listener.onFailure(row, cause, hostnamePort);
+		} catch (RuntimeException e) {
+			log.error("FailureListener threw ", e);
+		}
+	}
+}
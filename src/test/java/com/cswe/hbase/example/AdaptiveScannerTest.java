@@ -0,0 +1,215 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScannerTimeoutException;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 扫描器租约过期后从最后一行处继续：表 r000..r099 每行两列，第 failAt 次 next 抛出 failure
+ */
+public class AdaptiveScannerTest extends TestCase {
+
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final int ROWS = 100;
+
+	private int nexts = 0;
+	private int failAt = Integer.MAX_VALUE;
+	private IOException failure;
+	private int opened = 0;
+	private Scan lastOpened;
+	private long nextMillis = 0;
+
+	private Table table() {
+		return proxy(Table.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getScanner")) {
+					opened++;
+					lastOpened = (Scan) args[0];
+					return scanner((Scan) args[0]);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 从 startRow（含）开始返回，设置了 batch 时每列一个部分结果
+	 */
+	private ResultScanner scanner(Scan scan) {
+		final List<Result> results = new ArrayList<Result>();
+		for (int i = 0; i < ROWS; i++) {
+			byte[] row = Bytes.toBytes(row(i));
+			if (Bytes.compareTo(row, scan.getStartRow()) < 0) {
+				continue;
+			}
+			Cell a = new KeyValue(row, INFO, Bytes.toBytes("a"), Bytes.toBytes(i));
+			Cell b = new KeyValue(row, INFO, Bytes.toBytes("b"), Bytes.toBytes(i));
+			if (scan.getBatch() > 0) {
+				results.add(Result.create(new Cell[] { a }));
+				results.add(Result.create(new Cell[] { b }));
+			} else {
+				results.add(Result.create(new Cell[] { a, b }));
+			}
+		}
+		return proxy(ResultScanner.class, new InvocationHandler() {
+			int next = 0;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("next")) {
+					if (++nexts == failAt) {
+						throw failure;
+					}
+					if (nextMillis > 0) {
+						Thread.sleep(nextMillis);
+					}
+					return next < results.size() ? results.get(next++) : null;
+				}
+				return null;
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static String row(int i) {
+		return String.format("r%03d", i);
+	}
+
+	private static ScannerTimeoutException timeout() throws Exception {
+		Constructor<ScannerTimeoutException> c = ScannerTimeoutException.class.getDeclaredConstructor(String.class);
+		c.setAccessible(true);
+		return c.newInstance("61000ms passed since the last invocation");
+	}
+
+	/**
+	 * 读完扫描器，返回 行键/列名 列表
+	 */
+	private static List<String> drain(AdaptiveScanner scanner) throws IOException {
+		List<String> cells = new ArrayList<String>();
+		try {
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				for (Cell cell : r.rawCells()) {
+					cells.add(Bytes.toString(r.getRow()) + "/" + Bytes.toString(cell.getQualifierArray(), cell
+							.getQualifierOffset(), cell.getQualifierLength()));
+				}
+			}
+		} finally {
+			scanner.close();
+		}
+		return cells;
+	}
+
+	private static List<String> expected() {
+		List<String> cells = new ArrayList<String>();
+		for (int i = 0; i < ROWS; i++) {
+			cells.add(row(i) + "/a");
+			cells.add(row(i) + "/b");
+		}
+		return cells;
+	}
+
+	public void testResumesAfterLastRowOnTimeout() throws Exception {
+		failAt = 43;
+		failure = timeout();
+		AdaptiveScanner scanner = new AdaptiveScanner(table(), new Scan());
+		assertEquals(expected(), drain(scanner));
+		assertEquals(1, scanner.getResumes());
+	}
+
+	public void testResumeSkipsReturnedPartialResults() throws Exception {
+		// 第 21 次 next 时 r010 只返回了 a 列
+		failAt = 22;
+		failure = new UnknownScannerException("Name: 42, already closed?");
+		Scan scan = new Scan();
+		scan.setBatch(1);
+		AdaptiveScanner scanner = new AdaptiveScanner(table(), scan);
+		assertEquals(expected(), drain(scanner));
+		assertEquals(1, scanner.getResumes());
+	}
+
+	public void testResumeBeforeFirstRowStartsOver() throws Exception {
+		failAt = 1;
+		failure = timeout();
+		AdaptiveScanner scanner = new AdaptiveScanner(table(), new Scan());
+		assertEquals(expected(), drain(scanner));
+		assertEquals(1, scanner.getResumes());
+	}
+
+	public void testMaxResultSizeFollowsCaching() throws Exception {
+		// 每行 2ms，目标 20ms 时 caching 降到 10 左右，maxResultSize 随之缩小
+		nextMillis = 2;
+		Scan scan = new Scan();
+		scan.setCaching(50);
+		AdaptiveScanner scanner = new AdaptiveScanner(table(), scan, 20, AdaptiveScanner.DEFAULT_MAX_BUFFER_BYTES);
+		assertEquals(AdaptiveScanner.DEFAULT_MAX_BUFFER_BYTES, lastOpened.getMaxResultSize());
+		List<String> rows = new ArrayList<String>();
+		for (int i = 0; i < 60; i++) {
+			Result r = scanner.next();
+			rows.add(Bytes.toString(r.getRow()));
+		}
+		assertTrue(scanner.getReopens() >= 1);
+		assertTrue("caching " + scanner.getCaching(), scanner.getCaching() < 25);
+		long rowBytes = Result.getTotalSizeOfCells(Result.create(new Cell[] {
+				new KeyValue(Bytes.toBytes(row(0)), INFO, Bytes.toBytes("a"), Bytes.toBytes(0)),
+				new KeyValue(Bytes.toBytes(row(0)), INFO, Bytes.toBytes("b"), Bytes.toBytes(0)) }));
+		assertEquals((long) (scanner.getCaching() * rowBytes * AdaptiveScanner.RESULT_SIZE_HEADROOM), scanner
+				.getMaxResultSize());
+		assertEquals(scanner.getMaxResultSize(), lastOpened.getMaxResultSize());
+		assertEquals(row(59), rows.get(59));
+		scanner.close();
+	}
+
+	public void testStatefulFilterIsNotReopened() throws Exception {
+		failAt = 10;
+		failure = timeout();
+		Scan scan = new Scan();
+		scan.setFilter(new FilterList(new RowFilter(CompareFilter.CompareOp.NOT_EQUAL, new BinaryComparator(Bytes
+				.toBytes(row(0)))), new PageFilter(1000)));
+		AdaptiveScanner scanner = new AdaptiveScanner(table(), scan);
+		try {
+			drain(scanner);
+			fail("expected scanner timeout");
+		} catch (ScannerTimeoutException e) {
+			// expected
+		}
+		assertEquals(1, opened);
+		assertEquals(0, scanner.getResumes());
+	}
+
+	public void testHasStatefulFilter() {
+		assertFalse(AdaptiveScanner.hasStatefulFilter(null));
+		assertFalse(AdaptiveScanner.hasStatefulFilter(new FilterList(new RowFilter(CompareFilter.CompareOp.EQUAL,
+				new BinaryComparator(Bytes.toBytes(row(0)))))));
+		assertTrue(AdaptiveScanner.hasStatefulFilter(new PageFilter(10)));
+		assertTrue(AdaptiveScanner.hasStatefulFilter(new WhileMatchFilter(new RowFilter(
+				CompareFilter.CompareOp.EQUAL, new BinaryComparator(Bytes.toBytes(row(0)))))));
+		assertTrue(AdaptiveScanner.hasStatefulFilter(new FilterList(new FilterList(new PageFilter(10)))));
+	}
+}
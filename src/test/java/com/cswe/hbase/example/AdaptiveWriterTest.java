@@ -0,0 +1,309 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * AIMD 上限的单元测试，以及在两个 RegionServer 的 mini cluster 上的倾斜写入：
+ * 90% 的行写入第一个 Region，{@link SaturatedRegionObserver} 让该 Region 一次只处理一批，模拟 RegionServer 过载。
+ */
+public class AdaptiveWriterTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("adaptive_writer");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final byte[][] SPLITS = { Bytes.toBytes("g"), Bytes.toBytes("m"), Bytes.toBytes("t") };
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(AdaptiveWriterTest.class, 2) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+				createTable();
+			}
+		};
+	}
+
+	/**
+	 * 起始行为空的 Region 一次只处理一批，每批 SERVICE_MILLIS 毫秒：在途的批次越多，每批排队越久
+	 */
+	public static class SaturatedRegionObserver extends BaseRegionObserver {
+		static final long SERVICE_MILLIS = 20;
+		private static final Semaphore busy = new Semaphore(1);
+
+		@Override
+		public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+				MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+			if (c.getEnvironment().getRegion().getStartKey().length > 0) {
+				return;
+			}
+			busy.acquireUninterruptibly();
+			try {
+				Thread.sleep(SERVICE_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				busy.release();
+			}
+		}
+	}
+
+	/**
+	 * 第一个 Region 放在一个 Server 上，其余三个放在另一个 Server 上
+	 */
+	private static void createTable() throws Exception {
+		HTableDescriptor htd = new HTableDescriptor(TABLE);
+		htd.addFamily(new HColumnDescriptor(INFO));
+		htd.addCoprocessor(SaturatedRegionObserver.class.getName());
+		Admin admin = conn.getAdmin();
+		try {
+			admin.createTable(htd, SPLITS);
+			List<ServerName> servers = new ArrayList<ServerName>(admin.getClusterStatus().getServers());
+			RegionLocator locator = conn.getRegionLocator(TABLE);
+			try {
+				for (HRegionLocation location : locator.getAllRegionLocations()) {
+					ServerName target = servers.get(location.getRegionInfo().getStartKey().length == 0 ? 0 : 1);
+					if (!target.equals(location.getServerName())) {
+						admin.move(location.getRegionInfo().getEncodedNameAsBytes(), Bytes.toBytes(target
+								.getServerName()));
+					}
+				}
+				util.waitUntilNoRegionsInTransition(60000);
+			} finally {
+				locator.close();
+			}
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static ServerName serverOf(byte[] row) throws IOException {
+		RegionLocator locator = conn.getRegionLocator(TABLE);
+		try {
+			return locator.getRegionLocation(row, true).getServerName();
+		} finally {
+			locator.close();
+		}
+	}
+
+	private static AdaptiveWriter.Params params() {
+		return new AdaptiveWriter.Params().initialLimit(4).maxLimit(8).minSlowMillis(10).slowFactor(2.0);
+	}
+
+	public void testAdditiveIncreaseMultiplicativeDecrease() throws Exception {
+		AdaptiveWriter.ServerLimit limit = new AdaptiveWriter.ServerLimit(params());
+		long now = 0;
+		for (int i = 0; i < 4; i++) {
+			assertTrue(limit.tryAcquire());
+		}
+		assertFalse(limit.tryAcquire());
+		// 每批 100 行 5ms，不慢：每完成一批加 1/limit，大约完成 limit 批后上限加 1
+		for (int i = 0; i < 5; i++) {
+			limit.release(100, 5000000L, false, now += 5000000L);
+			assertTrue(limit.tryAcquire());
+		}
+		assertEquals(5.1, limit.limit, 0.1);
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+
+		// 同一轮的慢批次只减半一次
+		limit.release(100, 50000000L, false, now += 50000000L);
+		assertEquals(2.5, limit.limit, 0.1);
+		limit.release(100, 50000000L, false, now += 1000000L);
+		limit.release(100, 50000000L, true, now += 1000000L);
+		assertEquals(2.5, limit.limit, 0.1);
+		assertEquals(1, limit.decreases);
+		// 下一轮仍然失败时继续减半，不低于下限
+		limit.release(100, 50000000L, true, now += 60000000L);
+		limit.release(100, 50000000L, true, now += 60000000L);
+		assertEquals(1.0, limit.limit, 0.01);
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+
+		// 低于 minSlowMillis 的批次即使超过基线的倍数也不算慢
+		limit.release(10, 5000000L, false, now += 60000000L);
+		assertEquals(2.0, limit.limit, 0.01);
+		assertEquals(8.0, new AdaptiveWriter.ServerLimit(params().initialLimit(100)).limit, 1e-9);
+	}
+
+	public void testNarrowsOnlyTheSaturatedServer() throws Exception {
+		ServerName hotServer = serverOf(Bytes.toBytes("a"));
+		ServerName coolServer = serverOf(Bytes.toBytes("x"));
+		assertFalse(hotServer.equals(coolServer));
+
+		// 过载的 Region 每批至少 SERVICE_MILLIS，两批排队即超过基线的 1.5 倍；其它 Region 的批次远低于 15ms
+		AdaptiveWriter writer = new AdaptiveWriter(conn, TABLE, params().batchRows(50).minSlowMillis(15)
+				.slowFactor(1.5).trackerParams(new HotRegionTracker.Params().halfLifeMillis(600000).minRows(100)));
+		try {
+			Random random = new Random(1);
+			for (int round = 0; round < 10; round++) {
+				List<Put> puts = new ArrayList<Put>();
+				for (int i = 0; i < 500; i++) {
+					// 90% 的行落在第一个 Region [, g)
+					String prefix = random.nextInt(10) < 9 ? "a" : String.valueOf((char) ('g' + random.nextInt(20)));
+					Put put = new Put(Bytes.toBytes(prefix + String.format("%08d", random.nextInt(100000000))));
+					put.addColumn(INFO, NAME, Bytes.toBytes("name " + i));
+					puts.add(put);
+				}
+				writer.write(puts);
+			}
+
+			double hotLimit = 0;
+			double coolLimit = 0;
+			for (AdaptiveWriter.ServerStat stat : writer.getServerStats()) {
+				if (stat.getServer().equals(hotServer)) {
+					hotLimit = stat.getLimit();
+					assertTrue(stat.toString(), stat.getDecreases() > 0);
+				} else {
+					coolLimit = stat.getLimit();
+				}
+			}
+			// 过载的 Server 收窄到初始值以下，另一个不受影响
+			assertTrue("hot " + hotLimit, hotLimit < 3);
+			assertTrue("hot " + hotLimit + " cool " + coolLimit, coolLimit > hotLimit);
+
+			List<HotRegionTracker.RegionStat> stats = writer.getTracker().getStats();
+			HotRegionTracker.RegionStat hot = stats.get(0);
+			assertEquals(0, hot.getRegion().getStartKey().length);
+			assertTrue(hot.toString(), hot.isHot());
+			assertTrue(hot.getShare() > 0.8);
+			byte[][] points = writer.getTracker().hotSplitPoints();
+			assertEquals(1, points.length);
+			assertTrue(Bytes.toString(points[0]).startsWith("a"));
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static List<Put> hotPuts(String prefix, int rows) {
+		List<Put> puts = new ArrayList<Put>();
+		for (int i = 0; i < rows; i++) {
+			Put put = new Put(Bytes.toBytes(prefix + String.format("%08d", i)));
+			put.addColumn(INFO, NAME, Bytes.toBytes("name " + i));
+			puts.add(put);
+		}
+		return puts;
+	}
+
+	private static long countRows(String prefix) throws IOException {
+		Table table = conn.getTable(TABLE);
+		try {
+			Scan scan = new Scan();
+			scan.setRowPrefixFilter(Bytes.toBytes(prefix));
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				long rows = 0;
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					rows++;
+				}
+				return rows;
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+	}
+
+	private static void assertNothingInFlight(AdaptiveWriter writer) {
+		for (AdaptiveWriter.ServerStat stat : writer.getServerStats()) {
+			assertEquals(stat.toString(), 0, stat.getInFlight());
+		}
+	}
+
+	public void testConcurrentWritersShareLimits() throws Exception {
+		final AdaptiveWriter writer = new AdaptiveWriter(conn, TABLE, params().batchRows(10).maxLimit(2));
+		try {
+			final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+			List<Thread> writers = new ArrayList<Thread>();
+			for (int t = 0; t < 4; t++) {
+				final String prefix = "b" + t;
+				Thread thread = new Thread() {
+					@Override
+					public void run() {
+						try {
+							writer.write(hotPuts(prefix, 100));
+						} catch (Throwable e) {
+							error.set(e);
+						}
+					}
+				};
+				thread.start();
+				writers.add(thread);
+			}
+			for (Thread thread : writers) {
+				thread.join(60000);
+				assertFalse(thread.isAlive());
+			}
+			assertNull(error.get());
+			assertNothingInFlight(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	public void testInterruptWaitsForOutstandingBatches() throws Exception {
+		final AdaptiveWriter writer = new AdaptiveWriter(conn, TABLE, params().batchRows(10));
+		try {
+			final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						// 过载的 Region 每批至少 SERVICE_MILLIS，200 批远长于中断前的等待
+						writer.write(hotPuts("c", 2000));
+					} catch (Throwable e) {
+						error.set(e);
+					}
+				}
+			};
+			thread.start();
+			Thread.sleep(100);
+			thread.interrupt();
+			thread.join(60000);
+			assertFalse(thread.isAlive());
+			assertTrue(String.valueOf(error.get()), error.get() instanceof InterruptedIOException);
+			// 返回前在途的批次都已结束，名额已归还，之后不再有写入
+			assertNothingInFlight(writer);
+			long written = countRows("c");
+			assertTrue(written > 0 && written < 2000);
+			Thread.sleep(300);
+			assertEquals(written, countRows("c"));
+		} finally {
+			writer.close();
+		}
+	}
+}
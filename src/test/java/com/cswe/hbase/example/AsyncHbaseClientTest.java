@@ -0,0 +1,217 @@
+package com.cswe.hbase.example;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class AsyncHbaseClientTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("t");
+
+	/** get 阻塞到 release 倒计时结束并记录调用次数，scanner 返回 rows 行并记录已读行数 */
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger gets = new AtomicInteger();
+	private final AtomicInteger scanned = new AtomicInteger();
+	private int rows = 0;
+
+	private Connection connection() {
+		final Table table = proxy(Table.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("get")) {
+					gets.incrementAndGet();
+					release.await();
+					return result(Bytes.toString(((Get) args[0]).getRow()));
+				}
+				if (method.getName().equals("getScanner")) {
+					return scanner();
+				}
+				return null;
+			}
+		});
+		return proxy(Connection.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("getTable") ? table : null;
+			}
+		});
+	}
+
+	private ResultScanner scanner() {
+		return proxy(ResultScanner.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("next")) {
+					int i = scanned.get();
+					if (i >= rows) {
+						return null;
+					}
+					scanned.incrementAndGet();
+					return result("r" + i);
+				}
+				return null;
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static Result result(String row) {
+		return Result.create(new Cell[] { new KeyValue(Bytes.toBytes(row), Bytes.toBytes("f"), Bytes.toBytes("q"),
+				Bytes.toBytes("v")) });
+	}
+
+	public void testGetCompletesWithoutBlockingCaller() throws Exception {
+		AsyncHbaseClient client = new AsyncHbaseClient(connection(), new AsyncHbaseClient.Params(TABLE));
+		try {
+			CompletableFuture<Result> future = client.get(new Get(Bytes.toBytes("r1")));
+			assertFalse(future.isDone());
+			release.countDown();
+			assertEquals("r1", Bytes.toString(future.get(5, TimeUnit.SECONDS).getRow()));
+		} finally {
+			client.close();
+		}
+	}
+
+	public void testRejectsBeyondMaxInFlight() throws Exception {
+		AsyncHbaseClient client = new AsyncHbaseClient(connection(),
+				new AsyncHbaseClient.Params(TABLE).threads(1).maxInFlight(2));
+		try {
+			CompletableFuture<Result> first = client.get(new Get(Bytes.toBytes("r1")));
+			CompletableFuture<Result> second = client.get(new Get(Bytes.toBytes("r2")));
+			CompletableFuture<Result> third = client.get(new Get(Bytes.toBytes("r3")));
+			assertEquals(2, client.getInFlight());
+			assertCause(RejectedExecutionException.class, third);
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			second.get(5, TimeUnit.SECONDS);
+			assertEquals(0, client.getInFlight());
+		} finally {
+			client.close();
+		}
+	}
+
+	public void testTimeoutKeepsSlotUntilRequestEnds() throws Exception {
+		AsyncHbaseClient client = new AsyncHbaseClient(connection(),
+				new AsyncHbaseClient.Params(TABLE).maxInFlight(1).timeout(100, TimeUnit.MILLISECONDS));
+		try {
+			assertCause(TimeoutException.class, client.get(new Get(Bytes.toBytes("r1"))));
+			// 执行中的请求不被中断，结束前仍占用名额
+			assertEquals(1, client.getInFlight());
+			assertCause(RejectedExecutionException.class, client.get(new Get(Bytes.toBytes("r2"))));
+			release.countDown();
+			for (int i = 0; i < 100 && client.getInFlight() > 0; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, client.getInFlight());
+		} finally {
+			release.countDown();
+			client.close();
+		}
+	}
+
+	public void testTimeoutWhileQueuedCancelsRequest() throws Exception {
+		AsyncHbaseClient client = new AsyncHbaseClient(connection(), new AsyncHbaseClient.Params(TABLE).threads(1)
+				.maxInFlight(2).timeout(200, TimeUnit.MILLISECONDS));
+		try {
+			CompletableFuture<Result> running = client.get(new Get(Bytes.toBytes("r1")));
+			CompletableFuture<Result> queued = client.get(new Get(Bytes.toBytes("r2")));
+			assertCause(TimeoutException.class, queued);
+			assertCause(TimeoutException.class, running);
+			// 排队中超时的请求名额立即归还，之后也不会执行
+			assertEquals(1, client.getInFlight());
+			release.countDown();
+			for (int i = 0; i < 100 && client.getInFlight() > 0; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, client.getInFlight());
+			Thread.sleep(100);
+			assertEquals(1, gets.get());
+		} finally {
+			release.countDown();
+			client.close();
+		}
+	}
+
+	private static void assertCause(Class<? extends Throwable> expected, CompletableFuture<?> future)
+			throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected " + expected.getSimpleName());
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().toString(), expected.isInstance(e.getCause()));
+		}
+	}
+
+	public void testScanReadsOnlyRequestedRows() throws Exception {
+		rows = 10;
+		final List<String> received = new ArrayList<String>();
+		final CountDownLatch firstBatch = new CountDownLatch(3);
+		final CountDownLatch completed = new CountDownLatch(1);
+		final AsyncHbaseClient.ScanSubscription[] subscription = new AsyncHbaseClient.ScanSubscription[1];
+		AsyncHbaseClient client = new AsyncHbaseClient(connection(), new AsyncHbaseClient.Params(TABLE));
+		try {
+			client.scan(new Scan(), new AsyncHbaseClient.ScanObserver() {
+				@Override
+				public void onStart(AsyncHbaseClient.ScanSubscription s) {
+					subscription[0] = s;
+					s.request(3);
+				}
+
+				@Override
+				public void onNext(Result result) {
+					received.add(Bytes.toString(result.getRow()));
+					firstBatch.countDown();
+				}
+
+				@Override
+				public void onError(Throwable error) {
+					fail(error.toString());
+				}
+
+				@Override
+				public void onComplete() {
+					completed.countDown();
+				}
+			});
+			assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+			Thread.sleep(100);
+			// 没有更多需求时不再读取扫描器
+			assertEquals(3, scanned.get());
+			assertEquals(1, client.getInFlight());
+
+			subscription[0].request(Long.MAX_VALUE);
+			assertTrue(completed.await(5, TimeUnit.SECONDS));
+			assertEquals(10, received.size());
+			assertEquals("r9", received.get(9));
+			assertEquals(0, client.getInFlight());
+		} finally {
+			client.close();
+		}
+	}
+}
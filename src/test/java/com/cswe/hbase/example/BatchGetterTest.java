@@ -0,0 +1,169 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 在 3 个 Region 的表上批量 Get：结果按输入顺序、单个 Get 失败、整组超时后连接仍可用
+ */
+public class BatchGetterTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("batch_getter");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final int ROWS = 100;
+
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(BatchGetterTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				conn = getConnection();
+				HTableDescriptor htd = new HTableDescriptor(TABLE);
+				htd.addFamily(new HColumnDescriptor(INFO));
+				htd.addCoprocessor(SlowGetObserver.class.getName());
+				Admin admin = conn.getAdmin();
+				try {
+					admin.createTable(htd, new byte[][] { Bytes.toBytes(row(30)), Bytes.toBytes(row(60)) });
+				} finally {
+					admin.close();
+				}
+				Table table = conn.getTable(TABLE);
+				try {
+					List<Put> puts = new ArrayList<Put>();
+					for (int i = 0; i < ROWS; i++) {
+						Put put = new Put(Bytes.toBytes(row(i)));
+						put.addColumn(INFO, NAME, Bytes.toBytes("name" + i));
+						puts.add(put);
+					}
+					table.put(puts);
+				} finally {
+					table.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * 行键以 slow 开头的 Get 在 RegionServer 上等待 SLOW_MILLIS 毫秒
+	 */
+	public static class SlowGetObserver extends BaseRegionObserver {
+		static final long SLOW_MILLIS = 1500;
+
+		@Override
+		public void preGetOp(ObserverContext<RegionCoprocessorEnvironment> c, Get get, List<Cell> results)
+				throws IOException {
+			if (Bytes.toString(get.getRow()).startsWith("slow")) {
+				try {
+					Thread.sleep(SLOW_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private static String row(int i) {
+		return String.format("r%03d", i);
+	}
+
+	public void testResultsInInputOrder() throws Exception {
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < ROWS; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, new Random(42));
+		List<Get> gets = new ArrayList<Get>();
+		for (int i : order) {
+			gets.add(new Get(Bytes.toBytes(row(i))));
+		}
+		gets.add(new Get(Bytes.toBytes("missing")));
+		BatchGetter getter = new BatchGetter(conn, TABLE, 4);
+		try {
+			BatchGetter.BatchGetResult result = getter.get(gets, 10, TimeUnit.SECONDS);
+			assertTrue(result.isComplete());
+			for (int i = 0; i < order.size(); i++) {
+				Result r = result.getResult(i);
+				assertEquals(row(order.get(i)), Bytes.toString(r.getRow()));
+				assertEquals("name" + order.get(i), Bytes.toString(r.getValue(INFO, NAME)));
+			}
+			// 不存在的行返回空结果，不算失败
+			assertTrue(result.getResult(ROWS).isEmpty());
+		} finally {
+			getter.close();
+		}
+	}
+
+	public void testFailedGetDoesNotFailOthers() throws Exception {
+		List<Get> gets = new ArrayList<Get>();
+		for (int i = 0; i < 10; i++) {
+			Get get = new Get(Bytes.toBytes(row(i * 10)));
+			if (i == 3) {
+				get.addFamily(Bytes.toBytes("no_such_family"));
+			}
+			gets.add(get);
+		}
+		BatchGetter getter = new BatchGetter(conn, TABLE, 4);
+		try {
+			BatchGetter.BatchGetResult result = getter.get(gets, 10, TimeUnit.SECONDS);
+			assertEquals(Collections.singleton(3), result.getFailures().keySet());
+			assertNull(result.getResult(3));
+			for (int i = 0; i < 10; i++) {
+				if (i != 3) {
+					assertEquals("name" + i * 10, Bytes.toString(result.getResult(i).getValue(INFO, NAME)));
+				}
+			}
+		} finally {
+			getter.close();
+		}
+	}
+
+	public void testGroupTimeoutKeepsConnectionUsable() throws Exception {
+		List<Get> gets = new ArrayList<Get>();
+		gets.add(new Get(Bytes.toBytes(row(1))));
+		gets.add(new Get(Bytes.toBytes("slow")));
+		BatchGetter getter = new BatchGetter(conn, TABLE, 2);
+		try {
+			long start = System.nanoTime();
+			BatchGetter.BatchGetResult result = getter.get(gets, 200, TimeUnit.MILLISECONDS);
+			long elapsedMillis = (System.nanoTime() - start) / 1000000;
+			assertTrue("returned after " + elapsedMillis + "ms", elapsedMillis < SlowGetObserver.SLOW_MILLIS);
+			// 只有一个 RegionServer，两个 Get 在同一组
+			assertEquals(2, result.getFailures().size());
+			assertTrue(result.getFailure(0) instanceof TimeoutException);
+			assertTrue(result.getFailure(1) instanceof TimeoutException);
+
+			// 超时的组没有被中断，共享连接照常可用
+			Thread.sleep(SlowGetObserver.SLOW_MILLIS);
+			result = getter.get(Collections.singletonList(new Get(Bytes.toBytes(row(2)))), 10, TimeUnit.SECONDS);
+			assertTrue(result.isComplete());
+			assertEquals("name2", Bytes.toString(result.getResult(0).getValue(INFO, NAME)));
+		} finally {
+			getter.close();
+		}
+	}
+}
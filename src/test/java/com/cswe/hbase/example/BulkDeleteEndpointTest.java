@@ -0,0 +1,215 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 在 mini cluster 上用 BulkDeleteEndpoint 删除行范围和过滤器选中的行，每个用例使用自己的表。
+ */
+public class BulkDeleteEndpointTest extends TestCase {
+
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] SEX = Bytes.toBytes("sex");
+	private static final byte[] AGE = Bytes.toBytes("age");
+	private static final int ROWS = 2000;
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(BulkDeleteEndpointTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+			}
+		};
+	}
+
+	private static byte[] row(int i) {
+		return Bytes.toBytes(String.format("r%05d", i));
+	}
+
+	private static String sex(int i) {
+		return i % 3 == 0 ? "F" : "M";
+	}
+
+	/**
+	 * 第 i 行 sex 为 sex(i)，时间戳为 i + 1
+	 */
+	private static TableName createTable(String name, boolean endpoint) throws Exception {
+		TableName tableName = TableName.valueOf(name);
+		HTableDescriptor htd = new HTableDescriptor(tableName);
+		htd.addFamily(new HColumnDescriptor(INFO));
+		if (endpoint) {
+			htd.addCoprocessor(BulkDeleteEndpoint.class.getName());
+		}
+		Admin admin = conn.getAdmin();
+		try {
+			admin.createTable(htd, new byte[][] { row(500), row(1000), row(1500) });
+		} finally {
+			admin.close();
+		}
+		List<Put> puts = new ArrayList<Put>();
+		for (int i = 0; i < ROWS; i++) {
+			Put put = new Put(row(i));
+			put.addColumn(INFO, SEX, i + 1, Bytes.toBytes(sex(i)));
+			put.addColumn(INFO, AGE, i + 1, Bytes.toBytes(String.valueOf(i % 50)));
+			puts.add(put);
+		}
+		Table table = conn.getTable(tableName);
+		try {
+			table.put(puts);
+		} finally {
+			table.close();
+		}
+		return tableName;
+	}
+
+	private static List<Integer> remaining(TableName tableName) throws Exception {
+		List<Integer> rows = new ArrayList<Integer>();
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(new Scan());
+			try {
+				for (Result r : scanner) {
+					rows.add(Integer.parseInt(Bytes.toString(r.getRow()).substring(1)));
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		return rows;
+	}
+
+	private static long total(List<BulkDeleteClient.RegionCount> counts) {
+		long rows = 0;
+		for (BulkDeleteClient.RegionCount count : counts) {
+			rows += count.getRowsDeleted();
+		}
+		return rows;
+	}
+
+	public void testDeletesRangeAndFilterAcrossRegions() throws Exception {
+		TableName tableName = createTable("bulk_delete_range", true);
+		// 跨三个 Region，只删除 sex=F 的行；过滤器只看 sex 列，删除整行
+		Scan scan = new Scan(row(400), row(1600));
+		scan.addColumn(INFO, SEX);
+		scan.setFilter(new SingleColumnValueFilter(INFO, SEX, CompareOp.EQUAL, Bytes.toBytes("F")));
+		BulkDeleteClient client = new BulkDeleteClient(conn, tableName, new BulkDeleteClient.Params().batchRows(50));
+		List<BulkDeleteClient.RegionCount> counts = client.delete(scan);
+
+		int expected = 0;
+		List<Integer> kept = new ArrayList<Integer>();
+		for (int i = 0; i < ROWS; i++) {
+			if (i >= 400 && i < 1600 && sex(i).equals("F")) {
+				expected++;
+			} else {
+				kept.add(i);
+			}
+		}
+		assertEquals(4, counts.size());
+		assertEquals(expected, total(counts));
+		// 第一个 Region 的 r00400..r00499 中有 33 行，每次最多 50 行
+		assertEquals(33, counts.get(0).getRowsDeleted());
+		assertEquals(1, counts.get(0).getCalls());
+		assertEquals(167, counts.get(1).getRowsDeleted());
+		assertEquals(4, counts.get(1).getCalls());
+		assertEquals(kept, remaining(tableName));
+
+		// 再次删除不会选中任何行
+		assertEquals(0, total(new BulkDeleteClient(conn, tableName, new BulkDeleteClient.Params()).delete(scan)));
+	}
+
+	public void testDeletesOlderVersionsOnlyAndThrottles() throws Exception {
+		TableName tableName = createTable("bulk_delete_timestamp", true);
+		BulkDeleteClient.Params params = new BulkDeleteClient.Params().timestamp(1000).batchRows(100)
+				.rowsPerSecond(2000);
+		long start = System.nanoTime();
+		List<BulkDeleteClient.RegionCount> counts = new BulkDeleteClient(conn, tableName, params).delete(new Scan());
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		// 时间戳不晚于 1000 的是前 1000 行；其余行也被扫描到并写入删除标记，但不影响较新的版本
+		assertEquals(ROWS, total(counts));
+		List<Integer> kept = remaining(tableName);
+		assertEquals(ROWS - 1000, kept.size());
+		assertEquals(1000, kept.get(0).intValue());
+		// 2000 行按 2000 行/秒，第一批之后欠下的许可约 0.95 秒
+		assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 800);
+	}
+
+	public void testTimeLimitAppliesToFilteredRows() throws Exception {
+		TableName tableName = createTable("bulk_delete_deadline", true);
+		// 时限为 0：每次调用只判断一行，被过滤的行也一样，从停下的行继续
+		Scan scan = new Scan(row(600), row(630));
+		scan.setFilter(new SingleColumnValueFilter(INFO, SEX, CompareOp.EQUAL, Bytes.toBytes("F")));
+		List<BulkDeleteClient.RegionCount> counts = new BulkDeleteClient(conn, tableName,
+				new BulkDeleteClient.Params().timeLimitMillis(0)).delete(scan);
+		assertEquals(1, counts.size());
+		assertEquals(10, counts.get(0).getRowsDeleted());
+		assertEquals(30, counts.get(0).getCalls());
+		List<Integer> kept = remaining(tableName);
+		assertEquals(ROWS - 10, kept.size());
+		assertFalse(kept.contains(603));
+		assertTrue(kept.contains(604));
+	}
+
+	public void testDeadlineFilter() throws Exception {
+		BulkDeleteEndpoint.Deadline deadline = new BulkDeleteEndpoint.Deadline(0);
+		// 第一行总会被判断
+		assertFalse(deadline.filterRowKey(row(1), 0, row(1).length));
+		assertFalse(deadline.filterAllRemaining());
+		assertTrue(deadline.filterRowKey(row(2), 0, row(2).length));
+		assertTrue(deadline.filterAllRemaining());
+		assertTrue(Bytes.equals(row(2), deadline.getStoppedAt()));
+
+		deadline = new BulkDeleteEndpoint.Deadline(Long.MAX_VALUE);
+		assertFalse(deadline.filterRowKey(row(1), 0, row(1).length));
+		assertFalse(deadline.filterRowKey(row(2), 0, row(2).length));
+		assertNull(deadline.getStoppedAt());
+	}
+
+	public void testClampToRegion() throws Exception {
+		HRegionInfo info = new HRegionInfo(TableName.valueOf("t"), row(500), row(1000));
+		Scan scan = BulkDeleteEndpoint.clamp(new Scan(), info);
+		assertTrue(Bytes.equals(row(500), scan.getStartRow()));
+		assertTrue(Bytes.equals(row(1000), scan.getStopRow()));
+		scan = BulkDeleteEndpoint.clamp(new Scan(row(600), row(700)), info);
+		assertTrue(Bytes.equals(row(600), scan.getStartRow()));
+		assertTrue(Bytes.equals(row(700), scan.getStopRow()));
+		scan = BulkDeleteEndpoint.clamp(new Scan(row(600)), new HRegionInfo(TableName.valueOf("t"), row(500),
+				new byte[0]));
+		assertEquals(0, scan.getStopRow().length);
+	}
+
+	public void testEndpointNotLoaded() throws Exception {
+		TableName tableName = createTable("bulk_delete_plain", false);
+		try {
+			new BulkDeleteClient(conn, tableName, new BulkDeleteClient.Params()).delete(new Scan());
+			fail("expected EndpointNotLoadedException");
+		} catch (BulkDeleteClient.EndpointNotLoadedException e) {
+			// expected
+		}
+		assertEquals(ROWS, remaining(tableName).size());
+	}
+}
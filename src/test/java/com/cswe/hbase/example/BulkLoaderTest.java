@@ -0,0 +1,153 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 导入 4 个 Region、两个列族的表：chunkBytes 很小，数据分多批写出，乱序加入的行导入后按序读回
+ */
+public class BulkLoaderTest extends TestCase {
+
+	private static final byte[] A = Bytes.toBytes("a");
+	private static final byte[] B = Bytes.toBytes("b");
+	private static final byte[] Q = Bytes.toBytes("q");
+	private static final long B_TIMESTAMP = 42;
+	private static final int ROWS = 1000;
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(BulkLoaderTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+			}
+		};
+	}
+
+	private static String row(int i) {
+		return String.format("r%04d", i);
+	}
+
+	private static void createTable(TableName tableName) throws Exception {
+		HTableDescriptor htd = new HTableDescriptor(tableName);
+		htd.addFamily(new HColumnDescriptor(A));
+		htd.addFamily(new HColumnDescriptor(B));
+		Admin admin = conn.getAdmin();
+		try {
+			admin.createTable(htd, new byte[][] { Bytes.toBytes(row(250)), Bytes.toBytes(row(500)),
+					Bytes.toBytes(row(750)) });
+		} finally {
+			admin.close();
+		}
+	}
+
+	/**
+	 * a:q 不带时间戳，b:q 的时间戳为 B_TIMESTAMP，按打乱的顺序加入
+	 */
+	private static void addRows(BulkLoader loader) throws Exception {
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < ROWS; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, new Random(42));
+		for (int i : order) {
+			Put put = new Put(Bytes.toBytes(row(i)));
+			put.addColumn(A, Q, Bytes.toBytes("a" + i));
+			put.addColumn(B, Q, B_TIMESTAMP, Bytes.toBytes("b" + i));
+			loader.add(put);
+		}
+	}
+
+	public void testLoadInMultipleSpills() throws Exception {
+		TableName tableName = TableName.valueOf("bulk_loader");
+		createTable(tableName);
+		Path staging = util.getDataTestDirOnTestFS("bulk_loader_staging");
+		FileSystem fs = staging.getFileSystem(conn.getConfiguration());
+		long before = System.currentTimeMillis();
+		BulkLoader loader = new BulkLoader(conn, tableName, staging);
+		try {
+			loader.setChunkBytes(16 * 1024);
+			addRows(loader);
+			long after = System.currentTimeMillis();
+			assertEquals(2L * ROWS, loader.load());
+			// 每批最多写出 Region 数 * 列族数 个文件
+			assertTrue("files " + loader.getFiles(), loader.getFiles() > 4 * 2);
+
+			Table table = conn.getTable(tableName);
+			try {
+				ResultScanner scanner = table.getScanner(new Scan());
+				int i = 0;
+				try {
+					for (Result r : scanner) {
+						assertEquals(row(i), Bytes.toString(r.getRow()));
+						Cell a = r.getColumnLatestCell(A, Q);
+						assertEquals("a" + i, Bytes.toString(r.getValue(A, Q)));
+						assertTrue("timestamp " + a.getTimestamp(), a.getTimestamp() >= before
+								&& a.getTimestamp() <= after);
+						assertEquals("b" + i, Bytes.toString(r.getValue(B, Q)));
+						assertEquals(B_TIMESTAMP, r.getColumnLatestCell(B, Q).getTimestamp());
+						i++;
+					}
+				} finally {
+					scanner.close();
+				}
+				assertEquals(ROWS, i);
+			} finally {
+				table.close();
+			}
+		} finally {
+			loader.close();
+		}
+		assertFalse(fs.exists(staging));
+	}
+
+	public void testCloseWithoutLoadDeletesStaging() throws Exception {
+		TableName tableName = TableName.valueOf("bulk_loader_discard");
+		createTable(tableName);
+		Path staging = util.getDataTestDirOnTestFS("bulk_loader_discard_staging");
+		FileSystem fs = staging.getFileSystem(conn.getConfiguration());
+		BulkLoader loader = new BulkLoader(conn, tableName, staging);
+		loader.setChunkBytes(16 * 1024);
+		addRows(loader);
+		assertTrue(loader.getFiles() > 0);
+		assertTrue(fs.exists(staging));
+		loader.close();
+		assertFalse(fs.exists(staging));
+
+		Table table = conn.getTable(tableName);
+		try {
+			ResultScanner scanner = table.getScanner(new Scan());
+			try {
+				assertNull(scanner.next());
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+	}
+}
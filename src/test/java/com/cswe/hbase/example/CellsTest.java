@@ -0,0 +1,43 @@
+package com.cswe.hbase.example;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class CellsTest extends TestCase {
+
+	private static KeyValue cell(String value) {
+		return new KeyValue(Bytes.toBytes("2017122601"), Bytes.toBytes("info"), Bytes.toBytes("age"),
+				Bytes.toBytes(value));
+	}
+
+	public void testFormat() {
+		StringBuilder sb = new StringBuilder("stale");
+		Cells.format(sb, new Utf8Decoder(2), cell("18"));
+		assertEquals("2017122601:info,age,18", sb.toString());
+	}
+
+	public void testDecodeMultiByte() {
+		Utf8Decoder decoder = new Utf8Decoder();
+		byte[] bytes = Bytes.toBytes("wu汉han");
+		assertEquals("wu汉han", decoder.decode(bytes, 0, bytes.length).toString());
+		assertEquals("ab", decoder.decode(Bytes.toBytes("xaby"), 1, 2).toString());
+	}
+
+	public void testParseLong() {
+		assertEquals(18L, Cells.parseLong(cell("18")));
+		assertEquals(-7L, Cells.parseLong(cell("-7")));
+		try {
+			Cells.parseLong(cell("1x"));
+			fail();
+		} catch (NumberFormatException expected) {
+		}
+	}
+
+	public void testValueEquals() {
+		assertTrue(Cells.valueEquals(cell("F"), Bytes.toBytes("F")));
+		assertFalse(Cells.valueEquals(cell("F"), Bytes.toBytes("M")));
+		assertTrue(Cells.matchingColumn(cell("F"), Bytes.toBytes("info"), Bytes.toBytes("age")));
+	}
+}
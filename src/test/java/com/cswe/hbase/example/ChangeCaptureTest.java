@@ -0,0 +1,272 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 检查点的单元测试，以及在三个 Region 的表上增量读取、中断后继续，Region 分裂后继续
+ */
+public class ChangeCaptureTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("change_capture");
+	private static final TableName RESUME_TABLE = TableName.valueOf("change_capture_resume");
+	private static final TableName SPLIT_TABLE = TableName.valueOf("change_capture_split");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final byte[] AGE = Bytes.toBytes("age");
+	private static final int ROWS = 300;
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(ChangeCaptureTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+				for (TableName table : new TableName[] { TABLE, RESUME_TABLE }) {
+					util.createTable(table.getName(), new byte[][] { INFO }, 3, Bytes.toBytes(row(100)), Bytes
+							.toBytes(row(199)), 3);
+					util.waitUntilAllRegionsAssigned(table);
+				}
+				util.createTable(SPLIT_TABLE, INFO);
+			}
+		};
+	}
+
+	/**
+	 * 记录收到的变更，形如 row/qualifier/Put 或 row/qualifier/DeleteColumn；failAfter 个 Cell 后抛出异常
+	 */
+	private static class Recorder implements ChangeCapture.Listener {
+		final List<String> changes = Collections.synchronizedList(new ArrayList<String>());
+		int failAfter = Integer.MAX_VALUE;
+
+		@Override
+		public synchronized void onChange(Cell cell, boolean tombstone) throws IOException {
+			if (failAfter-- <= 0) {
+				throw new IOException("Injected failure");
+			}
+			assertEquals(CellUtil.isDelete(cell), tombstone);
+			changes.add(Bytes.toString(CellUtil.cloneRow(cell)) + "/" + Bytes.toString(CellUtil.cloneQualifier(cell))
+					+ "/" + KeyValue.Type.codeToType(cell.getTypeByte()));
+		}
+	}
+
+	private static String row(int i) {
+		return String.format("row%05d", i);
+	}
+
+	private static ChangeCapture capture(TableName table) {
+		return new ChangeCapture(conn, table, new ChangeCapture.Params().parallelism(2).batchRows(10));
+	}
+
+	/**
+	 * 在截止时间之前写入的都能读到：截止时间取写入完成之后，再等到时钟越过截止时间后才开始下一批写入
+	 */
+	private static long until() throws InterruptedException {
+		long until = System.currentTimeMillis() + 1;
+		Thread.sleep(5);
+		return until;
+	}
+
+	public void testIncrementalChangesAndTombstones() throws Exception {
+		Table table = conn.getTable(TABLE);
+		try {
+			List<Put> puts = new ArrayList<Put>();
+			for (int i = 0; i < ROWS; i++) {
+				Put put = new Put(Bytes.toBytes(row(i)));
+				put.addColumn(INFO, NAME, Bytes.toBytes("name" + i));
+				put.addColumn(INFO, AGE, Bytes.toBytes(i));
+				puts.add(put);
+			}
+			table.put(puts);
+			MemoryCheckpointStore store = new MemoryCheckpointStore();
+			Recorder first = new Recorder();
+			ChangeCapture.Progress progress = capture(TABLE).poll(first, store, until());
+			assertEquals(3, progress.getRegions());
+			assertEquals(ROWS, progress.getRows());
+			assertEquals(ROWS * 2, first.changes.size());
+			assertEquals(0, progress.getTombstones());
+			assertEquals(3, store.values.size());
+
+			// 更新一行、删除一列、删除一行，分布在不同的 Region
+			Put update = new Put(Bytes.toBytes(row(5)));
+			update.addColumn(INFO, NAME, Bytes.toBytes("renamed"));
+			table.put(update);
+			Delete deleteColumn = new Delete(Bytes.toBytes(row(150)));
+			deleteColumn.addColumns(INFO, AGE);
+			table.delete(deleteColumn);
+			table.delete(new Delete(Bytes.toBytes(row(250))));
+
+			Recorder second = new Recorder();
+			progress = capture(TABLE).poll(second, store, until());
+			Set<String> changes = new TreeSet<String>(second.changes);
+			Set<String> expected = new TreeSet<String>();
+			expected.add(row(5) + "/name/Put");
+			expected.add(row(150) + "/age/DeleteColumn");
+			expected.add(row(250) + "/" + "/DeleteFamily");
+			assertEquals(expected, changes);
+			assertEquals(3, second.changes.size());
+			assertEquals(2, progress.getTombstones());
+
+			Recorder third = new Recorder();
+			assertEquals(0, capture(TABLE).poll(third, store, until()).getCells());
+			assertTrue(third.changes.isEmpty());
+		} finally {
+			table.close();
+		}
+	}
+
+	public void testResumeAfterFailure() throws Exception {
+		MemoryCheckpointStore store = new MemoryCheckpointStore();
+		long base = until();
+		// 基线：之前的数据都已读过
+		capture(RESUME_TABLE).poll(new Recorder(), store, base);
+
+		Table table = conn.getTable(RESUME_TABLE);
+		try {
+			List<Put> puts = new ArrayList<Put>();
+			for (int i = 0; i < ROWS; i++) {
+				Put put = new Put(Bytes.toBytes(row(i)));
+				put.addColumn(INFO, NAME, Bytes.toBytes("again" + i));
+				puts.add(put);
+			}
+			table.put(puts);
+		} finally {
+			table.close();
+		}
+		long until = until();
+
+		Recorder failing = new Recorder();
+		failing.failAfter = 150;
+		try {
+			new ChangeCapture(conn, RESUME_TABLE, new ChangeCapture.Params().parallelism(1).batchRows(10)).poll(
+					failing, store, until);
+			fail("expected injected failure");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(150, failing.changes.size());
+
+		// 中断的 Region 从最后保存的批次之后继续，最多重复一批
+		Recorder resumed = new Recorder();
+		capture(RESUME_TABLE).poll(resumed, store, until);
+		Set<String> all = new TreeSet<String>(failing.changes);
+		all.addAll(resumed.changes);
+		assertEquals(ROWS, all.size());
+		assertTrue(resumed.changes.size() >= ROWS - 150);
+		assertTrue(resumed.changes.size() <= ROWS - 150 + 10);
+	}
+
+	private static void putAll(TableName tableName, String prefix) throws Exception {
+		Table table = conn.getTable(tableName);
+		try {
+			List<Put> puts = new ArrayList<Put>();
+			for (int i = 0; i < ROWS; i++) {
+				Put put = new Put(Bytes.toBytes(row(i)));
+				put.addColumn(INFO, NAME, Bytes.toBytes(prefix + i));
+				puts.add(put);
+			}
+			table.put(puts);
+		} finally {
+			table.close();
+		}
+	}
+
+	public void testRightDaughterInheritsHighWaterAcrossFailedPoll() throws Exception {
+		putAll(SPLIT_TABLE, "name");
+		MemoryCheckpointStore store = new MemoryCheckpointStore();
+		capture(SPLIT_TABLE).poll(new Recorder(), store, until());
+		assertEquals(1, store.values.size());
+
+		Admin admin = conn.getAdmin();
+		try {
+			admin.split(SPLIT_TABLE, Bytes.toBytes(row(150)));
+			while (admin.getTableRegions(SPLIT_TABLE).size() < 2) {
+				Thread.sleep(100);
+			}
+		} finally {
+			admin.close();
+		}
+		util.waitUntilAllRegionsAssigned(SPLIT_TABLE);
+		putAll(SPLIT_TABLE, "again");
+		long until = until();
+
+		// 左子 Region 完成并保存检查点，右子 Region 在第一个 Cell 就失败
+		Recorder failing = new Recorder() {
+			@Override
+			public synchronized void onChange(Cell cell, boolean tombstone) throws IOException {
+				if (Bytes.toString(CellUtil.cloneRow(cell)).compareTo(row(150)) >= 0) {
+					throw new IOException("Injected failure");
+				}
+				super.onChange(cell, tombstone);
+			}
+		};
+		try {
+			capture(SPLIT_TABLE).poll(failing, store, until);
+			fail("expected injected failure");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(150, failing.changes.size());
+
+		// 右子 Region 继承父 Region 的高水位，只读到第二次写入
+		Recorder resumed = new Recorder();
+		capture(SPLIT_TABLE).poll(resumed, store, until);
+		assertEquals(ROWS - 150, resumed.changes.size());
+		// 父 Region 的检查点已被两个子 Region 的取代
+		assertEquals(2, store.values.size());
+		assertFalse(store.values.containsKey(RegionTasks.checkpointName(new byte[0], new byte[0])));
+	}
+
+	public void testResumeAfterSplitAndMerge() throws Exception {
+		ChangeCapture capture = new ChangeCapture(null, TABLE, new ChangeCapture.Params().startTimestamp(7));
+		List<ChangeCapture.Checkpoint> saved = new ArrayList<ChangeCapture.Checkpoint>();
+		byte[] empty = new byte[0];
+		saved.add(new ChangeCapture.Checkpoint(empty, Bytes.toBytes("m"), 100, 200, Bytes.toBytes("f")));
+		saved.add(new ChangeCapture.Checkpoint(Bytes.toBytes("m"), Bytes.toBytes("t"), 150, 150, null));
+		saved.add(new ChangeCapture.Checkpoint(Bytes.toBytes("t"), empty, 300, 300, null));
+
+		// 区间不变时从进行中的一轮继续
+		ChangeCapture.Checkpoint same = capture.resume(new HRegionInfo(TABLE, empty, Bytes.toBytes("m")), saved);
+		assertEquals(100, same.highWater);
+		assertEquals("f", Bytes.toString(same.lastRow));
+		// 分裂出的 Region 继承父 Region 的高水位，进行中的一轮重新开始
+		ChangeCapture.Checkpoint daughter = capture.resume(new HRegionInfo(TABLE, Bytes.toBytes("g"), Bytes
+				.toBytes("m")), saved);
+		assertEquals(100, daughter.highWater);
+		assertNull(daughter.lastRow);
+		// 合并后的 Region 取最小的高水位
+		ChangeCapture.Checkpoint merged = capture.resume(new HRegionInfo(TABLE, Bytes.toBytes("m"), empty), saved);
+		assertEquals(150, merged.highWater);
+		// 左子 Region 与父 Region 的检查点名字不同
+		assertFalse(saved.get(0).name().equals(new ChangeCapture.Checkpoint(empty, empty, 0, 0, null).name()));
+		ChangeCapture.Checkpoint decoded = ChangeCapture.Checkpoint.decode(saved.get(0).encode());
+		assertEquals(200, decoded.windowEnd);
+		assertTrue(decoded.sameRange(empty, Bytes.toBytes("m")));
+		// 没有相交的检查点
+		assertEquals(7, capture.resume(new HRegionInfo(TABLE, empty, Bytes.toBytes("m")),
+				new ArrayList<ChangeCapture.Checkpoint>()).highWater);
+	}
+}
@@ -0,0 +1,77 @@
+package com.cswe.hbase.example;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class ConnectionWarmerTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("connection_warmer");
+	private static final byte[] INFO = Bytes.toBytes("info");
+
+	private static HBaseTestingUtility util;
+
+	public static Test suite() {
+		return new MiniClusterSetup(ConnectionWarmerTest.class, 2) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				util.createTable(TABLE.getName(), new byte[][] { INFO }, 1, Bytes.toBytes("a"), Bytes.toBytes("z"), 6);
+				util.waitUntilAllRegionsAssigned(TABLE);
+			}
+		};
+	}
+
+	public void testWarmLocatesRegionsAndPingsServers() throws Exception {
+		Connection conn = ConnectionFactory.createConnection(util.getConfiguration());
+		try {
+			final ConnectionWarmer warmer = new ConnectionWarmer(conn, new ConnectionWarmer.Params(TABLE));
+			assertFalse(warmer.isReady());
+			assertFalse(warmer.awaitReady(10, TimeUnit.MILLISECONDS));
+
+			ConnectionWarmer.Report report = warmer.warm();
+			assertEquals(6, report.getRegions());
+			assertEquals(2, report.getServers());
+			assertTrue(report.getFailedServers().isEmpty());
+			assertTrue(report.getElapsedMillis() >= report.getLocateMillis());
+			assertTrue(warmer.isReady());
+			assertTrue(warmer.awaitReady(0, TimeUnit.MILLISECONDS));
+		} finally {
+			conn.close();
+		}
+	}
+
+	public void testMissingTableIsNotReady() throws Exception {
+		Connection conn = ConnectionFactory.createConnection(util.getConfiguration());
+		try {
+			ConnectionWarmer warmer = new ConnectionWarmer(conn, new ConnectionWarmer.Params(TABLE,
+					TableName.valueOf("no_such_table")).warmMaster(false));
+			try {
+				warmer.warm();
+				fail();
+			} catch (TableNotFoundException expected) {
+			}
+			assertFalse(warmer.isReady());
+		} finally {
+			conn.close();
+		}
+	}
+
+	public void testProbeRow() throws Exception {
+		assertTrue(Bytes.equals(new byte[1], ConnectionWarmer.probeRow(new HRegionInfo(TABLE, new byte[0], Bytes
+				.toBytes("a")))));
+		assertEquals("a", Bytes.toString(ConnectionWarmer.probeRow(new HRegionInfo(TABLE, Bytes.toBytes("a"),
+				new byte[0]))));
+		// 第一个 Region 只有空行键时无法探测
+		assertNull(ConnectionWarmer.probeRow(new HRegionInfo(TABLE, new byte[0], new byte[1])));
+	}
+}
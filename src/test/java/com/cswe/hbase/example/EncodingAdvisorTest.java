@@ -0,0 +1,86 @@
+package com.cswe.hbase.example;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class EncodingAdvisorTest extends TestCase {
+
+	private static final byte[] FAMILY = Bytes.toBytes("info");
+
+	private static EncodingAdvisor.Trial trial(DataBlockEncoding encoding, Compression.Algorithm compression,
+			long bytes, long getNanos, long scanNanos) {
+		return new EncodingAdvisor.Trial(encoding, compression, bytes, 0, getNanos, scanNanos, 100);
+	}
+
+	public void testRecommendByGoal() {
+		List<EncodingAdvisor.Trial> trials = new ArrayList<EncodingAdvisor.Trial>();
+		trials.add(trial(DataBlockEncoding.NONE, Compression.Algorithm.NONE, 1000, 10000, 100));
+		trials.add(trial(DataBlockEncoding.FAST_DIFF, Compression.Algorithm.NONE, 500, 10200, 120));
+		trials.add(trial(DataBlockEncoding.FAST_DIFF, Compression.Algorithm.GZ, 200, 40000, 400));
+		trials.add(trial(DataBlockEncoding.PREFIX, Compression.Algorithm.GZ, 205, 30000, 300));
+
+		// 随机读相差不到 5% 时选文件小的
+		EncodingAdvisor.Recommendation hot = EncodingAdvisor.recommend(FAMILY, trials, EncodingAdvisor.Goal.HOT);
+		assertEquals(DataBlockEncoding.FAST_DIFF, hot.getEncoding());
+		assertEquals(Compression.Algorithm.NONE, hot.getCompression());
+
+		// 文件大小相差不到 5% 时选扫描快的
+		EncodingAdvisor.Recommendation cold = EncodingAdvisor.recommend(FAMILY, trials, EncodingAdvisor.Goal.COLD);
+		assertEquals(DataBlockEncoding.PREFIX, cold.getEncoding());
+		assertEquals(Compression.Algorithm.GZ, cold.getCompression());
+
+		// 500/200 * 10200/10000 = 2.55 < 205/200 * 30000/10000 = 3.08
+		EncodingAdvisor.Recommendation balanced = EncodingAdvisor.recommend(FAMILY, trials,
+				EncodingAdvisor.Goal.BALANCED);
+		assertEquals(DataBlockEncoding.FAST_DIFF, balanced.getEncoding());
+		assertEquals(Compression.Algorithm.NONE, balanced.getCompression());
+
+		HColumnDescriptor hcd = cold.applyTo(new HColumnDescriptor(FAMILY));
+		assertEquals(DataBlockEncoding.PREFIX, hcd.getDataBlockEncoding());
+		assertEquals(Compression.Algorithm.GZ, hcd.getCompressionType());
+	}
+
+	public void testEvaluateWritesEveryCombination() throws Exception {
+		List<Cell> sample = new ArrayList<Cell>();
+		for (int i = 0; i < 2000; i++) {
+			byte[] row = Bytes.toBytes(String.format("2017122600%06d", i));
+			sample.add(new KeyValue(row, FAMILY, Bytes.toBytes("name"), Bytes.toBytes("name " + i % 50)));
+			sample.add(new KeyValue(row, FAMILY, Bytes.toBytes("adress"), Bytes.toBytes("wuhan")));
+		}
+		File dir = new File(System.getProperty("java.io.tmpdir"), "encoding-advisor-test-" + System.nanoTime());
+		EncodingAdvisor advisor = new EncodingAdvisor(HBaseConfiguration.create(), new Path(dir.toURI()));
+		advisor.setGets(100);
+		List<EncodingAdvisor.Trial> trials = advisor.evaluate(sample);
+		assertEquals(EncodingAdvisor.ENCODINGS.length * EncodingAdvisor.availableCompressions().size(), trials.size());
+
+		EncodingAdvisor.Trial plain = null;
+		EncodingAdvisor.Trial diff = null;
+		for (EncodingAdvisor.Trial t : trials) {
+			assertEquals(sample.size(), t.getCells());
+			if (t.getCompression() == Compression.Algorithm.NONE) {
+				if (t.getEncoding() == DataBlockEncoding.NONE) {
+					plain = t;
+				} else if (t.getEncoding() == DataBlockEncoding.FAST_DIFF) {
+					diff = t;
+				}
+			}
+		}
+		// 行键前缀相同，编码后明显变小
+		assertTrue(diff.getFileBytes() < plain.getFileBytes() * 0.8);
+		String[] left = dir.list();
+		assertTrue(left == null || left.length == 0);
+		dir.delete();
+	}
+}
@@ -0,0 +1,167 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.ValueType;
+
+/**
+ * 在 mini cluster 上对比 GroupAggregateEndpoint 与客户端聚合的结果，所有用例共用一个集群。
+ */
+public class GroupAggregateEndpointTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("group_aggregate");
+	private static final TableName PLAIN = TableName.valueOf("group_aggregate_plain");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] SEX = Bytes.toBytes("sex");
+	private static final byte[] AGE = Bytes.toBytes("age");
+	private static final byte[] ADRESS = Bytes.toBytes("adress");
+	private static final String[] CITIES = { "wuhan", "beijing", "nanjing" };
+	private static final int ROWS = 2000;
+	/** 最后 NO_ADRESS 行没有 adress 列 */
+	private static final int NO_ADRESS = 10;
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+	/** 按写入的数据算出的 sex=F 各城市的人数和年龄之和 */
+	private static final Map<String, long[]> expected = new HashMap<String, long[]>();
+
+	public static Test suite() {
+		return new MiniClusterSetup(GroupAggregateEndpointTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+				createTable(TABLE, true);
+				createTable(PLAIN, false);
+				load(TABLE);
+			}
+		};
+	}
+
+	private static void createTable(TableName tableName, boolean endpoint) throws Exception {
+		HTableDescriptor htd = new HTableDescriptor(tableName);
+		htd.addFamily(new HColumnDescriptor(INFO));
+		if (endpoint) {
+			htd.addCoprocessor(GroupAggregateEndpoint.class.getName());
+		}
+		Admin admin = conn.getAdmin();
+		try {
+			admin.createTable(htd, new byte[][] { row(500), row(1000), row(1500) });
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static byte[] row(int i) {
+		return Bytes.toBytes(String.format("r%05d", i));
+	}
+
+	private static void load(TableName tableName) throws Exception {
+		Random random = new Random(42);
+		List<Put> puts = new ArrayList<Put>();
+		for (int i = 0; i < ROWS; i++) {
+			String sex = random.nextBoolean() ? "F" : "M";
+			int age = 16 + random.nextInt(50);
+			String city = CITIES[random.nextInt(CITIES.length)];
+			Put put = new Put(row(i));
+			put.addColumn(INFO, SEX, Bytes.toBytes(sex));
+			put.addColumn(INFO, AGE, Bytes.toBytes(String.valueOf(age)));
+			if (i < ROWS - NO_ADRESS) {
+				put.addColumn(INFO, ADRESS, Bytes.toBytes(city));
+			} else {
+				city = null;
+			}
+			puts.add(put);
+			if (sex.equals("F")) {
+				long[] e = expected.get(city);
+				if (e == null) {
+					expected.put(city, e = new long[2]);
+				}
+				e[0]++;
+				e[1] += age;
+			}
+		}
+		Table table = conn.getTable(tableName);
+		try {
+			table.put(puts);
+		} finally {
+			table.close();
+		}
+	}
+
+	private static Scan femaleScan() {
+		Scan scan = new Scan();
+		scan.addColumn(INFO, SEX);
+		scan.setFilter(new SingleColumnValueFilter(INFO, SEX, CompareOp.EQUAL, Bytes.toBytes("F")));
+		return scan;
+	}
+
+	private static GroupAggregateClient.Request byCity() {
+		return new GroupAggregateClient.Request().groupBy(INFO, ADRESS).column(INFO, AGE, ValueType.DECIMAL);
+	}
+
+	public void testGroupByMatchesClientSide() throws Exception {
+		GroupAggregateClient client = new GroupAggregateClient(conn, TABLE);
+		List<GroupAggregateClient.Group> server = client.aggregate(femaleScan(), byCity());
+		List<GroupAggregateClient.Group> local = client.aggregateOnClient(femaleScan(), byCity());
+
+		assertEquals(expected.size(), server.size());
+		assertEquals(server.toString(), local.toString());
+		// 没有 adress 的行单独一组，排在最前
+		assertNull(server.get(0).getKey());
+		for (GroupAggregateClient.Group group : server) {
+			long[] e = expected.get(group.getKey() != null ? Bytes.toString(group.getKey()) : null);
+			assertEquals(e[0], group.getRows());
+			assertEquals(e[0], group.getColumn(0).getCount());
+			assertEquals(e[1], group.getColumn(0).getSum());
+			assertTrue(group.getColumn(0).getMin() >= 16);
+			assertTrue(group.getColumn(0).getMax() < 66);
+		}
+	}
+
+	public void testRowRangeWithoutGroup() throws Exception {
+		GroupAggregateClient client = new GroupAggregateClient(conn, TABLE);
+		// 跨两个 Region
+		Scan scan = new Scan(row(400), row(1100));
+		GroupAggregateClient.Request request = new GroupAggregateClient.Request().column(INFO, AGE, ValueType.DECIMAL)
+				.column(INFO, SEX, ValueType.DECIMAL);
+		List<GroupAggregateClient.Group> groups = client.aggregate(scan, request);
+		assertEquals(1, groups.size());
+		assertEquals(700, groups.get(0).getRows());
+		assertEquals(700, groups.get(0).getColumn(0).getCount());
+		// sex 不是数字，不计入统计
+		assertEquals(0, groups.get(0).getColumn(1).getCount());
+		assertEquals(groups.toString(), client.aggregateOnClient(scan, request).toString());
+	}
+
+	public void testEndpointNotLoaded() throws Exception {
+		GroupAggregateClient client = new GroupAggregateClient(conn, PLAIN);
+		try {
+			client.aggregate(new Scan(), byCity());
+			fail("expected EndpointNotLoadedException");
+		} catch (GroupAggregateClient.EndpointNotLoadedException e) {
+			// expected
+		}
+		assertEquals(0, client.aggregateOnClient(new Scan(), byCity()).size());
+	}
+}
@@ -0,0 +1,126 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class HotRegionTrackerTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("t");
+	private static final ServerName RS1 = ServerName.valueOf("rs1", 16020, 1L);
+	private static final ServerName RS2 = ServerName.valueOf("rs2", 16020, 1L);
+
+	private static byte[] b(String s) {
+		return Bytes.toBytes(s);
+	}
+
+	private static HRegionLocation location(String start, String end, ServerName server) {
+		return location(start, end, server, 1L);
+	}
+
+	private static HRegionLocation location(String start, String end, ServerName server, long regionId) {
+		return new HRegionLocation(new HRegionInfo(TABLE, b(start), b(end), false, regionId), server);
+	}
+
+	private static List<byte[]> rows(String prefix, int from, int count) {
+		List<byte[]> rows = new ArrayList<byte[]>(count);
+		for (int i = from; i < from + count; i++) {
+			rows.add(b(String.format("%s%05d", prefix, i)));
+		}
+		return rows;
+	}
+
+	public void testHotAndSlowRegions() throws Exception {
+		HRegionLocation a = location("", "g", RS1);
+		HRegionLocation g = location("g", "m", RS2);
+		HRegionLocation m = location("m", "t", RS2);
+		HRegionLocation t = location("t", "", RS2);
+		List<HRegionLocation> all = new ArrayList<HRegionLocation>();
+		all.add(a);
+		all.add(g);
+		all.add(m);
+		all.add(t);
+		HotRegionTracker tracker = new HotRegionTracker(new HotRegionTracker.Params().halfLifeMillis(3600000)
+				.minRows(100));
+		tracker.register(all);
+
+		for (int i = 0; i < 70; i++) {
+			// a 占 70%，每行耗时是其它 Region 的 10 倍
+			tracker.record(a, rows("a", i * 100, 100), 100 * 1000000L, false);
+		}
+		for (int i = 0; i < 10; i++) {
+			tracker.record(g, rows("g", i * 100, 100), 100 * 100000L, false);
+			tracker.record(m, rows("m", i * 100, 100), 100 * 100000L, false);
+		}
+		// t 只写了几行，不参与判断
+		tracker.record(t, rows("t", 0, 10), 10 * 100000L, false);
+		tracker.record(t, rows("t", 10, 10), 0, true);
+
+		List<HotRegionTracker.RegionStat> stats = tracker.getStats();
+		assertEquals(4, stats.size());
+		HotRegionTracker.RegionStat hot = stats.get(0);
+		assertEquals(a.getRegionInfo(), hot.getRegion());
+		assertEquals(RS1, hot.getServer());
+		assertEquals(7000.0 / 9010, hot.getShare(), 1e-3);
+		assertEquals(1.0, hot.getMillisPerRow(), 1e-6);
+		assertTrue(hot.isHot());
+		assertTrue(hot.isSlow());
+		for (HotRegionTracker.RegionStat stat : stats.subList(1, stats.size())) {
+			assertFalse(stat.toString(), stat.isHot() || stat.isSlow());
+		}
+		assertEquals(1, stats.get(3).getFailures());
+
+		// 拆分点是样本的中位数，位于 Region 内部
+		byte[][] points = tracker.hotSplitPoints();
+		assertEquals(1, points.length);
+		assertTrue(Bytes.compareTo(points[0], b("a01000")) > 0 && Bytes.compareTo(points[0], b("a06000")) < 0);
+	}
+
+	public void testDecay() throws Exception {
+		HotRegionTracker tracker = new HotRegionTracker(new HotRegionTracker.Params().halfLifeMillis(50));
+		HRegionLocation a = location("", "", RS1);
+		tracker.record(a, rows("a", 0, 1000), 1000000L, false);
+		Thread.sleep(200);
+		// 4 个半衰期之后约剩 1/16
+		double rows = tracker.getStats().get(0).getRows();
+		assertTrue("rows " + rows, rows < 1000 / 8.0);
+		// 只有一个 Region 时不判定热点
+		assertFalse(tracker.getStats().get(0).isHot());
+	}
+
+	public void testSplitPointInsideRegion() throws Exception {
+		HRegionInfo region = new HRegionInfo(TABLE, b("g"), b("m"));
+		assertNull(HotRegionTracker.splitPoint(region, rows("g", 0, 1)));
+		// 样本都等于起始行时拆不开
+		List<byte[]> samples = new ArrayList<byte[]>();
+		for (int i = 0; i < 10; i++) {
+			samples.add(b("g"));
+		}
+		assertNull(HotRegionTracker.splitPoint(region, samples));
+		// 中位数等于起始行时取之后第一个更大的样本
+		samples.add(b("h"));
+		assertEquals("h", Bytes.toString(HotRegionTracker.splitPoint(region, samples)));
+		assertEquals("g00050", Bytes.toString(HotRegionTracker.splitPoint(region, rows("g", 0, 100))));
+	}
+
+	public void testRegisterDropsMissingRegions() throws Exception {
+		HotRegionTracker tracker = new HotRegionTracker(new HotRegionTracker.Params());
+		HRegionLocation whole = location("", "", RS1);
+		tracker.record(whole, rows("a", 0, 10), 1000L, false);
+		List<HRegionLocation> split = new ArrayList<HRegionLocation>();
+		// 拆分出的 Region 有新的 regionId
+		split.add(location("", "m", RS1, 2L));
+		split.add(location("m", "", RS2, 2L));
+		tracker.register(split);
+		List<HotRegionTracker.RegionStat> stats = tracker.getStats();
+		assertEquals(2, stats.size());
+		assertEquals(0.0, stats.get(0).getRows());
+	}
+}
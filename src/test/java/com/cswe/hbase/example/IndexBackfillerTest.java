@@ -0,0 +1,299 @@
+package com.cswe.hbase.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 检查点、限流的单元测试，以及在 mini cluster 上补建、中断后继续。
+ * mini cluster 上没有索引协处理器，用 {@link RewriteObserver} 记录补建重写了哪些行。
+ */
+public class IndexBackfillerTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("index_backfill");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final byte[] AGE = Bytes.toBytes("age");
+	private static final int ROWS = 2000;
+	/** 写入数据时的时间戳，补建按原时间戳重写 */
+	private static final long TS = 1000L;
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(IndexBackfillerTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+				createTable();
+			}
+		};
+	}
+
+	/**
+	 * 记录带 info:name 的 Put 写入的行，代替索引协处理器
+	 */
+	public static class RewriteObserver extends BaseRegionObserver {
+		static final Set<String> rows = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		static final AtomicInteger puts = new AtomicInteger();
+
+		@Override
+		public void prePut(ObserverContext<RegionCoprocessorEnvironment> c, Put put, WALEdit edit,
+				Durability durability) throws IOException {
+			if (put.has(INFO, NAME)) {
+				rows.add(Bytes.toString(put.getRow()));
+				puts.incrementAndGet();
+			}
+		}
+	}
+
+	private static byte[] row(int i) {
+		return Bytes.toBytes(String.format("r%05d", i));
+	}
+
+	private static void createTable() throws Exception {
+		HTableDescriptor htd = new HTableDescriptor(TABLE);
+		htd.addFamily(new HColumnDescriptor(INFO));
+		Admin admin = conn.getAdmin();
+		try {
+			admin.createTable(htd, new byte[][] { row(500), row(1000), row(1500) });
+		} finally {
+			admin.close();
+		}
+		List<Put> puts = new ArrayList<Put>();
+		for (int i = 0; i < ROWS; i++) {
+			Put put = new Put(row(i));
+			put.addColumn(INFO, NAME, TS, Bytes.toBytes("name " + i));
+			put.addColumn(INFO, AGE, TS, Bytes.toBytes(String.valueOf(i % 50)));
+			puts.add(put);
+		}
+		Table table = conn.getTable(TABLE);
+		try {
+			table.put(puts);
+		} finally {
+			table.close();
+		}
+		// 数据写完后再加载，只记录补建的写入
+		admin = conn.getAdmin();
+		try {
+			htd.addCoprocessor(RewriteObserver.class.getName());
+			admin.disableTable(TABLE);
+			admin.modifyTable(TABLE, htd);
+			admin.enableTable(TABLE);
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static List<byte[][]> nameColumn() {
+		List<byte[][]> columns = new ArrayList<byte[][]>();
+		columns.add(new byte[][] { INFO, NAME });
+		return columns;
+	}
+
+	private static IndexBackfiller.Checkpoint checkpoint(String start, String end, String lastRow, boolean done) {
+		return new IndexBackfiller.Checkpoint(Bytes.toBytes(start), Bytes.toBytes(end), lastRow != null ? Bytes
+				.toBytes(lastRow) : null, done);
+	}
+
+	public void testResumeRow() throws Exception {
+		byte[] b = Bytes.toBytes("b");
+		byte[] d = Bytes.toBytes("d");
+		List<IndexBackfiller.Checkpoint> saved = new ArrayList<IndexBackfiller.Checkpoint>();
+		assertTrue(Bytes.equals(b, IndexBackfiller.resumeRow(b, d, saved)));
+
+		saved.add(checkpoint("b", "d", "c", false));
+		assertTrue(Bytes.equals(Bytes.toBytes("c\0"), IndexBackfiller.resumeRow(b, d, saved)));
+		// 最后一行之后没有行了
+		saved.set(0, checkpoint("b", "c\0", "c", false));
+		assertNull(IndexBackfiller.resumeRow(b, Bytes.toBytes("c\0"), saved));
+
+		saved.set(0, checkpoint("b", "d", "c", true));
+		assertNull(IndexBackfiller.resumeRow(b, d, saved));
+		// 合并后的 Region 超出原来的区间，重新补建
+		assertTrue(Bytes.equals(b, IndexBackfiller.resumeRow(b, new byte[0], saved)));
+
+		// 分裂后的子 Region 用父 Region 的进度：前一半已经越过，后一半从头开始
+		saved.set(0, checkpoint("", "", "c", false));
+		assertNull(IndexBackfiller.resumeRow(Bytes.toBytes("a"), b, saved));
+		assertTrue(Bytes.equals(Bytes.toBytes("c\0"), IndexBackfiller.resumeRow(b, d, saved)));
+		assertTrue(Bytes.equals(d, IndexBackfiller.resumeRow(d, new byte[0], saved)));
+		// 子 Region 自己的检查点优先
+		saved.add(checkpoint("d", "", null, true));
+		assertNull(IndexBackfiller.resumeRow(d, new byte[0], saved));
+	}
+
+	public void testCheckpointEncoding() throws Exception {
+		IndexBackfiller.Checkpoint cp = checkpoint("", "r00500", "r00123", false);
+		IndexBackfiller.Checkpoint decoded = IndexBackfiller.Checkpoint.decode(cp.encode());
+		assertEquals(0, decoded.startKey.length);
+		assertEquals("r00500", Bytes.toString(decoded.endKey));
+		assertEquals("r00123", Bytes.toString(decoded.lastRow));
+		assertFalse(decoded.done);
+		assertEquals(cp.name(), decoded.name());
+		// 分裂出的左子 Region 与父 Region 起始行相同，检查点不能互相覆盖
+		assertFalse(cp.name().equals(checkpoint("", "r00250", null, false).name()));
+
+		decoded = IndexBackfiller.Checkpoint.decode(checkpoint("r00500", "", null, true).encode());
+		assertNull(decoded.lastRow);
+		assertTrue(decoded.done);
+	}
+
+	public void testFileCheckpointStore() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "checkpoints-" + System.nanoTime());
+		FileSystem fs = FileSystem.getLocal(new Configuration());
+		Path path = new Path(dir.getAbsolutePath());
+		FileCheckpointStore store = new FileCheckpointStore(fs, path);
+		try {
+			assertTrue(store.load().isEmpty());
+			store.save("region-", Bytes.toBytes("one"));
+			store.save("region-", Bytes.toBytes("two"));
+			store.save("region-7230", Bytes.toBytes("three"));
+			Map<String, byte[]> loaded = store.load();
+			assertEquals(2, loaded.size());
+			assertEquals("two", Bytes.toString(loaded.get("region-")));
+
+			// 删除旧文件后、改名前崩溃：使用完整的 tmp
+			fs.rename(new Path(path, "region-7230"), new Path(path, "region-7230.tmp"));
+			assertEquals("three", Bytes.toString(store.load().get("region-7230")));
+			// 写 tmp 时崩溃：忽略写了一半的 tmp
+			store.save("region-7230", Bytes.toBytes("four"));
+			fs.create(new Path(path, "region-7230.tmp"), true).close();
+			assertEquals("four", Bytes.toString(store.load().get("region-7230")));
+			store.remove("region-7230");
+			store.remove("region-7230");
+			assertEquals(1, store.load().size());
+
+			try {
+				store.save("../region", new byte[0]);
+				fail("name must not escape the directory");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			store.clear();
+			assertTrue(store.load().isEmpty());
+		} finally {
+			fs.delete(path, true);
+		}
+	}
+
+	public void testRateLimiter() throws Exception {
+		RateLimiter limiter = new RateLimiter(1000);
+		// 新建时没有积攒的许可，第一批先放行
+		assertEquals(0, limiter.acquire(200));
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			limiter.acquire(100);
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		// 前 200 个许可欠下 200ms，之后 4 批各 100ms
+		assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 550 && elapsedMillis < 1500);
+
+		assertEquals(0, new RateLimiter(Double.POSITIVE_INFINITY).acquire(Integer.MAX_VALUE));
+		try {
+			limiter.setRate(0);
+			fail("rate must be positive");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testBackfillResumesFromCheckpoint() throws Exception {
+		RewriteObserver.rows.clear();
+		RewriteObserver.puts.set(0);
+		MemoryCheckpointStore store = new MemoryCheckpointStore();
+		IndexBackfiller.Params params = new IndexBackfiller.Params().parallelism(2).batchRows(100)
+				.rowsPerSecond(Double.POSITIVE_INFINITY);
+		store.saves = 6;
+		try {
+			new IndexBackfiller(conn, TABLE, params).backfill(nameColumn(), store);
+			fail("expected injected failure");
+		} catch (IOException e) {
+			// expected
+		}
+		int firstRun = RewriteObserver.puts.get();
+		assertTrue(firstRun > 0 && firstRun < ROWS);
+		assertFalse(store.values.isEmpty());
+
+		store.saves = Integer.MAX_VALUE;
+		IndexBackfiller.Progress progress = new IndexBackfiller(conn, TABLE, params).backfill(nameColumn(), store);
+		assertEquals(4, progress.getRegions());
+		assertEquals(4, progress.getRegionsDone());
+		assertEquals(ROWS, RewriteObserver.rows.size());
+		// 只重做最后一次保存之后的批次，每个 Region 最多一批
+		assertTrue(RewriteObserver.puts.get() <= ROWS + 4 * 100);
+		assertTrue(progress.getRowsWritten() < ROWS);
+		// 各 Region 的检查点换成完成标记
+		assertEquals(Collections.singleton(IndexBackfiller.COMPLETE), store.load().keySet());
+
+		// 全部完成后再次调用直接返回
+		RewriteObserver.puts.set(0);
+		progress = new IndexBackfiller(conn, TABLE, params).backfill(nameColumn(), store);
+		assertEquals(4, progress.getRegionsDone());
+		assertEquals(0, progress.getRowsScanned());
+		assertEquals(0, RewriteObserver.puts.get());
+	}
+
+	public void testBackfillKeepsTimestampsAndSkipsNewerCells() throws Exception {
+		RewriteObserver.puts.set(0);
+		Table table = conn.getTable(TABLE);
+		try {
+			// 补建开始后写入的行已由索引协处理器处理，不再重写
+			Put put = new Put(row(7));
+			put.addColumn(INFO, NAME, Bytes.toBytes("renamed"));
+			table.put(put);
+			RewriteObserver.puts.set(0);
+
+			IndexBackfiller.Params params = new IndexBackfiller.Params().rewriteBefore(TS + 1).batchRows(1000)
+					.rowsPerSecond(Double.POSITIVE_INFINITY);
+			IndexBackfiller.Progress progress = new IndexBackfiller(conn, TABLE, params).backfill(nameColumn(),
+					new MemoryCheckpointStore());
+			assertEquals(ROWS, progress.getRowsScanned());
+			assertEquals(ROWS - 1, progress.getRowsWritten());
+			assertEquals(ROWS - 1, RewriteObserver.puts.get());
+
+			Get get = new Get(row(7));
+			get.setMaxVersions();
+			assertEquals("renamed", Bytes.toString(table.get(get).getValue(INFO, NAME)));
+			get = new Get(row(8));
+			get.setMaxVersions();
+			// 按原时间戳重写，不产生新版本
+			assertEquals(1, table.get(get).getColumnCells(INFO, NAME).size());
+			assertEquals(TS, table.get(get).getColumnLatestCell(INFO, NAME).getTimestamp());
+			assertTrue(Arrays.equals(Bytes.toBytes("name 8"), table.get(get).getValue(INFO, NAME)));
+		} finally {
+			table.close();
+		}
+	}
+}
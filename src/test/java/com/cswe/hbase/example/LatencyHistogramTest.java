@@ -0,0 +1,114 @@
+package com.cswe.hbase.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.TableName;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public void testBucketBounds() {
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			long v = random.nextLong() >>> (24 + random.nextInt(40));
+			int b = LatencyHistogram.bucket(v);
+			assertTrue(v <= LatencyHistogram.upperBound(b));
+			if (b > 0) {
+				assertTrue(v > LatencyHistogram.upperBound(b - 1));
+			}
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+	}
+
+	public void testPercentilesWithinBucketError() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (long v = 1; v <= 100000; v++) {
+			h.record(v * 1000);
+		}
+		assertEquals(100000, h.getCount());
+		assertEquals(100000000L, h.getMaxNanos());
+		assertEquals(50000500.0, h.getMeanNanos(), 1);
+		assertWithin(50000000, h.percentileNanos(0.5));
+		assertWithin(99000000, h.percentileNanos(0.99));
+		assertWithin(99900000, h.percentileNanos(0.999));
+		assertEquals(100000000L, h.percentileNanos(1));
+		assertEquals(0, new LatencyHistogram().percentileNanos(0.5));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected ~" + expected + " but was " + actual, actual >= expected
+				&& actual <= expected * (1 + 1.0 / LatencyHistogram.SUB_BUCKETS));
+	}
+
+	public void testConcurrentRecord() throws InterruptedException {
+		final LatencyHistogram h = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					for (int i = 0; i < 50000; i++) {
+						h.record(random.nextInt(1000000));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(200000, h.getCount());
+		assertEquals(h.getMaxNanos(), h.percentileNanos(1));
+	}
+
+	public void testMetricsRegisteredAsMXBean() throws Exception {
+		ClientMetrics metrics = new ClientMetrics("test");
+		try {
+			OperationMetrics op = metrics.forOperation(TableName.valueOf("t1"), "get");
+			assertSame(op, metrics.forOperation(TableName.valueOf("t1"), "get"));
+			op.record(System.nanoTime() - 2000000, 100, 0, 1);
+			op.recordError(System.nanoTime());
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(ClientMetrics.DOMAIN + ":type=ClientMetrics,name=\"test\",table=\"t1\",operation=\"get\"");
+			assertEquals(2L, server.getAttribute(name, "Count"));
+			assertEquals(1L, server.getAttribute(name, "Errors"));
+			assertEquals(100L, server.getAttribute(name, "BytesRead"));
+			assertTrue((Double) server.getAttribute(name, "MaxMillis") >= 2);
+			metrics.close();
+			assertFalse(server.isRegistered(name));
+		} finally {
+			metrics.close();
+		}
+	}
+
+	public void testThroughputIsSlidingWindow() {
+		OperationMetrics op = new OperationMetrics(TableName.valueOf("t1"), "get");
+		long t0 = System.nanoTime();
+		long second = 1000000000L;
+		for (int i = 0; i < 100; i++) {
+			op.tick(t0 + second / 2);
+		}
+		for (int i = 0; i < 50; i++) {
+			op.tick(t0 + 10 * second + second / 2);
+		}
+		// 不足一个窗口时除以已运行的时长
+		assertEquals(150 / 20.5, op.throughput(t0 + 20 * second + second / 2), 0.01);
+		// 第 60 秒与第 0 秒共用一个槽，第 0 秒的计数被丢弃
+		op.tick(t0 + 60 * second + second / 2);
+		assertEquals(51 / 59.9, op.throughput(t0 + 60 * second + second * 9 / 10), 0.01);
+		// 一个窗口之后只剩后来的操作
+		for (int i = 0; i < 120; i++) {
+			op.tick(t0 + 65 * second + second / 2);
+		}
+		assertEquals(121 / 59.5, op.throughput(t0 + 70 * second + second / 2), 0.01);
+		assertEquals(0, op.throughput(t0 + 200 * second), 1e-9);
+	}
+}
@@ -0,0 +1,36 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 内存中的检查点，测试共用；saves 次保存之后失败，模拟任务中途退出
+ */
+class MemoryCheckpointStore implements CheckpointStore {
+	final Map<String, byte[]> values = new TreeMap<String, byte[]>();
+	int saves = Integer.MAX_VALUE;
+
+	@Override
+	public synchronized Map<String, byte[]> load() {
+		return new TreeMap<String, byte[]>(values);
+	}
+
+	@Override
+	public synchronized void save(String name, byte[] value) throws IOException {
+		if (saves-- <= 0) {
+			throw new IOException("Injected failure");
+		}
+		values.put(name, value);
+	}
+
+	@Override
+	public synchronized void remove(String name) {
+		values.remove(name);
+	}
+
+	@Override
+	public synchronized void clear() {
+		values.clear();
+	}
+}
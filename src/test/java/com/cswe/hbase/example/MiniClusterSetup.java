@@ -0,0 +1,56 @@
+package com.cswe.hbase.example;
+
+import junit.extensions.TestSetup;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+
+/**
+ * 测试共用的 mini cluster：整个测试类启动一次，全部用例结束后关闭连接和集群。
+ * 子类在 {@link #started()} 中取出集群和连接、建表、写入初始数据。
+ */
+class MiniClusterSetup extends TestSetup {
+
+	private final int regionServers;
+	private HBaseTestingUtility util;
+	private Connection conn;
+
+	MiniClusterSetup(Class<? extends TestCase> testClass, int regionServers) {
+		super(new TestSuite(testClass));
+		this.regionServers = regionServers;
+	}
+
+	HBaseTestingUtility getUtility() {
+		return util;
+	}
+
+	Connection getConnection() {
+		return conn;
+	}
+
+	/**
+	 * 集群启动、连接建立之后调用
+	 */
+	protected void started() throws Exception {
+	}
+
+	@Override
+	protected final void setUp() throws Exception {
+		util = new HBaseTestingUtility();
+		util.startMiniCluster(regionServers);
+		conn = ConnectionFactory.createConnection(util.getConfiguration());
+		started();
+	}
+
+	@Override
+	protected final void tearDown() throws Exception {
+		try {
+			conn.close();
+		} finally {
+			util.shutdownMiniCluster();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.Tag;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class MobReaderTest extends TestCase {
+
+	private static final byte[] ROW = Bytes.toBytes("row");
+	private static final byte[] MOBCF = Bytes.toBytes("mobcf");
+	private static final byte[] CF1 = Bytes.toBytes("cf1");
+
+	public void testValueSizeFilterReadsLengthFromMobReference() throws Exception {
+		ValueSizeFilter filter = new ValueSizeFilter();
+
+		Cell plain = new KeyValue(ROW, MOBCF, CF1, 5L, new byte[1000]);
+		Cell size = filter.transformCell(plain);
+		assertEquals(1000, Bytes.toInt(size.getValueArray(), size.getValueOffset()));
+		assertEquals(5L, size.getTimestamp());
+
+		// 引用的值为实际长度加 MOB 文件名
+		byte[] refValue = Bytes.add(Bytes.toBytes(10 * 1024 * 1024), Bytes.toBytes("d41d8cd98f00b204e9800998ecf8427e"));
+		List<Tag> tags = new ArrayList<Tag>();
+		tags.add(new Tag(ValueSizeFilter.MOB_REFERENCE_TAG_TYPE, new byte[0]));
+		Cell ref = new KeyValue(ROW, MOBCF, CF1, 6L, refValue, tags);
+		size = filter.transformCell(ref);
+		assertEquals(10 * 1024 * 1024, Bytes.toInt(size.getValueArray(), size.getValueOffset()));
+		// 替换后不再带引用标签
+		assertEquals(0, size.getTagsLength());
+
+		// 没有引用标签的同样内容按普通值处理
+		size = filter.transformCell(new KeyValue(ROW, MOBCF, CF1, 6L, refValue));
+		assertEquals(refValue.length, Bytes.toInt(size.getValueArray(), size.getValueOffset()));
+	}
+
+	public void testReferences() throws Exception {
+		ValueSizeFilter filter = new ValueSizeFilter();
+		List<Cell> cells = new ArrayList<Cell>();
+		cells.add(filter.transformCell(new KeyValue(ROW, MOBCF, CF1, 2L, new byte[300])));
+		cells.add(filter.transformCell(new KeyValue(ROW, MOBCF, CF1, 1L, new byte[200])));
+		Result result = Result.create(cells);
+
+		MobReader reader = new MobReader(null, null);
+		List<MobValueRef> refs = reader.references(result);
+		assertEquals(2, refs.size());
+		assertEquals(300, refs.get(0).getSize());
+		assertEquals(200, refs.get(1).getSize());
+		MobValueRef latest = reader.reference(result, MOBCF, CF1);
+		assertEquals(2L, latest.getTimestamp());
+		assertTrue(Bytes.equals(ROW, latest.getRow()));
+		assertNull(reader.reference(result, MOBCF, Bytes.toBytes("cf2")));
+
+		try {
+			reader.references(Result.create(new Cell[] { new KeyValue(ROW, MOBCF, CF1, new byte[100]) }));
+			fail("values must come from a reference scan");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testReferenceScanKeepsFilter() throws Exception {
+		Scan scan = new Scan().addColumn(MOBCF, CF1);
+		Scan refScan = MobReader.referenceScan(scan);
+		assertTrue(refScan.getFilter() instanceof ValueSizeFilter);
+		assertTrue(Bytes.toBoolean(refScan.getAttribute(MobReader.MOB_SCAN_RAW)));
+		assertNull(scan.getFilter());
+
+		scan.setFilter(new KeyOnlyFilter());
+		FilterList filters = (FilterList) MobReader.referenceScan(scan).getFilter();
+		assertTrue(filters.getFilters().get(0) instanceof KeyOnlyFilter);
+		assertTrue(filters.getFilters().get(1) instanceof ValueSizeFilter);
+	}
+}
@@ -0,0 +1,176 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 在 8 个 Region 的表上并行扫描：缓冲容量远小于每个 Region 的行数，后面的 Region 必须阻塞等待
+ */
+public class ParallelScannerTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("parallel_scanner");
+	private static final TableName SALTED_TABLE = TableName.valueOf("parallel_scanner_salted");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final int ROWS = 2000;
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(ParallelScannerTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+				util.createTable(TABLE.getName(), new byte[][] { INFO }, 1, Bytes.toBytes(row(100)), Bytes
+						.toBytes(row(1900)), 8);
+				util.waitUntilAllRegionsAssigned(TABLE);
+				Table table = conn.getTable(TABLE);
+				try {
+					List<Put> puts = new ArrayList<Put>();
+					for (int i = 0; i < ROWS; i++) {
+						Put put = new Put(Bytes.toBytes(row(i)));
+						put.addColumn(INFO, NAME, Bytes.toBytes("name" + i));
+						puts.add(put);
+					}
+					table.put(puts);
+				} finally {
+					table.close();
+				}
+			}
+		};
+	}
+
+	private static String row(int i) {
+		return String.format("row%05d", i);
+	}
+
+	public void testOrderedWithSmallBuffer() throws Exception {
+		ParallelScanner scanner = new ParallelScanner(conn, TABLE, 4, 4, 10);
+		try {
+			final List<String> rows = new ArrayList<String>();
+			long count = scanner.scan(new Scan(), ParallelScanner.MergeMode.ORDERED,
+					new ParallelScanner.ResultHandler() {
+						@Override
+						public void onResult(Result result) {
+							rows.add(Bytes.toString(result.getRow()));
+						}
+					});
+			assertEquals(ROWS, count);
+			assertEquals(ROWS, rows.size());
+			for (int i = 0; i < ROWS; i++) {
+				assertEquals(row(i), rows.get(i));
+			}
+		} finally {
+			scanner.close();
+		}
+	}
+
+	public void testUnorderedWithSmallBuffer() throws Exception {
+		ParallelScanner scanner = new ParallelScanner(conn, TABLE, 4, 2, 10);
+		try {
+			final boolean[] seen = new boolean[ROWS];
+			long count = scanner.scan(new Scan(), ParallelScanner.MergeMode.UNORDERED,
+					new ParallelScanner.ResultHandler() {
+						@Override
+						public void onResult(Result result) {
+							int i = Integer.parseInt(Bytes.toString(result.getRow()).substring(3));
+							assertFalse(seen[i]);
+							seen[i] = true;
+						}
+					});
+			assertEquals(ROWS, count);
+		} finally {
+			scanner.close();
+		}
+	}
+
+	public void testSaltedKeysAreDecodedAndOrderedIsRejected() throws Exception {
+		SaltedKeyCodec codec = new SaltedKeyCodec(4);
+		util.createTable(SALTED_TABLE.getName(), new byte[][] { INFO }, codec.splitKeys());
+		Table table = conn.getTable(SALTED_TABLE);
+		try {
+			List<Put> puts = new ArrayList<Put>();
+			for (int i = 0; i < 200; i++) {
+				Put put = new Put(codec.encode(Bytes.toBytes(row(i))));
+				put.addColumn(INFO, NAME, Bytes.toBytes("name" + i));
+				puts.add(put);
+			}
+			table.put(puts);
+		} finally {
+			table.close();
+		}
+		ParallelScanner scanner = new ParallelScanner(conn, SALTED_TABLE, 4, 4, 10);
+		scanner.setKeyCodec(codec);
+		try {
+			final boolean[] seen = new boolean[200];
+			assertEquals(200, scanner.scan(new Scan(), ParallelScanner.MergeMode.UNORDERED,
+					new ParallelScanner.ResultHandler() {
+						@Override
+						public void onResult(Result result) {
+							// 行键已去掉桶号
+							int i = Integer.parseInt(Bytes.toString(result.getRow()).substring(3));
+							assertEquals("name" + i, Bytes.toString(result.getValue(INFO, NAME)));
+							assertFalse(seen[i]);
+							seen[i] = true;
+						}
+					}));
+			try {
+				scanner.scan(new Scan(), ParallelScanner.MergeMode.ORDERED, new ParallelScanner.ResultHandler() {
+					@Override
+					public void onResult(Result result) {
+					}
+				});
+				fail("ORDERED must be rejected on salted keys");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		} finally {
+			scanner.close();
+		}
+	}
+
+	public void testHandlerFailureCancelsBlockedRegions() throws Exception {
+		ParallelScanner scanner = new ParallelScanner(conn, TABLE, 4, 4, 10);
+		try {
+			scanner.scan(new Scan(), ParallelScanner.MergeMode.ORDERED, new ParallelScanner.ResultHandler() {
+				int rows = 0;
+
+				@Override
+				public void onResult(Result result) throws IOException {
+					if (++rows == 50) {
+						throw new IOException("Injected failure");
+					}
+				}
+			});
+			fail("expected injected failure");
+		} catch (IOException e) {
+			assertEquals("Injected failure", e.getMessage());
+		}
+		// 取消后线程池可以继续执行新的扫描
+		try {
+			assertEquals(ROWS, scanner.scan(new Scan(), ParallelScanner.MergeMode.ORDERED,
+					new ParallelScanner.ResultHandler() {
+						@Override
+						public void onResult(Result result) {
+						}
+					}));
+		} finally {
+			scanner.close();
+		}
+	}
+}
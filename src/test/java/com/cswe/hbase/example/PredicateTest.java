@@ -0,0 +1,267 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class PredicateTest extends TestCase {
+
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final byte[] SEX = Bytes.toBytes("sex");
+	private static final byte[] AGE = Bytes.toBytes("age");
+	private static final byte[] ADRESS = Bytes.toBytes("adress");
+	private static final String[] CITIES = { "wuhan", "beijing", "nanjing", "shanghai" };
+
+	private static byte[] b(String s) {
+		return Bytes.toBytes(s);
+	}
+
+	/**
+	 * 按 RegionScanner 的调用顺序把一行交给过滤器，返回留下的 Cell，整行被过滤时返回 null
+	 */
+	private static List<Cell> run(Filter filter, List<Cell> row) throws IOException {
+		filter.reset();
+		Cell first = row.get(0);
+		if (filter.filterRowKey(first.getRowArray(), first.getRowOffset(), first.getRowLength())) {
+			return null;
+		}
+		List<Cell> included = new ArrayList<Cell>();
+		for (Cell cell : row) {
+			ReturnCode code = filter.filterKeyValue(cell);
+			if (code == ReturnCode.NEXT_ROW) {
+				break;
+			}
+			if (code == ReturnCode.INCLUDE) {
+				included.add(cell);
+			}
+		}
+		return filter.filterRow() ? null : included;
+	}
+
+	/**
+	 * 随机缺少某些列，并为部分列写入较早的版本
+	 */
+	private static List<Cell> randomRow(int i, Random random) {
+		byte[] row = b(String.format("20171226%04d", i));
+		List<Cell> cells = new ArrayList<Cell>();
+		String[] values = { "name " + random.nextInt(20), random.nextBoolean() ? "F" : "M",
+				String.valueOf(16 + random.nextInt(30)), CITIES[random.nextInt(CITIES.length)] };
+		byte[][] qualifiers = { NAME, SEX, AGE, ADRESS };
+		for (int j = 0; j < qualifiers.length; j++) {
+			if (random.nextInt(8) == 0) {
+				continue;
+			}
+			cells.add(new KeyValue(row, INFO, qualifiers[j], 2L, b(values[j])));
+			if (random.nextInt(4) == 0) {
+				cells.add(new KeyValue(row, INFO, qualifiers[j], 1L, b(values[random.nextInt(values.length)])));
+			}
+		}
+		if (cells.isEmpty()) {
+			cells.add(new KeyValue(row, INFO, NAME, 2L, b("name 0")));
+		}
+		Collections.sort(cells, KeyValue.COMPARATOR);
+		return cells;
+	}
+
+	public void testFilterAgreesWithClientEvaluation() throws Exception {
+		Predicate where = Predicate.or(
+				Predicate.and(Predicate.column(INFO, SEX).eq(b("F")),
+						Predicate.column(INFO, AGE).range(b("20"), b("30")),
+						Predicate.not(Predicate.column(INFO, ADRESS).in(b("wuhan"), b("nanjing"), b("wuhan")))),
+				Predicate.and(Predicate.rowKey().prefix(b("2017122600")), Predicate.column(INFO, NAME).prefix(b("name 1"))),
+				Predicate.column(INFO, AGE).ge(b("44")));
+		Filter filter = new PredicateFilter(where);
+		Filter parsed = PredicateFilter.parseFrom(filter.toByteArray());
+		assertEquals(filter.toString(), parsed.toString());
+
+		Random random = new Random(7);
+		int matched = 0;
+		for (int i = 0; i < 2000; i++) {
+			List<Cell> row = randomRow(i, random);
+			boolean expected = where.matches(Result.create(row));
+			List<Cell> kept = run(filter, row);
+			assertEquals(row.toString(), expected, kept != null);
+			assertEquals(row.toString(), expected, run(parsed, row) != null);
+			if (expected) {
+				// 没有隐藏列时，所有版本都交给后面的版本检查处理
+				assertEquals(row, kept);
+				matched++;
+			}
+		}
+		assertTrue(matched > 100 && matched < 1900);
+	}
+
+	public void testMissingColumn() throws Exception {
+		List<Cell> row = new ArrayList<Cell>();
+		row.add(new KeyValue(b("r1"), INFO, NAME, b("zhang san")));
+		assertNull(run(new PredicateFilter(Predicate.column(INFO, SEX).eq(b("F"))), row));
+		assertNull(run(new PredicateFilter(Predicate.column(INFO, SEX).ne(b("F"))), row));
+		// 缺少该列时叶子条件为未知，not 之后仍为未知，与 ne 一致
+		Predicate notEqual = Predicate.not(Predicate.column(INFO, SEX).eq(b("F")));
+		assertNull(run(new PredicateFilter(notEqual), row));
+		assertFalse(notEqual.matches(Result.create(row)));
+		Predicate either = Predicate.or(Predicate.column(INFO, SEX).eq(b("F")), notEqual);
+		assertNull(run(new PredicateFilter(either), row));
+		assertNull(run(PredicateCompiler.toFilter(either, false), row));
+		// 其他分支为 true 时整体为 true
+		Predicate named = Predicate.or(notEqual, Predicate.column(INFO, NAME).eq(b("zhang san")));
+		assertNotNull(run(new PredicateFilter(named), row));
+		assertNotNull(run(PredicateCompiler.toFilter(named, false), row));
+	}
+
+	public void testBuiltInFiltersAgreeWithClientEvaluation() throws Exception {
+		Predicate where = Predicate.or(
+				Predicate.and(Predicate.column(INFO, SEX).eq(b("F")),
+						Predicate.not(Predicate.column(INFO, AGE).range(b("20"), b("30"))),
+						Predicate.not(Predicate.column(INFO, ADRESS).in(b("wuhan"), b("nanjing")))),
+				Predicate.and(Predicate.rowKey().prefix(b("2017122600")),
+						Predicate.not(Predicate.column(INFO, NAME).prefix(b("name 1")))),
+				Predicate.not(Predicate.or(Predicate.column(INFO, AGE).lt(b("40")),
+						Predicate.column(INFO, ADRESS).in(b("beijing")))));
+		// 返回整行时没有隐藏列，编译为内置过滤器
+		Scan scan = PredicateCompiler.compile(where, null);
+		assertTrue(scan.getFilter() instanceof FilterList);
+
+		Random random = new Random(11);
+		int matched = 0;
+		for (int i = 0; i < 2000; i++) {
+			List<Cell> row = randomRow(i, random);
+			boolean expected = where.matches(Result.create(row));
+			assertEquals(row.toString(), expected, run(scan.getFilter(), row) != null);
+			assertEquals(row.toString(), expected, run(new PredicateFilter(where), row) != null);
+			if (expected) {
+				matched++;
+			}
+		}
+		assertTrue(matched > 100 && matched < 1900);
+	}
+
+	public void testCompileFallsBackToPredicateFilter() throws Exception {
+		// 需要的列都已返回时不隐藏，使用内置过滤器
+		Scan scan = PredicateCompiler.compile(Predicate.column(INFO, SEX).eq(b("F")), INFO, NAME, SEX);
+		assertTrue(scan.getFilter() instanceof SingleColumnValueFilter);
+		// 需要隐藏条件列
+		scan = PredicateCompiler.compile(Predicate.column(INFO, SEX).eq(b("F")), INFO, NAME);
+		assertTrue(scan.getFilter() instanceof PredicateFilter);
+		// 空的 IN
+		scan = PredicateCompiler.compile(Predicate.not(Predicate.column(INFO, SEX).in()), null);
+		assertTrue(scan.getFilter() instanceof PredicateFilter);
+	}
+
+	public void testPredicateFilterMode() throws Exception {
+		Predicate where = Predicate.and(Predicate.rowKey().ge(b("2017122601")), Predicate.column(INFO, SEX).eq(b("F")),
+				Predicate.not(Predicate.column(INFO, ADRESS).in(b("wuhan"), b("nanjing"))));
+		List<byte[][]> columns = new ArrayList<byte[][]>();
+		columns.add(new byte[][] { INFO, NAME });
+		columns.add(new byte[][] { INFO, SEX });
+		columns.add(new byte[][] { INFO, ADRESS });
+		Scan builtIn = PredicateCompiler.compile(where, columns);
+		Scan single = PredicateCompiler.compile(where, columns, PredicateCompiler.FilterMode.PREDICATE_FILTER);
+		assertTrue(builtIn.getFilter() instanceof FilterList);
+		// 同样的起止行和列，过滤器为单个 PredicateFilter
+		assertTrue(single.getFilter() instanceof PredicateFilter);
+		assertTrue(Bytes.equals(builtIn.getStartRow(), single.getStartRow()));
+		assertTrue(Bytes.equals(builtIn.getStopRow(), single.getStopRow()));
+		assertEquals(builtIn.getFamilyMap().get(INFO).size(), single.getFamilyMap().get(INFO).size());
+
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			List<Cell> row = randomRow(i, random);
+			assertEquals(row.toString(), run(builtIn.getFilter(), row) != null, run(single.getFilter(), row) != null);
+		}
+		// 起止行已经精确表示条件时两种方式都不设过滤器
+		assertNull(PredicateCompiler.compile(Predicate.rowKey().prefix(b("2017")), null,
+				PredicateCompiler.FilterMode.PREDICATE_FILTER).getFilter());
+	}
+
+	public void testStopsAtFirstFailingColumn() throws Exception {
+		byte[] row = b("r1");
+		Filter filter = new PredicateFilter(Predicate.and(Predicate.column(INFO, ADRESS).eq(b("wuhan")),
+				Predicate.column(INFO, SEX).eq(b("F"))));
+		filter.reset();
+		assertFalse(filter.filterRowKey(row, 0, row.length));
+		assertEquals(ReturnCode.NEXT_ROW, filter.filterKeyValue(new KeyValue(row, INFO, ADRESS, b("beijing"))));
+		assertTrue(filter.filterRow());
+
+		// 行键条件不满足时不读任何 Cell
+		filter = new PredicateFilter(Predicate.and(Predicate.rowKey().ne(row), Predicate.column(INFO, SEX).eq(b("F"))));
+		filter.reset();
+		assertTrue(filter.filterRowKey(row, 0, row.length));
+	}
+
+	public void testCompilePrunesColumnsAndHidesConditionColumns() throws Exception {
+		Predicate where = Predicate.and(Predicate.column(INFO, AGE).ge(b("30")), Predicate.column(INFO, NAME).ne(b("x")));
+		Scan scan = PredicateCompiler.compile(where, INFO, NAME);
+		assertEquals(2, scan.getFamilyMap().get(INFO).size());
+		assertTrue(scan.getFamilyMap().get(INFO).contains(AGE));
+		assertEquals(0, scan.getStartRow().length);
+		assertEquals(0, scan.getStopRow().length);
+
+		PredicateFilter filter = (PredicateFilter) scan.getFilter();
+		List<Cell> row = new ArrayList<Cell>();
+		row.add(new KeyValue(b("r1"), INFO, AGE, b("35")));
+		row.add(new KeyValue(b("r1"), INFO, NAME, b("zhang san")));
+		List<Cell> kept = run(filter, row);
+		assertEquals(1, kept.size());
+		assertTrue(Bytes.equals(NAME, kept.get(0).getQualifier()));
+
+		// 隐藏列在序列化后保留
+		kept = run(PredicateFilter.parseFrom(filter.toByteArray()), row);
+		assertEquals(1, kept.size());
+
+		// 返回整行时不增加列，也不隐藏
+		scan = PredicateCompiler.compile(where, null);
+		assertFalse(scan.hasFamilies());
+		assertEquals(2, run(scan.getFilter(), row).size());
+	}
+
+	public void testKeyRange() throws Exception {
+		Scan scan = PredicateCompiler.compile(
+				Predicate.and(Predicate.rowKey().ge(b("2017122601")), Predicate.rowKey().le(b("2017122603"))), null);
+		assertEquals("2017122601", Bytes.toString(scan.getStartRow()));
+		assertTrue(Bytes.equals(Bytes.add(b("2017122603"), new byte[] { 0 }), scan.getStopRow()));
+		// 起止行已经精确表示条件
+		assertNull(scan.getFilter());
+
+		scan = PredicateCompiler.compile(Predicate.rowKey().prefix(new byte[] { 1, 2, (byte) 0xFF }), null);
+		assertTrue(Bytes.equals(new byte[] { 1, 2, (byte) 0xFF }, scan.getStartRow()));
+		assertTrue(Bytes.equals(new byte[] { 1, 3 }, scan.getStopRow()));
+
+		// or 取外包，需要过滤器排除中间的行
+		scan = PredicateCompiler.compile(
+				Predicate.or(Predicate.rowKey().eq(b("b")), Predicate.rowKey().in(b("d"), b("c"))), null);
+		assertEquals("b", Bytes.toString(scan.getStartRow()));
+		assertTrue(Bytes.equals(Bytes.add(b("d"), new byte[] { 0 }), scan.getStopRow()));
+		assertNotNull(scan.getFilter());
+
+		// 列条件和 not 不限制行范围
+		scan = PredicateCompiler.compile(
+				Predicate.and(Predicate.rowKey().lt(b("m")),
+						Predicate.or(Predicate.rowKey().gt(b("c")), Predicate.column(INFO, SEX).eq(b("F")))), null);
+		assertEquals(0, scan.getStartRow().length);
+		assertEquals("m", Bytes.toString(scan.getStopRow()));
+
+		// 矛盾的条件只读一行并由过滤器排除
+		Predicate contradiction = Predicate.and(Predicate.rowKey().ge(b("x")), Predicate.rowKey().lt(b("c")));
+		scan = PredicateCompiler.compile(contradiction, null);
+		assertTrue(Bytes.equals(scan.getStartRow(), scan.getStopRow()));
+		List<Cell> row = new ArrayList<Cell>();
+		row.add(new KeyValue(scan.getStartRow(), INFO, NAME, b("zhang san")));
+		assertNull(run(scan.getFilter(), row));
+	}
+}
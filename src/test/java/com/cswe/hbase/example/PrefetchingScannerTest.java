@@ -0,0 +1,133 @@
+package com.cswe.hbase.example;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class PrefetchingScannerTest extends TestCase {
+
+	/** 被包装的扫描器返回 rows 行，读到 failAt 行时抛出异常 */
+	private int rows = 0;
+	private int failAt = -1;
+	private final AtomicInteger fetched = new AtomicInteger();
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	private ResultScanner delegate() {
+		return (ResultScanner) Proxy.newProxyInstance(ResultScanner.class.getClassLoader(),
+				new Class<?>[] { ResultScanner.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("next")) {
+							int i = fetched.get();
+							if (i == failAt) {
+								throw new IOException("region moved");
+							}
+							if (i >= rows) {
+								return null;
+							}
+							fetched.incrementAndGet();
+							return result(i);
+						}
+						if (method.getName().equals("close")) {
+							closed.countDown();
+						}
+						return null;
+					}
+				});
+	}
+
+	private static Result result(int i) {
+		return Result.create(new Cell[] { new KeyValue(Bytes.toBytes(String.format("r%04d", i)),
+				Bytes.toBytes("f"), Bytes.toBytes("q"), new byte[100]) });
+	}
+
+	public void testReturnsAllRowsInOrder() throws Exception {
+		rows = 1000;
+		PrefetchingScanner scanner = new PrefetchingScanner(delegate(), 64);
+		try {
+			for (int i = 0; i < rows; i++) {
+				assertEquals(String.format("r%04d", i), Bytes.toString(scanner.next().getRow()));
+			}
+			assertNull(scanner.next());
+			assertTrue(closed.await(5, TimeUnit.SECONDS));
+		} finally {
+			scanner.close();
+		}
+		assertNull(scanner.next());
+	}
+
+	public void testStopsAtBufferLimits() throws Exception {
+		rows = 1000;
+		PrefetchingScanner scanner = new PrefetchingScanner(delegate(), 10);
+		try {
+			Thread.sleep(200);
+			// 10 行在缓冲区，第 11 行已读出、等待空位
+			assertEquals(11, fetched.get());
+		} finally {
+			scanner.close();
+		}
+		rows = 1000;
+		fetched.set(0);
+		// 每行的 Cell 大于 100 字节，缓冲区只能放 2 行
+		scanner = new PrefetchingScanner(delegate(), 100, 2 * Result.getTotalSizeOfCells(result(0)));
+		try {
+			Thread.sleep(200);
+			assertEquals(3, fetched.get());
+			// 换到调用方手中的 2 行在读完前仍占用额度
+			scanner.next();
+			Thread.sleep(200);
+			assertEquals(3, fetched.get());
+			scanner.next();
+			scanner.next();
+			Thread.sleep(200);
+			assertEquals(5, fetched.get());
+		} finally {
+			scanner.close();
+		}
+	}
+
+	public void testErrorAfterBufferedRows() throws Exception {
+		rows = 100;
+		failAt = 5;
+		PrefetchingScanner scanner = new PrefetchingScanner(delegate(), 64);
+		try {
+			for (int i = 0; i < 5; i++) {
+				assertNotNull(scanner.next());
+			}
+			try {
+				scanner.next();
+				fail("expected IOException");
+			} catch (IOException e) {
+				assertEquals("region moved", e.getMessage());
+			}
+			assertTrue(closed.await(5, TimeUnit.SECONDS));
+		} finally {
+			scanner.close();
+		}
+	}
+
+	public void testCloseEarlyReleasesDelegate() throws Exception {
+		rows = 100000;
+		PrefetchingScanner scanner = new PrefetchingScanner(delegate(), 16);
+		scanner.next();
+		scanner.close();
+		// close 返回时被包装的扫描器已经关闭，后台线程不再读取
+		assertEquals(0, closed.getCount());
+		int n = fetched.get();
+		Thread.sleep(100);
+		assertEquals(n, fetched.get());
+		assertNull(scanner.next());
+	}
+}
@@ -0,0 +1,124 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class QueryPlannerTest extends TestCase {
+
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final byte[] AGE = Bytes.toBytes("age");
+
+	private QueryPlanner planner;
+
+	@Override
+	protected void setUp() throws Exception {
+		planner = new QueryPlanner(null, TableName.valueOf("t"));
+		planner.addIndex("index_name", INFO, NAME);
+	}
+
+	private static TableStatistics stats(long rows, long sampled, ColumnPredicate p, long matched) {
+		Map<ColumnPredicate, Long> matches = new HashMap<ColumnPredicate, Long>();
+		matches.put(p, matched);
+		return new TableStatistics(rows, 4, sampled, matches);
+	}
+
+	private static List<ColumnPredicate> list(ColumnPredicate... predicates) {
+		List<ColumnPredicate> list = new ArrayList<ColumnPredicate>();
+		for (ColumnPredicate p : predicates) {
+			list.add(p);
+		}
+		return list;
+	}
+
+	public void testSelectivePredicateUsesIndex() throws Exception {
+		ColumnPredicate name = ColumnPredicate.column(INFO, NAME, CompareOp.EQUAL, Bytes.toBytes("zhang san"));
+		ColumnPredicate age = ColumnPredicate.column(INFO, AGE, CompareOp.GREATER, Bytes.toBytes("20"));
+		Map<ColumnPredicate, Long> matches = new HashMap<ColumnPredicate, Long>();
+		matches.put(name, 2L);
+		matches.put(age, 2000L);
+		TableStatistics stats = new TableStatistics(1000000, 4, 4000, matches);
+
+		QueryPlan plan = planner.plan(list(age, name), null, stats);
+		assertEquals(QueryPlan.Type.INDEX_LOOKUP, plan.getType());
+		assertEquals("index_name", plan.getIndexName());
+		// 索引列上的过滤器排在最前，协处理器据此选择索引
+		FilterList filters = (FilterList) plan.getScan().getFilter();
+		assertEquals(2, filters.getFilters().size());
+		assertTrue(Bytes.equals(NAME, ((SingleColumnValueFilter) filters.getFilters().get(0)).getQualifier()));
+	}
+
+	public void testUnselectivePredicateScans() throws Exception {
+		ColumnPredicate name = ColumnPredicate.column(INFO, NAME, CompareOp.EQUAL, Bytes.toBytes("zhang san"));
+		QueryPlan plan = planner.plan(list(name), null, stats(1000000, 4000, name, 1000));
+		assertEquals(QueryPlan.Type.PRUNED_FULL_SCAN, plan.getType());
+		assertNull(plan.getIndexName());
+		assertEquals(250125, plan.getEstimatedRows());
+	}
+
+	public void testNotEqualNeverUsesIndex() throws Exception {
+		ColumnPredicate name = ColumnPredicate.column(INFO, NAME, CompareOp.NOT_EQUAL, Bytes.toBytes("zhang san"));
+		QueryPlan plan = planner.plan(list(name), null, stats(1000000, 4000, name, 0));
+		assertEquals(QueryPlan.Type.PRUNED_FULL_SCAN, plan.getType());
+	}
+
+	public void testRowKeyRange() throws Exception {
+		ColumnPredicate from = ColumnPredicate.rowKey(CompareOp.GREATER_OR_EQUAL, Bytes.toBytes("2017122601"));
+		ColumnPredicate to = ColumnPredicate.rowKey(CompareOp.LESS_OR_EQUAL, Bytes.toBytes("2017122603"));
+		Map<ColumnPredicate, Long> matches = new HashMap<ColumnPredicate, Long>();
+		matches.put(from, 100L);
+		matches.put(to, 100L);
+		TableStatistics stats = new TableStatistics(1000000, 4, 4000, matches);
+
+		List<byte[][]> columns = new ArrayList<byte[][]>();
+		columns.add(new byte[][] { INFO, AGE });
+		QueryPlan plan = planner.plan(list(from, to), columns, stats);
+		assertEquals(QueryPlan.Type.KEY_RANGE_SCAN, plan.getType());
+		assertEquals("2017122601", Bytes.toString(plan.getScan().getStartRow()));
+		assertEquals("2017122603\\x00", Bytes.toStringBinary(plan.getScan().getStopRow()));
+		assertEquals(1, plan.getScan().getFamilyMap().get(INFO).size());
+	}
+
+	public void testStatisticsAreCachedUntilExpired() throws Exception {
+		final List<List<ColumnPredicate>> collected = new ArrayList<List<ColumnPredicate>>();
+		QueryPlanner cached = new QueryPlanner(null, TableName.valueOf("t")) {
+			@Override
+			TableStatistics collect(List<ColumnPredicate> predicates) {
+				collected.add(predicates);
+				Map<ColumnPredicate, Long> matches = new HashMap<ColumnPredicate, Long>();
+				for (ColumnPredicate p : predicates) {
+					matches.put(p, 10L);
+				}
+				return new TableStatistics(1000, 4, 100, matches);
+			}
+		};
+		ColumnPredicate name = ColumnPredicate.column(INFO, NAME, CompareOp.EQUAL, Bytes.toBytes("zhang san"));
+		ColumnPredicate age = ColumnPredicate.column(INFO, AGE, CompareOp.GREATER, Bytes.toBytes("20"));
+		cached.plan(list(name), null);
+		// 值相同的新条件对象复用统计
+		cached.plan(list(ColumnPredicate.column(INFO, NAME, CompareOp.EQUAL, Bytes.toBytes("zhang san"))), null);
+		assertEquals(1, collected.size());
+		// 新条件与已统计的条件一起采样
+		cached.plan(list(age), null);
+		assertEquals(2, collected.size());
+		assertEquals(2, collected.get(1).size());
+		cached.plan(list(name, age), null);
+		assertEquals(2, collected.size());
+
+		cached.setStatisticsTtlMillis(1);
+		Thread.sleep(5);
+		cached.plan(list(name), null);
+		assertEquals(3, collected.size());
+		assertEquals(list(name), collected.get(2));
+	}
+}
@@ -0,0 +1,63 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.RegionScanSplitter.RegionScan;
+
+public class RegionScanSplitterTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("t");
+
+	private List<HRegionLocation> regions(String... boundaries) {
+		List<HRegionLocation> locations = new ArrayList<HRegionLocation>();
+		byte[] start = HConstants.EMPTY_START_ROW;
+		for (int i = 0; i <= boundaries.length; i++) {
+			byte[] end = i < boundaries.length ? Bytes.toBytes(boundaries[i]) : HConstants.EMPTY_END_ROW;
+			HRegionInfo info = new HRegionInfo(TABLE, start, end);
+			// 倒序加入，验证切分结果按行键排序
+			locations.add(0, new HRegionLocation(info, ServerName.valueOf("rs" + (i % 2), 16020, 1L)));
+			start = end;
+		}
+		return locations;
+	}
+
+	public void testFullScanCoversEveryRegion() throws Exception {
+		List<RegionScan> scans = RegionScanSplitter.split(new Scan(), regions("J", "M", "P"));
+		assertEquals(4, scans.size());
+		assertEquals("", Bytes.toString(scans.get(0).getScan().getStartRow()));
+		assertEquals("J", Bytes.toString(scans.get(0).getScan().getStopRow()));
+		assertEquals("P", Bytes.toString(scans.get(3).getScan().getStartRow()));
+		assertEquals("", Bytes.toString(scans.get(3).getScan().getStopRow()));
+	}
+
+	public void testRangeIsClippedToRegions() throws Exception {
+		Scan scan = new Scan(Bytes.toBytes("K"), Bytes.toBytes("N"));
+		scan.addColumn(Bytes.toBytes("info"), Bytes.toBytes("name"));
+		scan.setCaching(500);
+		List<RegionScan> scans = RegionScanSplitter.split(scan, regions("J", "M", "P"));
+		assertEquals(2, scans.size());
+		assertEquals("K", Bytes.toString(scans.get(0).getScan().getStartRow()));
+		assertEquals("M", Bytes.toString(scans.get(0).getScan().getStopRow()));
+		assertEquals("M", Bytes.toString(scans.get(1).getScan().getStartRow()));
+		assertEquals("N", Bytes.toString(scans.get(1).getScan().getStopRow()));
+		assertEquals(500, scans.get(1).getScan().getCaching());
+		assertTrue(scans.get(1).getScan().getFamilyMap().containsKey(Bytes.toBytes("info")));
+	}
+
+	public void testStopRowOnRegionBoundary() throws Exception {
+		List<RegionScan> scans = RegionScanSplitter.split(new Scan(Bytes.toBytes("A"), Bytes.toBytes("J")),
+				regions("J", "M"));
+		assertEquals(1, scans.size());
+	}
+}
@@ -0,0 +1,164 @@
+package com.cswe.hbase.example;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class RowCacheTest extends TestCase {
+
+	private static final byte[] FAMILY = Bytes.toBytes("info");
+
+	private static Get get(String row, String... qualifiers) {
+		Get get = new Get(Bytes.toBytes(row));
+		for (String q : qualifiers) {
+			get.addColumn(FAMILY, Bytes.toBytes(q));
+		}
+		return get;
+	}
+
+	private static Result result(String row, String value) {
+		return Result.create(new Cell[] { new KeyValue(Bytes.toBytes(row), FAMILY, Bytes.toBytes("name"),
+				Bytes.toBytes(value)) });
+	}
+
+	/** 没有并发写入时的填充：版本号在读取前取得 */
+	private static void fill(RowCache cache, Get get, Result result) {
+		cache.put(get, result, cache.generation(get.getRow()));
+	}
+
+	public void testHitMissAndColumnSet() {
+		RowCache cache = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		assertNull(cache.get(get("r1", "name")));
+		fill(cache, get("r1", "name"), result("r1", "a"));
+		assertNotNull(cache.get(get("r1", "name")));
+		// 列集合不同视为不同的键
+		assertNull(cache.get(get("r1", "name", "age")));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	public void testInvalidateRemovesAllColumnSets() {
+		RowCache cache = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		fill(cache, get("r1", "name"), result("r1", "a"));
+		fill(cache, get("r1", "name", "age"), result("r1", "a"));
+		fill(cache, get("r2", "name"), result("r2", "b"));
+		cache.invalidate(Bytes.toBytes("r1"));
+		assertNull(cache.get(get("r1", "name")));
+		assertNull(cache.get(get("r1", "name", "age")));
+		assertNotNull(cache.get(get("r2", "name")));
+		assertEquals(2, cache.getInvalidationCount());
+		assertEquals(1, cache.getEntryCount());
+	}
+
+	public void testTtl() throws Exception {
+		RowCache cache = new RowCache(1 << 20, 1, RowCache.EvictionPolicy.LRU);
+		fill(cache, get("r1", "name"), result("r1", "a"));
+		Thread.sleep(5);
+		assertNull(cache.get(get("r1", "name")));
+		assertEquals(1, cache.getExpiredCount());
+		assertEquals(0, cache.getSizeBytes());
+	}
+
+	public void testLruEvictionBySize() {
+		RowCache probe = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		fill(probe, get("r0", "name"), result("r0", "v"));
+		long entrySize = probe.getSizeBytes();
+
+		RowCache cache = new RowCache(entrySize * 2, 60000, RowCache.EvictionPolicy.LRU);
+		fill(cache, get("r0", "name"), result("r0", "v"));
+		fill(cache, get("r1", "name"), result("r1", "v"));
+		cache.get(get("r0", "name"));
+		fill(cache, get("r2", "name"), result("r2", "v"));
+		assertNotNull(cache.get(get("r0", "name")));
+		assertNull(cache.get(get("r1", "name")));
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.getSizeBytes() <= entrySize * 2);
+	}
+
+	public void testTinyLfuRejectsColdCandidate() {
+		RowCache probe = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		fill(probe, get("r0", "name"), result("r0", "v"));
+		long entrySize = probe.getSizeBytes();
+
+		RowCache cache = new RowCache(entrySize, 60000, RowCache.EvictionPolicy.TINY_LFU);
+		for (int i = 0; i < 5; i++) {
+			cache.get(get("rh", "name"));
+		}
+		fill(cache, get("rh", "name"), result("rh", "v"));
+		// 只访问过一次的冷数据不能挤掉热点
+		cache.get(get("rc", "name"));
+		fill(cache, get("rc", "name"), result("rc", "v"));
+		assertNotNull(cache.get(get("rh", "name")));
+		assertEquals(1, cache.getRejectedCount());
+	}
+
+	public void testUncacheableGet() throws Exception {
+		RowCache cache = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		Get get = get("r1", "name");
+		get.setFilter(new KeyOnlyFilter());
+		fill(cache, get, result("r1", "a"));
+		assertEquals(0, cache.getEntryCount());
+	}
+
+	public void testWriteBetweenReadAndFillDropsStaleResult() {
+		RowCache cache = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		// 读取线程：取得版本号后向服务端读取，得到旧值
+		long generation = cache.generation(Bytes.toBytes("r1"));
+		Result stale = result("r1", "old");
+		// 写入线程：写入新值并使该行失效
+		cache.invalidate(Bytes.toBytes("r1"));
+		// 读取线程填充旧值，应被丢弃
+		cache.put(get("r1", "name"), stale, generation);
+		assertNull(cache.get(get("r1", "name")));
+		assertEquals(1, cache.getStaleCount());
+		// 失效之后的读取可以正常填充
+		fill(cache, get("r1", "name"), result("r1", "new"));
+		assertNotNull(cache.get(get("r1", "name")));
+		// clear 之前开始的读取也不能填充
+		generation = cache.generation(Bytes.toBytes("r2"));
+		cache.clear();
+		cache.put(get("r2", "name"), result("r2", "old"), generation);
+		assertEquals(0, cache.getEntryCount());
+	}
+
+	public void testKeyDistinguishesLargeQualifierSets() {
+		String[] many = new String[256];
+		for (int i = 0; i < many.length; i++) {
+			many[i] = "q" + i;
+		}
+		// 256 个列与整个列族、255 个列的键都不同
+		Get wholeFamily = new Get(Bytes.toBytes("r1"));
+		wholeFamily.addFamily(FAMILY);
+		assertFalse(RowCache.keyOf(get("r1", many)).equals(RowCache.keyOf(wholeFamily)));
+		String[] fewer = new String[255];
+		System.arraycopy(many, 0, fewer, 0, fewer.length);
+		assertFalse(RowCache.keyOf(get("r1", many)).equals(RowCache.keyOf(get("r1", fewer))));
+		assertFalse(RowCache.keyOf(get("r1", fewer)).equals(RowCache.keyOf(wholeFamily)));
+	}
+
+	public void testRejectedCandidateEvictsNothing() {
+		RowCache probe = new RowCache(1 << 20, 60000, RowCache.EvictionPolicy.LRU);
+		fill(probe, get("r0", "name"), result("r0", "v"));
+		long entrySize = probe.getSizeBytes();
+
+		// 新条目需要腾出两个条目的空间：队尾的冷条目可以淘汰，其后的热点条目不行
+		RowCache cache = new RowCache(entrySize * 2, 60000, RowCache.EvictionPolicy.TINY_LFU);
+		fill(cache, get("rc", "name"), result("rc", "v"));
+		for (int i = 0; i < 5; i++) {
+			cache.get(get("rh", "name"));
+		}
+		fill(cache, get("rh", "name"), result("rh", "v"));
+		cache.get(get("rn", "name"));
+		cache.get(get("rn", "name"));
+		fill(cache, get("rn", "name"), result("rn", "a much longer value that needs the space of two entries"));
+		assertEquals(1, cache.getRejectedCount());
+		assertEquals(0, cache.getEvictionCount());
+		assertEquals(2, cache.getEntryCount());
+		assertEquals(entrySize * 2, cache.getSizeBytes());
+	}
+}
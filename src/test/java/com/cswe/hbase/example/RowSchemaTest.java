@@ -0,0 +1,74 @@
+package com.cswe.hbase.example;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class RowSchemaTest extends TestCase {
+
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] ROW = Bytes.toBytes("2017122601");
+
+	private static Result result(Put put) {
+		return Result.create(put.getFamilyCellMap().get(INFO));
+	}
+
+	private static Cell cell(String qualifier, long ts, String value) {
+		return new KeyValue(ROW, INFO, Bytes.toBytes(qualifier), ts, Bytes.toBytes(value));
+	}
+
+	public void testRoundTrip() {
+		UserInfo user = new UserInfo("2017122601", "zhang san", "F", 18, "wuhan");
+		Put put = UserInfo.SCHEMA.toPut(user);
+		assertEquals("2017122601", Bytes.toString(put.getRow()));
+		assertEquals("18", Bytes.toString(CellUtil.cloneValue(put.get(INFO, Bytes.toBytes("age")).get(0))));
+
+		UserInfo decoded = UserInfo.SCHEMA.fromResult(result(put));
+		assertEquals(user.toString(), decoded.toString());
+	}
+
+	public void testQualifiersAreShared() {
+		byte[] name = UserInfo.SCHEMA.qualifier("info", "name");
+		assertSame(name, UserInfo.SCHEMA.qualifier("info", "name"));
+		assertSame(UserInfo.SCHEMA.family("info"), UserInfo.SCHEMA.family("info"));
+		Put put = UserInfo.SCHEMA.toPut(new UserInfo("r", "a", null, null, null));
+		// 值为 null 的字段不写入
+		assertEquals(1, put.size());
+		try {
+			UserInfo.SCHEMA.qualifier("info", "phone");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testPartialAndUnknownColumns() {
+		// 按列名排序：adress, age, email（不在 schema 中）, name（两个版本）
+		Result result = Result.create(new Cell[] { cell("adress", 1, "wuhan"), cell("age", 1, "-7"),
+				cell("email", 1, "x@y"), cell("name", 2, "new"), cell("name", 1, "old") });
+		UserInfo user = UserInfo.SCHEMA.fromResult(result);
+		assertEquals("2017122601", user.getRowKey());
+		assertEquals("wuhan", user.getAdress());
+		assertEquals(Integer.valueOf(-7), user.getAge());
+		assertEquals("new", user.getName());
+		assertNull(user.getSex());
+
+		assertNull(UserInfo.SCHEMA.fromResult(Result.EMPTY_RESULT));
+	}
+
+	public void testRejectsDuplicateColumn() {
+		try {
+			RowSchema.builder(UserInfo::new).family("info")
+					.column("name", ValueCodec.STRING, UserInfo::getName, UserInfo::setName)
+					.column("name", ValueCodec.STRING, UserInfo::getSex, UserInfo::setSex).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class SaltedKeyCodecTest extends TestCase {
+
+	public void testRoundTrip() {
+		SaltedKeyCodec codec = new SaltedKeyCodec(16);
+		byte[] row = Bytes.toBytes("2017122601");
+		byte[] salted = codec.encode(row);
+		assertEquals(row.length + 1, salted.length);
+		assertEquals(codec.bucket(row), salted[0]);
+		assertTrue(Bytes.equals(row, codec.decode(salted)));
+		// 同一行键总是落在同一个桶
+		assertTrue(Bytes.equals(salted, codec.encode(Bytes.toBytes("2017122601"))));
+	}
+
+	public void testSequentialKeysSpreadAcrossBuckets() {
+		SaltedKeyCodec codec = new SaltedKeyCodec(8);
+		int[] counts = new int[8];
+		for (int i = 0; i < 8000; i++) {
+			counts[codec.bucket(Bytes.toBytes(String.format("20171226%08d", i)))]++;
+		}
+		for (int count : counts) {
+			assertTrue("bucket count " + count, count > 800 && count < 1200);
+		}
+		assertEquals(7, codec.splitKeys().length);
+	}
+
+	public void testBucketRange() {
+		SaltedKeyCodec codec = new SaltedKeyCodec(256);
+		byte[][] range = codec.bucketRange(3, Bytes.toBytes("a"), new byte[0]);
+		assertEquals("\\x03a", Bytes.toStringBinary(range[0]));
+		assertEquals("\\x04", Bytes.toStringBinary(range[1]));
+		range = codec.bucketRange(255, new byte[0], Bytes.toBytes("b"));
+		assertEquals("\\xFF", Bytes.toStringBinary(range[0]));
+		assertEquals("\\xFFb", Bytes.toStringBinary(range[1]));
+		// 最后一个桶没有上界
+		assertEquals(0, codec.bucketRange(255, new byte[0], new byte[0])[1].length);
+	}
+
+	public void testDecodeResult() {
+		SaltedKeyCodec codec = new SaltedKeyCodec(4);
+		byte[] salted = codec.encode(Bytes.toBytes("r1"));
+		List<Cell> cells = new ArrayList<Cell>();
+		cells.add(new KeyValue(salted, Bytes.toBytes("info"), Bytes.toBytes("age"), 5L, Bytes.toBytes("18")));
+		cells.add(new KeyValue(salted, Bytes.toBytes("info"), Bytes.toBytes("name"), 5L, Bytes.toBytes("li si")));
+		Result decoded = codec.decode(Result.create(cells));
+		assertEquals("r1", Bytes.toString(decoded.getRow()));
+		assertEquals(2, decoded.size());
+		Cell name = decoded.getColumnLatestCell(Bytes.toBytes("info"), Bytes.toBytes("name"));
+		assertEquals("li si", Bytes.toString(CellUtil.cloneValue(name)));
+		assertEquals(5L, name.getTimestamp());
+	}
+}
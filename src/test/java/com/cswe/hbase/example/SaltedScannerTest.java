@@ -0,0 +1,108 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 按桶预分区的表中写入加盐的顺序行键，按原行键区间扫描应按原行键顺序返回区间内的每一行，行键已去掉桶号
+ */
+public class SaltedScannerTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("salted_scanner");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+	private static final int ROWS = 1000;
+	private static final SaltedKeyCodec CODEC = new SaltedKeyCodec(8);
+
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(SaltedScannerTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				conn = getConnection();
+				HTableDescriptor htd = new HTableDescriptor(TABLE);
+				htd.addFamily(new HColumnDescriptor(INFO));
+				Admin admin = conn.getAdmin();
+				try {
+					admin.createTable(htd, CODEC.splitKeys());
+				} finally {
+					admin.close();
+				}
+				Table table = conn.getTable(TABLE);
+				try {
+					List<Put> puts = new ArrayList<Put>();
+					for (int i = 0; i < ROWS; i++) {
+						Put put = new Put(CODEC.encode(Bytes.toBytes(row(i))));
+						put.addColumn(INFO, NAME, Bytes.toBytes("name" + i));
+						puts.add(put);
+					}
+					table.put(puts);
+				} finally {
+					table.close();
+				}
+			}
+		};
+	}
+
+	private static String row(int i) {
+		return String.format("u%05d", i);
+	}
+
+	/**
+	 * 扫描并检查返回的是 from 到 to（不含）的每一行
+	 */
+	private static void assertScan(Scan scan, int from, int to) throws Exception {
+		Table table = conn.getTable(TABLE);
+		try {
+			SaltedScanner scanner = new SaltedScanner(table, scan, CODEC);
+			int i = from;
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					assertEquals(row(i), Bytes.toString(r.getRow()));
+					for (Cell cell : r.rawCells()) {
+						assertEquals(row(i), Bytes.toString(CellUtil.cloneRow(cell)));
+					}
+					assertEquals("name" + i, Bytes.toString(r.getValue(INFO, NAME)));
+					i++;
+				}
+			} finally {
+				scanner.close();
+			}
+			assertEquals(to, i);
+		} finally {
+			table.close();
+		}
+	}
+
+	public void testRangeScanInOriginalKeyOrder() throws Exception {
+		Scan scan = new Scan(Bytes.toBytes(row(100)), Bytes.toBytes(row(900)));
+		// 每个桶需要多次 RPC
+		scan.setCaching(7);
+		assertScan(scan, 100, 900);
+	}
+
+	public void testFullScan() throws Exception {
+		assertScan(new Scan(), 0, ROWS);
+	}
+
+	public void testEmptyRange() throws Exception {
+		assertScan(new Scan(Bytes.toBytes("v"), Bytes.toBytes("w")), 0, 0);
+	}
+}
@@ -0,0 +1,104 @@
+package com.cswe.hbase.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.util.Bytes;
+
+public class SplitPlannerTest extends TestCase {
+
+	private static List<byte[]> keys(int from, int to) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for (int i = from; i < to; i++) {
+			keys.add(Bytes.toBytes(String.format("20171226%02d", i)));
+		}
+		return keys;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	public void testBalancedSplitPoints() {
+		List<byte[]> samples = keys(0, 100);
+		// 打乱顺序，分区点与样本顺序无关
+		Collections.reverse(samples);
+		byte[][] splits = SplitPlanner.splitPoints(samples, 4);
+		assertEquals(3, splits.length);
+		assertEquals("2017122625", Bytes.toString(splits[0]));
+		assertEquals("2017122650", Bytes.toString(splits[1]));
+		assertEquals("2017122675", Bytes.toString(splits[2]));
+
+		double[] load = SplitPlanner.expectedLoad(samples, splits);
+		assertEquals(4, load.length);
+		for (double share : load) {
+			assertEquals(0.25, share, 1e-9);
+		}
+	}
+
+	public void testReportWithoutRegionsIsEmpty() throws Exception {
+		final Admin admin = proxy(Admin.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getTableRegions")) {
+					return new ArrayList<HRegionInfo>();
+				}
+				assertEquals("close", method.getName());
+				return null;
+			}
+		});
+		Connection conn = proxy(Connection.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("getAdmin") ? admin : null;
+			}
+		});
+		assertTrue(SplitPlanner.report(conn, TableName.valueOf("t"), keys(0, 100)).isEmpty());
+	}
+
+	public void testDuplicateKeysCollapse() {
+		List<byte[]> samples = new ArrayList<byte[]>();
+		for (int i = 0; i < 90; i++) {
+			samples.add(Bytes.toBytes("hot"));
+		}
+		samples.addAll(keys(0, 10));
+		byte[][] splits = SplitPlanner.splitPoints(samples, 10);
+		assertEquals(1, splits.length);
+		assertEquals("hot", Bytes.toString(splits[0]));
+	}
+
+	public void testSampleFromFile() throws Exception {
+		File file = File.createTempFile("keys", ".txt");
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writer.write("a\n\nb\\x00\n c \n");
+			} finally {
+				writer.close();
+			}
+			List<byte[]> samples = SplitPlanner.sampleFromFile(file, 10);
+			assertEquals(3, samples.size());
+			assertEquals("b\\x00", Bytes.toStringBinary(samples.get(1)));
+			assertEquals("c", Bytes.toString(samples.get(2)));
+
+			assertEquals(2, SplitPlanner.sampleFromFile(file, 2).size());
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 单个 Region 的表，每行一个 1KB 的大列和一个条件列，条件列在行键有序的后一半为 b：
+ * 行数按整行大小估算，选择率不受行键顺序影响
+ */
+public class TableStatisticsTest extends TestCase {
+
+	private static final TableName TABLE = TableName.valueOf("table_statistics");
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] FLAG = Bytes.toBytes("flag");
+	private static final byte[] PAYLOAD = Bytes.toBytes("payload");
+	private static final int ROWS = 4000;
+
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(TableStatisticsTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				conn = getConnection();
+				HTableDescriptor htd = new HTableDescriptor(TABLE);
+				htd.addFamily(new HColumnDescriptor(INFO));
+				Admin admin = conn.getAdmin();
+				try {
+					admin.createTable(htd);
+					Table table = conn.getTable(TABLE);
+					try {
+						List<Put> puts = new ArrayList<Put>();
+						for (int i = 0; i < ROWS; i++) {
+							Put put = new Put(Bytes.toBytes(String.format("r%05d", i)));
+							put.addColumn(INFO, FLAG, Bytes.toBytes(i < ROWS / 2 ? "a" : "b"));
+							put.addColumn(INFO, PAYLOAD, new byte[1000]);
+							puts.add(put);
+						}
+						table.put(puts);
+					} finally {
+						table.close();
+					}
+					admin.flush(TABLE);
+					awaitRegionLoad(admin);
+				} finally {
+					admin.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * 等到 RegionServer 上报了刷写后的 StoreFile 大小
+	 */
+	private static void awaitRegionLoad(Admin admin) throws Exception {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (System.currentTimeMillis() < deadline) {
+			ClusterStatus status = admin.getClusterStatus();
+			for (ServerName server : status.getServers()) {
+				for (RegionLoad load : status.getLoad(server).getRegionsLoad().values()) {
+					if (load.getNameAsString().startsWith(TABLE.getNameAsString() + ",")
+							&& load.getStoreUncompressedSizeMB() > 0) {
+						return;
+					}
+				}
+			}
+			Thread.sleep(200);
+		}
+		fail("region load of " + TABLE + " not reported");
+	}
+
+	public void testEstimateAndSelectivity() throws Exception {
+		ColumnPredicate flag = ColumnPredicate.column(INFO, FLAG, CompareOp.EQUAL, Bytes.toBytes("b"));
+		TableStatistics stats = TableStatistics.collect(conn, TABLE, Collections.singletonList(flag), 200);
+		assertEquals(1, stats.getRegions());
+		// RegionLoad 的大小按 MB 向下取整，估算值略偏小；只按条件列的大小估算会得到数万行
+		long rows = stats.getEstimatedRows();
+		assertTrue(stats.toString(), rows > ROWS / 2 && rows < ROWS * 2);
+		// 只读 Region 开头的行时一行也不会命中
+		double selectivity = stats.selectivity(flag);
+		assertTrue(stats + ", selectivity=" + selectivity, selectivity > 0.3 && selectivity < 0.7);
+		assertTrue(stats.toString(), stats.getSampledRows() > 0 && stats.getSampledRows() < ROWS / 4);
+	}
+}
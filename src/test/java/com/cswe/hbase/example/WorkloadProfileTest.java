@@ -0,0 +1,37 @@
+package com.cswe.hbase.example;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+
+public class WorkloadProfileTest extends TestCase {
+
+	public void testApplyKeepsEncodingAndCompression() {
+		HColumnDescriptor hcd = new HColumnDescriptor("info");
+		hcd.setDataBlockEncoding(DataBlockEncoding.FAST_DIFF);
+		hcd.setCompressionType(Compression.Algorithm.GZ);
+		WorkloadProfile.POINT_GET.applyTo(hcd);
+		assertEquals(BloomType.ROWCOL, hcd.getBloomFilterType());
+		assertEquals(16 * 1024, hcd.getBlocksize());
+		assertTrue(hcd.isInMemory());
+		assertTrue(hcd.isBlockCacheEnabled());
+		assertEquals(DataBlockEncoding.FAST_DIFF, hcd.getDataBlockEncoding());
+		assertEquals(Compression.Algorithm.GZ, hcd.getCompressionType());
+
+		WorkloadProfile.SCAN_HEAVY.applyTo(hcd);
+		assertEquals(BloomType.NONE, hcd.getBloomFilterType());
+		assertFalse(hcd.isInMemory());
+		assertFalse(hcd.isBlockCacheEnabled());
+	}
+
+	public void testApplyIsIdempotent() {
+		// modifyTable 据此跳过已经符合的列族
+		for (WorkloadProfile profile : WorkloadProfile.values()) {
+			HColumnDescriptor once = profile.applyTo(new HColumnDescriptor("info"));
+			assertEquals(once, profile.applyTo(new HColumnDescriptor(once)));
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package com.cswe.hbase.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * WritePipeline 的顺序、背压、刷写和关闭，每个用例使用自己的表
+ */
+public class WritePipelineTest extends TestCase {
+
+	private static final byte[] INFO = Bytes.toBytes("info");
+	private static final byte[] NAME = Bytes.toBytes("name");
+
+	private static HBaseTestingUtility util;
+	private static Connection conn;
+
+	public static Test suite() {
+		return new MiniClusterSetup(WritePipelineTest.class, 1) {
+			@Override
+			protected void started() throws Exception {
+				util = getUtility();
+				conn = getConnection();
+			}
+		};
+	}
+
+	private static TableName createTable(String name) throws Exception {
+		TableName tableName = TableName.valueOf(name);
+		util.createTable(tableName, INFO);
+		return tableName;
+	}
+
+	private static Put put(String row, String value) {
+		Put put = new Put(Bytes.toBytes(row));
+		put.addColumn(INFO, NAME, Bytes.toBytes(value));
+		return put;
+	}
+
+	private static String value(Table table, String row) throws Exception {
+		Result result = table.get(new Get(Bytes.toBytes(row)));
+		return result.isEmpty() ? null : Bytes.toString(result.getValue(INFO, NAME));
+	}
+
+	private static long countRows(Table table) throws Exception {
+		ResultScanner scanner = table.getScanner(new Scan());
+		try {
+			long rows = 0;
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				rows++;
+			}
+			return rows;
+		} finally {
+			scanner.close();
+		}
+	}
+
+	public void testSubmissionOrderIsKept() throws Exception {
+		TableName tableName = createTable("write_pipeline_order");
+		WritePipeline pipeline = new WritePipeline(conn, new WritePipeline.Params(tableName).flushSizeBytes(4096));
+		try {
+			// 同一个单元格写入多次，最后提交的值生效
+			for (int i = 0; i < 1000; i++) {
+				pipeline.submit(put("row", "v" + i));
+			}
+		} finally {
+			pipeline.close();
+		}
+		Table table = conn.getTable(tableName);
+		try {
+			assertEquals("v999", value(table, "row"));
+		} finally {
+			table.close();
+		}
+	}
+
+	public void testFlushWaitsForSubmittedMutations() throws Exception {
+		TableName tableName = createTable("write_pipeline_flush");
+		// 不会因大小或时间自动刷写
+		WritePipeline pipeline = new WritePipeline(conn, new WritePipeline.Params(tableName).flushSizeBytes(
+				64L * 1024 * 1024).flushIntervalMillis(600000));
+		Table table = conn.getTable(tableName);
+		try {
+			for (int i = 0; i < 100; i++) {
+				pipeline.submit(put("row" + i, "v" + i));
+			}
+			assertTrue(pipeline.getInFlightBytes() > 0);
+			pipeline.flush();
+			assertEquals(100, pipeline.getFlushedCount());
+			assertEquals(0, pipeline.getInFlightBytes());
+			assertEquals(100, countRows(table));
+			assertEquals("v42", value(table, "row42"));
+		} finally {
+			table.close();
+			pipeline.close();
+		}
+	}
+
+	public void testSubmitBlocksWhenInFlightBytesExceeded() throws Exception {
+		TableName tableName = createTable("write_pipeline_backpressure");
+		final int size = (int) put("row0", "v").heapSize();
+		final WritePipeline pipeline = new WritePipeline(conn, new WritePipeline.Params(tableName).flushSizeBytes(
+				64L * 1024 * 1024).flushIntervalMillis(600000).maxInFlightBytes(size * 5));
+		try {
+			final CountDownLatch submitted = new CountDownLatch(10);
+			Thread submitter = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 10; i++) {
+							pipeline.submit(put("row" + i, "v"));
+							submitted.countDown();
+						}
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			submitter.start();
+			// 未刷写的字节数达到上限后，submit 阻塞
+			Thread.sleep(500);
+			assertEquals(5, submitted.getCount());
+			assertEquals(size * 5, pipeline.getInFlightBytes());
+			pipeline.flush();
+			submitter.join(10000);
+			assertFalse(submitter.isAlive());
+			assertEquals(0, submitted.getCount());
+		} finally {
+			pipeline.close();
+		}
+		assertEquals(10, pipeline.getFlushedCount());
+		assertEquals(0, pipeline.getInFlightBytes());
+	}
+
+	public void testRejectedMutationDoesNotStopWriter() throws Exception {
+		TableName tableName = createTable("write_pipeline_rejected");
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		WritePipeline pipeline = new WritePipeline(conn, new WritePipeline.Params(tableName).listener(
+				new WritePipeline.FailureListener() {
+					@Override
+					public void onFailure(Row row, Throwable cause, String hostnamePort) {
+						failures.add(cause);
+					}
+				}));
+		// 没有列的 Put 被 BufferedMutator 拒绝，同一批里的其它写操作照常写出
+		pipeline.submit(put("row0", "v"));
+		pipeline.submit(new Put(Bytes.toBytes("empty")));
+		pipeline.submit(put("row1", "v"));
+		pipeline.flush();
+		pipeline.submit(new Put(Bytes.toBytes("empty")));
+		pipeline.close();
+		assertEquals(2, pipeline.getFailedCount());
+		assertEquals(2, failures.size());
+		assertTrue(failures.get(0) instanceof IllegalArgumentException);
+		assertEquals(0, pipeline.getInFlightBytes());
+		Table table = conn.getTable(tableName);
+		try {
+			assertEquals(2, countRows(table));
+		} finally {
+			table.close();
+		}
+	}
+
+	public void testPermitsAreFixedAtSubmit() throws Exception {
+		TableName tableName = createTable("write_pipeline_permits");
+		WritePipeline pipeline = new WritePipeline(conn, new WritePipeline.Params(tableName).flushSizeBytes(
+				64L * 1024 * 1024).flushIntervalMillis(600000));
+		try {
+			Put put = put("row", "v");
+			pipeline.submit(put);
+			// 提交后修改 Mutation，归还的许可仍是提交时取得的
+			put.addColumn(INFO, Bytes.toBytes("big"), new byte[64 * 1024]);
+			pipeline.flush();
+			assertEquals(0, pipeline.getInFlightBytes());
+		} finally {
+			pipeline.close();
+		}
+	}
+
+	public void testCloseRacingWithSubmitLosesNothing() throws Exception {
+		TableName tableName = createTable("write_pipeline_close");
+		final WritePipeline pipeline = new WritePipeline(conn, new WritePipeline.Params(tableName)
+				.flushSizeBytes(16 * 1024).maxInFlightBytes(64 * 1024));
+		final AtomicLong accepted = new AtomicLong();
+		List<Thread> submitters = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int id = t;
+			Thread submitter = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0;; i++) {
+							pipeline.submit(put("row-" + id + "-" + i, "v"));
+							accepted.incrementAndGet();
+						}
+					} catch (IllegalStateException closed) {
+						// close 之后的 submit 被拒绝
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			submitter.start();
+			submitters.add(submitter);
+		}
+		Thread.sleep(300);
+		pipeline.close();
+		for (Thread submitter : submitters) {
+			submitter.join(10000);
+			assertFalse(submitter.isAlive());
+		}
+		assertTrue(accepted.get() > 0);
+		// 被接受的写操作都已写出，许可全部归还
+		assertEquals(accepted.get(), pipeline.getSubmittedCount());
+		assertEquals(accepted.get(), pipeline.getFlushedCount());
+		assertEquals(0, pipeline.getFailedCount());
+		assertEquals(0, pipeline.getInFlightBytes());
+		Table table = conn.getTable(tableName);
+		try {
+			assertEquals(accepted.get(), countRows(table));
+		} finally {
+			table.close();
+		}
+		try {
+			pipeline.submit(put("late", "v"));
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.AdaptiveScanner;
+
+/**
+ * 对比不同行宽下固定 caching（100、1000）与 AdaptiveScanner 的全表扫描耗时，
+ * 以及单次 RPC 最多缓存在客户端的数据量（caching * 行大小）。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.AdaptiveScanBenchmark
+ */
+public class AdaptiveScanBenchmark {
+
+	private static final byte[] PAYLOAD = Bytes.toBytes("payload");
+	private static final int ROUNDS = 3;
+
+	/** 行宽（字节）与行数，总数据量大致相同 */
+	private static final int[][] SHAPES = { { 16, 200000 }, { 1024, 20000 }, { 64 * 1024, 400 } };
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			for (int[] shape : SHAPES) {
+				int width = shape[0];
+				int rows = shape[1];
+				TableName name = TableName.valueOf("adaptive_scan_" + width);
+				cluster.createTable(name, SampleRows.FAMILY, null);
+				Table table = cluster.getConnection().getTable(name);
+				try {
+					load(table, width, rows);
+					Admin admin = cluster.getConnection().getAdmin();
+					try {
+						admin.flush(name);
+					} finally {
+						admin.close();
+					}
+					for (int round = 0; round < ROUNDS; round++) {
+						boolean last = round == ROUNDS - 1;
+						report(last, width, "fixed caching=100 ", fixed(table, 100, rows), 100L * width);
+						report(last, width, "fixed caching=1000", fixed(table, 1000, rows), 1000L * width);
+						AdaptiveScanner scanner = new AdaptiveScanner(table, scan(100));
+						long nanos = drain(scanner, rows);
+						report(last, width, "adaptive          ", nanos, (long) scanner.getCaching() * width);
+						if (last) {
+							System.out.println("  adaptive final caching=" + scanner.getCaching() + " reopens="
+									+ scanner.getReopens());
+						}
+					}
+				} finally {
+					table.close();
+				}
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static void report(boolean print, int width, String label, long nanos, long bufferBytes) {
+		if (print) {
+			System.out.println(String.format("width=%-6d %s %8.1f ms  buffer/RPC=%.1f KB", width, label, nanos / 1e6,
+					bufferBytes / 1024.0));
+		}
+	}
+
+	private static Scan scan(int caching) {
+		Scan scan = new Scan();
+		scan.addFamily(SampleRows.FAMILY);
+		scan.setCaching(caching);
+		scan.setCacheBlocks(false);
+		return scan;
+	}
+
+	private static long fixed(Table table, int caching, int rows) throws IOException {
+		return drain(table.getScanner(scan(caching)), rows);
+	}
+
+	private static long drain(ResultScanner scanner, int expected) throws IOException {
+		long start = System.nanoTime();
+		int count = 0;
+		try {
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				count++;
+			}
+		} finally {
+			scanner.close();
+		}
+		long nanos = System.nanoTime() - start;
+		if (count != expected) {
+			throw new IllegalStateException("Expected " + expected + " rows but scanned " + count);
+		}
+		return nanos;
+	}
+
+	private static void load(Table table, int width, int rows) throws IOException {
+		Random random = new Random(42);
+		byte[] value = new byte[width];
+		List<Put> batch = new ArrayList<Put>();
+		for (int i = 0; i < rows; i++) {
+			random.nextBytes(value);
+			Put put = new Put(SampleRows.rowKey(i));
+			put.addColumn(SampleRows.FAMILY, PAYLOAD, value.clone());
+			batch.add(put);
+			if (batch.size() == 500) {
+				table.put(batch);
+				batch.clear();
+			}
+		}
+		table.put(batch);
+	}
+}
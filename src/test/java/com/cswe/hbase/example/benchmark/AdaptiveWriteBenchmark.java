@@ -0,0 +1,249 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.AdaptiveWriter;
+import com.cswe.hbase.example.HotRegionTracker;
+
+/**
+ * 倾斜写入：90% 的行落在第一个 Region，{@link SaturatedRegionObserver} 让它一次只处理一批，每批 20ms，模拟热点 Region
+ * 把 RegionServer 压满。同一 Server 上还有一个冷 Region，探测线程每 10ms 向它写一行并记录延迟。
+ * <p>
+ * 对比固定 16 个并发批次与 AdaptiveWriter 按 Server 自适应并发：固定并发时热点 Server 的 handler 全部阻塞在排队的批次上，
+ * 同一 Server 上其它 Region 的写入也要等；自适应时发往热点 Server 的批次收窄到一两个。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.AdaptiveWriteBenchmark
+ */
+public class AdaptiveWriteBenchmark {
+
+	private static final byte[][] SPLITS = { Bytes.toBytes("g"), Bytes.toBytes("m"), Bytes.toBytes("t") };
+	private static final int ROUNDS = 20;
+	private static final int ROWS_PER_ROUND = 1000;
+	private static final int BATCH = 50;
+	private static final int FIXED_CONCURRENCY = 16;
+	private static final int HANDLERS = 8;
+
+	/**
+	 * 起始行为空的 Region 一次只处理一批
+	 */
+	public static class SaturatedRegionObserver extends BaseRegionObserver {
+		private static final Semaphore busy = new Semaphore(1);
+
+		@Override
+		public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+				MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+			if (c.getEnvironment().getRegion().getStartKey().length > 0) {
+				return;
+			}
+			busy.acquireUninterruptibly();
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				busy.release();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = HBaseConfiguration.create();
+		conf.setInt("hbase.regionserver.handler.count", HANDLERS);
+		BenchmarkCluster cluster = BenchmarkCluster.start(2, conf);
+		try {
+			TableName fixed = TableName.valueOf("adaptive_write_fixed");
+			createTable(cluster, fixed);
+			run("fixed " + FIXED_CONCURRENCY + " batches in flight", cluster, fixed, false);
+
+			TableName adaptive = TableName.valueOf("adaptive_write_aimd");
+			createTable(cluster, adaptive);
+			run("AdaptiveWriter", cluster, adaptive, true);
+		} finally {
+			cluster.close();
+		}
+	}
+
+	/**
+	 * 热点 Region [, g) 和冷 Region [t, ) 放在第一个 Server，其余放在第二个
+	 */
+	private static void createTable(BenchmarkCluster cluster, TableName tableName) throws Exception {
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			HTableDescriptor htd = new HTableDescriptor(tableName);
+			htd.addFamily(new HColumnDescriptor(SampleRows.FAMILY));
+			htd.addCoprocessor(SaturatedRegionObserver.class.getName());
+			admin.createTable(htd, SPLITS);
+			List<ServerName> servers = new ArrayList<ServerName>(admin.getClusterStatus().getServers());
+			RegionLocator locator = cluster.getConnection().getRegionLocator(tableName);
+			try {
+				for (HRegionLocation location : locator.getAllRegionLocations()) {
+					byte[] start = location.getRegionInfo().getStartKey();
+					ServerName target = servers.get(start.length == 0 || Bytes.equals(start, SPLITS[2]) ? 0 : 1);
+					if (!target.equals(location.getServerName())) {
+						admin.move(location.getRegionInfo().getEncodedNameAsBytes(), Bytes.toBytes(target
+								.getServerName()));
+					}
+				}
+				cluster.getUtility().waitUntilNoRegionsInTransition(60000);
+			} finally {
+				locator.close();
+			}
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static List<Put> round(Random random) {
+		List<Put> puts = new ArrayList<Put>(ROWS_PER_ROUND);
+		for (int i = 0; i < ROWS_PER_ROUND; i++) {
+			String prefix = random.nextInt(10) < 9 ? "a" : String.valueOf((char) ('g' + random.nextInt(20)));
+			Put put = new Put(Bytes.toBytes(prefix + String.format("%08d", random.nextInt(100000000))));
+			put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0], Bytes.toBytes("name " + i));
+			puts.add(put);
+		}
+		return puts;
+	}
+
+	private static void run(String name, final BenchmarkCluster cluster, final TableName tableName, boolean adaptive)
+			throws Exception {
+		final AtomicBoolean done = new AtomicBoolean();
+		final LatencySample probe = new LatencySample();
+		ExecutorService probePool = Executors.newSingleThreadExecutor();
+		Future<?> probeResult = probePool.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				Table table = cluster.getConnection().getTable(tableName);
+				try {
+					for (long i = 0; !done.get(); i++) {
+						Put put = new Put(Bytes.toBytes(String.format("z%08d", i)));
+						put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0], Bytes.toBytes("probe"));
+						long start = System.nanoTime();
+						table.put(put);
+						probe.add(System.nanoTime() - start);
+						Thread.sleep(10);
+					}
+				} finally {
+					table.close();
+				}
+				return null;
+			}
+		});
+
+		Random random = new Random(42);
+		long start = System.nanoTime();
+		AdaptiveWriter writer = null;
+		try {
+			if (adaptive) {
+				writer = new AdaptiveWriter(cluster.getConnection(), tableName, new AdaptiveWriter.Params()
+						.maxLimit(FIXED_CONCURRENCY).batchRows(BATCH).trackerParams(new HotRegionTracker.Params()
+								.minRows(1000)));
+				for (int r = 0; r < ROUNDS; r++) {
+					writer.write(round(random));
+				}
+			} else {
+				for (int r = 0; r < ROUNDS; r++) {
+					writeFixed(cluster, tableName, round(random));
+				}
+			}
+		} finally {
+			done.set(true);
+		}
+		long elapsed = System.nanoTime() - start;
+		probeResult.get();
+		probePool.shutdown();
+
+		int rows = ROUNDS * ROWS_PER_ROUND;
+		System.out.println(String.format("%s: %d rows in %.2f s (%.0f rows/s)", name, rows, elapsed / 1e9, rows
+				/ (elapsed / 1e9)));
+		System.out.println("  probe put to cold region on the hot server: " + probe);
+		if (writer != null) {
+			for (AdaptiveWriter.ServerStat stat : writer.getServerStats()) {
+				System.out.println("  " + stat);
+			}
+			for (HotRegionTracker.RegionStat stat : writer.getTracker().getStats()) {
+				System.out.println("  " + stat);
+			}
+			writer.close();
+		}
+	}
+
+	/**
+	 * 与 AdaptiveWriter 相同的按 Region 分批，FIXED_CONCURRENCY 个线程各自取一批调用 table.batch
+	 */
+	private static void writeFixed(final BenchmarkCluster cluster, final TableName tableName, List<Put> puts)
+			throws Exception {
+		final LinkedBlockingQueue<List<Put>> batches = new LinkedBlockingQueue<List<Put>>();
+		RegionLocator locator = cluster.getConnection().getRegionLocator(tableName);
+		try {
+			Map<String, List<Put>> open = new HashMap<String, List<Put>>();
+			for (Put put : puts) {
+				String region = locator.getRegionLocation(put.getRow()).getRegionInfo().getEncodedName();
+				List<Put> batch = open.get(region);
+				if (batch == null || batch.size() >= BATCH) {
+					batch = new ArrayList<Put>();
+					open.put(region, batch);
+					batches.add(batch);
+				}
+				batch.add(put);
+			}
+		} finally {
+			locator.close();
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(FIXED_CONCURRENCY);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int i = 0; i < FIXED_CONCURRENCY; i++) {
+			results.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					Table table = cluster.getConnection().getTable(tableName);
+					try {
+						List<Put> batch;
+						while ((batch = batches.poll()) != null) {
+							table.batch(batch, new Object[batch.size()]);
+						}
+					} finally {
+						table.close();
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> result : results) {
+			result.get();
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
@@ -0,0 +1,156 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.AsyncHbaseClient;
+
+/**
+ * 对比同样 64 个并发请求下，每个请求占一个调用线程的阻塞 Get 与 AsyncHbaseClient 的吞吐量和延迟。
+ * <p>
+ * 阻塞方式需要 64 个调用线程；异步方式只有一个调用线程，在途请求由信号量限制为 64 个，
+ * RPC 在 threads 个工作线程上执行（默认 16，可由第一个参数指定）。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.AsyncClientBenchmark [-Dexec.args=16]
+ */
+public class AsyncClientBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("async_client_bench");
+	private static final int ROWS = 100000;
+	private static final int REGIONS = 8;
+	private static final int CONCURRENCY = 64;
+	private static final int REQUESTS = 20000;
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			byte[][] splits = new byte[REGIONS - 1][];
+			for (int i = 1; i < REGIONS; i++) {
+				splits[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+			}
+			cluster.createTable(TABLE, SampleRows.FAMILY, splits);
+			load(cluster);
+
+			AsyncHbaseClient client = new AsyncHbaseClient(cluster.getConnection(),
+					new AsyncHbaseClient.Params(TABLE).threads(threads).maxInFlight(CONCURRENCY));
+			try {
+				for (int round = 0; round < 3; round++) {
+					// 第一轮为预热
+					String tag = round == 0 ? "warm " : "";
+					LatencySample blocking = new LatencySample();
+					long elapsed = blocking(cluster, blocking);
+					System.out.println(tag + "blocking " + CONCURRENCY + " threads  " + rate(elapsed) + " " + blocking);
+
+					LatencySample async = new LatencySample();
+					elapsed = async(client, async);
+					System.out.println(tag + "async    " + threads + " workers  " + rate(elapsed) + " " + async);
+				}
+			} finally {
+				client.close();
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static String rate(long elapsedNanos) {
+		return String.format("%.0f req/s", REQUESTS / (elapsedNanos / 1e9));
+	}
+
+	private static long blocking(final BenchmarkCluster cluster, final LatencySample sample) throws Exception {
+		final CountDownLatch done = new CountDownLatch(CONCURRENCY);
+		final AtomicLong errors = new AtomicLong();
+		long start = System.nanoTime();
+		for (int t = 0; t < CONCURRENCY; t++) {
+			final int seed = t;
+			new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						Table table = cluster.getConnection().getTable(TABLE);
+						try {
+							for (int i = 0; i < REQUESTS / CONCURRENCY; i++) {
+								long s = System.nanoTime();
+								table.get(randomGet(random));
+								long e = System.nanoTime() - s;
+								synchronized (sample) {
+									sample.add(e);
+								}
+							}
+						} finally {
+							table.close();
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+		if (errors.get() > 0) {
+			System.out.println("blocking errors: " + errors.get());
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long async(AsyncHbaseClient client, final LatencySample sample) throws Exception {
+		final Semaphore window = new Semaphore(CONCURRENCY);
+		final AtomicLong errors = new AtomicLong();
+		Random random = new Random(0);
+		int requests = REQUESTS / CONCURRENCY * CONCURRENCY;
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			window.acquire();
+			final long s = System.nanoTime();
+			client.get(randomGet(random)).whenComplete((result, error) -> {
+				long e = System.nanoTime() - s;
+				if (error != null) {
+					errors.incrementAndGet();
+				}
+				synchronized (sample) {
+					sample.add(e);
+				}
+				window.release();
+			});
+		}
+		window.acquire(CONCURRENCY);
+		window.release(CONCURRENCY);
+		if (errors.get() > 0) {
+			System.out.println("async errors: " + errors.get());
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static Get randomGet(Random random) {
+		Get get = new Get(SampleRows.rowKey(random.nextInt(ROWS)));
+		get.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0]);
+		get.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[3]);
+		return get;
+	}
+
+	private static void load(BenchmarkCluster cluster) throws Exception {
+		Random random = new Random(42);
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			for (int i = 0; i < ROWS; i += 1000) {
+				List<Put> puts = SampleRows.puts(i, 1000, random);
+				table.put(puts);
+			}
+		} finally {
+			table.close();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.BatchGetter;
+
+/**
+ * 对比 10、100、1000 个行键时逐个 Table.get、Table.get(List) 与 BatchGetter 的延迟。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.BatchGetBenchmark
+ */
+public class BatchGetBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("batch_get_bench");
+	private static final int ROWS = 100000;
+	private static final int REGIONS = 8;
+	private static final int ITERATIONS = 50;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(3);
+		try {
+			byte[][] splits = new byte[REGIONS - 1][];
+			for (int i = 1; i < REGIONS; i++) {
+				splits[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+			}
+			cluster.createTable(TABLE, SampleRows.FAMILY, splits);
+			load(cluster);
+
+			Table table = cluster.getConnection().getTable(TABLE);
+			BatchGetter getter = new BatchGetter(cluster.getConnection(), TABLE, 16);
+			try {
+				Random random = new Random(7);
+				for (int keys : new int[] { 10, 100, 1000 }) {
+					LatencySample single = new LatencySample();
+					LatencySample multi = new LatencySample();
+					LatencySample batch = new LatencySample();
+					for (int it = 0; it < ITERATIONS + 5; it++) {
+						List<Get> gets = randomGets(random, keys);
+						boolean warm = it < 5;
+
+						long start = System.nanoTime();
+						for (Get get : gets) {
+							table.get(get);
+						}
+						record(single, start, warm);
+
+						start = System.nanoTime();
+						table.get(gets);
+						record(multi, start, warm);
+
+						start = System.nanoTime();
+						BatchGetter.BatchGetResult result = getter.get(gets, 30, TimeUnit.SECONDS);
+						record(batch, start, warm);
+						if (!result.isComplete()) {
+							System.out.println("BatchGetter failures: " + result.getFailures().size());
+						}
+					}
+					System.out.println("keys=" + keys + " Table.get loop    " + single);
+					System.out.println("keys=" + keys + " Table.get(List)   " + multi);
+					System.out.println("keys=" + keys + " BatchGetter       " + batch);
+				}
+			} finally {
+				getter.close();
+				table.close();
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static void record(LatencySample sample, long start, boolean warm) {
+		if (!warm) {
+			sample.add(System.nanoTime() - start);
+		}
+	}
+
+	private static List<Get> randomGets(Random random, int keys) {
+		List<Get> gets = new ArrayList<Get>(keys);
+		for (int i = 0; i < keys; i++) {
+			Get get = new Get(SampleRows.rowKey(random.nextInt(ROWS)));
+			get.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0]);
+			get.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[3]);
+			gets.add(get);
+		}
+		return gets;
+	}
+
+	private static void load(BenchmarkCluster cluster) throws Exception {
+		Random random = new Random(42);
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			for (int i = 0; i < ROWS; i += 1000) {
+				List<Put> puts = SampleRows.puts(i, 1000, random);
+				table.put(puts);
+			}
+		} finally {
+			table.close();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+
+/**
+ * 基准测试使用的进程内 mini cluster。
+ */
+public class BenchmarkCluster implements Closeable {
+
+	private final HBaseTestingUtility util;
+	private final Connection conn;
+
+	private BenchmarkCluster(HBaseTestingUtility util) throws IOException {
+		this.util = util;
+		this.conn = ConnectionFactory.createConnection(util.getConfiguration());
+	}
+
+	/**
+	 * 启动一个包含 regionServers 个 RegionServer 的 mini cluster
+	 */
+	public static BenchmarkCluster start(int regionServers) throws Exception {
+		return start(regionServers, HBaseConfiguration.create());
+	}
+
+	/**
+	 * 用给定的配置启动，用于调整块缓存大小、compaction 阈值等服务端参数
+	 */
+	public static BenchmarkCluster start(int regionServers, Configuration conf) throws Exception {
+		HBaseTestingUtility util = new HBaseTestingUtility(conf);
+		util.startMiniCluster(regionServers);
+		return new BenchmarkCluster(util);
+	}
+
+	public Configuration getConfiguration() {
+		return util.getConfiguration();
+	}
+
+	public Connection getConnection() {
+		return conn;
+	}
+
+	public HBaseTestingUtility getUtility() {
+		return util;
+	}
+
+	/**
+	 * 重新创建表，splitKeys 为 null 时只有一个 Region
+	 */
+	public void createTable(TableName tableName, byte[] family, byte[][] splitKeys) throws IOException {
+		Admin admin = conn.getAdmin();
+		try {
+			if (admin.tableExists(tableName)) {
+				admin.disableTable(tableName);
+				admin.deleteTable(tableName);
+			}
+			HTableDescriptor htd = new HTableDescriptor(tableName);
+			htd.addFamily(new HColumnDescriptor(family));
+			if (splitKeys == null) {
+				admin.createTable(htd);
+			} else {
+				admin.createTable(htd, splitKeys);
+			}
+		} finally {
+			admin.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			conn.close();
+		} finally {
+			try {
+				util.shutdownMiniCluster();
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.BulkDeleteClient;
+import com.cswe.hbase.example.BulkDeleteEndpoint;
+
+/**
+ * 删除 sex=F 的行（约一半）：对比把行扫描到客户端再逐批发回 Delete，与 BulkDeleteEndpoint 在 RegionServer 上就地删除
+ * 的耗时，以及限速时实际的删除速率。每次删除前重新建表写入相同的数据。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.BulkDeleteBenchmark
+ */
+public class BulkDeleteBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("bulk_delete");
+	private static final int ROWS = 200000;
+	private static final int REGIONS = 4;
+	private static final int BATCH = 1000;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			load(cluster);
+			long start = System.nanoTime();
+			long rows = deleteOnClient(cluster);
+			print("scan + delete on client", rows, start);
+
+			load(cluster);
+			start = System.nanoTime();
+			rows = total(new BulkDeleteClient(cluster.getConnection(), TABLE, new BulkDeleteClient.Params()
+					.batchRows(BATCH)).delete(femaleScan()));
+			print("BulkDeleteEndpoint", rows, start);
+
+			load(cluster);
+			start = System.nanoTime();
+			rows = total(new BulkDeleteClient(cluster.getConnection(), TABLE, new BulkDeleteClient.Params()
+					.batchRows(BATCH).rowsPerSecond(20000)).delete(femaleScan()));
+			print("BulkDeleteEndpoint at 20000 rows/s", rows, start);
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static Scan femaleScan() {
+		Scan scan = new Scan();
+		scan.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[1]);
+		scan.setFilter(new SingleColumnValueFilter(SampleRows.FAMILY, SampleRows.QUALIFIERS[1], CompareOp.EQUAL,
+				Bytes.toBytes("F")));
+		return scan;
+	}
+
+	private static void load(BenchmarkCluster cluster) throws Exception {
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			if (admin.tableExists(TABLE)) {
+				admin.disableTable(TABLE);
+				admin.deleteTable(TABLE);
+			}
+			HTableDescriptor htd = new HTableDescriptor(TABLE);
+			htd.addFamily(new HColumnDescriptor(SampleRows.FAMILY));
+			htd.addCoprocessor(BulkDeleteEndpoint.class.getName());
+			byte[][] splitKeys = new byte[REGIONS - 1][];
+			for (int i = 1; i < REGIONS; i++) {
+				splitKeys[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+			}
+			admin.createTable(htd, splitKeys);
+		} finally {
+			admin.close();
+		}
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			Random random = new Random(42);
+			for (int i = 0; i < ROWS; i += BATCH) {
+				table.put(SampleRows.puts(i, BATCH, random));
+			}
+		} finally {
+			table.close();
+		}
+	}
+
+	/**
+	 * 目前的做法：扫描满足条件的行键，每 BATCH 行发一次 Delete
+	 */
+	private static long deleteOnClient(BenchmarkCluster cluster) throws Exception {
+		long rows = 0;
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			Scan scan = femaleScan();
+			scan.setCaching(BATCH);
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				List<Delete> deletes = new ArrayList<Delete>();
+				for (Result r : scanner) {
+					deletes.add(new Delete(r.getRow()));
+					if (deletes.size() == BATCH) {
+						rows += deletes.size();
+						table.delete(deletes);
+						deletes = new ArrayList<Delete>();
+					}
+				}
+				rows += deletes.size();
+				table.delete(deletes);
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		return rows;
+	}
+
+	private static long total(List<BulkDeleteClient.RegionCount> counts) {
+		long rows = 0;
+		for (BulkDeleteClient.RegionCount count : counts) {
+			System.out.println("  " + count);
+			rows += count.getRowsDeleted();
+		}
+		return rows;
+	}
+
+	private static void print(String name, long rows, long start) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%s: deleted %d rows in %.2f s (%.0f rows/s)", name, rows, seconds, rows
+				/ seconds));
+	}
+}
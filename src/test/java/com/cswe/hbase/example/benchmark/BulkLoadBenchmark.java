@@ -0,0 +1,119 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+
+import com.cswe.hbase.example.BulkLoader;
+
+/**
+ * 相同数据分别通过 Table.put（putData 的写入方式）和 BulkLoader 写入，对比耗时。
+ * 列族使用 FAST_DIFF 编码和 GZ 压缩，表按行键预分区为多个 Region。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.BulkLoadBenchmark
+ */
+public class BulkLoadBenchmark {
+
+	private static final int ROWS = 500000;
+	private static final int BATCH = 1000;
+	private static final int REGIONS = 8;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(3);
+		try {
+			TableName puts = TableName.valueOf("bulk_put");
+			createTable(cluster, puts);
+			long start = System.nanoTime();
+			Table table = cluster.getConnection().getTable(puts);
+			try {
+				Random random = new Random(42);
+				for (int i = 0; i < ROWS; i += BATCH) {
+					table.put(SampleRows.puts(i, BATCH, random));
+				}
+			} finally {
+				table.close();
+			}
+			report("Table.put ", puts, start, cluster);
+
+			TableName bulk = TableName.valueOf("bulk_load");
+			createTable(cluster, bulk);
+			start = System.nanoTime();
+			Path staging = cluster.getUtility().getDataTestDirOnTestFS("bulk_load_staging");
+			BulkLoader loader = new BulkLoader(cluster.getConnection(), bulk, staging);
+			try {
+				loader.setChunkBytes(64L * 1024 * 1024);
+				Random random = new Random(42);
+				for (int i = 0; i < ROWS; i += BATCH) {
+					List<Put> batch = SampleRows.puts(i, BATCH, random);
+					for (Put put : batch) {
+						loader.add(put);
+					}
+				}
+				loader.load();
+				System.out.println("BulkLoader wrote " + loader.getFiles() + " HFiles");
+			} finally {
+				loader.close();
+			}
+			report("BulkLoader", bulk, start, cluster);
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static void createTable(BenchmarkCluster cluster, TableName name) throws IOException {
+		HTableDescriptor htd = new HTableDescriptor(name);
+		HColumnDescriptor hcd = new HColumnDescriptor(SampleRows.FAMILY);
+		hcd.setDataBlockEncoding(DataBlockEncoding.FAST_DIFF);
+		hcd.setCompressionType(Compression.Algorithm.GZ);
+		htd.addFamily(hcd);
+		byte[][] splits = new byte[REGIONS - 1][];
+		for (int i = 1; i < REGIONS; i++) {
+			splits[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+		}
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			admin.createTable(htd, splits);
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static void report(String label, TableName name, long start, BenchmarkCluster cluster)
+			throws IOException {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Scan scan = new Scan();
+		scan.setFilter(new FirstKeyOnlyFilter());
+		scan.setCaching(10000);
+		long rows = 0;
+		Table table = cluster.getConnection().getTable(name);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					rows++;
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		System.out.println(String.format("%s %d rows in %.1f s, %.0f rows/s (scanned back %d rows)", label, ROWS,
+				seconds, ROWS / seconds, rows));
+	}
+}
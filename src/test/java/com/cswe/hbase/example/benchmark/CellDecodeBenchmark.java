@@ -0,0 +1,112 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.cswe.hbase.example.CellVisitor;
+import com.cswe.hbase.example.Cells;
+import com.cswe.hbase.example.Utf8Decoder;
+
+/**
+ * 对比读路径中 CellUtil.clone* + Bytes.toString 与 CellVisitor 的单 Cell 耗时和分配量。
+ * <p>
+ * 运行方式（gc.alloc.rate.norm 即每个 Cell 的分配字节数）：
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="CellDecodeBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellDecodeBenchmark {
+
+	private static final int ROWS = 100;
+	// 每行 4 列，见 SampleRows.QUALIFIERS
+	private static final int CELLS = ROWS * 4;
+
+	private Result[] results;
+	private final Utf8Decoder decoder = new Utf8Decoder();
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		results = new Result[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			Put put = SampleRows.put(i, random);
+			results[i] = Result.create(put.getFamilyCellMap().get(SampleRows.FAMILY));
+		}
+	}
+
+	/**
+	 * HbaseExample 原来的写法：每个 Cell 四次数组复制、四个 String
+	 */
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public void cloneAndToString(Blackhole bh) {
+		for (Result r : results) {
+			for (Cell cell : r.rawCells()) {
+				bh.consume(Bytes.toString(CellUtil.cloneRow(cell)));
+				bh.consume(Bytes.toString(CellUtil.cloneFamily(cell)));
+				bh.consume(Bytes.toString(CellUtil.cloneQualifier(cell)));
+				bh.consume(Bytes.toString(CellUtil.cloneValue(cell)));
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public void visitor(final Blackhole bh) throws IOException {
+		CellVisitor visitor = new CellVisitor() {
+			@Override
+			public void visit(Cell cell) {
+				bh.consume(decoder.decode(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength()));
+				bh.consume(decoder.decode(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength()));
+				bh.consume(decoder.decode(cell.getQualifierArray(), cell.getQualifierOffset(),
+						cell.getQualifierLength()));
+				bh.consume(decoder.decode(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()));
+			}
+		};
+		for (Result r : results) {
+			Cells.forEach(r, visitor);
+		}
+	}
+
+	/**
+	 * 只关心列是否匹配和值比较时，完全不需要解码
+	 */
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public void visitorMatchOnly(final Blackhole bh) throws IOException {
+		final byte[] female = Bytes.toBytes("F");
+		CellVisitor visitor = new CellVisitor() {
+			@Override
+			public void visit(Cell cell) {
+				bh.consume(Cells.matchingColumn(cell, SampleRows.FAMILY, SampleRows.QUALIFIERS[1])
+						&& Cells.valueEquals(cell, female));
+			}
+		};
+		for (Result r : results) {
+			Cells.forEach(r, visitor);
+		}
+	}
+}
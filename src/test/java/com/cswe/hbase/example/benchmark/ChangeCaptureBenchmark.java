@@ -0,0 +1,153 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.ChangeCapture;
+import com.cswe.hbase.example.FileCheckpointStore;
+
+/**
+ * 对比下游每次全表扫描与 ChangeCapture 增量读取的耗时：两种表大小下，各修改不同数量的行（其中十分之一为删除），
+ * 刷写成 HFile 后读取变更。全表扫描的耗时随表大小增长，增量读取的耗时只随变更量增长。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.ChangeCaptureBenchmark
+ */
+public class ChangeCaptureBenchmark {
+
+	private static final int[] TABLE_ROWS = { 100000, 400000 };
+	private static final int[] CHANGES = { 100, 1000, 10000 };
+	private static final int REGIONS = 4;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			FileSystem fs = FileSystem.getLocal(cluster.getConfiguration());
+			for (int rows : TABLE_ROWS) {
+				TableName tableName = TableName.valueOf("change_capture_" + rows);
+				byte[][] splitKeys = new byte[REGIONS - 1][];
+				for (int i = 1; i < REGIONS; i++) {
+					splitKeys[i - 1] = SampleRows.rowKey((long) rows * i / REGIONS);
+				}
+				cluster.createTable(tableName, SampleRows.FAMILY, splitKeys);
+				Table table = cluster.getConnection().getTable(tableName);
+				try {
+					Random random = new Random(42);
+					for (int i = 0; i < rows; i += 1000) {
+						table.put(SampleRows.puts(i, 1000, random));
+					}
+					flush(cluster, tableName);
+
+					FileCheckpointStore checkpoints = new FileCheckpointStore(fs, new Path(System
+							.getProperty("java.io.tmpdir"), "change_capture_checkpoints_" + rows));
+					checkpoints.clear();
+					ChangeCapture capture = new ChangeCapture(cluster.getConnection(), tableName,
+							new ChangeCapture.Params().lagMillis(0).batchRows(1000));
+					Counter counter = new Counter();
+					long start = System.nanoTime();
+					capture.poll(counter, checkpoints);
+					print(rows, "initial poll", counter, start);
+
+					for (int changes : CHANGES) {
+						change(table, rows, changes, random);
+						flush(cluster, tableName);
+						Thread.sleep(10);
+
+						start = System.nanoTime();
+						long scanned = fullScan(table);
+						System.out.println(String.format("%d rows, %d changes, full scan: %d rows in %dms", rows,
+								changes, scanned, (System.nanoTime() - start) / 1000000));
+						counter = new Counter();
+						start = System.nanoTime();
+						capture.poll(counter, checkpoints);
+						print(rows, changes + " changes, ChangeCapture", counter, start);
+					}
+				} finally {
+					table.close();
+				}
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static class Counter implements ChangeCapture.Listener {
+		final AtomicLong cells = new AtomicLong();
+		final AtomicLong tombstones = new AtomicLong();
+
+		@Override
+		public void onChange(Cell cell, boolean tombstone) {
+			cells.incrementAndGet();
+			if (tombstone) {
+				tombstones.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * 随机修改 changes 行的 name 列，其中十分之一改为删除整行
+	 */
+	private static void change(Table table, int rows, int changes, Random random) throws Exception {
+		List<Put> puts = new ArrayList<Put>();
+		List<Delete> deletes = new ArrayList<Delete>();
+		for (int i = 0; i < changes; i++) {
+			byte[] row = SampleRows.rowKey(random.nextInt(rows));
+			if (i % 10 == 0) {
+				deletes.add(new Delete(row));
+			} else {
+				Put put = new Put(row);
+				put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0], Bytes.toBytes("changed " + i));
+				puts.add(put);
+			}
+		}
+		table.put(puts);
+		table.delete(deletes);
+	}
+
+	private static void flush(BenchmarkCluster cluster, TableName tableName) throws Exception {
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			admin.flush(tableName);
+		} finally {
+			admin.close();
+		}
+	}
+
+	/**
+	 * 下游目前的做法：扫描全表，与上次的结果比较得到变更
+	 */
+	private static long fullScan(Table table) throws Exception {
+		Scan scan = new Scan();
+		scan.setCaching(1000);
+		long rows = 0;
+		ResultScanner scanner = table.getScanner(scan);
+		try {
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				rows++;
+			}
+		} finally {
+			scanner.close();
+		}
+		return rows;
+	}
+
+	private static void print(int rows, String name, Counter counter, long start) {
+		System.out.println(String.format("%d rows, %s: %d cells (%d tombstones) in %dms", rows, name, counter.cells
+				.get(), counter.tombstones.get(), (System.nanoTime() - start) / 1000000));
+	}
+}
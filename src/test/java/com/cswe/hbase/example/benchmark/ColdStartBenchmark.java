@@ -0,0 +1,94 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.Random;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.ConnectionWarmer;
+
+/**
+ * 新建 Connection 后的首批请求延迟：每次新建一个 Connection，按 Region 顺序各读一行，即每个请求都是该 Region 的第一次访问。
+ * 对比不预热与先执行 ConnectionWarmer 两种情况，后者另外输出预热本身的耗时，即服务启动推迟的时间。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.ColdStartBenchmark
+ */
+public class ColdStartBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("cold_start");
+	private static final int ROWS = 30000;
+	private static final int REGIONS = 30;
+	private static final int TRIALS = 5;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(3);
+		try {
+			byte[][] splitKeys = new byte[REGIONS - 1][];
+			for (int i = 1; i < REGIONS; i++) {
+				splitKeys[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+			}
+			cluster.createTable(TABLE, SampleRows.FAMILY, splitKeys);
+			Table table = cluster.getConnection().getTable(TABLE);
+			try {
+				Random random = new Random(42);
+				for (int i = 0; i < ROWS; i += 1000) {
+					table.put(SampleRows.puts(i, 1000, random));
+				}
+			} finally {
+				table.close();
+			}
+
+			run(cluster, false);
+			run(cluster, true);
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static void run(BenchmarkCluster cluster, boolean warm) throws Exception {
+		LatencySample first = new LatencySample();
+		LatencySample perRegion = new LatencySample();
+		LatencySample warmUp = new LatencySample();
+		LatencySample steady = new LatencySample();
+		for (int trial = 0; trial < TRIALS; trial++) {
+			Connection conn = ConnectionFactory.createConnection(cluster.getConfiguration());
+			try {
+				if (warm) {
+					long start = System.nanoTime();
+					new ConnectionWarmer(conn, new ConnectionWarmer.Params(TABLE)).warm();
+					warmUp.add(System.nanoTime() - start);
+				}
+				Table table = conn.getTable(TABLE);
+				try {
+					for (int r = 0; r < REGIONS; r++) {
+						long start = System.nanoTime();
+						table.get(new Get(SampleRows.rowKey((long) ROWS * r / REGIONS + trial)));
+						long elapsed = System.nanoTime() - start;
+						(r == 0 ? first : perRegion).add(elapsed);
+					}
+					// 位置和连接都已就绪后的延迟，作为参照
+					for (int r = 0; r < REGIONS; r++) {
+						long start = System.nanoTime();
+						table.get(new Get(SampleRows.rowKey((long) ROWS * r / REGIONS + trial + 1)));
+						steady.add(System.nanoTime() - start);
+					}
+				} finally {
+					table.close();
+				}
+			} finally {
+				conn.close();
+			}
+		}
+		System.out.println(warm ? "with ConnectionWarmer:" : "without warm-up:");
+		if (warm) {
+			System.out.println("  warm-up: " + warmUp);
+		}
+		System.out.println("  first request: " + first);
+		System.out.println("  first request to each other region: " + perRegion);
+		System.out.println("  steady state: " + steady);
+	}
+}
@@ -0,0 +1,113 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 比 {@link SampleRows} 更接近线上分布的数据：姓名由常见姓和名组合，年龄、城市按非均匀权重取值，
+ * 读请求的行键按 Zipf 分布集中在少量热点行上（热点行经过打散，不会集中在同一个 Region）。
+ * <p>
+ * 同一个 seed 生成的数据相同，不同线程各自使用一个实例。
+ */
+public class DataGenerator {
+
+	public static final byte[] MOB_FAMILY = Bytes.toBytes("mobcf");
+	public static final byte[] MOB_QUALIFIER = Bytes.toBytes("cf1");
+
+	private static final String[] SURNAMES = { "zhang", "wang", "li", "zhao", "liu", "chen", "yang", "huang", "zhou",
+			"wu", "xu", "sun", "ma", "zhu", "hu", "guo", "he", "lin", "luo", "gao" };
+	private static final String[] GIVEN_NAMES = { "san", "si", "wu", "liu", "wei", "fang", "na", "min", "jing", "li",
+			"qiang", "lei", "jun", "yang", "yong", "yan", "jie", "tao", "ming", "chao", "xiu", "hua", "ping", "gang" };
+	private static final String[] CITIES = { "wuhan", "beijing", "shanghai", "shenzhen", "guangzhou", "nanjing",
+			"hangzhou", "chengdu", "xian", "changsha" };
+	/** 城市的累计权重，前几个城市占大多数 */
+	private static final double[] CITY_CDF = cdf(new double[] { 30, 20, 15, 10, 8, 6, 4, 3, 2, 2 });
+
+	private final Random random;
+	private final long rows;
+	private final double[] zipfCdf;
+
+	/**
+	 * @param rows 已写入的行数，读请求的行号取值范围为 [0, rows)
+	 * @param zipfExponent Zipf 分布的指数，0 为均匀分布，常用 0.99
+	 */
+	public DataGenerator(long seed, long rows, double zipfExponent) {
+		this.random = new Random(seed);
+		this.rows = rows;
+		double[] weights = new double[(int) Math.min(rows, 1 << 20)];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = 1.0 / Math.pow(i + 1, zipfExponent);
+		}
+		this.zipfCdf = cdf(weights);
+	}
+
+	private static double[] cdf(double[] weights) {
+		double[] cdf = new double[weights.length];
+		double sum = 0;
+		for (int i = 0; i < weights.length; i++) {
+			sum += weights[i];
+			cdf[i] = sum;
+		}
+		for (int i = 0; i < cdf.length; i++) {
+			cdf[i] /= sum;
+		}
+		return cdf;
+	}
+
+	private int pick(double[] cdf) {
+		int i = Arrays.binarySearch(cdf, random.nextDouble());
+		return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+
+	public byte[] rowKey(long i) {
+		return SampleRows.rowKey(i);
+	}
+
+	/**
+	 * 按 Zipf 分布取一个已存在的行号
+	 */
+	public long nextRow() {
+		long rank = pick(zipfCdf);
+		if (zipfCdf.length < rows) {
+			// 行数超过 CDF 长度时，把排名均匀映射到整个行号区间
+			rank = rank * (rows / zipfCdf.length) + (long) (random.nextDouble() * (rows / zipfCdf.length));
+		}
+		// 乘以黄金分割常数打散热点行，使其不集中在相邻的行键上
+		return (rank * 0x9E3779B97F4A7C15L & Long.MAX_VALUE) % rows;
+	}
+
+	public String nextName() {
+		return SURNAMES[random.nextInt(SURNAMES.length)] + " " + GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+	}
+
+	/**
+	 * 与 HbaseExample.putData 相同的四列
+	 */
+	public Put put(long i) {
+		Put put = new Put(rowKey(i));
+		put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0], Bytes.toBytes(nextName()));
+		put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[1], Bytes.toBytes(random.nextInt(100) < 52 ? "F" : "M"));
+		int age = (int) Math.max(16, Math.min(80, 35 + random.nextGaussian() * 12));
+		put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[2], Bytes.toBytes(String.valueOf(age)));
+		put.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[3], Bytes.toBytes(CITIES[pick(CITY_CDF)]));
+		return put;
+	}
+
+	/**
+	 * 与 HbaseExample.testMOBDataInsertion 相同的列，值为 valueSize 字节的随机数据
+	 */
+	public Put mobPut(long i, int valueSize) {
+		byte[] value = new byte[valueSize];
+		random.nextBytes(value);
+		Put put = new Put(rowKey(i));
+		put.addColumn(MOB_FAMILY, MOB_QUALIFIER, value);
+		return put;
+	}
+}
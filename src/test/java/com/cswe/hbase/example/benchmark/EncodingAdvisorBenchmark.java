@@ -0,0 +1,56 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Put;
+
+import com.cswe.hbase.example.EncodingAdvisor;
+
+/**
+ * 用 SampleRows 生成的数据在本地文件系统上评估所有可用的压缩和编码组合，不需要集群。
+ * 打印每种组合的文件大小、写入耗时、单次随机读和全量扫描耗时，以及三种目标下的推荐。
+ * <p>
+ * 读取绕过 BlockCache，结果反映的是块解码成本，实际线上热点数据命中缓存时编码的影响更小。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.EncodingAdvisorBenchmark [-Dexec.args=100000]
+ */
+public class EncodingAdvisorBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		List<Cell> cells = new ArrayList<Cell>();
+		Random random = new Random(42);
+		for (int i = 0; i < rows; i += 1000) {
+			for (Put put : SampleRows.puts(i, Math.min(1000, rows - i), random)) {
+				CellScanner scanner = put.cellScanner();
+				while (scanner.advance()) {
+					cells.add(scanner.current());
+				}
+			}
+		}
+		File dir = new File(System.getProperty("java.io.tmpdir"), "encoding-advisor-bench-" + System.currentTimeMillis());
+		EncodingAdvisor advisor = new EncodingAdvisor(HBaseConfiguration.create(), new Path(dir.toURI()));
+		try {
+			// 第一轮为预热
+			advisor.evaluate(cells.subList(0, Math.min(cells.size(), 20000)));
+			List<EncodingAdvisor.Trial> trials = advisor.evaluate(cells);
+			System.out.println(rows + " rows, " + cells.size() + " cells");
+			for (EncodingAdvisor.Trial trial : trials) {
+				System.out.println(trial);
+			}
+			for (EncodingAdvisor.Goal goal : EncodingAdvisor.Goal.values()) {
+				System.out.println(EncodingAdvisor.recommend(SampleRows.FAMILY, trials, goal));
+			}
+		} finally {
+			dir.delete();
+		}
+	}
+}
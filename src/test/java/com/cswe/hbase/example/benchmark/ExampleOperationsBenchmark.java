@@ -0,0 +1,246 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CompressionTest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * HbaseExample 中各个操作的吞吐量与延迟分位数，在进程内的 mini cluster 上运行。
+ * <p>
+ * 每个基准方法发出的请求与 HbaseExample 中对应方法相同（列、过滤器、caching），数据由 {@link DataGenerator} 生成：
+ * <ul>
+ * <li>put：putData，单行四列</li>
+ * <li>get：getData，按 Zipf 分布取行，读 name、adress 两列</li>
+ * <li>scan：scanData，读 name、age 两列；为控制单次耗时只扫描随机起点后的 {@link #SCAN_ROWS} 行</li>
+ * <li>filteredScan：valueFilter，sex = F，范围同上</li>
+ * <li>indexedScan：scanDataByIndex，name = 随机姓名，范围同上。mini cluster 上没有二级索引协处理器，
+ * 测到的是服务端过滤扫描的代价，可作为是否值得建索引的基线</li>
+ * <li>delete：deleteData，删除整行</li>
+ * <li>mobPut、mobGet：testMOBDataInsertion、testMOBDataRead。开源 HBase 1.0.2 没有 MOB，
+ * mobcf 是普通列族，测到的是大值在普通存储路径上的代价</li>
+ * </ul>
+ * 运行方式（结果以 JSON 写入 target/jmh-result.json，便于不同版本之间比较）：
+ * mvn -Pjmh test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExampleOperationsBenchmark {
+
+	static final TableName TABLE = TableName.valueOf("hbase_sample_table");
+	static final int ROWS = 100000;
+	static final int SCAN_ROWS = 1000;
+	static final int MOB_ROWS = 1000;
+	static final int MOB_VALUE_SIZE = 100 * 1024;
+	/** put 写入和 delete 删除的行号从这里开始，不影响读操作的数据 */
+	static final long WRITE_BASE = 100000000L;
+	static final long THREAD_STRIDE = 10000000L;
+	/** mob 行的行号从这里开始 */
+	static final long MOB_BASE = 900000000L;
+
+	private static final byte[] NAME = SampleRows.QUALIFIERS[0];
+	private static final byte[] SEX = SampleRows.QUALIFIERS[1];
+	private static final byte[] AGE = SampleRows.QUALIFIERS[2];
+	private static final byte[] ADRESS = SampleRows.QUALIFIERS[3];
+
+	BenchmarkCluster cluster;
+
+	@Setup(Level.Trial)
+	public void startCluster() throws Exception {
+		cluster = BenchmarkCluster.start(1);
+		createTable();
+		DataGenerator gen = new DataGenerator(42, ROWS, 0);
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			List<Put> batch = new ArrayList<Put>();
+			for (long i = 0; i < ROWS; i++) {
+				batch.add(gen.put(i));
+				if (batch.size() == 1000) {
+					table.put(batch);
+					batch.clear();
+				}
+			}
+			for (long i = 0; i < MOB_ROWS; i++) {
+				batch.add(gen.mobPut(MOB_BASE + i, MOB_VALUE_SIZE));
+				if (batch.size() == 100) {
+					table.put(batch);
+					batch.clear();
+				}
+			}
+			table.put(batch);
+		} finally {
+			table.close();
+		}
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			admin.flush(TABLE);
+		} finally {
+			admin.close();
+		}
+	}
+
+	/**
+	 * 与 HbaseExample.createTable 相同的编码和压缩，环境中没有 snappy 本地库时改用 GZ
+	 */
+	private void createTable() throws IOException {
+		HTableDescriptor htd = new HTableDescriptor(TABLE);
+		HColumnDescriptor hcd = new HColumnDescriptor(SampleRows.FAMILY);
+		hcd.setDataBlockEncoding(DataBlockEncoding.PREFIX_TREE);
+		hcd.setCompressionType(CompressionTest.testCompression("snappy") ? Compression.Algorithm.SNAPPY
+				: Compression.Algorithm.GZ);
+		htd.addFamily(hcd);
+		htd.addFamily(new HColumnDescriptor(DataGenerator.MOB_FAMILY));
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			admin.createTable(htd);
+		} finally {
+			admin.close();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stopCluster() throws IOException {
+		cluster.close();
+	}
+
+	/**
+	 * 每个线程独立的 Table 和数据生成器
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+		Table table;
+		DataGenerator gen;
+		DataGenerator mobGen;
+		long nextPut;
+		long nextDelete;
+		long nextMob;
+
+		@Setup(Level.Trial)
+		public void open(ExampleOperationsBenchmark bench, ThreadParams params) throws IOException {
+			table = bench.cluster.getConnection().getTable(TABLE);
+			gen = new DataGenerator(params.getThreadIndex(), ROWS, 0.99);
+			mobGen = new DataGenerator(params.getThreadIndex(), MOB_ROWS, 0.99);
+			nextPut = WRITE_BASE + params.getThreadIndex() * THREAD_STRIDE;
+			nextDelete = nextPut;
+			nextMob = MOB_BASE + MOB_ROWS + params.getThreadIndex() * THREAD_STRIDE;
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws IOException {
+			table.close();
+		}
+	}
+
+	@Benchmark
+	public void put(Client c) throws IOException {
+		c.table.put(c.gen.put(c.nextPut++));
+	}
+
+	@Benchmark
+	public Result get(Client c) throws IOException {
+		Get get = new Get(c.gen.rowKey(c.gen.nextRow()));
+		get.addColumn(SampleRows.FAMILY, NAME);
+		get.addColumn(SampleRows.FAMILY, ADRESS);
+		return c.table.get(get);
+	}
+
+	private Scan rangeScan(Client c) {
+		long start = c.gen.getRandom().nextInt(ROWS - SCAN_ROWS);
+		Scan scan = new Scan(c.gen.rowKey(start), c.gen.rowKey(start + SCAN_ROWS));
+		scan.setCaching(1000);
+		return scan;
+	}
+
+	private static long drain(Table table, Scan scan, Blackhole bh) throws IOException {
+		long rows = 0;
+		ResultScanner scanner = table.getScanner(scan);
+		try {
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				bh.consume(r);
+				rows++;
+			}
+		} finally {
+			scanner.close();
+		}
+		return rows;
+	}
+
+	@Benchmark
+	public long scan(Client c, Blackhole bh) throws IOException {
+		Scan scan = rangeScan(c);
+		scan.addColumn(SampleRows.FAMILY, NAME);
+		scan.addColumn(SampleRows.FAMILY, AGE);
+		return drain(c.table, scan, bh);
+	}
+
+	@Benchmark
+	public long filteredScan(Client c, Blackhole bh) throws IOException {
+		Scan scan = rangeScan(c);
+		scan.addColumn(SampleRows.FAMILY, NAME);
+		scan.addColumn(SampleRows.FAMILY, SEX);
+		scan.setFilter(new SingleColumnValueFilter(SampleRows.FAMILY, SEX, CompareOp.EQUAL, Bytes.toBytes("F")));
+		return drain(c.table, scan, bh);
+	}
+
+	@Benchmark
+	public long indexedScan(Client c, Blackhole bh) throws IOException {
+		Scan scan = rangeScan(c);
+		scan.setFilter(new SingleColumnValueFilter(SampleRows.FAMILY, NAME, CompareOp.EQUAL,
+				Bytes.toBytes(c.gen.nextName())));
+		return drain(c.table, scan, bh);
+	}
+
+	@Benchmark
+	public void delete(Client c) throws IOException {
+		// 删除 put 写入的行，put 没跟上时删除的是不存在的行，代价相同（都只写一个删除标记）
+		c.table.delete(new Delete(c.gen.rowKey(c.nextDelete++)));
+	}
+
+	@Benchmark
+	public void mobPut(Client c) throws IOException {
+		c.table.put(c.mobGen.mobPut(c.nextMob++, MOB_VALUE_SIZE));
+	}
+
+	@Benchmark
+	public Result mobGet(Client c) throws IOException {
+		Get get = new Get(c.mobGen.rowKey(MOB_BASE + c.mobGen.nextRow()));
+		get.addColumn(DataGenerator.MOB_FAMILY, DataGenerator.MOB_QUALIFIER);
+		return c.table.get(get);
+	}
+}
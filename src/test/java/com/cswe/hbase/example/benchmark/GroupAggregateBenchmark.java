@@ -0,0 +1,101 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.GroupAggregateClient;
+import com.cswe.hbase.example.GroupAggregateEndpoint;
+import com.cswe.hbase.example.protobuf.generated.GroupAggregateProtos.ValueType;
+
+/**
+ * 对比 valueFilter 的条件（sex=F）下按 adress 分组统计 age 时，GroupAggregateEndpoint 与客户端聚合的耗时。
+ * <p>
+ * mini cluster 中客户端和 RegionServer 在同一进程，没有网络传输的开销，客户端聚合的差距主要来自
+ * 结果的序列化和反序列化；真实集群中还要加上把约一半的行传到客户端的时间。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.GroupAggregateBenchmark
+ */
+public class GroupAggregateBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("group_aggregate_bench");
+	private static final int ROWS = 500000;
+	private static final int REGIONS = 8;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			HTableDescriptor htd = new HTableDescriptor(TABLE);
+			htd.addFamily(new HColumnDescriptor(SampleRows.FAMILY));
+			htd.addCoprocessor(GroupAggregateEndpoint.class.getName());
+			byte[][] splits = new byte[REGIONS - 1][];
+			for (int i = 1; i < REGIONS; i++) {
+				splits[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+			}
+			Admin admin = cluster.getConnection().getAdmin();
+			try {
+				admin.createTable(htd, splits);
+			} finally {
+				admin.close();
+			}
+			load(cluster);
+
+			GroupAggregateClient client = new GroupAggregateClient(cluster.getConnection(), TABLE);
+			GroupAggregateClient.Request request = new GroupAggregateClient.Request()
+					.groupBy(SampleRows.FAMILY, SampleRows.QUALIFIERS[3])
+					.column(SampleRows.FAMILY, SampleRows.QUALIFIERS[2], ValueType.DECIMAL);
+			for (int round = 0; round < 4; round++) {
+				// 第一轮为预热
+				String tag = round == 0 ? "warm " : "";
+				long start = System.nanoTime();
+				List<GroupAggregateClient.Group> server = client.aggregate(scan(), request);
+				long serverNanos = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				List<GroupAggregateClient.Group> local = client.aggregateOnClient(scan(), request);
+				long clientNanos = System.nanoTime() - start;
+
+				if (!server.toString().equals(local.toString())) {
+					throw new IllegalStateException("Results differ: " + server + " vs " + local);
+				}
+				System.out.println(String.format("%sendpoint %.0fms  client %.0fms  %s", tag, serverNanos / 1e6,
+						clientNanos / 1e6, round == 0 ? server : ""));
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static Scan scan() {
+		Scan scan = new Scan();
+		scan.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[1]);
+		scan.setFilter(new SingleColumnValueFilter(SampleRows.FAMILY, SampleRows.QUALIFIERS[1], CompareOp.EQUAL,
+				Bytes.toBytes("F")));
+		scan.setCaching(1000);
+		return scan;
+	}
+
+	private static void load(BenchmarkCluster cluster) throws Exception {
+		Random random = new Random(42);
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			for (int i = 0; i < ROWS; i += 1000) {
+				List<Put> puts = SampleRows.puts(i, 1000, random);
+				table.put(puts);
+			}
+		} finally {
+			table.close();
+		}
+	}
+}
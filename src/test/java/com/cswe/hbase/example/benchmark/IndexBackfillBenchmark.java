@@ -0,0 +1,115 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.FileCheckpointStore;
+import com.cswe.hbase.example.IndexBackfiller;
+
+/**
+ * 在 mini cluster 上补建 info:name 的索引，对比不限速与限速时的补建吞吐量，以及补建期间前台随机 Get/Put
+ * 的延迟与没有补建时的差别。mini cluster 上没有索引协处理器，补建只有扫描和按原时间戳重写的开销。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.IndexBackfillBenchmark
+ */
+public class IndexBackfillBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("index_backfill");
+	private static final int ROWS = 200000;
+	private static final long BASELINE_MILLIS = 10000;
+	private static final double[] RATES = { Double.POSITIVE_INFINITY, 5000 };
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			cluster.createTable(TABLE, SampleRows.FAMILY, new byte[][] { SampleRows.rowKey(ROWS / 4),
+					SampleRows.rowKey(ROWS / 2), SampleRows.rowKey(ROWS * 3 / 4) });
+			Table table = cluster.getConnection().getTable(TABLE);
+			try {
+				Random random = new Random(42);
+				for (int i = 0; i < ROWS; i += 1000) {
+					table.put(SampleRows.puts(i, 1000, random));
+				}
+			} finally {
+				table.close();
+			}
+
+			Foreground baseline = new Foreground(cluster);
+			baseline.start();
+			Thread.sleep(BASELINE_MILLIS);
+			baseline.finish();
+			System.out.println("no backfill: get " + baseline.gets + ", put " + baseline.puts);
+
+			List<byte[][]> columns = new ArrayList<byte[][]>();
+			columns.add(new byte[][] { SampleRows.FAMILY, SampleRows.QUALIFIERS[0] });
+			FileSystem fs = FileSystem.getLocal(cluster.getConfiguration());
+			FileCheckpointStore checkpoints = new FileCheckpointStore(fs, new Path(System.getProperty("java.io.tmpdir"),
+					"index_backfill_checkpoints"));
+			for (double rate : RATES) {
+				checkpoints.clear();
+				Foreground foreground = new Foreground(cluster);
+				foreground.start();
+				IndexBackfiller.Progress progress = new IndexBackfiller(cluster.getConnection(), TABLE,
+						new IndexBackfiller.Params().rowsPerSecond(rate)).backfill(columns, checkpoints);
+				foreground.finish();
+				System.out.println(String.format("backfill at %s rows/s: %s", Double.isInfinite(rate) ? "unlimited"
+						: String.valueOf((long) rate), progress));
+				System.out.println("  foreground get " + foreground.gets + ", put " + foreground.puts);
+			}
+			checkpoints.clear();
+		} finally {
+			cluster.close();
+		}
+	}
+
+	/**
+	 * 单线程交替随机 Get 和 Put，模拟在线业务
+	 */
+	private static class Foreground extends Thread {
+		private final BenchmarkCluster cluster;
+		private final AtomicBoolean stop = new AtomicBoolean();
+		final LatencySample gets = new LatencySample();
+		final LatencySample puts = new LatencySample();
+
+		Foreground(BenchmarkCluster cluster) {
+			this.cluster = cluster;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			Random random = new Random(7);
+			try {
+				Table table = cluster.getConnection().getTable(TABLE);
+				try {
+					while (!stop.get()) {
+						long start = System.nanoTime();
+						table.get(new Get(SampleRows.rowKey(random.nextInt(ROWS))));
+						gets.add(System.nanoTime() - start);
+						start = System.nanoTime();
+						table.put(SampleRows.put(random.nextInt(ROWS), random));
+						puts.add(System.nanoTime() - start);
+					}
+				} finally {
+					table.close();
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		void finish() throws InterruptedException {
+			stop.set(true);
+			join();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * 收集一组耗时样本并输出分位数。
+ */
+public class LatencySample {
+
+	private long[] nanos = new long[64];
+	private int count = 0;
+
+	public void add(long elapsedNanos) {
+		if (count == nanos.length) {
+			nanos = Arrays.copyOf(nanos, count * 2);
+		}
+		nanos[count++] = elapsedNanos;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param p 0 到 1 之间的分位数
+	 * @return 对应的耗时（毫秒）
+	 */
+	public double percentileMillis(double p) {
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(nanos, count);
+		Arrays.sort(sorted);
+		int i = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+		return sorted[Math.max(0, i)] / 1e6;
+	}
+
+	public double meanMillis() {
+		if (count == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += nanos[i];
+		}
+		return sum / count / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms", count, meanMillis(),
+				percentileMillis(0.5), percentileMillis(0.99), percentileMillis(1.0));
+	}
+}
@@ -0,0 +1,168 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.MobReader;
+import com.cswe.hbase.example.MobValueRef;
+
+/**
+ * 对比 testMOBDataRead 原来的整行读取与 MobReader 先取大小、只读取其中一部分值的耗时、返回字节数和堆内存峰值。
+ * <p>
+ * 参数：行数（默认 100）、每个值的字节数（默认 1MB）、读取值的比例（默认 0.1）。
+ * mini cluster 使用的 HBase 1.0.2 没有 MOB，列族为普通列族：RegionServer 在两种方式下都要读出整个值，
+ * 结果体现的是传输和客户端内存的差别；在 MOB 列族上引用扫描还省去读取 MOB 文件。
+ * 客户端与 RegionServer 在同一进程中，堆内存峰值包括双方，只用于两种方式的相对比较。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.MobReadBenchmark -Dexec.args="100 1048576 0.1"
+ */
+public class MobReadBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("mob_read_bench");
+	private static final byte[] MOBCF = Bytes.toBytes("mobcf");
+	private static final byte[] CF1 = Bytes.toBytes("cf1");
+
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int valueSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024 * 1024;
+		double fraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			cluster.createTable(TABLE, MOBCF, null);
+			Table table = cluster.getConnection().getTable(TABLE);
+			try {
+				Random random = new Random(42);
+				for (int i = 0; i < rows; i++) {
+					byte[] value = new byte[valueSize];
+					random.nextBytes(value);
+					Put put = new Put(SampleRows.rowKey(i));
+					put.addColumn(MOBCF, CF1, value);
+					table.put(put);
+				}
+			} finally {
+				table.close();
+			}
+			Admin admin = cluster.getConnection().getAdmin();
+			try {
+				admin.flush(TABLE);
+			} finally {
+				admin.close();
+			}
+
+			MobReader reader = new MobReader(cluster.getConnection(), TABLE);
+			for (int round = 0; round < 3; round++) {
+				String tag = round == 0 ? "warm " : "";
+				fullScan(cluster, tag);
+				referenceScan(cluster, reader, fraction, tag);
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	/**
+	 * testMOBDataRead 原来的方式：每行的值都随结果返回
+	 */
+	private static void fullScan(BenchmarkCluster cluster, String tag) throws Exception {
+		resetPeak();
+		long start = System.nanoTime();
+		Scan scan = new Scan().addColumn(MOBCF, CF1);
+		scan.setCaching(10);
+		scan.setScanMetricsEnabled(true);
+		long bytes = 0;
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					bytes += r.getValue(MOBCF, CF1).length;
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		report(tag + "full     ", start, bytes, scan, peak());
+	}
+
+	/**
+	 * 先取大小，只读取 fraction 比例的值并按 64KB 的块读出
+	 */
+	private static void referenceScan(BenchmarkCluster cluster, MobReader reader, double fraction, String tag)
+			throws Exception {
+		resetPeak();
+		long start = System.nanoTime();
+		Scan scan = MobReader.referenceScan(new Scan().addColumn(MOBCF, CF1));
+		scan.setScanMetricsEnabled(true);
+		List<MobValueRef> refs = new ArrayList<MobValueRef>();
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			ResultScanner scanner = table.getScanner(scan);
+			try {
+				for (Result r = scanner.next(); r != null; r = scanner.next()) {
+					refs.add(reader.reference(r, MOBCF, CF1));
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			table.close();
+		}
+		long bytes = 0;
+		byte[] chunk = new byte[64 * 1024];
+		int step = fraction > 0 ? (int) Math.round(1 / fraction) : Integer.MAX_VALUE;
+		for (int i = 0; i < refs.size(); i += step) {
+			InputStream in = refs.get(i).openStream();
+			try {
+				for (int n = in.read(chunk); n > 0; n = in.read(chunk)) {
+					bytes += n;
+				}
+			} finally {
+				in.close();
+			}
+		}
+		report(tag + "reference", start, bytes, scan, peak());
+	}
+
+	private static void report(String name, long start, long valueBytes, Scan scan, long peakBytes) {
+		System.out.println(String.format("%s  %6.0fms  values read %6.1fMB  scan results %8.1fKB  peak heap %6.0fMB",
+				name, (System.nanoTime() - start) / 1e6, valueBytes / 1048576.0,
+				scan.getScanMetrics().countOfBytesInResults.get() / 1024.0, peakBytes / 1048576.0));
+	}
+
+	private static void resetPeak() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long peak() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
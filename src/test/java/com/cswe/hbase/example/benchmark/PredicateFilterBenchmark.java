@@ -0,0 +1,130 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cswe.hbase.example.Predicate;
+import com.cswe.hbase.example.PredicateFilter;
+
+/**
+ * 对比同一条件（sex=F 且 20 &lt;= age &lt; 30 且 adress 不是 wuhan、nanjing）下，嵌套的 SingleColumnValueFilter
+ * FilterList 与 PredicateFilter 在 RegionServer 上过滤一行的耗时。按 RegionScanner 的调用顺序
+ * （reset、filterRowKey、逐个 filterKeyValue、filterRow）驱动过滤器，不包括读取 HFile 的时间。
+ * <p>
+ * 运行方式：mvn -Pjmh test-compile exec:exec -Djmh.args="PredicateFilterBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateFilterBenchmark {
+
+	private static final int ROWS = 1000;
+	private static final String[] CITIES = { "wuhan", "beijing", "nanjing", "shanghai", "shenzhen" };
+
+	private static final byte[] INFO = SampleRows.FAMILY;
+	private static final byte[] NAME = SampleRows.QUALIFIERS[0];
+	private static final byte[] SEX = SampleRows.QUALIFIERS[1];
+	private static final byte[] AGE = SampleRows.QUALIFIERS[2];
+	private static final byte[] ADRESS = SampleRows.QUALIFIERS[3];
+
+	private List<List<Cell>> rows;
+	private Filter filterList;
+	private Filter predicateFilter;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		rows = new ArrayList<List<Cell>>(ROWS);
+		for (int i = 0; i < ROWS; i++) {
+			byte[] row = SampleRows.rowKey(i);
+			List<Cell> cells = new ArrayList<Cell>();
+			cells.add(new KeyValue(row, INFO, NAME, Bytes.toBytes("name " + random.nextInt(100000))));
+			cells.add(new KeyValue(row, INFO, SEX, Bytes.toBytes(random.nextBoolean() ? "F" : "M")));
+			cells.add(new KeyValue(row, INFO, AGE, Bytes.toBytes(String.valueOf(16 + random.nextInt(50)))));
+			cells.add(new KeyValue(row, INFO, ADRESS, Bytes.toBytes(CITIES[random.nextInt(CITIES.length)])));
+			Collections.sort(cells, KeyValue.COMPARATOR);
+			rows.add(cells);
+		}
+
+		FilterList adress = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+		adress.addFilter(scvf(ADRESS, CompareOp.NOT_EQUAL, "wuhan"));
+		adress.addFilter(scvf(ADRESS, CompareOp.NOT_EQUAL, "nanjing"));
+		FilterList list = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+		list.addFilter(scvf(SEX, CompareOp.EQUAL, "F"));
+		list.addFilter(scvf(AGE, CompareOp.GREATER_OR_EQUAL, "20"));
+		list.addFilter(scvf(AGE, CompareOp.LESS, "30"));
+		list.addFilter(adress);
+		filterList = list;
+
+		predicateFilter = new PredicateFilter(Predicate.and(
+				Predicate.column(INFO, SEX).eq(Bytes.toBytes("F")),
+				Predicate.column(INFO, AGE).range(Bytes.toBytes("20"), Bytes.toBytes("30")),
+				Predicate.not(Predicate.column(INFO, ADRESS).in(Bytes.toBytes("wuhan"), Bytes.toBytes("nanjing")))));
+	}
+
+	private static SingleColumnValueFilter scvf(byte[] qualifier, CompareOp op, String value) {
+		SingleColumnValueFilter filter = new SingleColumnValueFilter(INFO, qualifier, op, Bytes.toBytes(value));
+		filter.setFilterIfMissing(true);
+		filter.setLatestVersionOnly(true);
+		return filter;
+	}
+
+	private int filter(Filter filter) throws IOException {
+		int matched = 0;
+		for (List<Cell> row : rows) {
+			filter.reset();
+			Cell first = row.get(0);
+			if (filter.filterRowKey(first.getRowArray(), first.getRowOffset(), first.getRowLength())) {
+				continue;
+			}
+			for (Cell cell : row) {
+				if (filter.filterKeyValue(cell) == ReturnCode.NEXT_ROW) {
+					break;
+				}
+			}
+			if (!filter.filterRow()) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public int filterList() throws IOException {
+		return filter(filterList);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public int predicateFilter() throws IOException {
+		return filter(predicateFilter);
+	}
+}
@@ -0,0 +1,155 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.AdaptiveScanner;
+import com.cswe.hbase.example.PrefetchingScanner;
+
+/**
+ * 对比每行有 CPU 密集处理时，直接扫描与 PrefetchingScanner 预读的端到端扫描耗时。
+ * <p>
+ * mini cluster 的 RegionServer 与客户端在同一进程、共用 CPU，RPC 几乎没有等待网络的时间，
+ * 只有多核时预读才能让服务端的读取与客户端的处理重叠。另一组在每次 caching 行之后 sleep rtt 毫秒，
+ * 模拟访问远端集群时每次 RPC 的网络往返，这部分时间与 CPU 无关，单核上也能被预读掩盖。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.PrefetchScanBenchmark [-Dexec.args="20 5"]
+ * 参数为每行处理耗时（微秒）和模拟的 RTT（毫秒）。
+ */
+public class PrefetchScanBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("prefetch_scan_bench");
+	private static final int ROWS = 200000;
+	private static final int CACHING = 1000;
+
+	private static volatile long sink;
+
+	public static void main(String[] args) throws Exception {
+		long workNanos = (args.length > 0 ? Long.parseLong(args[0]) : 20) * 1000;
+		long rttMillis = args.length > 1 ? Long.parseLong(args[1]) : 5;
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			cluster.createTable(TABLE, SampleRows.FAMILY, null);
+			load(cluster);
+			Table table = cluster.getConnection().getTable(TABLE);
+			try {
+				for (int round = 0; round < 3; round++) {
+					// 第一轮为预热
+					String tag = round == 0 ? "warm " : "";
+					for (long rtt : new long[] { 0, rttMillis }) {
+						for (boolean prefetch : new boolean[] { false, true }) {
+							ResultScanner scanner = new AdaptiveScanner(table, scan());
+							if (rtt > 0) {
+								scanner = new DelayedScanner(scanner, rtt);
+							}
+							PrefetchingScanner prefetching = null;
+							if (prefetch) {
+								scanner = prefetching = new PrefetchingScanner(scanner, 2 * CACHING);
+							}
+							long start = System.nanoTime();
+							int rows = 0;
+							try {
+								for (Result r = scanner.next(); r != null; r = scanner.next()) {
+									work(r, workNanos);
+									rows++;
+								}
+							} finally {
+								scanner.close();
+							}
+							long elapsed = System.nanoTime() - start;
+							System.out.println(String.format("%s%-8s rtt=%dms %d rows %.0fms%s", tag,
+									prefetch ? "prefetch" : "direct", rtt, rows, elapsed / 1e6,
+									prefetching != null ? String.format(" (waited %.0fms)",
+											prefetching.getWaitNanos() / 1e6) : ""));
+						}
+					}
+				}
+			} finally {
+				table.close();
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static Scan scan() {
+		Scan scan = new Scan();
+		scan.addFamily(SampleRows.FAMILY);
+		scan.setCaching(CACHING);
+		return scan;
+	}
+
+	/**
+	 * 占用 CPU 约 nanos 纳秒，模拟解析、计算等逐行处理
+	 */
+	private static void work(Result r, long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		long h = 0;
+		do {
+			for (Cell cell : r.rawCells()) {
+				h = h * 31 + cell.getValueLength();
+			}
+		} while (System.nanoTime() < deadline);
+		sink += h;
+	}
+
+	/**
+	 * 每返回 caching 行 sleep 一次，模拟每次 RPC 的网络往返
+	 */
+	private static class DelayedScanner extends AbstractClientScanner {
+		private final ResultScanner delegate;
+		private final long rttMillis;
+		private int rows = 0;
+
+		DelayedScanner(ResultScanner delegate, long rttMillis) {
+			this.delegate = delegate;
+			this.rttMillis = rttMillis;
+		}
+
+		@Override
+		public Result next() throws IOException {
+			if (rows++ % CACHING == 0) {
+				try {
+					Thread.sleep(rttMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return delegate.next();
+		}
+
+		@Override
+		public boolean renewLease() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+	}
+
+	private static void load(BenchmarkCluster cluster) throws Exception {
+		Random random = new Random(42);
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			for (int i = 0; i < ROWS; i += 1000) {
+				List<Put> puts = SampleRows.puts(i, 1000, random);
+				table.put(puts);
+			}
+		} finally {
+			table.close();
+		}
+	}
+}
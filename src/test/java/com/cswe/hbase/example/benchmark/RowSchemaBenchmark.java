@@ -0,0 +1,119 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.cswe.hbase.example.UserInfo;
+
+/**
+ * 对比手写的 Put 构造和 Result 解析（HbaseExample 原来的写法）与 UserInfo.SCHEMA 的单行耗时和分配量。
+ * <p>
+ * 运行方式（gc.alloc.rate.norm 即每行的分配字节数）：
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="RowSchemaBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowSchemaBenchmark {
+
+	private static final int ROWS = 100;
+	private static final String[] CITIES = { "wuhan", "beijing", "nanjing", "shanghai", "shenzhen" };
+
+	private UserInfo[] users;
+	private Result[] results;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		users = new UserInfo[ROWS];
+		results = new Result[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			users[i] = new UserInfo(String.format("2017122600%06d", i), "name " + random.nextInt(100000),
+					random.nextBoolean() ? "F" : "M", 16 + random.nextInt(50), CITIES[random.nextInt(CITIES.length)]);
+			Put put = UserInfo.SCHEMA.toPut(users[i]);
+			results[i] = Result.create(put.getFamilyCellMap().get(Bytes.toBytes("info")));
+		}
+	}
+
+	/**
+	 * buildSamplePuts 原来的写法：每行重新编码列族名和列名
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void handWrittenPut(Blackhole bh) {
+		for (UserInfo user : users) {
+			byte[] familyName = Bytes.toBytes("info");
+			byte[][] qualifiers = { Bytes.toBytes("name"), Bytes.toBytes("sex"), Bytes.toBytes("age"),
+					Bytes.toBytes("adress") };
+			Put put = new Put(Bytes.toBytes(user.getRowKey()));
+			put.addColumn(familyName, qualifiers[0], Bytes.toBytes(user.getName()));
+			put.addColumn(familyName, qualifiers[1], Bytes.toBytes(user.getSex()));
+			put.addColumn(familyName, qualifiers[2], Bytes.toBytes(String.valueOf(user.getAge())));
+			put.addColumn(familyName, qualifiers[3], Bytes.toBytes(user.getAdress()));
+			bh.consume(put);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void schemaPut(Blackhole bh) {
+		for (UserInfo user : users) {
+			bh.consume(UserInfo.SCHEMA.toPut(user));
+		}
+	}
+
+	/**
+	 * 复制出列名转成 String 再逐个比较，值同样先复制再转换
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void handWrittenDecode(Blackhole bh) {
+		for (Result r : results) {
+			UserInfo user = new UserInfo();
+			user.setRowKey(Bytes.toString(r.getRow()));
+			for (Cell cell : r.rawCells()) {
+				String qualifier = Bytes.toString(CellUtil.cloneQualifier(cell));
+				String value = Bytes.toString(CellUtil.cloneValue(cell));
+				if (qualifier.equals("name")) {
+					user.setName(value);
+				} else if (qualifier.equals("sex")) {
+					user.setSex(value);
+				} else if (qualifier.equals("age")) {
+					user.setAge(Integer.valueOf(value));
+				} else if (qualifier.equals("adress")) {
+					user.setAdress(value);
+				}
+			}
+			bh.consume(user);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void schemaDecode(Blackhole bh) {
+		for (Result r : results) {
+			bh.consume(UserInfo.SCHEMA.fromResult(r));
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.SaltedKeyCodec;
+import com.cswe.hbase.example.SaltedScanner;
+
+/**
+ * 单调递增行键的写入吞吐：原行键按行键区间预分区 与 加盐后按桶预分区 对比，
+ * 并对比两者按行键顺序全表扫描的耗时。
+ * <p>
+ * 多个写线程从同一个递增序号中领取连续的行键段写入，模拟按时间顺序到达的数据。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.SaltedIngestBenchmark
+ */
+public class SaltedIngestBenchmark {
+
+	private static final int ROWS = 400000;
+	private static final int ROUNDS = 2;
+	private static final int WRITERS = 8;
+	private static final int REGIONS = 8;
+
+	private interface KeyLayout {
+		byte[] row(long i);
+	}
+
+	/**
+	 * @param args 可选，每次 put 的行数，默认 1000
+	 */
+	public static void main(String[] args) throws Exception {
+		final int batch = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		BenchmarkCluster cluster = BenchmarkCluster.start(3);
+		try {
+			TableName plain = TableName.valueOf("ingest_plain");
+			byte[][] ranges = new byte[REGIONS - 1][];
+			for (int i = 1; i < REGIONS; i++) {
+				ranges[i - 1] = SampleRows.rowKey((long) ROWS * i / REGIONS);
+			}
+			TableName salted = TableName.valueOf("ingest_salted");
+			final SaltedKeyCodec codec = new SaltedKeyCodec(REGIONS);
+			// 第一轮用于预热，两张表都重新建表后再写一轮
+			for (int round = 0; round < ROUNDS; round++) {
+				cluster.createTable(plain, SampleRows.FAMILY, ranges);
+				ingest(cluster, plain, batch, new KeyLayout() {
+					@Override
+					public byte[] row(long i) {
+						return SampleRows.rowKey(i);
+					}
+				});
+				cluster.createTable(salted, SampleRows.FAMILY, codec.splitKeys());
+				ingest(cluster, salted, batch, new KeyLayout() {
+					@Override
+					public byte[] row(long i) {
+						return codec.encode(SampleRows.rowKey(i));
+					}
+				});
+			}
+
+			Table table = cluster.getConnection().getTable(plain);
+			try {
+				scan("plain  scan", table.getScanner(scan()));
+			} finally {
+				table.close();
+			}
+			table = cluster.getConnection().getTable(salted);
+			try {
+				scan("salted scan", new SaltedScanner(table, scan(), codec));
+			} finally {
+				table.close();
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static Scan scan() {
+		Scan scan = new Scan();
+		scan.setCaching(1000);
+		scan.setCacheBlocks(false);
+		return scan;
+	}
+
+	private static void ingest(final BenchmarkCluster cluster, final TableName name, final int batch,
+			final KeyLayout layout)
+			throws Exception {
+		final AtomicLong next = new AtomicLong();
+		ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int w = 0; w < WRITERS; w++) {
+				futures.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						Random random = new Random();
+						Table table = cluster.getConnection().getTable(name);
+						try {
+							for (long from = next.getAndAdd(batch); from < ROWS; from = next.getAndAdd(batch)) {
+								List<Put> puts = new ArrayList<Put>(batch);
+								for (long i = from; i < from + batch; i++) {
+									Put template = SampleRows.put(i, random);
+									Put put = new Put(layout.row(i));
+									for (byte[] qualifier : SampleRows.QUALIFIERS) {
+										put.addColumn(SampleRows.FAMILY, qualifier,
+												CellUtil.cloneValue(template.get(SampleRows.FAMILY, qualifier).get(0)));
+									}
+									puts.add(put);
+								}
+								table.put(puts);
+							}
+						} finally {
+							table.close();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-14s batch=%d ingest %d rows in %.1f s, %.0f rows/s", name, batch, ROWS,
+				seconds, ROWS / seconds));
+	}
+
+	private static void scan(String label, ResultScanner scanner) throws IOException {
+		long start = System.nanoTime();
+		long rows = 0;
+		byte[] previous = null;
+		try {
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				if (previous != null && Bytes.compareTo(previous, r.getRow()) >= 0) {
+					throw new IllegalStateException("Out of order at " + Bytes.toStringBinary(r.getRow()));
+				}
+				previous = r.getRow();
+				rows++;
+			}
+		} finally {
+			scanner.close();
+		}
+		System.out.println(String.format("%s %d rows in order, %.0f ms", label, rows, (System.nanoTime() - start) / 1e6));
+	}
+}
@@ -0,0 +1,47 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 生成与 HbaseExample.putData 结构相同的数据：日期序号行键，info 列族下 name/sex/age/adress 四列。
+ */
+public class SampleRows {
+
+	public static final byte[] FAMILY = Bytes.toBytes("info");
+	public static final byte[][] QUALIFIERS = { Bytes.toBytes("name"), Bytes.toBytes("sex"),
+			Bytes.toBytes("age"), Bytes.toBytes("adress") };
+
+	private static final String[] CITIES = { "wuhan", "beijing", "nanjing", "shanghai", "shenzhen" };
+
+	private SampleRows() {
+	}
+
+	/**
+	 * 第 i 行的行键，形如 2017122600000042，单调递增
+	 */
+	public static byte[] rowKey(long i) {
+		return Bytes.toBytes(String.format("20171226%08d", i));
+	}
+
+	public static Put put(long i, Random random) {
+		Put put = new Put(rowKey(i));
+		put.addColumn(FAMILY, QUALIFIERS[0], Bytes.toBytes("name " + random.nextInt(100000)));
+		put.addColumn(FAMILY, QUALIFIERS[1], Bytes.toBytes(random.nextBoolean() ? "F" : "M"));
+		put.addColumn(FAMILY, QUALIFIERS[2], Bytes.toBytes(String.valueOf(16 + random.nextInt(50))));
+		put.addColumn(FAMILY, QUALIFIERS[3], Bytes.toBytes(CITIES[random.nextInt(CITIES.length)]));
+		return put;
+	}
+
+	public static List<Put> puts(long from, int count, Random random) {
+		List<Put> puts = new ArrayList<Put>(count);
+		for (long i = from; i < from + count; i++) {
+			puts.add(put(i, random));
+		}
+		return puts;
+	}
+}
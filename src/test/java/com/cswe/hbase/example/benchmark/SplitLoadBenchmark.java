@@ -0,0 +1,95 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cswe.hbase.example.SplitPlanner;
+
+/**
+ * 对比原 multiSplit 的固定分区点（J、M、P、T）与 SplitPlanner 按样本计算的分区点下，
+ * 写入日期序号行键后各 Region 和各 RegionServer 承担的写请求比例及写入耗时。
+ * 第二张表先建成单 Region，再用 {@link SplitPlanner#split} 在线拆分，子 Region 留在原 RegionServer 上，
+ * 要等负载均衡后才会分散；第三张表直接按计算出的分区点预分区建表。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.SplitLoadBenchmark
+ */
+public class SplitLoadBenchmark {
+
+	private static final int ROWS = 200000;
+	private static final int REGIONS = 6;
+	/** RegionLoad 随心跳上报，等待几个周期 */
+	private static final long REPORT_DELAY_MILLIS = 8000;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkCluster cluster = BenchmarkCluster.start(3);
+		try {
+			List<byte[]> samples = new ArrayList<byte[]>();
+			Random random = new Random(1);
+			for (int i = 0; i < 10000; i++) {
+				samples.add(SampleRows.rowKey(random.nextInt(ROWS)));
+			}
+
+			TableName fixed = TableName.valueOf("split_fixed");
+			cluster.createTable(fixed, SampleRows.FAMILY,
+					new byte[][] { Bytes.toBytes("J"), Bytes.toBytes("M"), Bytes.toBytes("P"), Bytes.toBytes("T") });
+			run(cluster, fixed, samples);
+
+			TableName planned = TableName.valueOf("split_planned");
+			cluster.createTable(planned, SampleRows.FAMILY, null);
+			Admin admin = cluster.getConnection().getAdmin();
+			try {
+				long start = System.nanoTime();
+				SplitPlanner.split(admin, planned, SplitPlanner.splitPoints(samples, REGIONS));
+				System.out.println(String.format("split %s into %d regions in %.0f ms", planned, REGIONS,
+						(System.nanoTime() - start) / 1e6));
+			} finally {
+				admin.close();
+			}
+			run(cluster, planned, samples);
+
+			TableName presplit = TableName.valueOf("split_presplit");
+			cluster.createTable(presplit, SampleRows.FAMILY, SplitPlanner.splitPoints(samples, REGIONS));
+			run(cluster, presplit, samples);
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static void run(BenchmarkCluster cluster, TableName name, List<byte[]> samples) throws Exception {
+		Table table = cluster.getConnection().getTable(name);
+		long start = System.nanoTime();
+		try {
+			Random random = new Random(42);
+			for (int i = 0; i < ROWS; i += 1000) {
+				List<Put> puts = SampleRows.puts(i, 1000, random);
+				table.put(puts);
+			}
+		} finally {
+			table.close();
+		}
+		double millis = (System.nanoTime() - start) / 1e6;
+		Thread.sleep(REPORT_DELAY_MILLIS);
+
+		System.out.println(String.format("%s: loaded %d rows in %.0f ms", name, ROWS, millis));
+		Map<String, Double> perServer = new HashMap<String, Double>();
+		for (SplitPlanner.RegionReport report : SplitPlanner.report(cluster.getConnection(), name, samples)) {
+			System.out.println("  " + report);
+			String server = report.getServer() == null ? "-" : report.getServer().getHostAndPort();
+			Double share = perServer.get(server);
+			perServer.put(server, (share == null ? 0 : share) + report.getObservedShare());
+		}
+		for (Map.Entry<String, Double> e : perServer.entrySet()) {
+			System.out.println(String.format("  server %s observed=%.1f%%", e.getKey(), e.getValue() * 100));
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.hfile.CacheStats;
+
+import com.cswe.hbase.example.WorkloadProfile;
+
+/**
+ * 对每种 WorkloadProfile 建表并写入相同的数据，测量 getData 形式的 Get（按行读 name 和 adress 两列）
+ * 和全表 Scan 的延迟，以及各自的块缓存命中率。
+ * <p>
+ * 数据分 FILES 批交错写入并逐批 flush，每个 HFile 都覆盖整个行键范围，关闭 compaction，
+ * 没有布隆过滤器时每次 Get 都要查所有文件。Get 中 MISS_RATIO 的行不存在。
+ * 块缓存设为堆的 1%，小于数据量，缓存大小和命中率随堆大小变化，应在相同 -Xmx 下比较。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.WorkloadProfileBenchmark
+ */
+public class WorkloadProfileBenchmark {
+
+	private static final int ROWS = 200000;
+	private static final int FILES = 4;
+	private static final int GETS = 10000;
+	private static final double MISS_RATIO = 0.2;
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = HBaseConfiguration.create();
+		conf.setFloat("hfile.block.cache.size", 0.01f);
+		conf.setInt("hbase.hstore.compaction.min", 100);
+		conf.setInt("hbase.hstore.compactionThreshold", 100);
+		conf.setInt("hbase.hstore.blockingStoreFiles", 200);
+		BenchmarkCluster cluster = BenchmarkCluster.start(1, conf);
+		try {
+			for (WorkloadProfile profile : WorkloadProfile.values()) {
+				TableName tableName = TableName.valueOf("profile_bench_" + profile.name().toLowerCase());
+				create(cluster, tableName, profile);
+				load(cluster, tableName);
+				Table table = cluster.getConnection().getTable(tableName);
+				try {
+					// 预热一轮，只统计第二轮
+					gets(table, new LatencySample());
+					System.out.println(profile);
+
+					CacheStats stats = cacheStats(cluster);
+					long hits = stats.getHitCount();
+					long requests = stats.getRequestCount();
+					LatencySample sample = new LatencySample();
+					gets(table, sample);
+					System.out.println(String.format("  get   %s cache hit %.1f%%", sample,
+							hitRatio(stats, hits, requests)));
+
+					hits = stats.getHitCount();
+					requests = stats.getRequestCount();
+					long start = System.nanoTime();
+					int rows = scan(table);
+					System.out.println(String.format("  scan  %d rows in %.0fms cache hit %.1f%%", rows,
+							(System.nanoTime() - start) / 1e6, hitRatio(stats, hits, requests)));
+
+					// 扫描之后再读一轮，看扫描是否把 Get 的热点块挤出缓存
+					hits = stats.getHitCount();
+					requests = stats.getRequestCount();
+					sample = new LatencySample();
+					gets(table, sample);
+					System.out.println(String.format("  get after scan %s cache hit %.1f%%", sample,
+							hitRatio(stats, hits, requests)));
+				} finally {
+					table.close();
+				}
+				drop(cluster, tableName);
+			}
+		} finally {
+			cluster.close();
+		}
+	}
+
+	private static CacheStats cacheStats(BenchmarkCluster cluster) {
+		return cluster.getUtility().getMiniHBaseCluster().getRegionServer(0).getCacheConfig().getBlockCache()
+				.getStats();
+	}
+
+	private static double hitRatio(CacheStats stats, long hits, long requests) {
+		long r = stats.getRequestCount() - requests;
+		return r == 0 ? 0 : 100.0 * (stats.getHitCount() - hits) / r;
+	}
+
+	private static void create(BenchmarkCluster cluster, TableName tableName, WorkloadProfile profile)
+			throws Exception {
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			HTableDescriptor htd = new HTableDescriptor(tableName);
+			htd.addFamily(profile.applyTo(new HColumnDescriptor(SampleRows.FAMILY)));
+			admin.createTable(htd);
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static void drop(BenchmarkCluster cluster, TableName tableName) throws Exception {
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			admin.disableTable(tableName);
+			admin.deleteTable(tableName);
+		} finally {
+			admin.close();
+		}
+	}
+
+	private static void load(BenchmarkCluster cluster, TableName tableName) throws Exception {
+		Random random = new Random(42);
+		Table table = cluster.getConnection().getTable(tableName);
+		Admin admin = cluster.getConnection().getAdmin();
+		try {
+			for (int f = 0; f < FILES; f++) {
+				List<Put> puts = new ArrayList<Put>();
+				for (int i = f; i < ROWS; i += FILES) {
+					puts.add(SampleRows.put(i, random));
+					if (puts.size() == 1000) {
+						table.put(puts);
+						puts.clear();
+					}
+				}
+				table.put(puts);
+				admin.flush(tableName);
+			}
+		} finally {
+			admin.close();
+			table.close();
+		}
+	}
+
+	private static void gets(Table table, LatencySample sample) throws Exception {
+		Random random = new Random(7);
+		for (int i = 0; i < GETS; i++) {
+			long row = random.nextDouble() < MISS_RATIO ? ROWS + random.nextInt(ROWS) : random.nextInt(ROWS);
+			Get get = new Get(SampleRows.rowKey(row));
+			get.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[0]);
+			get.addColumn(SampleRows.FAMILY, SampleRows.QUALIFIERS[3]);
+			long start = System.nanoTime();
+			table.get(get);
+			sample.add(System.nanoTime() - start);
+		}
+	}
+
+	private static int scan(Table table) throws Exception {
+		Scan scan = new Scan();
+		scan.setCaching(1000);
+		int rows = 0;
+		ResultScanner scanner = table.getScanner(scan);
+		try {
+			for (Result r = scanner.next(); r != null; r = scanner.next()) {
+				rows++;
+			}
+		} finally {
+			scanner.close();
+		}
+		return rows;
+	}
+}
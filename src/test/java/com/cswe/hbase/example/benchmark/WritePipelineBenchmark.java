@@ -0,0 +1,90 @@
+package com.cswe.hbase.example.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Table;
+
+import com.cswe.hbase.example.WritePipeline;
+
+/**
+ * 对比 putData 使用的阻塞 Table.put(List) 与 WritePipeline 的写入吞吐。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cswe.hbase.example.benchmark.WritePipelineBenchmark [-Dexec.args="rows batch"]
+ */
+public class WritePipelineBenchmark {
+
+	private static final TableName TABLE = TableName.valueOf("write_pipeline_bench");
+
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		BenchmarkCluster cluster = BenchmarkCluster.start(1);
+		try {
+			cluster.createTable(TABLE, SampleRows.FAMILY, null);
+			report("warm-up", blockingPut(cluster, rows / 10, batch), rows / 10);
+
+			cluster.createTable(TABLE, SampleRows.FAMILY, null);
+			report("Table.put(List) batch=" + batch, blockingPut(cluster, rows, batch), rows);
+
+			cluster.createTable(TABLE, SampleRows.FAMILY, null);
+			report("WritePipeline", pipelinePut(cluster, rows, batch), rows);
+		} finally {
+			cluster.close();
+		}
+	}
+
+	/**
+	 * 与 putData 相同的写法：每攒够一批调用一次 table.put 并等待返回
+	 */
+	private static long blockingPut(BenchmarkCluster cluster, int rows, int batch) throws Exception {
+		Random random = new Random(42);
+		Table table = cluster.getConnection().getTable(TABLE);
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < rows; i += batch) {
+				List<Put> puts = SampleRows.puts(i, Math.min(batch, rows - i), random);
+				table.put(puts);
+			}
+			return System.nanoTime() - start;
+		} finally {
+			table.close();
+		}
+	}
+
+	private static long pipelinePut(BenchmarkCluster cluster, int rows, int batch) throws Exception {
+		Random random = new Random(42);
+		final AtomicLong failures = new AtomicLong();
+		WritePipeline.Params params = new WritePipeline.Params(TABLE)
+				.listener(new WritePipeline.FailureListener() {
+					@Override
+					public void onFailure(Row row, Throwable cause, String hostnamePort) {
+						failures.incrementAndGet();
+					}
+				});
+		long start = System.nanoTime();
+		WritePipeline pipeline = new WritePipeline(cluster.getConnection(), params);
+		try {
+			for (int i = 0; i < rows; i += batch) {
+				pipeline.submit(SampleRows.puts(i, Math.min(batch, rows - i), random));
+			}
+		} finally {
+			pipeline.close();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println("WritePipeline flushes=" + pipeline.getFlushCount() + " failures=" + failures.get());
+		return elapsed;
+	}
+
+	private static void report(String name, long nanos, int rows) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-32s rows=%d time=%.2fs throughput=%.0f rows/s", name, rows, seconds,
+				rows / seconds));
+	}
+}